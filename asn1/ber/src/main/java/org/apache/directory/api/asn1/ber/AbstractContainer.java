@@ -53,6 +53,9 @@ public abstract class AbstractContainer implements Asn1Container
     /** The parent TLV */
     private TLV parentTLV;
 
+    /** The TLV reused for the primitive elements */
+    private TLV primitiveTlv;
+
     /** The grammar end transition flag */
     private boolean grammarEndAllowed;
 
@@ -72,6 +75,9 @@ public abstract class AbstractContainer implements Asn1Container
      * for constructed types */
     private boolean gathering = false;
 
+    /** A flag telling if the next Value should be skipped */
+    private boolean skipping = false;
+
 
     /**
      * Creates a new instance of AbstractContainer with a starting state.
@@ -80,6 +86,7 @@ public abstract class AbstractContainer implements Asn1Container
     protected AbstractContainer()
     {
         state = TLVStateEnum.TAG_STATE_START;
+        skipping = false;
     }
 
 
@@ -237,6 +244,30 @@ public abstract class AbstractContainer implements Asn1Container
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TLV getNewTlv( byte tag )
+    {
+        if ( TLV.isConstructed( tag ) )
+        {
+            return new TLV( getNewTlvId() );
+        }
+
+        if ( primitiveTlv == null )
+        {
+            primitiveTlv = new TLV( getNewTlvId() );
+        }
+        else
+        {
+            primitiveTlv.reset( getNewTlvId() );
+        }
+
+        return primitiveTlv;
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -371,4 +402,24 @@ public abstract class AbstractContainer implements Asn1Container
         this.gathering = gathering;
     }
 
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isSkipping()
+    {
+        return skipping;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setSkipping( boolean skipping )
+    {
+        this.skipping = skipping;
+    }
+
 }
@@ -153,6 +153,22 @@ public interface Asn1Container
     int getNewTlvId();
 
 
+    /**
+     * Gets a TLV for a new element, with a new id. A primitive TLV is never the
+     * parent of another TLV, and it is not used anymore once its action has been
+     * executed, so the same instance can be reused for all the primitive elements.
+     * Constructed TLVs are always created. The default implementation always
+     * creates a new TLV.
+     * 
+     * @param tag The new element's tag
+     * @return a TLV ready to be used for the new element
+     */
+    default TLV getNewTlv( byte tag )
+    {
+        return new TLV( getNewTlvId() );
+    }
+
+
     /**
      * Gets the current TLV id
      * @return a unique value representing the current TLV id
@@ -223,4 +239,28 @@ public interface Asn1Container
      * into the container. If not set, the default value is 'false'
      */
     void setGathering( boolean isGathering );
+
+
+    /**
+     * @return true if the Value of the next TLV should be skipped, without being read.
+     * The default implementation never skips.
+     */
+    default boolean isSkipping()
+    {
+        return false;
+    }
+
+
+    /**
+     * Set the isSkipping flag. The Asn1Decoder then consumes the bytes of the next TLV
+     * Value without storing them, and executes the TLV action as if the Value was empty.
+     * The flag should be reset by this action. The default implementation ignores the
+     * flag, the Value being then decoded.
+     * 
+     * @param isSkipping true to ask the Asn1Decoder to skip the next Value
+     */
+    default void setSkipping( boolean isSkipping )
+    {
+        // Nothing to do
+    }
 }
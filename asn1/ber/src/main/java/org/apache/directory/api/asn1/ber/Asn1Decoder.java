@@ -87,7 +87,7 @@ public final class Asn1Decoder implements TLVBerDecoderMBean
         {
             byte octet = stream.get();
 
-            TLV tlv = new TLV( container.getNewTlvId() );
+            TLV tlv = container.getNewTlv( octet );
             tlv.setTag( octet );
 
             // Store the current TLV in the container.
@@ -165,6 +165,12 @@ public final class Asn1Decoder implements TLVBerDecoderMBean
             parent = parent.getParent();
         }
 
+        // Don't create a value for a constructed TLV which is not gathered
+        if ( current.isConstructed() && !container.isGathering() )
+        {
+            return current.getExpectedLength() == 0;
+        }
+
         BerValue value = current.getValue();
 
         if ( ( value != null ) && ( value.getData() != null ) )
@@ -402,8 +408,9 @@ public final class Asn1Decoder implements TLVBerDecoderMBean
                 // We also have to check that the current TLV is a constructed
                 // one.
                 // In this case, we have to switch from this parent TLV
-                // to the parent's parent TLV.
-                if ( tlv.isConstructed() )
+                // to the parent's parent TLV. A gathered or skipped TLV is
+                // handled as a primitive one, as its value is read as a whole.
+                if ( tlv.isConstructed() && !container.isGathering() && !container.isSkipping() )
                 {
                     // here, we also have another special case : a
                     // zero length TLV. We must then unstack all
@@ -468,7 +475,7 @@ public final class Asn1Decoder implements TLVBerDecoderMBean
                 parentTLV.setExpectedLength( expectedLength - currentLength );
                 tlv.setExpectedLength( length );
 
-                if ( tlv.isConstructed() )
+                if ( tlv.isConstructed() && !container.isGathering() && !container.isSkipping() )
                 {
                     // We have a constructed tag, so we must switch the
                     // parentTLV
@@ -512,6 +519,14 @@ public final class Asn1Decoder implements TLVBerDecoderMBean
     {
         TLV currentTlv = container.getCurrentTLV();
 
+        if ( container.isSkipping() )
+        {
+            // The expected length is used to count the bytes to skip
+            container.setState( TLVStateEnum.VALUE_STATE_SKIPPING );
+
+            return MORE;
+        }
+
         if ( TLV.isConstructed( currentTlv.getTag() ) && !container.isGathering() )
         {
             container.setState( TLVStateEnum.TLV_STATE_DONE );
@@ -571,9 +586,41 @@ public final class Asn1Decoder implements TLVBerDecoderMBean
         else
         {
             int remaining = length - currentLength;
-            byte[] data = new byte[remaining];
-            stream.get( data, 0, remaining );
-            currentTlv.getValue().addData( data );
+            currentTlv.getValue().addData( stream, remaining );
+            container.setState( TLVStateEnum.TLV_STATE_DONE );
+
+            return MORE;
+        }
+    }
+
+
+    /**
+     * Skip the Value, without storing it : the stream position is moved forward. The
+     * expected length of the current TLV holds the number of bytes still to skip.
+     * 
+     * @param stream The ByteBuffer containing the PDU to decode
+     * @param container The container that stores the current state,
+     * the result and other informations.
+     * @return <code>MORE</code> if some bytes remain in the buffer when the
+     * value has been skipped, <code>END</code> if whe still need to get some
+     * more bytes.
+     */
+    private static boolean treatValueSkippingState( ByteBuffer stream, Asn1Container container )
+    {
+        TLV currentTlv = container.getCurrentTLV();
+
+        int remaining = currentTlv.getExpectedLength();
+        int nbBytes = Math.min( remaining, stream.remaining() );
+
+        stream.position( stream.position() + nbBytes );
+        currentTlv.setExpectedLength( remaining - nbBytes );
+
+        if ( nbBytes < remaining )
+        {
+            return END;
+        }
+        else
+        {
             container.setState( TLVStateEnum.TLV_STATE_DONE );
 
             return MORE;
@@ -730,6 +777,11 @@ public final class Asn1Decoder implements TLVBerDecoderMBean
 
                     break;
 
+                case VALUE_STATE_SKIPPING:
+                    hasRemaining = treatValueSkippingState( stream, container );
+
+                    break;
+
                 case VALUE_STATE_END:
                     hasRemaining = stream.hasRemaining();
 
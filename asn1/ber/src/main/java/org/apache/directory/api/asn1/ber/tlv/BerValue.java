@@ -185,6 +185,19 @@ public class BerValue
     }
 
 
+    /**
+     * Append a given number of bytes from a buffer to the data buffer.
+     *
+     * @param buffer The data to append.
+     * @param length The number of bytes to append
+     */
+    public void addData( ByteBuffer buffer, int length )
+    {
+        buffer.get( data, currentPos, length );
+        currentPos += length;
+    }
+
+
     /**
      * Set a block of bytes in the Value
      *
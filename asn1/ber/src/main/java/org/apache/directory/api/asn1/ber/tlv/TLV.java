@@ -106,7 +106,6 @@ public class TLV
         tag = 0;
         length = 0;
         lengthNbBytes = 0;
-        value = new BerValue();
         this.id = id;
 
         expectedLength = 0;
@@ -169,12 +168,30 @@ public class TLV
         tag = 0;
         length = 0;
         lengthNbBytes = 0;
-        value.reset();
+
+        if ( value != null )
+        {
+            value.reset();
+        }
 
         expectedLength = 0;
     }
 
 
+    /**
+     * Reset the TLV, so it can be reused for another element, with a new id.
+     * 
+     * @param id the new TLV's id
+     */
+    public void reset( int id )
+    {
+        reset();
+        lengthBytesRead = 0;
+        parent = null;
+        this.id = id;
+    }
+
+
     /**
      * @return Returns the tag.
      */
@@ -196,14 +213,29 @@ public class TLV
 
 
     /**
-     * @return Returns the value.
+     * @return Returns the value. It is created on the first call, as most
+     * constructed TLVs don't have to store their value.
      */
     public BerValue getValue()
     {
+        if ( value == null )
+        {
+            value = new BerValue();
+        }
+
         return value;
     }
 
 
+    /**
+     * @return <code>true</code> if a value has been created for this TLV
+     */
+    public boolean hasValue()
+    {
+        return value != null;
+    }
+
+
     /**
      * The TLV size is calculated by adding the Tag's size, the Length's size
      * and the Value's length, if any.
@@ -452,7 +484,7 @@ public class TLV
         sb.append( "TLV[ " );
         sb.append( Asn1StringUtils.dumpByte( tag ) ).append( ", " );
         sb.append( length ).append( ", " );
-        sb.append( value.toString() );
+        sb.append( value == null ? "null" : value.toString() );
         sb.append( "]" );
 
         return sb.toString();
@@ -58,6 +58,9 @@ public enum TLVStateEnum
     /** Pending means that the Type Value is contained in more that one byte */
     VALUE_STATE_PENDING,
 
+    /** Skipping means that the Value is ignored, its bytes being consumed without being read */
+    VALUE_STATE_SKIPPING,
+
     /** End means that the Value is totally read */
     VALUE_STATE_END,
 
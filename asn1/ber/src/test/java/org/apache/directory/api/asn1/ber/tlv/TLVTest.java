@@ -0,0 +1,92 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.asn1.ber.tlv;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.apache.directory.api.asn1.ber.AbstractContainer;
+import org.apache.directory.api.asn1.ber.Asn1Container;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+
+/**
+ * This class is used to test the TLV class, and its recycling by the container
+ * 
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution(ExecutionMode.CONCURRENT)
+public class TLVTest
+{
+    /**
+     * Test the TLV reset with a new id
+     */
+    @Test
+    public void testResetWithId()
+    {
+        TLV parent = new TLV( 0 );
+        TLV tlv = new TLV( 1 );
+        tlv.setTag( ( byte ) 0x04 );
+        tlv.setLength( 3 );
+        tlv.setExpectedLength( 3 );
+        tlv.setParent( parent );
+        tlv.getValue().init( 3 );
+
+        tlv.reset( 2 );
+
+        assertEquals( 2, tlv.getId() );
+        assertEquals( 0, tlv.getTag() );
+        assertEquals( 0, tlv.getLength() );
+        assertEquals( 0, tlv.getExpectedLength() );
+        assertNull( tlv.getParent() );
+        assertNull( tlv.getValue().getData() );
+    }
+
+
+    /**
+     * Test that the primitive TLVs are reused, and not the constructed ones
+     */
+    @Test
+    public void testContainerTlvRecycling()
+    {
+        Asn1Container container = new AbstractContainer()
+        {
+        };
+
+        // A SEQUENCE is constructed
+        TLV sequence1 = container.getNewTlv( ( byte ) 0x30 );
+        TLV sequence2 = container.getNewTlv( ( byte ) 0x30 );
+        assertNotSame( sequence1, sequence2 );
+
+        // An OCTET STRING is primitive
+        TLV octetString1 = container.getNewTlv( ( byte ) 0x04 );
+        int id1 = octetString1.getId();
+        TLV octetString2 = container.getNewTlv( ( byte ) 0x04 );
+
+        assertSame( octetString1, octetString2 );
+        assertNotEquals( id1, octetString2.getId() );
+    }
+}
@@ -214,6 +214,30 @@ public enum I18n
     ERR_04178_CANT_LOAD_KEY_STORE( "ERR_04178_CANT_LOAD_KEY_STORE" ),
     ERR_04179_TRUST_STORE_CANT_BE_READ( "ERR_04179_TRUST_STORE_CANT_BE_READ" ),
     ERR_04180_FILE_DOES_NOT_EXIST_ON_CLASSPATH( "ERR_04180_FILE_DOES_NOT_EXIST_ON_CLASSPATH" ),
+    ERR_04181_INVALID_PAGE_SIZE( "ERR_04181_INVALID_PAGE_SIZE" ),
+    ERR_04182_INVALID_PARALLELISM( "ERR_04182_INVALID_PARALLELISM" ),
+    ERR_04183_PARTITION_SEARCH_FAILED( "ERR_04183_PARTITION_SEARCH_FAILED" ),
+    ERR_04184_NOT_AN_ASYNC_CONNECTION( "ERR_04184_NOT_AN_ASYNC_CONNECTION" ),
+    ERR_04185_SYNCREPL_SESSION_FAILED( "ERR_04185_SYNCREPL_SESSION_FAILED" ),
+    ERR_04186_DIRSYNC_FAILED( "ERR_04186_DIRSYNC_FAILED" ),
+    ERR_04187_NO_DIRSYNC_RESPONSE_CONTROL( "ERR_04187_NO_DIRSYNC_RESPONSE_CONTROL" ),
+    ERR_04188_VLV_SORT_CONTROL_MISSING( "ERR_04188_VLV_SORT_CONTROL_MISSING" ),
+    ERR_04189_VLV_FAILED( "ERR_04189_VLV_FAILED" ),
+    ERR_04190_NO_VLV_RESPONSE_CONTROL( "ERR_04190_NO_VLV_RESPONSE_CONTROL" ),
+    ERR_04191_NO_SORT_KEY( "ERR_04191_NO_SORT_KEY" ),
+    ERR_04192_SORT_RUN_FAILED( "ERR_04192_SORT_RUN_FAILED" ),
+    ERR_04193_ENTRY_CACHE_INVALIDATOR_FAILED( "ERR_04193_ENTRY_CACHE_INVALIDATOR_FAILED" ),
+    ERR_04194_PERSISTENT_SEARCH_ENDED( "ERR_04194_PERSISTENT_SEARCH_ENDED" ),
+    ERR_04195_COALESCED_SEARCH_INTERRUPTED( "ERR_04195_COALESCED_SEARCH_INTERRUPTED" ),
+    ERR_04196_HEDGED_REQUEST_FAILED( "ERR_04196_HEDGED_REQUEST_FAILED" ),
+    ERR_04197_REFERRAL_CHASING_FAILED( "ERR_04197_REFERRAL_CHASING_FAILED" ),
+    ERR_04198_LDIF_LOAD_TIMEOUT( "ERR_04198_LDIF_LOAD_TIMEOUT" ),
+    ERR_04199_LDIF_LOAD_FAILED( "ERR_04199_LDIF_LOAD_FAILED" ),
+    ERR_04200_INVALID_LOADER_PARALLELISM( "ERR_04200_INVALID_LOADER_PARALLELISM" ),
+    ERR_04201_INVALID_LOADER_WINDOW( "ERR_04201_INVALID_LOADER_WINDOW" ),
+    ERR_04202_SUBTREE_DELETE_FAILED( "ERR_04202_SUBTREE_DELETE_FAILED" ),
+    ERR_04203_INVALID_DELETER_PARALLELISM( "ERR_04203_INVALID_DELETER_PARALLELISM" ),
+    ERR_04204_REPLACEMENT_CONNECTION_FAILED( "ERR_04204_REPLACEMENT_CONNECTION_FAILED" ),
 
     //     template                     4200-4300
     // None
@@ -285,6 +309,8 @@ public enum I18n
     ERR_05157_INVALID_DN( "ERR_05157_INVALID_DN" ),
     ERR_05158_INVALID_REQUEST_VALUE( "ERR_05158_INVALID_REQUEST_VALUE" ),
     ERR_05159_INVALID_RESPONSE_NAME_OID( "ERR_05159_INVALID_RESPONSE_NAME_OID" ),
+    ERR_05160_INVALID_PARTIAL_ATTRIBUTE_LIST( "ERR_05160_INVALID_PARTIAL_ATTRIBUTE_LIST" ),
+    ERR_05161_INVALID_PDU_HEADER( "ERR_05161_INVALID_PDU_HEADER" ),
 
 
     //     api                          5200-5299
@@ -859,6 +885,17 @@ public enum I18n
     ERR_13867_MOD_INCREMENT_NO_ATTRIBUTE( "ERR_13867_MOD_INCREMENT_NO_ATTRIBUTE" ),
     ERR_13868_MOD_INCREMENT_NO_INT_ATTRIBUTE( "ERR_13868_MOD_INCREMENT_NO_INT_ATTRIBUTE" ),
     ERR_13869_MOD_INCREMENT_OVERFLOW( "ERR_13869_MOD_INCREMENT_OVERFLOW" ),
+    ERR_13870_INVALID_PARALLELISM( "ERR_13870_INVALID_PARALLELISM" ),
+    ERR_13871_SCHEMA_FILE_PARSING_FAILURE( "ERR_13871_SCHEMA_FILE_PARSING_FAILURE" ),
+    ERR_13872_NO_OBJECT_CLASS( "ERR_13872_NO_OBJECT_CLASS" ),
+    ERR_13873_INVALID_OBJECT_CLASSES( "ERR_13873_INVALID_OBJECT_CLASSES" ),
+    ERR_13874_SINGLE_VALUED_ATTRIBUTE_WITH_VALUES( "ERR_13874_SINGLE_VALUED_ATTRIBUTE_WITH_VALUES" ),
+    ERR_13875_MISSING_MUST_ATTRIBUTES( "ERR_13875_MISSING_MUST_ATTRIBUTES" ),
+    ERR_13876_ATTRIBUTES_NOT_ALLOWED( "ERR_13876_ATTRIBUTES_NOT_ALLOWED" ),
+    ERR_13877_NO_UNIQUE_STRUCTURAL_OBJECT_CLASS( "ERR_13877_NO_UNIQUE_STRUCTURAL_OBJECT_CLASS" ),
+    ERR_13878_AUXILIARY_OBJECT_CLASS_NOT_ALLOWED( "ERR_13878_AUXILIARY_OBJECT_CLASS_NOT_ALLOWED" ),
+    ERR_13879_NULL_WRAPPED_SYNTAX_CHECKER( "ERR_13879_NULL_WRAPPED_SYNTAX_CHECKER" ),
+    ERR_13880_INVALID_CACHE_SIZE( "ERR_13880_INVALID_CACHE_SIZE" ),
 
     // api-ldap-model subtree          13900-13999
     ERR_13900_INTEGER_TOKEN_NOT_INTEGER( "ERR_13900_INTEGER_TOKEN_NOT_INTEGER" ),
@@ -1161,6 +1198,30 @@ public enum I18n
     MSG_04175_TRUST_MANAGER_IO_EXCEPTION( "MSG_04175_TRUST_MANAGER_IO_EXCEPTION" ),
     MSG_04176_TRUST_MANAGER_ON_CLASSPATH( "MSG_04176_TRUST_MANAGER_ON_CLASSPATH" ),
     MSG_04177_CONNECTION_TIMEOUT( "MSG_04177_CONNECTION_TIMEOUT" ),
+    MSG_04178_REQUESTING_NEXT_PAGE( "MSG_04178_REQUESTING_NEXT_PAGE" ),
+    MSG_04179_PARALLEL_SEARCH( "MSG_04179_PARALLEL_SEARCH" ),
+    MSG_04180_SYNCREPL_RECONNECT( "MSG_04180_SYNCREPL_RECONNECT" ),
+    MSG_04181_SYNCREPL_REFRESH_REQUIRED( "MSG_04181_SYNCREPL_REFRESH_REQUIRED" ),
+    MSG_04182_SYNCREPL_COOKIE_SAVED( "MSG_04182_SYNCREPL_COOKIE_SAVED" ),
+    MSG_04183_DIRSYNC_NEXT_SYNC( "MSG_04183_DIRSYNC_NEXT_SYNC" ),
+    MSG_04184_DIRSYNC_COOKIE_SAVED( "MSG_04184_DIRSYNC_COOKIE_SAVED" ),
+    MSG_04185_VLV_FETCH( "MSG_04185_VLV_FETCH" ),
+    MSG_04186_SORT_RUN_SPILLED( "MSG_04186_SORT_RUN_SPILLED" ),
+    MSG_04187_RECONNECT_AUTHENTICATION_CONNECTION( "MSG_04187_RECONNECT_AUTHENTICATION_CONNECTION" ),
+    MSG_04188_USER_DN_CACHE_STALE( "MSG_04188_USER_DN_CACHE_STALE" ),
+    MSG_04189_ENTRY_CACHE_INVALIDATED( "MSG_04189_ENTRY_CACHE_INVALIDATED" ),
+    MSG_04190_ENTRY_CACHE_RECONNECT( "MSG_04190_ENTRY_CACHE_RECONNECT" ),
+    MSG_04191_HEDGING_REQUEST( "MSG_04191_HEDGING_REQUEST" ),
+    MSG_04192_CHASING_REFERRAL( "MSG_04192_CHASING_REFERRAL" ),
+    MSG_04193_REFERRAL_LOOP( "MSG_04193_REFERRAL_LOOP" ),
+    MSG_04194_REFERRAL_HOP_LIMIT( "MSG_04194_REFERRAL_HOP_LIMIT" ),
+    MSG_04195_LDIF_LOAD_RETRY( "MSG_04195_LDIF_LOAD_RETRY" ),
+    MSG_04196_LDIF_LOAD_DONE( "MSG_04196_LDIF_LOAD_DONE" ),
+    MSG_04197_TREE_DELETE( "MSG_04197_TREE_DELETE" ),
+    MSG_04198_DELETING_LEVEL( "MSG_04198_DELETING_LEVEL" ),
+    MSG_04199_ENTRY_NOT_DELETED( "MSG_04199_ENTRY_NOT_DELETED" ),
+    MSG_04200_DISCONNECT_NOTICE( "MSG_04200_DISCONNECT_NOTICE" ),
+    MSG_04201_POOL_ROTATION( "MSG_04201_POOL_ROTATION" ),
     MSH_04178_CLOSE_LATCH_ABORTED( "MSH_04178_CLOSE_LATCH_ABORTED" ),
 
     // api-ldap-codec-core              5000-5999
@@ -1252,6 +1313,7 @@ public enum I18n
     MSG_05183_SEARCH_RESULT_REFERENCE_RESPONSE( "MSG_05183_SEARCH_RESULT_REFERENCE_RESPONSE" ),
     MSG_05184_SEARCH_REFERENCE_URL( "MSG_05184_SEARCH_REFERENCE_URL" ),
     MSG_05185_MODIFY_REQUEST( "MSG_05185_MODIFY_REQUEST" ),
+    MSG_05186_SKIPPED_ATTRIBUTE_TYPE( "MSG_05186_SKIPPED_ATTRIBUTE_TYPE" ),
 
     //     api                              5200-5299
     MSG_5200_DECODED_LDAP_MESSAGE( "MSG_5200_DECODED_LDAP_MESSAGE" ),
@@ -1467,6 +1529,7 @@ public enum I18n
     // api-ldap-schema-converter        15000 - 15999
     MSG_15000_NO_SCHEMA_DEFINED( "MSG_15000_NO_SCHEMA_DEFINED" ),
     MSG_15001_GENERATING_SCHEMA( "MSG_15001_GENERATING_SCHEMA" ),
+    MSG_15002_DUPLICATE_JAVA_NAME( "MSG_15002_DUPLICATE_JAVA_NAME" ),
 
     // api-ldap-schema-data             16000 - 16999
     MSG_16000_BASE_PATH( "MSG_16000_BASE_PATH" ),
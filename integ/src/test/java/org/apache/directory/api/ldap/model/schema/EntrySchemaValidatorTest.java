@@ -0,0 +1,225 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.model.schema;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.exception.LdapInvalidAttributeValueException;
+import org.apache.directory.api.ldap.model.exception.LdapSchemaViolationException;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.schema.manager.impl.DefaultSchemaManager;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests the EntrySchemaValidator class.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class EntrySchemaValidatorTest
+{
+    private static SchemaManager schemaManager;
+
+
+    @BeforeAll
+    public static void setup() throws Exception
+    {
+        schemaManager = new DefaultSchemaManager();
+    }
+
+
+    @Test
+    public void testValidEntry() throws Exception
+    {
+        EntrySchemaValidator validator = new EntrySchemaValidator( schemaManager );
+
+        Entry entry = new DefaultEntry( schemaManager, "cn=test,ou=system",
+            "objectClass: top",
+            "objectClass: person",
+            "objectClass: inetOrgPerson",
+            "cn: test",
+            "sn: Test",
+            "mail: test@example.com",
+            "description: a test" );
+
+        validator.validate( entry );
+        assertTrue( validator.isValid( entry ) );
+        assertEquals( 1, validator.getCacheSize() );
+    }
+
+
+    @Test
+    public void testValidNotSchemaAwareEntry() throws Exception
+    {
+        EntrySchemaValidator validator = new EntrySchemaValidator( schemaManager );
+
+        Entry entry = new DefaultEntry( "cn=test,ou=system",
+            "objectClass: top",
+            "objectClass: organizationalPerson",
+            "cn: test",
+            "sn: Test",
+            "cn;lang-fr: essai",
+            "telephoneNumber: 1234" );
+
+        validator.validate( entry );
+    }
+
+
+    @Test
+    public void testMissingMust() throws Exception
+    {
+        EntrySchemaValidator validator = new EntrySchemaValidator( schemaManager );
+
+        Entry entry = new DefaultEntry( schemaManager, "cn=test,ou=system",
+            "objectClass: person",
+            "cn: test" );
+
+        LdapSchemaViolationException lsve = assertThrows( LdapSchemaViolationException.class,
+            () -> validator.validate( entry ) );
+
+        assertEquals( ResultCodeEnum.OBJECT_CLASS_VIOLATION, lsve.getResultCode() );
+        assertTrue( lsve.getMessage().contains( "sn" ) );
+    }
+
+
+    @Test
+    public void testAttributeNotAllowed() throws Exception
+    {
+        EntrySchemaValidator validator = new EntrySchemaValidator( schemaManager );
+
+        Entry entry = new DefaultEntry( schemaManager, "cn=test,ou=system",
+            "objectClass: person",
+            "cn: test",
+            "sn: Test",
+            "mail: test@example.com" );
+
+        LdapSchemaViolationException lsve = assertThrows( LdapSchemaViolationException.class,
+            () -> validator.validate( entry ) );
+
+        assertTrue( lsve.getMessage().contains( "mail" ) );
+
+        // Operational attributes are always allowed
+        Entry entry2 = new DefaultEntry( schemaManager, "cn=test,ou=system",
+            "objectClass: person",
+            "cn: test",
+            "sn: Test",
+            "creatorsName: uid=admin,ou=system" );
+
+        validator.validate( entry2 );
+    }
+
+
+    @Test
+    public void testExtensibleObject() throws Exception
+    {
+        EntrySchemaValidator validator = new EntrySchemaValidator( schemaManager );
+
+        Entry entry = new DefaultEntry( schemaManager, "cn=test,ou=system",
+            "objectClass: person",
+            "objectClass: extensibleObject",
+            "cn: test",
+            "sn: Test",
+            "mail: test@example.com" );
+
+        validator.validate( entry );
+    }
+
+
+    @Test
+    public void testStructuralObjectClasses() throws Exception
+    {
+        EntrySchemaValidator validator = new EntrySchemaValidator( schemaManager );
+
+        // No structural ObjectClass
+        Entry entry = new DefaultEntry( schemaManager, "cn=test,ou=system",
+            "objectClass: top",
+            "objectClass: extensibleObject",
+            "cn: test" );
+
+        assertFalse( validator.isValid( entry ) );
+
+        // Two structural chains
+        Entry entry2 = new DefaultEntry( schemaManager, "cn=test,ou=system",
+            "objectClass: person",
+            "objectClass: organizationalUnit",
+            "cn: test",
+            "sn: Test",
+            "ou: test" );
+
+        assertFalse( validator.isValid( entry2 ) );
+
+        // No objectClass at all
+        Entry entry3 = new DefaultEntry( schemaManager, "cn=test,ou=system",
+            "cn: test" );
+
+        assertFalse( validator.isValid( entry3 ) );
+    }
+
+
+    @Test
+    public void testSingleValued() throws Exception
+    {
+        EntrySchemaValidator validator = new EntrySchemaValidator( schemaManager );
+
+        // A schema aware entry would not accept the second value
+        Entry entry = new DefaultEntry( "cn=test,ou=system",
+            "objectClass: inetOrgPerson",
+            "cn: test",
+            "sn: Test",
+            "displayName: test1",
+            "displayName: test2" );
+
+        LdapInvalidAttributeValueException liave = assertThrows( LdapInvalidAttributeValueException.class,
+            () -> validator.validate( entry ) );
+
+        assertEquals( ResultCodeEnum.CONSTRAINT_VIOLATION, liave.getResultCode() );
+    }
+
+
+    @Test
+    public void testCache() throws Exception
+    {
+        EntrySchemaValidator validator = new EntrySchemaValidator( schemaManager );
+
+        for ( int i = 0; i < 10; i++ )
+        {
+            Entry entry = new DefaultEntry( schemaManager, "cn=test" + i + ",ou=system",
+                "objectClass: top",
+                "objectClass: PERSON",
+                "cn: test" + i,
+                "sn: Test" );
+
+            validator.validate( entry );
+        }
+
+        // The ObjectClasses are the same, modulo the case
+        assertEquals( 1, validator.getCacheSize() );
+
+        validator.clear();
+        assertEquals( 0, validator.getCacheSize() );
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.model.schema.registries;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.exception.LdapNoSuchAttributeException;
+import org.apache.directory.api.ldap.model.schema.AttributeType;
+import org.apache.directory.api.ldap.model.schema.SchemaManager;
+import org.apache.directory.api.ldap.model.schema.UsageEnum;
+import org.apache.directory.api.ldap.schema.manager.impl.DefaultSchemaManager;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests the AttributeType hierarchy index in the AttributeTypeRegistry.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class AttributeTypeHierarchyTest
+{
+    private Set<String> oids( Iterator<AttributeType> descendants )
+    {
+        Set<String> oids = new HashSet<>();
+
+        while ( descendants.hasNext() )
+        {
+            oids.add( descendants.next().getOid() );
+        }
+
+        return oids;
+    }
+
+
+    @Test
+    public void testIsDescendantOf() throws Exception
+    {
+        SchemaManager schemaManager = new DefaultSchemaManager();
+        ImmutableAttributeTypeRegistry registry = ( ImmutableAttributeTypeRegistry ) schemaManager
+            .getAttributeTypeRegistry();
+
+        assertTrue( registry.isDescendantOf( "cn", "name" ) );
+        assertTrue( registry.isDescendantOf( "2.5.4.3", "2.5.4.41" ) );
+        assertFalse( registry.isDescendantOf( "name", "cn" ) );
+        assertFalse( registry.isDescendantOf( "cn", "cn" ) );
+        assertFalse( registry.isDescendantOf( "sn", "cn" ) );
+
+        AttributeType cn = schemaManager.lookupAttributeTypeRegistry( "cn" );
+        AttributeType name = schemaManager.lookupAttributeTypeRegistry( "name" );
+
+        assertTrue( registry.isDescendantOf( cn, name ) );
+        assertFalse( registry.isDescendantOf( name, cn ) );
+        assertFalse( registry.isDescendantOf( cn, null ) );
+
+        assertThrows( LdapNoSuchAttributeException.class, () ->
+        {
+            registry.isDescendantOf( "cn", "unknown" );
+        } );
+    }
+
+
+    @Test
+    public void testTransitiveDescendants() throws Exception
+    {
+        SchemaManager schemaManager = new DefaultSchemaManager();
+        ImmutableAttributeTypeRegistry registry = ( ImmutableAttributeTypeRegistry ) schemaManager
+            .getAttributeTypeRegistry();
+
+        // c-l is a subtype of l, which is a subtype of name
+        assertTrue( registry.isDescendantOf( "c-l", "l" ) );
+        assertTrue( registry.isDescendantOf( "c-l", "name" ) );
+
+        Set<String> nameDescendants = oids( registry.allDescendants( "name" ) );
+        assertTrue( nameDescendants.contains( "2.5.4.3" ) );
+        assertTrue( nameDescendants.contains( "2.5.4.7" ) );
+        assertTrue( nameDescendants.contains( "2.5.4.7.1" ) );
+
+        // descendants() only returns the direct subtypes
+        Set<String> directDescendants = oids( registry.descendants( "name" ) );
+        assertTrue( directDescendants.contains( "2.5.4.3" ) );
+        assertTrue( directDescendants.contains( "2.5.4.7" ) );
+        assertFalse( directDescendants.contains( "2.5.4.7.1" ) );
+        assertTrue( registry.hasDescendants( "name" ) );
+        assertFalse( registry.hasDescendants( "c-l" ) );
+    }
+
+
+    @Test
+    public void testIndexUpdatedOnAddAndDelete() throws Exception
+    {
+        SchemaManager schemaManager = new DefaultSchemaManager();
+        ImmutableAttributeTypeRegistry registry = ( ImmutableAttributeTypeRegistry ) schemaManager
+            .getAttributeTypeRegistry();
+
+        assertFalse( oids( registry.allDescendants( "cn" ) ).contains( "1.1.0" ) );
+
+        AttributeType attributeType = new AttributeType( "1.1.0" );
+        attributeType.setNames( "myCn" );
+        attributeType.setSuperiorOid( SchemaConstants.CN_AT_OID );
+        attributeType.setUsage( UsageEnum.USER_APPLICATIONS );
+
+        assertTrue( schemaManager.add( attributeType ) );
+
+        assertTrue( registry.isDescendantOf( "myCn", "cn" ) );
+        assertTrue( registry.isDescendantOf( "myCn", "name" ) );
+        assertTrue( oids( registry.allDescendants( "name" ) ).contains( "1.1.0" ) );
+        assertFalse( oids( registry.descendants( "name" ) ).contains( "1.1.0" ) );
+        assertTrue( oids( registry.descendants( "cn" ) ).contains( "1.1.0" ) );
+
+        assertTrue( schemaManager.delete( attributeType ) );
+
+        assertFalse( oids( registry.allDescendants( "cn" ) ).contains( "1.1.0" ) );
+        assertFalse( oids( registry.allDescendants( "name" ) ).contains( "1.1.0" ) );
+    }
+
+
+    @Test
+    public void testIndexUpdatedOutOfOrder() throws Exception
+    {
+        DefaultAttributeTypeRegistry registry = new DefaultAttributeTypeRegistry();
+        AttributeType top = new AttributeType( "1.1.1" );
+        AttributeType middle = new AttributeType( "1.1.2" );
+        AttributeType bottom = new AttributeType( "1.1.3" );
+
+        // Register the lowest link first
+        registry.registerDescendants( bottom, middle );
+        registry.registerDescendants( middle, top );
+
+        assertEquals( new HashSet<>( Arrays.asList( "1.1.2", "1.1.3" ) ), oids( registry.allDescendants( top ) ) );
+        assertEquals( new HashSet<>( Arrays.asList( "1.1.2" ) ), oids( registry.descendants( top ) ) );
+
+        registry.unregisterDescendants( middle, top );
+
+        assertFalse( registry.allDescendants( top ).hasNext() );
+        assertEquals( new HashSet<>( Arrays.asList( "1.1.3" ) ), oids( registry.allDescendants( middle ) ) );
+    }
+}
@@ -49,6 +49,9 @@ public abstract class AbstractPoolableLdapConnectionFactory implements PooledObj
     /** The validator to use */
     protected LdapConnectionValidator validator = new LookupLdapConnectionValidator();
 
+    /** The listener registered on the created connections, if any */
+    private volatile DisconnectNoticeListener disconnectNoticeListener;
+
     /**
      * {@inheritDoc}
      * 
@@ -88,6 +91,14 @@ public abstract class AbstractPoolableLdapConnectionFactory implements PooledObj
             LOG.debug( I18n.msg( I18n.MSG_04148_DESTROYING, connection ) );
         }
 
+        LdapNetworkConnection networkConnection = networkConnection( connection.getObject() );
+        DisconnectNoticeListener listener = disconnectNoticeListener;
+
+        if ( ( networkConnection != null ) && ( listener != null ) )
+        {
+            networkConnection.removeDisconnectNoticeListener( listener );
+        }
+
         try
         {
             // https://tools.ietf.org/html/rfc2251#section-4.3
@@ -132,7 +143,60 @@ public abstract class AbstractPoolableLdapConnectionFactory implements PooledObj
             LOG.debug( I18n.msg( I18n.MSG_04150_CREATING_LDAP_CONNECTION ) );
         }
         
-        return new DefaultPooledObject<>( connectionFactory.newLdapConnection() );
+        return newPooledObject( connectionFactory.newLdapConnection() );
+    }
+
+
+    /**
+     * Wraps a created connection, and registers the disconnection notice listener on it.
+     * The listener is removed when the connection is destroyed.
+     *
+     * @param connection The created connection
+     * @return The pooled connection
+     */
+    protected PooledObject<LdapConnection> newPooledObject( LdapConnection connection )
+    {
+        LdapNetworkConnection networkConnection = networkConnection( connection );
+        DisconnectNoticeListener listener = disconnectNoticeListener;
+
+        if ( ( networkConnection != null ) && ( listener != null ) )
+        {
+            networkConnection.addDisconnectNoticeListener( listener );
+        }
+
+        return new DefaultPooledObject<>( connection );
+    }
+
+
+    /**
+     * Sets the listener registered on the connections created from now on. It is set
+     * by the {@link LdapConnectionPool} using this factory.
+     *
+     * @param disconnectNoticeListener The listener, or null
+     */
+    void setDisconnectNoticeListener( DisconnectNoticeListener disconnectNoticeListener )
+    {
+        this.disconnectNoticeListener = disconnectNoticeListener;
+    }
+
+
+    /**
+     * Finds the LdapNetworkConnection wrapped by a pooled connection, if any.
+     *
+     * @param connection The pooled connection
+     * @return The wrapped LdapNetworkConnection, or null
+     */
+    @SuppressWarnings("unchecked")
+    static LdapNetworkConnection networkConnection( LdapConnection connection )
+    {
+        LdapConnection unwrapped = connection;
+
+        while ( unwrapped instanceof Wrapper )
+        {
+            unwrapped = ( ( Wrapper<LdapConnection> ) unwrapped ).wrapped();
+        }
+
+        return unwrapped instanceof LdapNetworkConnection ? ( LdapNetworkConnection ) unwrapped : null;
     }
 
 
@@ -0,0 +1,149 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import org.apache.commons.pool2.PooledObject;
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A factory for creating LdapConnection objects dedicated to authentication. Such connections
+ * are only used to send BindRequests on behalf of end users, so their identity is replaced by
+ * every bind : they are created connected but unbound, and they are never re-bound when they
+ * are pulled from or pushed back into the pool. A connection is only reconnected if it has been
+ * dropped, and it is considered as valid as long as it is connected.
+ * <br>
+ * Such a pool must not be used for any other operation, as the identity of a connection is the
+ * one of the last user who tried to authenticate with it.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class AuthenticationPoolableLdapConnectionFactory extends AbstractPoolableLdapConnectionFactory
+{
+    /** This class logger */
+    private static final Logger LOG = LoggerFactory.getLogger( AuthenticationPoolableLdapConnectionFactory.class );
+
+
+    /**
+     * Creates a new instance of AuthenticationPoolableLdapConnectionFactory.
+     *
+     * @param config the configuration for creating LdapConnections
+     */
+    public AuthenticationPoolableLdapConnectionFactory( LdapConnectionConfig config )
+    {
+        this( new DefaultLdapConnectionFactory( config ) );
+    }
+
+
+    /**
+     * Creates a new instance of AuthenticationPoolableLdapConnectionFactory using an instance
+     * of the supplied class as its LdapConnection factory.
+     *
+     * @param config the configuration for creating LdapConnections
+     * @param connectionFactoryClass the class used as a factory for connections
+     */
+    public AuthenticationPoolableLdapConnectionFactory( LdapConnectionConfig config,
+        Class<? extends LdapConnectionFactory> connectionFactoryClass )
+    {
+        this( newLdapConnectionFactory( config, connectionFactoryClass ) );
+    }
+
+
+    /**
+     * Creates a new instance of AuthenticationPoolableLdapConnectionFactory.
+     *
+     * @param connectionFactory the connection factory for creating LdapConnections
+     */
+    public AuthenticationPoolableLdapConnectionFactory( LdapConnectionFactory connectionFactory )
+    {
+        this.connectionFactory = connectionFactory;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * 
+     * The connection is reconnected if it has been dropped, but it is not bound.
+     */
+    @Override
+    public void activateObject( PooledObject<LdapConnection> pooledObject ) throws LdapException
+    {
+        LdapConnection connection = pooledObject.getObject();
+
+        if ( LOG.isDebugEnabled() )
+        {
+            LOG.debug( I18n.msg( I18n.MSG_04146_ACTIVATING, connection ) );
+        }
+
+        if ( !connection.isConnected() )
+        {
+            if ( LOG.isDebugEnabled() )
+            {
+                LOG.debug( I18n.msg( I18n.MSG_04187_RECONNECT_AUTHENTICATION_CONNECTION, connection ) );
+            }
+
+            connection.connect();
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * 
+     * The created connection is connected, but not bound.
+     * 
+     * @throws LdapException If unable to connect.
+     */
+    @Override
+    public PooledObject<LdapConnection> makeObject() throws LdapException
+    {
+        if ( LOG.isDebugEnabled() )
+        {
+            LOG.debug( I18n.msg( I18n.MSG_04150_CREATING_LDAP_CONNECTION ) );
+        }
+
+        LdapConnection connection = connectionFactory.newUnboundLdapConnection();
+        connection.connect();
+
+        return newPooledObject( connection );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * 
+     * A connection used for authentication is valid as long as it is connected : its
+     * identity is not relevant.
+     */
+    @Override
+    public boolean validateObject( PooledObject<LdapConnection> pooledObject )
+    {
+        if ( LOG.isDebugEnabled() )
+        {
+            LOG.debug( I18n.msg( I18n.MSG_04152_VALIDATING, pooledObject ) );
+        }
+
+        return pooledObject.getObject().isConnected();
+    }
+}
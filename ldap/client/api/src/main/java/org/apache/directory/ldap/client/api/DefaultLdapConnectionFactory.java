@@ -25,6 +25,7 @@ import java.io.IOException;
 import org.apache.directory.api.i18n.I18n;
 import org.apache.directory.api.ldap.codec.api.LdapApiService;
 import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.ldap.client.api.metrics.LdapClientMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,8 +42,9 @@ public class DefaultLdapConnectionFactory implements LdapConnectionFactory
     private static final Logger LOG = LoggerFactory.getLogger( DefaultLdapConnectionFactory.class );
 
     private LdapApiService apiService;
-    private LdapConnectionConfig connectionConfig;
+    private volatile LdapConnectionConfig connectionConfig;
     private long timeout;
+    private LdapClientMetrics metrics;
 
 
     /**
@@ -105,6 +107,12 @@ public class DefaultLdapConnectionFactory implements LdapConnectionFactory
     {
         connection.setTimeOut( timeout );
         connection.setBinaryAttributeDetector( connectionConfig.getBinaryAttributeDetector() );
+
+        if ( ( metrics != null ) && ( connection instanceof LdapNetworkConnection ) )
+        {
+            ( ( LdapNetworkConnection ) connection ).setMetrics( metrics );
+        }
+
         return connection;
     }
 
@@ -135,17 +143,43 @@ public class DefaultLdapConnectionFactory implements LdapConnectionFactory
     @Override
     public LdapConnection newUnboundLdapConnection()
     {
+        LdapConnectionConfig config = connectionConfig;
+
         if ( apiService == null )
         {
-            return configureConnection( new LdapNetworkConnection( connectionConfig ) );
+            return configureConnection( new LdapNetworkConnection( config ) );
         }
         else
         {
-            return configureConnection( new LdapNetworkConnection( connectionConfig, apiService ) );
+            return configureConnection( new LdapNetworkConnection( config, apiService ) );
         }
     }
 
 
+    /**
+     * Returns the configuration used to create the connections. It is shared with
+     * the connections, a change is taken into account by the next connection opened.
+     *
+     * @return The connections configuration
+     */
+    public LdapConnectionConfig getConfig()
+    {
+        return connectionConfig;
+    }
+
+
+    /**
+     * Replaces the configuration used to create the next connections. The connections
+     * already created keep their configuration.
+     *
+     * @param config The new connections configuration
+     */
+    void setConfig( LdapConnectionConfig config )
+    {
+        this.connectionConfig = config;
+    }
+
+
     /**
      * Sets the LdapApiService (codec) to be used by the connections created
      * by this factory.
@@ -171,4 +205,18 @@ public class DefaultLdapConnectionFactory implements LdapConnectionFactory
     {
         this.timeout = timeout;
     }
+
+
+    /**
+     * Sets the metrics that will be updated by all the connections created by
+     * this factory. The metrics are disabled when null, which is the default.
+     *
+     * @param metrics The metrics to update
+     * 
+     * @see LdapNetworkConnection#setMetrics(LdapClientMetrics)
+     */
+    public void setMetrics( LdapClientMetrics metrics )
+    {
+        this.metrics = metrics;
+    }
 }
@@ -0,0 +1,47 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import org.apache.directory.api.ldap.model.message.ExtendedResponse;
+
+
+/**
+ * A listener notified when the server announces that it is going to close a
+ * connection, with an unsolicited NoticeOfDisconnect or GracefulDisconnect response.
+ * <p>
+ * After a GracefulDisconnect, the connection remains open until the server closes it :
+ * the outstanding requests can still complete, but no new request should be sent. After
+ * a NoticeOfDisconnect, the connection is closed as soon as the listeners have been
+ * notified.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public interface DisconnectNoticeListener
+{
+    /**
+     * Called when a disconnection notice is received. The call is done by the thread
+     * reading the connection, it must not block.
+     *
+     * @param connection The connection which is going to be closed
+     * @param notice The notice, a NoticeOfDisconnect or a GracefulDisconnect response
+     */
+    void disconnectNoticeReceived( LdapNetworkConnection connection, ExtendedResponse notice );
+}
@@ -0,0 +1,549 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.model.constants.LdapConstants;
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.cursor.CursorException;
+import org.apache.directory.api.ldap.model.cursor.EntryCursor;
+import org.apache.directory.api.ldap.model.cursor.SearchCursor;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.exception.LdapNoPermissionException;
+import org.apache.directory.api.ldap.model.message.AliasDerefMode;
+import org.apache.directory.api.ldap.model.message.Control;
+import org.apache.directory.api.ldap.model.message.Response;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.ldap.client.api.exception.LdapConnectionTimeOutException;
+import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A LdapConnection which hedges its reads : when a search or a lookup sent to the primary
+ * server has not been answered after a delay, the same request is sent to a replica, and the
+ * server which answers first wins. The other request is abandoned. The delay follows the
+ * latencies of the reads, and the number of hedged reads is limited by a budget, both being
+ * managed by a {@link HedgingPolicy} which should be shared by all the hedged connections.
+ * <p>
+ * The first response of a search (an entry, a reference or the final result) decides the
+ * winner, and all the following responses are read from the winning server. Only the reads
+ * are hedged : all the other operations are sent to the primary server, and the replica must
+ * be expected to be slightly late, as with any replicated read.
+ * <p>
+ * Both connections must be {@link LdapAsyncConnection}s, connected and bound, and they are
+ * not closed by this connection's close().
+ * <pre>
+ * HedgingPolicy policy = new HedgingPolicy();
+ *
+ * LdapConnection connection = new HedgedLdapConnection( primary, replica, policy );
+ *
+ * Entry entry = connection.lookup( "uid=jdoe,ou=people,dc=example,dc=com" );
+ * </pre>
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class HedgedLdapConnection extends LdapConnectionWrapper
+{
+    /** The logger for this class */
+    private static final Logger LOG = LoggerFactory.getLogger( HedgedLdapConnection.class );
+
+    /** The time spent waiting on a connection before checking the other one, in ms */
+    private static final long POLL_INTERVAL = 1L;
+
+    /** The replica connection */
+    private LdapAsyncConnection replica;
+
+    /** The hedging policy */
+    private HedgingPolicy policy;
+
+    /** The time to wait for a response, in ms */
+    private long timeout;
+
+
+    /**
+     * A SearchFuture returning a response already read from the winning future, then
+     * delegating to it
+     */
+    private static final class WinnerSearchFuture extends SearchFuture
+    {
+        /** The winning future */
+        private final SearchFuture winner;
+
+        /** The first response, not yet returned */
+        private Response first;
+
+
+        private WinnerSearchFuture( LdapConnection connection, SearchFuture winner, Response first )
+        {
+            super( connection, 0 );
+            this.winner = winner;
+            this.first = first;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Response get() throws InterruptedException
+        {
+            if ( first != null )
+            {
+                Response response = first;
+                first = null;
+
+                return response;
+            }
+
+            return winner.get();
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Response get( long timeout, TimeUnit unit ) throws InterruptedException
+        {
+            if ( first != null )
+            {
+                Response response = first;
+                first = null;
+
+                return response;
+            }
+
+            return winner.get( timeout, unit );
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean cancel( boolean mayInterruptIfRunning )
+        {
+            first = null;
+
+            return winner.cancel( mayInterruptIfRunning );
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isCancelled()
+        {
+            return winner.isCancelled();
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Throwable getCause()
+        {
+            return winner.getCause();
+        }
+    }
+
+
+    /**
+     * Creates a new instance of HedgedLdapConnection.
+     *
+     * @param primary The connection to the primary server
+     * @param replica The connection to the replica
+     * @param policy The hedging policy
+     */
+    public HedgedLdapConnection( LdapConnection primary, LdapConnection replica, HedgingPolicy policy )
+    {
+        super( checkAsync( primary ) );
+
+        this.replica = checkAsync( replica );
+        this.policy = policy;
+        timeout = ( ( LdapAsyncConnection ) connection ).getConfig().getTimeout();
+    }
+
+
+    private static LdapAsyncConnection checkAsync( LdapConnection connection )
+    {
+        if ( !( connection instanceof LdapAsyncConnection ) )
+        {
+            throw new IllegalArgumentException( I18n.err( I18n.ERR_04184_NOT_AN_ASYNC_CONNECTION, connection ) );
+        }
+
+        return ( LdapAsyncConnection ) connection;
+    }
+
+
+    /**
+     * @return The connection to the replica
+     */
+    public LdapConnection getReplica()
+    {
+        return replica;
+    }
+
+
+    /**
+     * @return The hedging policy
+     */
+    public HedgingPolicy getPolicy()
+    {
+        return policy;
+    }
+
+
+    /**
+     * Copy a search request, so that it can be sent on another connection with another message ID
+     */
+    private static SearchRequest copyRequest( SearchRequest searchRequest )
+    {
+        SearchRequest copy = new SearchRequestImpl();
+
+        copy.setBase( searchRequest.getBase() );
+        copy.setScope( searchRequest.getScope() );
+        copy.setDerefAliases( searchRequest.getDerefAliases() );
+        copy.setSizeLimit( searchRequest.getSizeLimit() );
+        copy.setTimeLimit( searchRequest.getTimeLimit() );
+        copy.setTypesOnly( searchRequest.getTypesOnly() );
+        copy.setFilter( searchRequest.getFilter() );
+        copy.addAttributes( searchRequest.getAttributes().toArray( new String[0] ) );
+        copy.addAllControls( searchRequest.getControls().values().toArray( new Control[0] ) );
+
+        return copy;
+    }
+
+
+    /**
+     * Send the search to the primary server, and to the replica if the primary server is too
+     * slow, and wait for the first response.
+     *
+     * @param searchRequest The search request
+     * @return A future delivering all the responses of the winning server
+     * @throws LdapException If the search can't be sent, or if no server has answered in time
+     */
+    private SearchFuture hedgedSearch( SearchRequest searchRequest ) throws LdapException
+    {
+        // The request is copied before being sent, as sending it sets its message ID
+        SearchRequest hedgeRequest = copyRequest( searchRequest );
+        LdapAsyncConnection primary = ( LdapAsyncConnection ) connection;
+
+        policy.readSent();
+        long start = System.nanoTime();
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos( timeout <= 0L ? Long.MAX_VALUE : timeout );
+        long delay = policy.getDelay();
+        SearchFuture primaryFuture = primary.searchAsync( searchRequest );
+        SearchFuture hedgeFuture = null;
+
+        try
+        {
+            Response first = primaryFuture.get( delay, TimeUnit.NANOSECONDS );
+
+            if ( first != null )
+            {
+                policy.readCompleted( System.nanoTime() - start );
+
+                return new WinnerSearchFuture( primary, primaryFuture, first );
+            }
+
+            if ( policy.tryHedge() )
+            {
+                if ( LOG.isDebugEnabled() )
+                {
+                    LOG.debug( I18n.msg( I18n.MSG_04191_HEDGING_REQUEST, delay, hedgeRequest ) );
+                }
+
+                try
+                {
+                    hedgeFuture = replica.searchAsync( hedgeRequest );
+                }
+                catch ( LdapException le )
+                {
+                    // Keep waiting for the primary server
+                    LOG.warn( I18n.err( I18n.ERR_04196_HEDGED_REQUEST_FAILED, le.getMessage() ) );
+                }
+            }
+
+            if ( hedgeFuture == null )
+            {
+                // Only the primary server has been asked, just wait for it
+                long remaining = timeoutNanos - ( System.nanoTime() - start );
+
+                if ( remaining > 0L )
+                {
+                    first = primaryFuture.get( remaining, TimeUnit.NANOSECONDS );
+                }
+
+                if ( first != null )
+                {
+                    policy.readCompleted( System.nanoTime() - start );
+
+                    return new WinnerSearchFuture( primary, primaryFuture, first );
+                }
+            }
+            else
+            {
+                // Both servers have been asked, wait for the first answer
+                while ( System.nanoTime() - start < timeoutNanos )
+                {
+                    first = primaryFuture.get( POLL_INTERVAL, TimeUnit.MILLISECONDS );
+
+                    if ( first != null )
+                    {
+                        policy.readCompleted( System.nanoTime() - start );
+                        abandon( hedgeFuture );
+
+                        return new WinnerSearchFuture( primary, primaryFuture, first );
+                    }
+
+                    first = hedgeFuture.get( POLL_INTERVAL, TimeUnit.MILLISECONDS );
+
+                    if ( first != null )
+                    {
+                        // The primary latency is at least this long
+                        policy.readCompleted( System.nanoTime() - start );
+                        policy.hedgeWon();
+                        abandon( primaryFuture );
+
+                        return new WinnerSearchFuture( replica, hedgeFuture, first );
+                    }
+                }
+            }
+
+            abandon( primaryFuture );
+            abandon( hedgeFuture );
+        }
+        catch ( InterruptedException ie )
+        {
+            Thread.currentThread().interrupt();
+            abandon( primaryFuture );
+            abandon( hedgeFuture );
+
+            throw new LdapException( ie.getMessage(), ie );
+        }
+
+        throw new LdapConnectionTimeOutException( LdapNetworkConnection.TIME_OUT_ERROR );
+    }
+
+
+    /**
+     * Abandon the request of the losing future
+     */
+    private static void abandon( SearchFuture future )
+    {
+        if ( ( future != null ) && !future.isCancelled() )
+        {
+            future.cancel( true );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SearchCursor search( SearchRequest searchRequest ) throws LdapException
+    {
+        return new SearchCursorImpl( hedgedSearch( searchRequest ), timeout, TimeUnit.MILLISECONDS );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public EntryCursor search( Dn baseDn, String filter, SearchScope scope, String... attributes )
+        throws LdapException
+    {
+        if ( baseDn == null )
+        {
+            throw new IllegalArgumentException( I18n.err( I18n.ERR_04129_NULL_BASE_DN ) );
+        }
+
+        SearchRequest searchRequest = new SearchRequestImpl();
+
+        searchRequest.setBase( baseDn );
+        searchRequest.setFilter( filter );
+        searchRequest.setScope( scope );
+        searchRequest.addAttributes( attributes );
+        searchRequest.setDerefAliases( AliasDerefMode.DEREF_ALWAYS );
+
+        return new EntryCursorImpl( search( searchRequest ) );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public EntryCursor search( String baseDn, String filter, SearchScope scope, String... attributes )
+        throws LdapException
+    {
+        return search( new Dn( baseDn ), filter, scope, attributes );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry lookup( Dn dn, Control[] controls, String... attributes ) throws LdapException
+    {
+        SearchRequest searchRequest = new SearchRequestImpl();
+
+        searchRequest.setBase( dn );
+        searchRequest.setFilter( LdapConstants.OBJECT_CLASS_STAR );
+        searchRequest.setScope( SearchScope.OBJECT );
+        searchRequest.addAttributes( attributes );
+        searchRequest.setDerefAliases( AliasDerefMode.DEREF_ALWAYS );
+
+        if ( ( controls != null ) && ( controls.length > 0 ) )
+        {
+            searchRequest.addAllControls( controls );
+        }
+
+        Entry entry = null;
+
+        try ( SearchCursor cursor = search( searchRequest ) )
+        {
+            if ( cursor.next() )
+            {
+                entry = ( ( SearchResultEntry ) cursor.get() ).getEntry();
+            }
+
+            // Pass through the SearchResultDone
+            cursor.next();
+        }
+        catch ( CursorException e )
+        {
+            throw new LdapException( e.getMessage(), e );
+        }
+        catch ( IOException ioe )
+        {
+            throw new LdapException( ioe.getMessage(), ioe );
+        }
+
+        return entry;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry lookup( Dn dn ) throws LdapException
+    {
+        return lookup( dn, null, SchemaConstants.ALL_USER_ATTRIBUTES_ARRAY );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry lookup( String dn ) throws LdapException
+    {
+        return lookup( new Dn( dn ) );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry lookup( Dn dn, String... attributes ) throws LdapException
+    {
+        return lookup( dn, null, attributes );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry lookup( String dn, String... attributes ) throws LdapException
+    {
+        return lookup( new Dn( dn ), null, attributes );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry lookup( String dn, Control[] controls, String... attributes ) throws LdapException
+    {
+        return lookup( new Dn( dn ), controls, attributes );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean exists( Dn dn ) throws LdapException
+    {
+        try
+        {
+            return lookup( dn, SchemaConstants.NO_ATTRIBUTE_ARRAY ) != null;
+        }
+        catch ( LdapNoPermissionException lnpe )
+        {
+            // Special case to deal with insufficient permissions
+            return false;
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean exists( String dn ) throws LdapException
+    {
+        return exists( new Dn( dn ) );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setTimeOut( long timeout )
+    {
+        this.timeout = timeout <= 0L ? Long.MAX_VALUE : timeout;
+        connection.setTimeOut( timeout );
+        replica.setTimeOut( timeout );
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.directory.ldap.client.api.metrics.LatencyHistogram;
+
+
+/**
+ * Decides when a read sent by a {@link HedgedLdapConnection} is sent again to a replica,
+ * and how many reads can be hedged. The same policy is expected to be shared by all the
+ * hedged connections of an application, so that the budget is global.
+ * <p>
+ * The hedging delay is adaptive : it is the given percentile of the latencies of the last
+ * reads (by default, the 95th percentile of the last 1000 reads). Until enough reads have
+ * been measured, the initial delay is used. The delay is never shorter than the minimum
+ * delay.
+ * <p>
+ * The budget caps the number of hedged reads to a ratio of all the reads (by default 5%),
+ * so that a slow server is not flooded by the extra requests when every read is slow. Each
+ * read earns a fraction of a hedge, up to a maximum burst, and each hedge spends one.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class HedgingPolicy
+{
+    /** The default percentile of the latencies used as the hedging delay */
+    public static final double DEFAULT_PERCENTILE = 95d;
+
+    /** The default number of reads measured before the delay is computed again */
+    public static final int DEFAULT_WINDOW = 1000;
+
+    /** The default ratio of reads that can be hedged */
+    public static final double DEFAULT_BUDGET_RATIO = 0.05d;
+
+    /** The default number of hedges that can be sent in a burst */
+    public static final int DEFAULT_MAX_BURST = 10;
+
+    /** The number of credits a hedge costs */
+    private static final long HEDGE_COST = 1000L;
+
+    /** The percentile of the latencies used as the hedging delay */
+    private double percentile = DEFAULT_PERCENTILE;
+
+    /** The number of reads measured before the delay is computed again */
+    private int window = DEFAULT_WINDOW;
+
+    /** The minimum hedging delay, in ns */
+    private long minDelay = TimeUnit.MILLISECONDS.toNanos( 1L );
+
+    /** The credits earned by each read */
+    private long creditsPerRead = Math.round( DEFAULT_BUDGET_RATIO * HEDGE_COST );
+
+    /** The maximum number of credits */
+    private long maxCredits = DEFAULT_MAX_BURST * HEDGE_COST;
+
+    /** The latencies of the current window */
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    /** The current hedging delay, in ns */
+    private volatile long delay = TimeUnit.MILLISECONDS.toNanos( 50L );
+
+    /** The available credits */
+    private final AtomicLong credits = new AtomicLong( maxCredits );
+
+    /** The number of reads */
+    private final AtomicLong reads = new AtomicLong();
+
+    /** The number of hedged reads */
+    private final AtomicLong hedged = new AtomicLong();
+
+    /** The number of hedged reads answered first by the replica */
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    /** The number of reads which were not hedged because the budget was exhausted */
+    private final AtomicLong rejected = new AtomicLong();
+
+
+    /**
+     * Creates a new instance of HedgingPolicy, with the default values.
+     */
+    public HedgingPolicy()
+    {
+        // Nothing to do
+    }
+
+
+    /**
+     * @return The time to wait for a response before hedging a read, in ns
+     */
+    public long getDelay()
+    {
+        return Math.max( delay, minDelay );
+    }
+
+
+    /**
+     * Set the delay used until enough reads have been measured
+     *
+     * @param initialDelay The initial delay
+     * @param unit The delay unit
+     */
+    public void setInitialDelay( long initialDelay, TimeUnit unit )
+    {
+        this.delay = unit.toNanos( initialDelay );
+    }
+
+
+    /**
+     * Set the minimum delay, so that a fast server is not hedged on every small jitter
+     *
+     * @param minDelay The minimum delay
+     * @param unit The delay unit
+     */
+    public void setMinDelay( long minDelay, TimeUnit unit )
+    {
+        this.minDelay = unit.toNanos( minDelay );
+    }
+
+
+    /**
+     * Set the percentile of the latencies used as the hedging delay
+     *
+     * @param percentile The percentile, between 0 and 100
+     */
+    public void setPercentile( double percentile )
+    {
+        this.percentile = percentile;
+    }
+
+
+    /**
+     * Set the number of reads measured before the delay is computed again
+     *
+     * @param window The number of reads
+     */
+    public void setWindow( int window )
+    {
+        this.window = Math.max( window, 1 );
+    }
+
+
+    /**
+     * Set the hedging budget
+     *
+     * @param ratio The ratio of reads that can be hedged, between 0 and 1
+     * @param maxBurst The number of hedges that can be sent in a burst
+     */
+    public void setBudget( double ratio, int maxBurst )
+    {
+        creditsPerRead = Math.round( ratio * HEDGE_COST );
+        maxCredits = maxBurst * HEDGE_COST;
+        credits.set( maxCredits );
+    }
+
+
+    /**
+     * Tells the policy a read is sent : it earns a fraction of a hedge.
+     */
+    public void readSent()
+    {
+        reads.incrementAndGet();
+        credits.accumulateAndGet( creditsPerRead, ( current, earned ) -> Math.min( current + earned, maxCredits ) );
+    }
+
+
+    /**
+     * Tells the policy a read has been answered, so that the hedging delay follows the latencies.
+     *
+     * @param latency The time elapsed between the request and the first response, in ns
+     */
+    public void readCompleted( long latency )
+    {
+        latencies.record( latency );
+
+        if ( latencies.getCount() >= window )
+        {
+            // Only one thread computes the new delay
+            synchronized ( latencies )
+            {
+                if ( latencies.getCount() >= window )
+                {
+                    delay = latencies.getValueAtPercentile( percentile );
+                    latencies.reset();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Ask for the permission to hedge a read. A hedge is spent if it is granted.
+     *
+     * @return <code>true</code> if the read can be hedged
+     */
+    public boolean tryHedge()
+    {
+        while ( true )
+        {
+            long current = credits.get();
+
+            if ( current < HEDGE_COST )
+            {
+                rejected.incrementAndGet();
+
+                return false;
+            }
+
+            if ( credits.compareAndSet( current, current - HEDGE_COST ) )
+            {
+                hedged.incrementAndGet();
+
+                return true;
+            }
+        }
+    }
+
+
+    /**
+     * Tells the policy a hedged read has been answered first by the replica
+     */
+    public void hedgeWon()
+    {
+        hedgeWins.incrementAndGet();
+    }
+
+
+    /**
+     * @return The number of reads
+     */
+    public long getReads()
+    {
+        return reads.get();
+    }
+
+
+    /**
+     * @return The number of hedged reads
+     */
+    public long getHedged()
+    {
+        return hedged.get();
+    }
+
+
+    /**
+     * @return The number of hedged reads answered first by the replica
+     */
+    public long getHedgeWins()
+    {
+        return hedgeWins.get();
+    }
+
+
+    /**
+     * @return The number of reads which were not hedged because the budget was exhausted
+     */
+    public long getRejected()
+    {
+        return rejected.get();
+    }
+}
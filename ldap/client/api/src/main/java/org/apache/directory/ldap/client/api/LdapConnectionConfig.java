@@ -25,6 +25,7 @@ import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.concurrent.Executor;
 
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.TrustManager;
@@ -124,6 +125,12 @@ public class LdapConnectionConfig
     /** The class used to detect if an attribute is HR or not */
     private BinaryAttributeDetector binaryAttributeDetector;
 
+    /** Tells if the SearchResultEntry attributes are decoded lazily */
+    private boolean lazyEntries;
+
+    /** The Executor used to decode the received messages, if any */
+    private Executor decodeExecutor;
+
     /** The Service to use internally when creating connections */
     private LdapApiService ldapApiService;
 
@@ -137,6 +144,39 @@ public class LdapConnectionConfig
     }
 
 
+    /**
+     * Creates a copy of a LdapConnectionConfig instance. The SSL and codec
+     * objects are shared with the copied configuration.
+     *
+     * @param config The configuration to copy
+     */
+    LdapConnectionConfig( LdapConnectionConfig config )
+    {
+        useSsl = config.useSsl;
+        timeout = config.timeout;
+        connectTimeout = config.connectTimeout;
+        writeOperationTimeout = config.writeOperationTimeout;
+        readOperationTimeout = config.readOperationTimeout;
+        closeTimeout = config.closeTimeout;
+        sendTimeout = config.sendTimeout;
+        useTls = config.useTls;
+        ldapPort = config.ldapPort;
+        ldapHost = config.ldapHost;
+        name = config.name;
+        credentials = config.credentials;
+        keyManagers = config.keyManagers;
+        secureRandom = config.secureRandom;
+        trustManagers = config.trustManagers;
+        enabledCipherSuites = config.enabledCipherSuites;
+        enabledProtocols = config.enabledProtocols;
+        sslProtocol = config.sslProtocol;
+        binaryAttributeDetector = config.binaryAttributeDetector;
+        lazyEntries = config.lazyEntries;
+        decodeExecutor = config.decodeExecutor;
+        ldapApiService = config.ldapApiService;
+    }
+
+
     /**
      * Sets the default trust manager based on the SunX509 trustManagement algorithm
      **/
@@ -684,6 +724,55 @@ public class LdapConnectionConfig
     }
 
 
+    /**
+     * @return <code>true</code> if the SearchResultEntry attributes are decoded lazily
+     */
+    public boolean isLazyEntries()
+    {
+        return lazyEntries;
+    }
+
+
+    /**
+     * Tells the connection to decode the SearchResultEntry attributes lazily. The entries
+     * will keep their encoded attributes, and only decode an attribute the first time it
+     * is accessed. This is useful when only a few of the returned attributes are read,
+     * or when the entries are forwarded without being modified.
+     *
+     * @param lazyEntries <code>true</code> to decode the entries lazily
+     */
+    public void setLazyEntries( boolean lazyEntries )
+    {
+        this.lazyEntries = lazyEntries;
+    }
+
+
+    /**
+     * @return The Executor used to decode the received messages, or <code>null</code>
+     * if they are decoded by the IoProcessor thread
+     */
+    public Executor getDecodeExecutor()
+    {
+        return decodeExecutor;
+    }
+
+
+    /**
+     * Sets the Executor used to decode the received messages. By default, the messages are
+     * decoded by the single IoProcessor thread of the connection, which may become a bottleneck
+     * when many large entries are received. When an Executor is set, this thread only splits
+     * the received bytes into PDUs, and the PDUs are decoded by the Executor. The responses
+     * to a given request are still delivered in the order they have been received.
+     *
+     * @param decodeExecutor The Executor to use, or <code>null</code> to decode the messages
+     * in the IoProcessor thread
+     */
+    public void setDecodeExecutor( Executor decodeExecutor )
+    {
+        this.decodeExecutor = decodeExecutor;
+    }
+
+
     /**
      * Checks if TLS is used.
      *
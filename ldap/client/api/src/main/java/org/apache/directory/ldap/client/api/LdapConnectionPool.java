@@ -21,12 +21,23 @@
 package org.apache.directory.ldap.client.api;
 
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
 import org.apache.commons.pool2.PooledObjectFactory;
 import org.apache.commons.pool2.impl.GenericObjectPool;
 import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.apache.directory.api.i18n.I18n;
 import org.apache.directory.api.ldap.codec.api.LdapApiService;
+import org.apache.directory.api.ldap.extras.extended.gracefulDisconnect.GracefulDisconnectResponse;
 import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.exception.LdapURLEncodingException;
+import org.apache.directory.api.ldap.model.message.ExtendedResponse;
+import org.apache.directory.api.ldap.model.url.LdapUrl;
+import org.apache.directory.ldap.client.api.metrics.LdapClientMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,15 +47,40 @@ import org.slf4j.LoggerFactory;
  * 
  * This class is just a wrapper around the commons GenericObjectPool, and has
  * a more meaningful name to represent the pool type.
+ * <p>
+ * When the server announces that it is going to close a connection, with a
+ * NoticeOfDisconnect or a GracefulDisconnect, the connection is not handed out
+ * anymore : it is destroyed when it is released, so that its outstanding requests
+ * can complete. A replacement connection is opened after a random delay, so that
+ * the connections closed by a server restart are not all re-opened at once. The
+ * pool can also switch to the alternate servers listed in a GracefulDisconnect.
+ * The notices are received from the connections created by an
+ * {@link AbstractPoolableLdapConnectionFactory}.
  * 
  * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
  */
-public class LdapConnectionPool extends GenericObjectPool<LdapConnection>
+public class LdapConnectionPool extends GenericObjectPool<LdapConnection> implements DisconnectNoticeListener
 {
     private static final Logger LOG = LoggerFactory.getLogger( LdapConnectionPool.class );
 
+    /** The default longest delay before a replacement connection is opened, in milliseconds */
+    public static final long DEFAULT_RECONNECT_JITTER = 1000L;
+
     private PooledObjectFactory<LdapConnection> factory;
 
+    private volatile LdapClientMetrics metrics;
+
+    private volatile boolean preOpenReplacements = true;
+
+    private volatile boolean followAlternateServers;
+
+    private volatile long reconnectJitter = DEFAULT_RECONNECT_JITTER;
+
+    private ScheduledExecutorService replacementExecutor;
+
+    /** The lock protecting the switch to an alternate server */
+    private final Object alternateServerLock = new Object();
+
 
     /**
      * Instantiates a new LDAP connection pool.
@@ -96,6 +132,11 @@ public class LdapConnectionPool extends GenericObjectPool<LdapConnection>
     {
         super( factory, poolConfig == null ? new GenericObjectPoolConfig() : poolConfig );
         this.factory = factory;
+
+        if ( factory instanceof AbstractPoolableLdapConnectionFactory )
+        {
+            ( ( AbstractPoolableLdapConnectionFactory ) factory ).setDisconnectNoticeListener( this );
+        }
     }
 
 
@@ -122,8 +163,15 @@ public class LdapConnectionPool extends GenericObjectPool<LdapConnection>
 
         try
         {
-            connection = super.borrowObject();
-            
+            connection = borrow();
+
+            // The connections the server is going to close are not handed out
+            while ( isDraining( connection ) )
+            {
+                invalidate( connection );
+                connection = borrow();
+            }
+
             if ( LOG.isTraceEnabled() )
             {
                 LOG.trace( I18n.msg( I18n.MSG_04163_BORROWED_CONNECTION, connection ) );
@@ -146,6 +194,305 @@ public class LdapConnectionPool extends GenericObjectPool<LdapConnection>
     }
 
 
+    private LdapConnection borrow() throws Exception
+    {
+        if ( metrics != null )
+        {
+            long start = System.nanoTime();
+            LdapConnection connection = super.borrowObject();
+            metrics.connectionBorrowed( System.nanoTime() - start, getNumActive(), getNumIdle() );
+
+            return connection;
+        }
+        else
+        {
+            return super.borrowObject();
+        }
+    }
+
+
+    private static boolean isDraining( LdapConnection connection )
+    {
+        LdapNetworkConnection networkConnection =
+            AbstractPoolableLdapConnectionFactory.networkConnection( connection );
+
+        return ( networkConnection != null ) && networkConnection.isDraining();
+    }
+
+
+    private void invalidate( LdapConnection connection )
+    {
+        try
+        {
+            super.invalidateObject( connection );
+        }
+        catch ( Exception e )
+        {
+            LOG.warn( I18n.err( I18n.ERR_04107_UNEXPECTED_THROWN_EXCEPTION, e.getMessage() ), e );
+        }
+    }
+
+
+    /**
+     * @return The metrics updated when a connection is borrowed, or null if the metrics are disabled
+     */
+    public LdapClientMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+
+    /**
+     * Set the metrics to update with the time spent waiting for a connection, and the number
+     * of active and idle connections, each time a connection is borrowed. The metrics are
+     * disabled when null, which is the default. The connections created by the pool are not
+     * affected : their metrics are set by the {@link DefaultLdapConnectionFactory}.
+     *
+     * @param metrics The metrics to update, or null to disable the metrics
+     */
+    public void setMetrics( LdapClientMetrics metrics )
+    {
+        this.metrics = metrics;
+    }
+
+
+    /**
+     * @return <code>true</code> if a replacement connection is opened when the server
+     * announces that it is going to close a connection
+     */
+    public boolean isPreOpenReplacements()
+    {
+        return preOpenReplacements;
+    }
+
+
+    /**
+     * Tells if a replacement connection is opened in the background when the server
+     * announces that it is going to close a connection, which is the default.
+     *
+     * @param preOpenReplacements <code>true</code> to open the replacement connections
+     * in advance
+     */
+    public void setPreOpenReplacements( boolean preOpenReplacements )
+    {
+        this.preOpenReplacements = preOpenReplacements;
+    }
+
+
+    /**
+     * @return The longest delay before a replacement connection is opened, in milliseconds
+     */
+    public long getReconnectJitter()
+    {
+        return reconnectJitter;
+    }
+
+
+    /**
+     * Sets the longest delay before a replacement connection is opened. Each replacement
+     * is opened after a random delay below this value, and below the delay announced by
+     * a GracefulDisconnect.
+     *
+     * @param reconnectJitter The longest delay before a replacement connection is opened,
+     * in milliseconds
+     */
+    public void setReconnectJitter( long reconnectJitter )
+    {
+        this.reconnectJitter = reconnectJitter;
+    }
+
+
+    /**
+     * @return <code>true</code> if the pool switches to the alternate servers listed in
+     * a GracefulDisconnect
+     */
+    public boolean isFollowAlternateServers()
+    {
+        return followAlternateServers;
+    }
+
+
+    /**
+     * Tells if the new connections are opened against the first alternate server listed
+     * in a GracefulDisconnect, for a rolling restart to be transparent. This requires the
+     * pool to be built on a {@link DefaultLdapConnectionFactory}, whose configuration is
+     * replaced by a copy targeting the alternate server. It is disabled by default.
+     *
+     * @param followAlternateServers <code>true</code> to switch to the alternate servers
+     */
+    public void setFollowAlternateServers( boolean followAlternateServers )
+    {
+        this.followAlternateServers = followAlternateServers;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void disconnectNoticeReceived( LdapNetworkConnection connection, ExtendedResponse notice )
+    {
+        long delay = reconnectJitter;
+
+        if ( notice instanceof GracefulDisconnectResponse )
+        {
+            GracefulDisconnectResponse gracefulDisconnect = ( GracefulDisconnectResponse ) notice;
+
+            if ( gracefulDisconnect.getDelay() > 0 )
+            {
+                delay = Math.min( delay, gracefulDisconnect.getDelay() * 1000L );
+            }
+
+            if ( followAlternateServers )
+            {
+                switchToAlternateServer( gracefulDisconnect );
+            }
+        }
+
+        if ( preOpenReplacements && !isClosed() )
+        {
+            try
+            {
+                getReplacementExecutor().schedule( this::openReplacement,
+                    delay > 0L ? ThreadLocalRandom.current().nextLong( delay ) : 0L, TimeUnit.MILLISECONDS );
+            }
+            catch ( RejectedExecutionException ree )
+            {
+                // The pool has been closed
+            }
+        }
+    }
+
+
+    private void switchToAlternateServer( GracefulDisconnectResponse gracefulDisconnect )
+    {
+        if ( ( gracefulDisconnect.getReplicatedContexts() == null )
+            || !( factory instanceof AbstractPoolableLdapConnectionFactory ) )
+        {
+            return;
+        }
+
+        LdapConnectionFactory connectionFactory =
+            ( ( AbstractPoolableLdapConnectionFactory ) factory ).connectionFactory;
+
+        if ( !( connectionFactory instanceof DefaultLdapConnectionFactory ) )
+        {
+            return;
+        }
+
+        DefaultLdapConnectionFactory defaultFactory = ( DefaultLdapConnectionFactory ) connectionFactory;
+        LdapUrl alternate = null;
+
+        synchronized ( alternateServerLock )
+        {
+            LdapConnectionConfig config = defaultFactory.getConfig();
+
+            for ( String url : gracefulDisconnect.getReplicatedContexts().getLdapUrls() )
+            {
+                try
+                {
+                    LdapUrl ldapUrl = new LdapUrl( url );
+
+                    if ( ldapUrl.getHost() == null )
+                    {
+                        continue;
+                    }
+
+                    if ( ldapUrl.getHost().equalsIgnoreCase( config.getLdapHost() )
+                        && ( ( ldapUrl.getPort() <= 0 ) || ( ldapUrl.getPort() == config.getLdapPort() ) ) )
+                    {
+                        // Already switched by another notice
+                        return;
+                    }
+
+                    if ( alternate == null )
+                    {
+                        alternate = ldapUrl;
+                    }
+                }
+                catch ( LdapURLEncodingException luee )
+                {
+                    LOG.warn( luee.getMessage(), luee );
+                }
+            }
+
+            if ( alternate != null )
+            {
+                if ( LOG.isInfoEnabled() )
+                {
+                    LOG.info( I18n.msg( I18n.MSG_04201_POOL_ROTATION, config.getLdapHost(), config.getLdapPort(),
+                        alternate ) );
+                }
+
+                // The configuration is shared with the existing connections, and maybe
+                // with other factories : the new connections use a modified copy
+                LdapConnectionConfig alternateConfig = new LdapConnectionConfig( config );
+                alternateConfig.setLdapHost( alternate.getHost() );
+
+                if ( alternate.getPort() > 0 )
+                {
+                    alternateConfig.setLdapPort( alternate.getPort() );
+                }
+
+                defaultFactory.setConfig( alternateConfig );
+            }
+        }
+    }
+
+
+    private void openReplacement()
+    {
+        if ( isClosed() )
+        {
+            return;
+        }
+
+        try
+        {
+            addObject();
+        }
+        catch ( Exception e )
+        {
+            LOG.warn( I18n.err( I18n.ERR_04204_REPLACEMENT_CONNECTION_FAILED, e.getMessage() ), e );
+        }
+    }
+
+
+    private synchronized ScheduledExecutorService getReplacementExecutor()
+    {
+        if ( replacementExecutor == null )
+        {
+            replacementExecutor = Executors.newSingleThreadScheduledExecutor( runnable ->
+            {
+                Thread thread = new Thread( runnable, "LdapConnectionPool-replacement" );
+                thread.setDaemon( true );
+
+                return thread;
+            } );
+        }
+
+        return replacementExecutor;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close()
+    {
+        synchronized ( this )
+        {
+            if ( replacementExecutor != null )
+            {
+                replacementExecutor.shutdownNow();
+            }
+        }
+
+        super.close();
+    }
+
+
     private static ValidatingPoolableLdapConnectionFactory newPoolableConnectionFactory(
         LdapConnectionConfig connectionConfig, LdapApiService apiService,
         long timeout )
@@ -168,6 +515,14 @@ public class LdapConnectionPool extends GenericObjectPool<LdapConnection>
     {
         try
         {
+            if ( isDraining( connection ) )
+            {
+                // The server is going to close the connection
+                super.invalidateObject( connection );
+
+                return;
+            }
+
             super.returnObject( connection );
 
             if ( LOG.isTraceEnabled() )
@@ -41,6 +41,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -59,18 +60,21 @@ import javax.security.sasl.SaslClient;
 import org.apache.directory.api.asn1.DecoderException;
 import org.apache.directory.api.asn1.util.Oid;
 import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.codec.api.AttributeProjection;
 import org.apache.directory.api.ldap.codec.api.BinaryAttributeDetector;
 import org.apache.directory.api.ldap.codec.api.DefaultConfigurableBinaryAttributeDetector;
 import org.apache.directory.api.ldap.codec.api.ExtendedOperationFactory;
 import org.apache.directory.api.ldap.codec.api.LdapApiService;
 import org.apache.directory.api.ldap.codec.api.LdapApiServiceFactory;
 import org.apache.directory.api.ldap.codec.api.LdapDecoder;
+import org.apache.directory.api.ldap.codec.api.LdapDecoderExecutorFilter;
 import org.apache.directory.api.ldap.codec.api.LdapMessageContainer;
 import org.apache.directory.api.ldap.codec.api.MessageEncoderException;
 import org.apache.directory.api.ldap.codec.api.SaslFilter;
 import org.apache.directory.api.ldap.codec.api.SchemaBinaryAttributeDetector;
 import org.apache.directory.api.ldap.extras.controls.ad.TreeDelete;
 import org.apache.directory.api.ldap.extras.controls.ad.TreeDeleteImpl;
+import org.apache.directory.api.ldap.extras.extended.gracefulDisconnect.GracefulDisconnectResponse;
 import org.apache.directory.api.ldap.extras.extended.startTls.StartTlsRequestImpl;
 import org.apache.directory.api.ldap.model.constants.LdapConstants;
 import org.apache.directory.api.ldap.model.constants.SchemaConstants;
@@ -113,6 +117,7 @@ import org.apache.directory.api.ldap.model.message.ExtendedResponse;
 import org.apache.directory.api.ldap.model.message.IntermediateResponse;
 import org.apache.directory.api.ldap.model.message.LdapResult;
 import org.apache.directory.api.ldap.model.message.Message;
+import org.apache.directory.api.ldap.model.message.MessageTypeEnum;
 import org.apache.directory.api.ldap.model.message.ModifyDnRequest;
 import org.apache.directory.api.ldap.model.message.ModifyDnRequestImpl;
 import org.apache.directory.api.ldap.model.message.ModifyDnResponse;
@@ -151,6 +156,7 @@ import org.apache.directory.api.ldap.model.schema.SchemaManager;
 import org.apache.directory.api.ldap.model.schema.parsers.OpenLdapSchemaParser;
 import org.apache.directory.api.ldap.model.schema.registries.Registries;
 import org.apache.directory.api.ldap.model.schema.registries.SchemaLoader;
+import org.apache.directory.api.ldap.model.url.LdapUrl;
 import org.apache.directory.api.ldap.schema.manager.impl.DefaultSchemaManager;
 import org.apache.directory.api.util.Network;
 import org.apache.directory.api.util.StringConstants;
@@ -168,6 +174,8 @@ import org.apache.directory.ldap.client.api.future.ModifyDnFuture;
 import org.apache.directory.ldap.client.api.future.ModifyFuture;
 import org.apache.directory.ldap.client.api.future.ResponseFuture;
 import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.apache.directory.ldap.client.api.metrics.LdapClientMetrics;
+import org.apache.directory.ldap.client.api.metrics.MeteredProtocolCodecFactory;
 import org.apache.mina.core.filterchain.IoFilter;
 import org.apache.mina.core.filterchain.IoFilterChain;
 import org.apache.mina.core.future.CloseFuture;
@@ -255,6 +263,12 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
      */
     private List<ConnectionClosedEventListener> conCloseListeners;
 
+    /** The listeners notified when the server announces a disconnection */
+    private final CopyOnWriteArrayList<DisconnectNoticeListener> disconnectNoticeListeners = new CopyOnWriteArrayList<>();
+
+    /** Tells if the server has announced that it is going to close the connection */
+    private volatile boolean draining;
+
     /** The LDAP codec protocol filter */
     private IoFilter ldapProtocolFilter = new ProtocolCodecFilter( codec.getProtocolCodecFactory() );
 
@@ -267,6 +281,18 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     /** The SaslFilter key */
     private static final String SASL_FILTER_KEY = "saslFilter";
 
+    /** The LdapDecoderExecutorFilter key */
+    private static final String DECODER_EXECUTOR_FILTER_KEY = "decoderExecutor";
+
+    /** The chaser following the referrals, if any */
+    private ReferralChaser referralChaser;
+
+    /** The metrics to update, if any */
+    private volatile LdapClientMetrics metrics;
+
+    /** The requests waiting for their final response, only filled when the metrics are enabled */
+    private Map<Integer, PendingOperation> pendingOperations = new ConcurrentHashMap<>();
+
     /** The exception stored in the session if we've got one */
     private static final String EXCEPTION_KEY = "sessionException";
 
@@ -283,6 +309,25 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     static final String TIME_OUT_ERROR = I18n.err( I18n.ERR_04170_TIMEOUT_OCCURED );
 
     static final String NO_RESPONSE_ERROR = I18n.err( I18n.ERR_04169_RESPONSE_QUEUE_EMPTIED );
+
+    /**
+     * A request sent to the server, and the time it was sent at
+     */
+    private static final class PendingOperation
+    {
+        /** The request type */
+        private final MessageTypeEnum type;
+
+        /** The time the request was sent at, in ns */
+        private final long start;
+
+
+        private PendingOperation( MessageTypeEnum type, long start )
+        {
+            this.type = type;
+            this.start = start;
+        }
+    }
     
    //------------------------- The constructors --------------------------//
     /**
@@ -550,8 +595,23 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
             ( ( SocketSessionConfig ) connector.getSessionConfig() ).setReuseAddress( true );
         }
 
-        // Add the codec to the chain
-        connector.getFilterChain().addLast( LDAP_CODEC_FILTER_KEY, ldapProtocolFilter );
+        // Add the codec to the chain, measured if the metrics are enabled
+        if ( metrics != null )
+        {
+            connector.getFilterChain().addLast( LDAP_CODEC_FILTER_KEY, new ProtocolCodecFilter(
+                new MeteredProtocolCodecFactory( codec.getProtocolCodecFactory(), metrics ) ) );
+        }
+        else
+        {
+            connector.getFilterChain().addLast( LDAP_CODEC_FILTER_KEY, ldapProtocolFilter );
+        }
+
+        // Decode the messages out of the IoProcessor thread if required
+        if ( config.getDecodeExecutor() != null )
+        {
+            connector.getFilterChain().addBefore( LDAP_CODEC_FILTER_KEY, DECODER_EXECUTOR_FILTER_KEY,
+                new LdapDecoderExecutorFilter( codec, config.getDecodeExecutor() ) );
+        }
 
         // If we use SSL, we have to add the SslFilter to the chain
         if ( config.isUseSsl() )
@@ -932,11 +992,57 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                 futureMap.remove( messageId.get() );
             }
 
-            futureMap.clear();
+            clearMaps();
         } );
     }
     
     
+    /**
+     * @return The container used to decode the messages received on the session, if any
+     */
+    @SuppressWarnings("unchecked")
+    private LdapMessageContainer<Message> getMessageContainer()
+    {
+        if ( ioSession == null )
+        {
+            return null;
+        }
+
+        return ( LdapMessageContainer<Message> ) ioSession.getAttribute( LdapDecoder.MESSAGE_CONTAINER_ATTR );
+    }
+
+
+    /**
+     * Remove the AttributeProjection associated with a search, if any
+     *
+     * @param msgId The search messageId
+     */
+    private void removeAttributeProjection( int msgId )
+    {
+        LdapMessageContainer<Message> container = getMessageContainer();
+
+        if ( container != null )
+        {
+            container.removeAttributeProjection( msgId );
+        }
+    }
+
+
+    /**
+     * Create the container used to decode the messages received on the session
+     *
+     * @param binaryAttributeDetector The detector used to know if an attribute is binary
+     * @return The new container
+     */
+    private LdapMessageContainer<Message> createMessageContainer( BinaryAttributeDetector binaryAttributeDetector )
+    {
+        LdapMessageContainer<Message> container = new LdapMessageContainer<>( codec, binaryAttributeDetector );
+        container.setLazyEntries( config.isLazyEntries() );
+
+        return container;
+    }
+
+
     /**
      * Set the BinaryDetector instance in the session
      */
@@ -963,8 +1069,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                 atDetector = new SchemaBinaryAttributeDetector( schemaManager );
             }
 
-            ioSession.setAttribute( LdapDecoder.MESSAGE_CONTAINER_ATTR,
-                new LdapMessageContainer<Message>( codec, atDetector ) );
+            ioSession.setAttribute( LdapDecoder.MESSAGE_CONTAINER_ATTR, createMessageContainer( atDetector ) );
         }
     }
     
@@ -981,6 +1086,8 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
             // No need to connect if we already have a connected session
             return true;
         }
+
+        draining = false;
         
         try
         {
@@ -1332,8 +1439,21 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         // remove the associated listener if any
         int abandonId = abandonRequest.getAbandoned();
 
+        // and the search AttributeProjection, if any
+        removeAttributeProjection( abandonId );
+
         ResponseFuture<? extends Response> rf = getFromFutureMap( abandonId );
 
+        if ( metrics != null )
+        {
+            PendingOperation pendingOperation = pendingOperations.remove( abandonId );
+
+            if ( pendingOperation != null )
+            {
+                metrics.operationAborted( pendingOperation.type );
+            }
+        }
+
         // if the listener is not null, this is a async operation and no need to
         // send cancel signal on future, sending so will leave a dangling poision object in the corresponding queue
         // this is a sync operation send cancel signal to the corresponding ResponseFuture
@@ -2328,6 +2448,23 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
      */
     @Override
     public SearchFuture searchAsync( SearchRequest searchRequest ) throws LdapException
+    {
+        return searchAsync( searchRequest, null );
+    }
+
+
+    /**
+     * Do an asynchronous search, skipping the returned attributes which are not accepted by
+     * an AttributeProjection. The skipped attributes are not decoded.
+     *
+     * @param searchRequest The search request to send to the server
+     * @param attributeProjection The attributes to keep or to drop, or <code>null</code>
+     * to keep all the returned attributes
+     * @return A Future
+     * @throws LdapException If the search failed
+     */
+    public SearchFuture searchAsync( SearchRequest searchRequest, AttributeProjection attributeProjection )
+        throws LdapException
     {
         if ( searchRequest == null )
         {
@@ -2376,12 +2513,34 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         SearchFuture searchFuture = new SearchFuture( this, searchRequest.getMessageId() );
         addToFutureMap( searchRequest.getMessageId(), searchFuture );
 
+        // The projection must be known by the decoder before the first entry is received
+        if ( attributeProjection != null )
+        {
+            LdapMessageContainer<Message> container = getMessageContainer();
+
+            if ( container != null )
+            {
+                container.setAttributeProjection( newId, attributeProjection );
+            }
+        }
+
         // Send the request to the server
-        writeRequest( searchRequest );
+        try
+        {
+            writeRequest( searchRequest );
+        }
+        catch ( LdapException le )
+        {
+            removeAttributeProjection( newId );
+
+            throw le;
+        }
 
         // Check that the future hasn't be canceled
         if ( searchFuture.isCancelled() )
         {
+            removeAttributeProjection( newId );
+
             // Throw an exception here
             throw new LdapException( searchFuture.getCause() );
         }
@@ -2435,6 +2594,67 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         }
 
         SearchFuture searchFuture = searchAsync( searchRequest );
+        SearchCursor searchCursor = new SearchCursorImpl( searchFuture, localSearchTimeout, TimeUnit.MILLISECONDS );
+
+        if ( ( referralChaser != null ) && searchRequest.isFollowReferrals() )
+        {
+            ReferralChasingSearchCursor chasingCursor = new ReferralChasingSearchCursor( searchCursor, searchRequest,
+                referralChaser );
+
+            // A referral back to this server is a loop
+            LdapUrl server = new LdapUrl();
+            server.setScheme( config.isUseSsl() ? LdapUrl.LDAPS_SCHEME : LdapUrl.LDAP_SCHEME );
+            server.setHost( config.getLdapHost() );
+            server.setPort( config.getLdapPort() );
+            chasingCursor.setOrigin( server );
+
+            return chasingCursor;
+        }
+
+        return searchCursor;
+    }
+
+
+    /**
+     * Get the timeout to use when waiting for the responses of a search : the largest of the
+     * read operation timeout and of the search time limit.
+     *
+     * @param searchRequest The search request
+     * @return The timeout, in milliseconds
+     */
+    long getSearchTimeout( SearchRequest searchRequest )
+    {
+        return getTimeout( readOperationTimeout, searchRequest.getTimeLimit() );
+    }
+
+
+    /**
+     * Do a search, skipping the returned attributes which are not accepted by an
+     * AttributeProjection. The skipped attributes are not decoded.
+     *
+     * @param searchRequest The search request to send to the server
+     * @param attributeProjection The attributes to keep or to drop, or <code>null</code>
+     * to keep all the returned attributes
+     * @return A cursor on the search results
+     * @throws LdapException If the search failed
+     */
+    public SearchCursor search( SearchRequest searchRequest, AttributeProjection attributeProjection )
+        throws LdapException
+    {
+        if ( searchRequest == null )
+        {
+            String msg = I18n.err( I18n.ERR_04130_CANNOT_PROCESS_NULL_SEARCH_REQ );
+
+            if ( LOG.isDebugEnabled() )
+            {
+                LOG.debug( msg );
+            }
+
+            throw new IllegalArgumentException( msg );
+        }
+
+        long localSearchTimeout = getTimeout( readOperationTimeout, searchRequest.getTimeLimit() );
+        SearchFuture searchFuture = searchAsync( searchRequest, attributeProjection );
 
         return new SearchCursorImpl( searchFuture, localSearchTimeout, TimeUnit.MILLISECONDS );
     }
@@ -2566,6 +2786,47 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     }
 
 
+    /**
+     * Check if the message is a GracefulDisconnect message
+     * 
+     * @param message The message to check
+     * @return <tt>true</tt> if the message is a Graceful Disconnect
+     */
+    private boolean isGracefulDisconnect( Message message )
+    {
+        return ( message instanceof ExtendedResponse )
+            && GracefulDisconnectResponse.EXTENSION_OID.equals( ( ( ExtendedResponse ) message ).getResponseName() );
+    }
+
+
+    /**
+     * Marks the connection as draining, and notifies the listeners of a disconnection notice.
+     * 
+     * @param notice The NoticeOfDisconnect or GracefulDisconnect response
+     */
+    private void disconnectNoticeReceived( ExtendedResponse notice )
+    {
+        draining = true;
+
+        if ( LOG.isInfoEnabled() )
+        {
+            LOG.info( I18n.msg( I18n.MSG_04200_DISCONNECT_NOTICE, notice.getResponseName(), this ) );
+        }
+
+        for ( DisconnectNoticeListener listener : disconnectNoticeListeners )
+        {
+            try
+            {
+                listener.disconnectNoticeReceived( this, notice );
+            }
+            catch ( RuntimeException re )
+            {
+                LOG.error( re.getMessage(), re );
+            }
+        }
+    }
+
+
     /**
      * Check if the message is a NoticeOfDisconnect message
      * 
@@ -2921,6 +3182,11 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
 
         // Store the response into the future
         searchFuture.set( searchResultEntry );
+
+        if ( metrics != null )
+        {
+            metrics.responseQueued( searchFuture.getQueueSize() );
+        }
     }
     
     
@@ -2971,6 +3237,15 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
 
         boolean isNoD = isNoticeOfDisconnect( response );
 
+        if ( isGracefulDisconnect( response ) )
+        {
+            // The server will close the connection once the delay has expired :
+            // the outstanding requests can still complete
+            disconnectNoticeReceived( ( ExtendedResponse ) response );
+
+            return;
+        }
+
         if ( ( responseFuture == null ) && !isNoD )
         {
             if ( LOG.isInfoEnabled() )
@@ -2983,6 +3258,8 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
 
         if ( isNoD )
         {
+            disconnectNoticeReceived( ( ExtendedResponse ) response );
+
             // close the session
             session.closeNow();
 
@@ -4583,10 +4860,17 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
 
             schemaManager = tmp;
 
-            // Change the container's BinaryDetector
-            ioSession.setAttribute( LdapDecoder.MESSAGE_CONTAINER_ATTR,
-                new LdapMessageContainer<>( codec,
-                    new SchemaBinaryAttributeDetector( schemaManager ) ) );
+            // Change the container's BinaryDetector, keeping the searches in progress projections
+            LdapMessageContainer<Message> container =
+                createMessageContainer( new SchemaBinaryAttributeDetector( schemaManager ) );
+            LdapMessageContainer<Message> previousContainer = getMessageContainer();
+
+            if ( previousContainer != null )
+            {
+                container.copyAttributeProjections( previousContainer );
+            }
+
+            ioSession.setAttribute( LdapDecoder.MESSAGE_CONTAINER_ATTR, container );
 
         }
         catch ( LdapException le )
@@ -4761,6 +5045,17 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     private void removeFromFutureMaps( int msgId )
     {
         getFromFutureMap( msgId );
+        removeAttributeProjection( msgId );
+
+        if ( metrics != null )
+        {
+            PendingOperation pendingOperation = pendingOperations.remove( msgId );
+
+            if ( pendingOperation != null )
+            {
+                metrics.operationCompleted( pendingOperation.type, System.nanoTime() - pendingOperation.start );
+            }
+        }
     }
 
 
@@ -4770,6 +5065,36 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     private void clearMaps()
     {
         futureMap.clear();
+        abortPendingOperations();
+
+        LdapMessageContainer<Message> container = getMessageContainer();
+
+        if ( container != null )
+        {
+            container.clearAttributeProjections();
+        }
+    }
+
+
+    /**
+     * Report all the requests still waiting for a response as aborted, as they will never get one
+     */
+    private void abortPendingOperations()
+    {
+        if ( metrics != null )
+        {
+            Iterator<PendingOperation> iterator = pendingOperations.values().iterator();
+
+            while ( iterator.hasNext() )
+            {
+                metrics.operationAborted( iterator.next().type );
+                iterator.remove();
+            }
+        }
+        else
+        {
+            pendingOperations.clear();
+        }
     }
 
 
@@ -4796,6 +5121,42 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     }
 
 
+    /**
+     * Adds a listener notified when the server announces that it is going to close
+     * this connection. A listener already registered is not added again.
+     *
+     * @param listener The listener to add
+     */
+    public void addDisconnectNoticeListener( DisconnectNoticeListener listener )
+    {
+        disconnectNoticeListeners.addIfAbsent( listener );
+    }
+
+
+    /**
+     * Removes a disconnection notice listener.
+     *
+     * @param listener The listener to remove
+     */
+    public void removeDisconnectNoticeListener( DisconnectNoticeListener listener )
+    {
+        disconnectNoticeListeners.remove( listener );
+    }
+
+
+    /**
+     * Tells if the server has announced, with a NoticeOfDisconnect or a GracefulDisconnect,
+     * that it is going to close this connection. A draining connection should not be used
+     * for new requests.
+     *
+     * @return <code>true</code> if the connection is going to be closed by the server
+     */
+    public boolean isDraining()
+    {
+        return draining;
+    }
+
+
     /**
      * Adds the connection closed event listener.
      *
@@ -4833,8 +5194,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     {
         // Last, store the message container
         LdapMessageContainer<Message> ldapMessageContainer =
-            new LdapMessageContainer<>(
-                codec, config.getBinaryAttributeDetector() );
+            createMessageContainer( config.getBinaryAttributeDetector() );
 
         session.setAttribute( LdapDecoder.MESSAGE_CONTAINER_ATTR, ldapMessageContainer );
     }
@@ -4967,7 +5327,16 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         }
 
         SaslFilter saslFilter = new SaslFilter( saslClient );
-        filterChain.addBefore( LDAP_CODEC_FILTER_KEY, SASL_FILTER_KEY, saslFilter );
+
+        // The SASL layer must be removed before the PDUs are split
+        if ( filterChain.contains( DECODER_EXECUTOR_FILTER_KEY ) )
+        {
+            filterChain.addBefore( DECODER_EXECUTOR_FILTER_KEY, SASL_FILTER_KEY, saslFilter );
+        }
+        else
+        {
+            filterChain.addBefore( LDAP_CODEC_FILTER_KEY, SASL_FILTER_KEY, saslFilter );
+        }
     }
 
 
@@ -5256,6 +5625,12 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
      */
     private void writeRequest( Request request ) throws LdapException
     {
+        if ( metrics != null )
+        {
+            pendingOperations.put( request.getMessageId(), new PendingOperation( request.getType(), System.nanoTime() ) );
+            metrics.requestSent( request.getType() );
+        }
+
         // Send the request to the server
         WriteFuture writeFuture = ioSession.write( request );
 
@@ -5429,6 +5804,51 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     {
         this.socketSessionConfig = socketSessionConfig;
     }
+
+
+    /**
+     * @return The chaser following the referrals, or null if the referrals are not followed
+     */
+    public ReferralChaser getReferralChaser()
+    {
+        return referralChaser;
+    }
+
+
+    /**
+     * Set the chaser used to follow the referrals returned by the searches whose request
+     * asks for the referrals to be followed. The referrals are not followed when null, which
+     * is the default.
+     *
+     * @param referralChaser The chaser following the referrals, or null
+     */
+    public void setReferralChaser( ReferralChaser referralChaser )
+    {
+        this.referralChaser = referralChaser;
+    }
+
+
+    /**
+     * @return The metrics updated by this connection, or null if the metrics are disabled
+     */
+    public LdapClientMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+
+    /**
+     * Set the metrics to update with the latency of the operations, and the number of bytes
+     * sent and received. The metrics are disabled when null, which is the default. The bytes
+     * are only measured if the metrics are set before the connection is established, and if
+     * the messages are not decoded by a decode executor.
+     *
+     * @param metrics The metrics to update, or null to disable the metrics
+     */
+    public void setMetrics( LdapClientMetrics metrics )
+    {
+        this.metrics = metrics;
+    }
     
     
     /**
@@ -0,0 +1,870 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.model.entry.Modification;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
+import org.apache.directory.api.ldap.model.ldif.ChangeType;
+import org.apache.directory.api.ldap.model.ldif.LdifControl;
+import org.apache.directory.api.ldap.model.ldif.LdifEntry;
+import org.apache.directory.api.ldap.model.ldif.LdifReader;
+import org.apache.directory.api.ldap.model.ldif.LdifUtils;
+import org.apache.directory.api.ldap.model.message.AddRequest;
+import org.apache.directory.api.ldap.model.message.AddRequestImpl;
+import org.apache.directory.api.ldap.model.message.DeleteRequest;
+import org.apache.directory.api.ldap.model.message.DeleteRequestImpl;
+import org.apache.directory.api.ldap.model.message.LdapResult;
+import org.apache.directory.api.ldap.model.message.ModifyDnRequest;
+import org.apache.directory.api.ldap.model.message.ModifyDnRequestImpl;
+import org.apache.directory.api.ldap.model.message.ModifyRequest;
+import org.apache.directory.api.ldap.model.message.ModifyRequestImpl;
+import org.apache.directory.api.ldap.model.message.Request;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.ResultResponse;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.name.Rdn;
+import org.apache.directory.ldap.client.api.future.ResponseFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A bulk loader, applying the entries read from a LDIF file to a server. The operations
+ * are sent using {@link LdapAsyncConnection}s taken from a {@link LdapConnectionPool},
+ * without waiting for the previous responses : each connection keeps a window of
+ * outstanding operations, so that the load is bounded by the server capacity, not by the
+ * round-trip time.
+ * <p>
+ * The LDIF order is respected where it matters : an operation is not sent while an
+ * operation on the same entry, or on one of its ancestors, is still outstanding, so that
+ * a parent is always added before its children. A Delete or a ModifyDN also waits for the
+ * outstanding operations on the entry descendants.
+ * <p>
+ * The operations rejected with a BUSY or UNAVAILABLE result are sent again, after a delay
+ * doubled at each attempt. The operations which cannot be applied are written to a reject
+ * LDIF, preceded by a comment giving the reason.
+ * <pre>
+ * LdifLoader loader = new LdifLoader( pool );
+ * loader.setParallelism( 4 );
+ * loader.setWindow( 64 );
+ *
+ * try ( Writer rejects = Files.newBufferedWriter( Paths.get( "rejects.ldif" ) ) )
+ * {
+ *     loader.setRejectWriter( rejects );
+ *     loader.load( new File( "data.ldif" ) );
+ * }
+ *
+ * System.out.println( loader.getThroughput() + " entries per second" );
+ * </pre>
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LdifLoader
+{
+    /** The logger for this class */
+    private static final Logger LOG = LoggerFactory.getLogger( LdifLoader.class );
+
+    /** The default number of connections used */
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    /** The default number of outstanding operations per connection */
+    public static final int DEFAULT_WINDOW = 32;
+
+    /** The default number of times a BUSY or UNAVAILABLE operation is sent again */
+    public static final int DEFAULT_MAX_RETRIES = 5;
+
+    /** The default delay before the first retry, in milliseconds */
+    public static final long DEFAULT_RETRY_DELAY = 100L;
+
+    /** The longest delay between two retries, in milliseconds */
+    private static final long MAX_RETRY_DELAY = 30000L;
+
+    /** The pool providing the connections */
+    private final LdapConnectionPool pool;
+
+    /** The number of connections used */
+    private int parallelism = DEFAULT_PARALLELISM;
+
+    /** The number of outstanding operations per connection */
+    private int window = DEFAULT_WINDOW;
+
+    /** The number of times a BUSY or UNAVAILABLE operation is sent again */
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+
+    /** The delay before the first retry, in milliseconds */
+    private long retryDelay = DEFAULT_RETRY_DELAY;
+
+    /** The time to wait for a response, in milliseconds */
+    private long timeout = LdapConnectionConfig.DEFAULT_TIMEOUT;
+
+    /** The writer the rejected entries are written to, if any */
+    private Writer rejectWriter;
+
+    /** The outstanding operations, per normalized Dn */
+    private final Map<String, Operation> inFlight = new ConcurrentHashMap<>();
+
+    /** The threads sending the operations again */
+    private ScheduledExecutorService retryExecutor;
+
+    /** The number of applied operations */
+    private final AtomicLong loaded = new AtomicLong();
+
+    /** The number of rejected operations */
+    private final AtomicLong rejected = new AtomicLong();
+
+    /** The number of retries */
+    private final AtomicLong retried = new AtomicLong();
+
+    /** The duration of the last load, in milliseconds */
+    private volatile long elapsed;
+
+    /**
+     * A connection, with its window of outstanding operations
+     */
+    private static final class Slot
+    {
+        /** The connection */
+        private final LdapAsyncConnection connection;
+
+        /** The free places in the window */
+        private final Semaphore permits;
+
+        /** The outstanding operations, in the order they were sent */
+        private final BlockingQueue<Operation> pending = new LinkedBlockingQueue<>();
+
+
+        private Slot( LdapAsyncConnection connection, int window )
+        {
+            this.connection = connection;
+            permits = new Semaphore( window );
+        }
+    }
+
+    /**
+     * An operation sent to the server
+     */
+    private static final class Operation
+    {
+        /** The LDIF entry, null for the marker stopping a slot */
+        private final LdifEntry entry;
+
+        /** The Dns this operation applies to */
+        private final List<Dn> dns;
+
+        /** The slot this operation is sent on */
+        private final Slot slot;
+
+        /** Released when the operation is applied or rejected */
+        private final CountDownLatch done = new CountDownLatch( 1 );
+
+        /** The pending response */
+        private volatile ResponseFuture<? extends ResultResponse> future;
+
+        /** The number of times this operation has been sent */
+        private int attempts;
+
+
+        private Operation( LdifEntry entry, List<Dn> dns, Slot slot )
+        {
+            this.entry = entry;
+            this.dns = dns;
+            this.slot = slot;
+        }
+    }
+
+
+    /**
+     * Creates a new LdifLoader.
+     *
+     * @param pool The pool providing the connections. They must be {@link LdapAsyncConnection}s
+     */
+    public LdifLoader( LdapConnectionPool pool )
+    {
+        this.pool = pool;
+    }
+
+
+    /**
+     * @return The number of connections used
+     */
+    public int getParallelism()
+    {
+        return parallelism;
+    }
+
+
+    /**
+     * Sets the number of connections taken from the pool during a load.
+     *
+     * @param parallelism The number of connections used
+     */
+    public void setParallelism( int parallelism )
+    {
+        if ( parallelism < 1 )
+        {
+            throw new IllegalArgumentException( I18n.err( I18n.ERR_04200_INVALID_LOADER_PARALLELISM, parallelism ) );
+        }
+
+        this.parallelism = parallelism;
+    }
+
+
+    /**
+     * @return The maximum number of outstanding operations per connection
+     */
+    public int getWindow()
+    {
+        return window;
+    }
+
+
+    /**
+     * Sets the maximum number of operations sent on a connection without having received
+     * their response.
+     *
+     * @param window The maximum number of outstanding operations per connection
+     */
+    public void setWindow( int window )
+    {
+        if ( window < 1 )
+        {
+            throw new IllegalArgumentException( I18n.err( I18n.ERR_04201_INVALID_LOADER_WINDOW, window ) );
+        }
+
+        this.window = window;
+    }
+
+
+    /**
+     * @return The number of times a BUSY or UNAVAILABLE operation is sent again
+     */
+    public int getMaxRetries()
+    {
+        return maxRetries;
+    }
+
+
+    /**
+     * @param maxRetries The number of times a BUSY or UNAVAILABLE operation is sent again
+     */
+    public void setMaxRetries( int maxRetries )
+    {
+        this.maxRetries = maxRetries;
+    }
+
+
+    /**
+     * @return The delay before the first retry, in milliseconds
+     */
+    public long getRetryDelay()
+    {
+        return retryDelay;
+    }
+
+
+    /**
+     * Sets the delay before the first retry. It is doubled for each subsequent retry.
+     *
+     * @param retryDelay The delay before the first retry, in milliseconds
+     */
+    public void setRetryDelay( long retryDelay )
+    {
+        this.retryDelay = retryDelay;
+    }
+
+
+    /**
+     * @return The time to wait for a response, in milliseconds
+     */
+    public long getTimeout()
+    {
+        return timeout;
+    }
+
+
+    /**
+     * @param timeout The time to wait for a response, in milliseconds
+     */
+    public void setTimeout( long timeout )
+    {
+        this.timeout = timeout;
+    }
+
+
+    /**
+     * Sets the writer the rejected entries are written to. If not set, the rejected entries
+     * are only counted and logged.
+     *
+     * @param rejectWriter The writer the rejected entries are written to
+     */
+    public void setRejectWriter( Writer rejectWriter )
+    {
+        this.rejectWriter = rejectWriter;
+    }
+
+
+    /**
+     * @return The number of operations applied by the last load
+     */
+    public long getLoaded()
+    {
+        return loaded.get();
+    }
+
+
+    /**
+     * @return The number of operations rejected by the last load
+     */
+    public long getRejected()
+    {
+        return rejected.get();
+    }
+
+
+    /**
+     * @return The number of operations sent again during the last load
+     */
+    public long getRetried()
+    {
+        return retried.get();
+    }
+
+
+    /**
+     * @return The duration of the last load, in milliseconds
+     */
+    public long getElapsed()
+    {
+        return elapsed;
+    }
+
+
+    /**
+     * @return The number of operations applied per second by the last load
+     */
+    public double getThroughput()
+    {
+        return loaded.get() * 1000.0d / Math.max( 1L, elapsed );
+    }
+
+
+    /**
+     * Loads the entries of a LDIF file.
+     *
+     * @param ldifFile The LDIF file
+     * @throws LdapException If the file cannot be read, or if the connections cannot be obtained
+     */
+    public void load( File ldifFile ) throws LdapException
+    {
+        try ( LdifReader reader = new LdifReader( ldifFile ) )
+        {
+            load( reader );
+        }
+        catch ( IOException ioe )
+        {
+            throw new LdapException( ioe.getMessage(), ioe );
+        }
+    }
+
+
+    /**
+     * Loads some LDIF entries. The method returns when all the operations have been applied
+     * or rejected.
+     *
+     * @param entries The LDIF entries, in the order they have to be applied
+     * @throws LdapException If the connections cannot be obtained, or if the load is interrupted
+     */
+    public void load( Iterable<LdifEntry> entries ) throws LdapException
+    {
+        loaded.set( 0L );
+        rejected.set( 0L );
+        retried.set( 0L );
+        inFlight.clear();
+
+        long start = System.currentTimeMillis();
+        List<Slot> slots = new ArrayList<>( parallelism );
+        ExecutorService completionExecutor = null;
+        retryExecutor = Executors.newSingleThreadScheduledExecutor();
+
+        try
+        {
+            for ( int i = 0; i < parallelism; i++ )
+            {
+                LdapConnection connection = pool.getConnection();
+
+                if ( !( connection instanceof LdapAsyncConnection ) )
+                {
+                    pool.releaseConnection( connection );
+
+                    throw new IllegalArgumentException( I18n.err( I18n.ERR_04184_NOT_AN_ASYNC_CONNECTION,
+                        connection.getClass().getName() ) );
+                }
+
+                slots.add( new Slot( ( LdapAsyncConnection ) connection, window ) );
+            }
+
+            completionExecutor = Executors.newFixedThreadPool( parallelism );
+
+            for ( Slot slot : slots )
+            {
+                completionExecutor.execute( () -> complete( slot ) );
+            }
+
+            for ( LdifEntry entry : entries )
+            {
+                if ( entry != null )
+                {
+                    submit( slots, entry );
+                }
+            }
+
+            // Wait for all the outstanding operations, including the retried ones
+            for ( Slot slot : slots )
+            {
+                slot.permits.acquire( window );
+            }
+        }
+        catch ( InterruptedException ie )
+        {
+            Thread.currentThread().interrupt();
+
+            throw new LdapException( ie.getMessage(), ie );
+        }
+        finally
+        {
+            retryExecutor.shutdownNow();
+
+            if ( completionExecutor != null )
+            {
+                for ( Slot slot : slots )
+                {
+                    slot.pending.add( new Operation( null, null, slot ) );
+                }
+
+                completionExecutor.shutdown();
+
+                try
+                {
+                    completionExecutor.awaitTermination( timeout, TimeUnit.MILLISECONDS );
+                }
+                catch ( InterruptedException ie )
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            for ( Slot slot : slots )
+            {
+                pool.releaseConnection( slot.connection );
+            }
+
+            elapsed = System.currentTimeMillis() - start;
+            flushRejects();
+        }
+
+        if ( LOG.isInfoEnabled() )
+        {
+            LOG.info( I18n.msg( I18n.MSG_04196_LDIF_LOAD_DONE, loaded.get(), rejected.get(), retried.get(), elapsed,
+                ( long ) getThroughput() ) );
+        }
+    }
+
+
+    /**
+     * Sends an operation on the least loaded connection, once the operations it depends on
+     * have been applied.
+     */
+    private void submit( List<Slot> slots, LdifEntry entry ) throws InterruptedException
+    {
+        List<Dn> dns = new ArrayList<>( 2 );
+        dns.add( entry.getDn() );
+        boolean withDescendants = false;
+
+        if ( entry.isChangeDelete() )
+        {
+            withDescendants = true;
+        }
+        else if ( entry.isChangeModDn() || entry.isChangeModRdn() )
+        {
+            withDescendants = true;
+
+            try
+            {
+                dns.add( newDn( entry ) );
+            }
+            catch ( LdapInvalidDnException lide )
+            {
+                reject( entry, lide.getMessage() );
+
+                return;
+            }
+        }
+
+        for ( Dn dn : dns )
+        {
+            waitFor( dn, withDescendants );
+        }
+
+        Slot slot = slots.get( 0 );
+
+        for ( Slot candidate : slots )
+        {
+            if ( candidate.permits.availablePermits() > slot.permits.availablePermits() )
+            {
+                slot = candidate;
+            }
+        }
+
+        slot.permits.acquire();
+        Operation operation = new Operation( entry, dns, slot );
+
+        for ( Dn dn : dns )
+        {
+            inFlight.put( dn.getNormName(), operation );
+        }
+
+        send( operation );
+    }
+
+
+    /**
+     * Waits until no operation on the given Dn, on one of its ancestors, and optionally on one
+     * of its descendants, is outstanding.
+     */
+    private void waitFor( Dn dn, boolean withDescendants ) throws InterruptedException
+    {
+        for ( Dn ancestor = dn; !ancestor.isEmpty(); ancestor = ancestor.getParent() )
+        {
+            Operation operation = inFlight.get( ancestor.getNormName() );
+
+            if ( operation != null )
+            {
+                operation.done.await();
+            }
+        }
+
+        if ( withDescendants )
+        {
+            for ( Operation operation : inFlight.values() )
+            {
+                for ( Dn operationDn : operation.dns )
+                {
+                    if ( operationDn.isDescendantOf( dn ) )
+                    {
+                        operation.done.await();
+                    }
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Sends an operation, or sends it again. The operation keeps its place in the window.
+     */
+    private void send( Operation operation )
+    {
+        operation.attempts++;
+
+        try
+        {
+            operation.future = sendRequest( operation.slot.connection, operation.entry );
+            operation.slot.pending.add( operation );
+        }
+        catch ( LdapException le )
+        {
+            reject( operation.entry, I18n.err( I18n.ERR_04199_LDIF_LOAD_FAILED, operation.entry.getChangeType(),
+                operation.entry.getDn(), le.getMessage() ) );
+            done( operation );
+        }
+    }
+
+
+    /**
+     * Reads the responses of the operations sent on a connection, in the order they were sent.
+     */
+    private void complete( Slot slot )
+    {
+        try
+        {
+            while ( true )
+            {
+                Operation operation = slot.pending.take();
+
+                if ( operation.entry == null )
+                {
+                    return;
+                }
+
+                ResultResponse response;
+
+                try
+                {
+                    response = operation.future.get( timeout, TimeUnit.MILLISECONDS );
+                }
+                catch ( ExecutionException ee )
+                {
+                    reject( operation.entry, I18n.err( I18n.ERR_04199_LDIF_LOAD_FAILED,
+                        operation.entry.getChangeType(), operation.entry.getDn(), ee.getMessage() ) );
+                    done( operation );
+
+                    continue;
+                }
+                catch ( TimeoutException te )
+                {
+                    response = null;
+                }
+
+                if ( response == null )
+                {
+                    operation.future.cancel( true );
+                    reject( operation.entry, I18n.err( I18n.ERR_04198_LDIF_LOAD_TIMEOUT,
+                        operation.entry.getChangeType(), operation.entry.getDn(), timeout ) );
+                    done( operation );
+
+                    continue;
+                }
+
+                LdapResult result = response.getLdapResult();
+                ResultCodeEnum resultCode = result.getResultCode();
+
+                if ( resultCode == ResultCodeEnum.SUCCESS )
+                {
+                    loaded.incrementAndGet();
+                    done( operation );
+                }
+                else if ( ( ( resultCode == ResultCodeEnum.BUSY ) || ( resultCode == ResultCodeEnum.UNAVAILABLE ) )
+                    && ( operation.attempts <= maxRetries ) )
+                {
+                    retry( operation, resultCode );
+                }
+                else
+                {
+                    reject( operation.entry, resultCode + " : " + result.getDiagnosticMessage() );
+                    done( operation );
+                }
+            }
+        }
+        catch ( InterruptedException ie )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * Sends an operation again, after a delay doubled at each attempt.
+     */
+    private void retry( Operation operation, ResultCodeEnum resultCode )
+    {
+        long delay = Math.min( MAX_RETRY_DELAY, retryDelay << Math.min( 30, operation.attempts - 1 ) );
+        retried.incrementAndGet();
+
+        if ( LOG.isDebugEnabled() )
+        {
+            LOG.debug( I18n.msg( I18n.MSG_04195_LDIF_LOAD_RETRY, resultCode, operation.entry.getDn(), delay,
+                operation.attempts ) );
+        }
+
+        try
+        {
+            retryExecutor.schedule( () -> send( operation ), delay, TimeUnit.MILLISECONDS );
+        }
+        catch ( RejectedExecutionException ree )
+        {
+            // The load has been aborted
+            reject( operation.entry, resultCode.toString() );
+            done( operation );
+        }
+    }
+
+
+    /**
+     * Releases an applied or rejected operation.
+     */
+    private void done( Operation operation )
+    {
+        for ( Dn dn : operation.dns )
+        {
+            inFlight.remove( dn.getNormName(), operation );
+        }
+
+        operation.done.countDown();
+        operation.slot.permits.release();
+    }
+
+
+    /**
+     * Counts a rejected entry, and writes it to the reject LDIF.
+     */
+    private void reject( LdifEntry entry, String reason )
+    {
+        rejected.incrementAndGet();
+        LOG.warn( reason );
+
+        if ( rejectWriter == null )
+        {
+            return;
+        }
+
+        try
+        {
+            String ldif = LdifUtils.convertToLdif( entry );
+
+            synchronized ( rejectWriter )
+            {
+                rejectWriter.write( "# " + reason.replace( '\n', ' ' ) + "\n" );
+                rejectWriter.write( ldif );
+                rejectWriter.write( "\n" );
+            }
+        }
+        catch ( LdapException | IOException e )
+        {
+            LOG.error( e.getMessage(), e );
+        }
+    }
+
+
+    /**
+     * Flushes the reject LDIF, if any.
+     */
+    private void flushRejects()
+    {
+        if ( rejectWriter != null )
+        {
+            try
+            {
+                synchronized ( rejectWriter )
+                {
+                    rejectWriter.flush();
+                }
+            }
+            catch ( IOException ioe )
+            {
+                LOG.error( ioe.getMessage(), ioe );
+            }
+        }
+    }
+
+
+    /**
+     * Computes the Dn of an entry after a ModifyDN operation.
+     */
+    private static Dn newDn( LdifEntry entry ) throws LdapInvalidDnException
+    {
+        Dn superior = entry.getNewSuperior() == null ? entry.getDn().getParent() : new Dn( entry.getNewSuperior() );
+
+        return superior.add( entry.getNewRdn() );
+    }
+
+
+    /**
+     * Sends the request matching a LDIF entry, with its controls.
+     */
+    private static ResponseFuture<? extends ResultResponse> sendRequest( LdapAsyncConnection connection,
+        LdifEntry entry ) throws LdapException
+    {
+        ChangeType changeType = entry.isLdifContent() ? ChangeType.Add : entry.getChangeType();
+
+        switch ( changeType )
+        {
+            case Add:
+                AddRequest addRequest = new AddRequestImpl().setEntry( entry.getEntry() );
+                addControls( addRequest, entry );
+
+                return connection.addAsync( addRequest );
+
+            case Modify:
+                ModifyRequest modifyRequest = new ModifyRequestImpl().setName( entry.getDn() );
+
+                for ( Modification modification : entry.getModifications() )
+                {
+                    modifyRequest.addModification( modification );
+                }
+
+                addControls( modifyRequest, entry );
+
+                return connection.modifyAsync( modifyRequest );
+
+            case Delete:
+                DeleteRequest deleteRequest = new DeleteRequestImpl().setName( entry.getDn() );
+                addControls( deleteRequest, entry );
+
+                return connection.deleteAsync( deleteRequest );
+
+            case ModDn:
+            case ModRdn:
+                ModifyDnRequest modDnRequest = new ModifyDnRequestImpl();
+                modDnRequest.setName( entry.getDn() );
+                modDnRequest.setNewRdn( new Rdn( entry.getNewRdn() ) );
+                modDnRequest.setDeleteOldRdn( entry.isDeleteOldRdn() );
+
+                if ( entry.getNewSuperior() != null )
+                {
+                    modDnRequest.setNewSuperior( new Dn( entry.getNewSuperior() ) );
+                }
+
+                addControls( modDnRequest, entry );
+
+                return connection.modifyDnAsync( modDnRequest );
+
+            default:
+                throw new LdapException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, changeType ) );
+        }
+    }
+
+
+    /**
+     * Copies the LDIF entry controls into a request.
+     */
+    private static void addControls( Request request, LdifEntry entry )
+    {
+        if ( entry.getControls() != null )
+        {
+            for ( LdifControl control : entry.getControls().values() )
+            {
+                request.addControl( control );
+            }
+        }
+    }
+}
@@ -0,0 +1,773 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.model.constants.Loggers;
+import org.apache.directory.api.ldap.model.cursor.AbstractCursor;
+import org.apache.directory.api.ldap.model.cursor.CursorException;
+import org.apache.directory.api.ldap.model.cursor.InvalidCursorPositionException;
+import org.apache.directory.api.ldap.model.cursor.SearchCursor;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.exception.LdapReferralException;
+import org.apache.directory.api.ldap.model.message.Control;
+import org.apache.directory.api.ldap.model.message.IntermediateResponse;
+import org.apache.directory.api.ldap.model.message.Referral;
+import org.apache.directory.api.ldap.model.message.Response;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchResultReference;
+import org.apache.directory.api.ldap.model.message.controls.PagedResults;
+import org.apache.directory.api.ldap.model.message.controls.PagedResultsImpl;
+import org.apache.directory.api.util.Strings;
+import org.apache.directory.ldap.client.api.exception.LdapConnectionTimeOutException;
+import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A SearchCursor which reads all the results of a search using the PagedResults control
+ * (RFC 2696). The pages are requested transparently, using the cookie returned with the
+ * previous page, until the server returns an empty cookie.
+ * <p>
+ * The next page is requested as soon as the SearchResultDone of the current page has been
+ * received, while the entries of the current page are still being read, so that the cursor
+ * does not wait for a round-trip at each page boundary. The request size limit, if any, is
+ * applied to the whole search : the size of the last pages is reduced so that no more entries
+ * than needed are returned, and the cursor stops with a SIZE_LIMIT_EXCEEDED SearchResultDone
+ * when the limit is reached.
+ * <p>
+ * When the cursor stops before the last page, because of the size limit, of an error or
+ * because it is closed, the pending requests are abandoned, and the paged result set is
+ * released on the server by sending the last received cookie with a size of 0.
+ * <p>
+ * The SearchRequest given by the caller is never modified : a copy of it, with its own
+ * PagedResults control, is sent for each page. The cursor is created with a given timeout,
+ * or with the connection's timeouts :
+ * <pre>
+ * try ( SearchCursor cursor = PagedSearchCursor.search( connection, searchRequest, 500 ) )
+ * {
+ *     while ( cursor.next() )
+ *     {
+ *         ...
+ *     }
+ * }
+ * </pre>
+ * <p>
+ * Note: This is a forward only cursor hence the only valid operations are next(), get() and close()
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class PagedSearchCursor extends AbstractCursor<Response> implements SearchCursor
+{
+    /** A dedicated log for cursors */
+    private static final Logger LOG_CURSOR = LoggerFactory.getLogger( Loggers.CURSOR_LOG.getName() );
+
+    /** The connection used to send the requests */
+    private LdapAsyncConnection connection;
+
+    /** The search request, copied for each page */
+    private SearchRequest searchRequest;
+
+    /** The number of entries requested per page */
+    private int pageSize;
+
+    /** The maximum number of entries to return, 0 if there is no limit */
+    private long sizeLimit;
+
+    /** wait time while polling for a SearchResponse */
+    private long timeout;
+
+    /** time units of timeout value */
+    private TimeUnit timeUnit;
+
+    /** The future of the page being read */
+    private SearchFuture currentFuture;
+
+    /** The future of the next page, if it has already been requested */
+    private SearchFuture nextFuture;
+
+    /** The last cookie received, as long as the server keeps the paged result set */
+    private byte[] cookie;
+
+    /** The responses received for the current page, not yet read */
+    private Queue<Response> responses = new ArrayDeque<>();
+
+    /** The number of entries received */
+    private long receivedEntries;
+
+    /** The number of entries returned by the cursor */
+    private long returnedEntries;
+
+    /** a reference to hold the current response */
+    private Response response;
+
+    /** the done flag */
+    private boolean done;
+
+    /** a reference to hold the last SearchResultDone response */
+    private SearchResultDone searchDoneResp;
+
+
+    /**
+     * Instantiates a new paged search cursor, and requests the first page.
+     *
+     * @param connection The connection to use
+     * @param searchRequest The search request
+     * @param pageSize The number of entries to request per page
+     * @param timeout the timeout
+     * @param timeUnit the time unit
+     * @throws LdapException If the first page can't be requested
+     */
+    public PagedSearchCursor( LdapAsyncConnection connection, SearchRequest searchRequest, int pageSize, long timeout,
+        TimeUnit timeUnit ) throws LdapException
+    {
+        if ( pageSize < 1 )
+        {
+            throw new IllegalArgumentException( I18n.err( I18n.ERR_04181_INVALID_PAGE_SIZE, pageSize ) );
+        }
+
+        if ( LOG_CURSOR.isDebugEnabled() )
+        {
+            LOG_CURSOR.debug( I18n.msg( I18n.MSG_04170_CREATING_SEARCH_CURSOR, this ) );
+        }
+
+        this.connection = connection;
+        this.searchRequest = searchRequest;
+        this.pageSize = pageSize;
+        this.sizeLimit = Math.max( 0L, searchRequest.getSizeLimit() );
+        this.timeout = timeout;
+        this.timeUnit = timeUnit;
+
+        if ( sizeLimit > 0L )
+        {
+            currentFuture = requestPage( Strings.EMPTY_BYTES, ( int ) Math.min( pageSize, sizeLimit ) );
+        }
+        else
+        {
+            currentFuture = requestPage( Strings.EMPTY_BYTES, pageSize );
+        }
+    }
+
+
+    /**
+     * Creates a paged search cursor, waiting for the responses as long as the connection
+     * does for a search, and requests the first page.
+     *
+     * @param connection The connection to use
+     * @param searchRequest The search request
+     * @param pageSize The number of entries to request per page
+     * @return The cursor on all the search results
+     * @throws LdapException If the first page can't be requested
+     */
+    public static PagedSearchCursor search( LdapAsyncConnection connection, SearchRequest searchRequest, int pageSize )
+        throws LdapException
+    {
+        if ( searchRequest == null )
+        {
+            throw new IllegalArgumentException( I18n.err( I18n.ERR_04130_CANNOT_PROCESS_NULL_SEARCH_REQ ) );
+        }
+
+        long timeout;
+
+        if ( connection instanceof LdapNetworkConnection )
+        {
+            timeout = ( ( LdapNetworkConnection ) connection ).getSearchTimeout( searchRequest );
+        }
+        else
+        {
+            LdapConnectionConfig config = connection.getConfig();
+            timeout = ( config == null ) ? LdapConnectionConfig.DEFAULT_TIMEOUT : config.getTimeout();
+        }
+
+        if ( timeout <= 0L )
+        {
+            timeout = Long.MAX_VALUE;
+        }
+
+        return new PagedSearchCursor( connection, searchRequest, pageSize, timeout, TimeUnit.MILLISECONDS );
+    }
+
+
+    /**
+     * Send the request for a page. A copy of the search request is sent, with its own
+     * PagedResults control and messageId.
+     *
+     * @param cookie The cookie returned with the previous page
+     * @param size The number of entries to request
+     * @return The future for this page
+     * @throws LdapException If the request can't be sent
+     */
+    private SearchFuture requestPage( byte[] cookie, int size ) throws LdapException
+    {
+        SearchRequest pageRequest = new SearchRequestImpl();
+        pageRequest.setBase( searchRequest.getBase() );
+        pageRequest.setScope( searchRequest.getScope() );
+        pageRequest.setDerefAliases( searchRequest.getDerefAliases() );
+        pageRequest.setSizeLimit( searchRequest.getSizeLimit() );
+        pageRequest.setTimeLimit( searchRequest.getTimeLimit() );
+        pageRequest.setTypesOnly( searchRequest.getTypesOnly() );
+        pageRequest.setFilter( searchRequest.getFilter() );
+        pageRequest.addAttributes( searchRequest.getAttributes().toArray( new String[0] ) );
+
+        for ( Control control : searchRequest.getControls().values() )
+        {
+            if ( !PagedResults.OID.equals( control.getOid() ) )
+            {
+                pageRequest.addControl( control );
+            }
+        }
+
+        PagedResults pagedResults = new PagedResultsImpl();
+        pagedResults.setSize( size );
+        pagedResults.setCookie( cookie );
+        pageRequest.addControl( pagedResults );
+
+        return connection.searchAsync( pageRequest );
+    }
+
+
+    /**
+     * Process the SearchResultDone of a page : request the next page if there is one.
+     *
+     * @param pageDone The SearchResultDone of the page
+     * @return The SearchResultDone to store
+     * @throws LdapException If the next page can't be requested
+     */
+    private SearchResultDone endPage( SearchResultDone pageDone ) throws LdapException
+    {
+        if ( pageDone.getLdapResult().getResultCode() != ResultCodeEnum.SUCCESS )
+        {
+            return pageDone;
+        }
+
+        PagedResults pagedResults = ( PagedResults ) pageDone.getControl( PagedResults.OID );
+
+        if ( ( pagedResults == null ) || Strings.isEmpty( pagedResults.getCookie() ) )
+        {
+            // This was the last page
+            cookie = null;
+
+            return pageDone;
+        }
+
+        cookie = pagedResults.getCookie();
+        int size = pageSize;
+
+        if ( sizeLimit > 0L )
+        {
+            long remaining = sizeLimit - receivedEntries;
+
+            if ( remaining <= 0L )
+            {
+                // We have all the requested entries, but the server has more
+                releaseResultSet();
+
+                SearchResultDone sizeLimitDone = new SearchResultDoneImpl( pageDone.getMessageId() );
+                sizeLimitDone.getLdapResult().setResultCode( ResultCodeEnum.SIZE_LIMIT_EXCEEDED );
+
+                return sizeLimitDone;
+            }
+
+            size = ( int ) Math.min( size, remaining );
+        }
+
+        if ( LOG_CURSOR.isDebugEnabled() )
+        {
+            LOG_CURSOR.debug( I18n.msg( I18n.MSG_04178_REQUESTING_NEXT_PAGE, this, receivedEntries ) );
+        }
+
+        nextFuture = requestPage( pagedResults.getCookie(), size );
+
+        return pageDone;
+    }
+
+
+    /**
+     * Store a response received for the current page
+     *
+     * @param received The received response
+     * @throws LdapException If the next page can't be requested
+     */
+    private void store( Response received ) throws LdapException
+    {
+        if ( received instanceof SearchResultEntry )
+        {
+            receivedEntries++;
+            responses.add( received );
+        }
+        else if ( received instanceof SearchResultDone )
+        {
+            responses.add( endPage( ( SearchResultDone ) received ) );
+        }
+        else
+        {
+            responses.add( received );
+        }
+    }
+
+
+    /**
+     * Wait for the next response of the current page, and take all the responses already
+     * received, so that the next page is requested as soon as possible.
+     *
+     * @throws LdapException If we can't get a response
+     */
+    private void fetch() throws LdapException
+    {
+        Response received;
+
+        try
+        {
+            received = currentFuture.get( timeout, timeUnit );
+        }
+        catch ( Exception e )
+        {
+            LdapException ldapException = new LdapException( LdapNetworkConnection.NO_RESPONSE_ERROR, e );
+
+            // close the cursor, abandoning the pending requests
+            try
+            {
+                close( ldapException );
+            }
+            catch ( IOException ioe )
+            {
+                throw new LdapException( ioe.getMessage(), ioe );
+            }
+
+            throw ldapException;
+        }
+
+        if ( received == null )
+        {
+            cancelFutures();
+
+            throw new LdapConnectionTimeOutException( LdapNetworkConnection.TIME_OUT_ERROR );
+        }
+
+        store( received );
+
+        // Take what has already been received, without waiting
+        while ( !( received instanceof SearchResultDone ) )
+        {
+            try
+            {
+                received = currentFuture.get( 0L, TimeUnit.MILLISECONDS );
+            }
+            catch ( InterruptedException ie )
+            {
+                Thread.currentThread().interrupt();
+                
+                return;
+            }
+
+            if ( received == null )
+            {
+                return;
+            }
+
+            store( received );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean next() throws LdapException, CursorException
+    {
+        while ( !done )
+        {
+            if ( currentFuture.isCancelled() )
+            {
+                response = null;
+                done = true;
+
+                return false;
+            }
+
+            if ( responses.isEmpty() )
+            {
+                fetch();
+
+                continue;
+            }
+
+            Response next = responses.poll();
+
+            if ( next instanceof SearchResultDone )
+            {
+                // Switch to the next page, if any
+                currentFuture = nextFuture;
+                nextFuture = null;
+
+                if ( currentFuture == null )
+                {
+                    searchDoneResp = ( SearchResultDone ) next;
+                    response = null;
+                    done = true;
+                }
+
+                continue;
+            }
+
+            if ( next instanceof SearchResultEntry )
+            {
+                returnedEntries++;
+
+                if ( ( sizeLimit > 0L ) && ( returnedEntries > sizeLimit ) )
+                {
+                    // The server has sent more entries than requested
+                    cancelFutures();
+
+                    searchDoneResp = new SearchResultDoneImpl( next.getMessageId() );
+                    searchDoneResp.getLdapResult().setResultCode( ResultCodeEnum.SIZE_LIMIT_EXCEEDED );
+                    response = null;
+                    done = true;
+
+                    continue;
+                }
+            }
+
+            response = next;
+
+            return true;
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Release the paged result set kept by the server, if any, by sending the last
+     * cookie with a size of 0. The response is not waited for.
+     */
+    private void releaseResultSet()
+    {
+        if ( cookie == null )
+        {
+            return;
+        }
+
+        try
+        {
+            requestPage( cookie, 0 );
+        }
+        catch ( LdapException le )
+        {
+            LOG_CURSOR.warn( le.getMessage(), le );
+        }
+
+        cookie = null;
+    }
+
+
+    /**
+     * Abandon the pending requests, and release the paged result set
+     */
+    private void cancelFutures()
+    {
+        if ( ( currentFuture != null ) && !currentFuture.isCancelled() )
+        {
+            currentFuture.cancel( true );
+        }
+
+        if ( ( nextFuture != null ) && !nextFuture.isCancelled() )
+        {
+            nextFuture.cancel( true );
+        }
+
+        responses.clear();
+        releaseResultSet();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Response get() throws InvalidCursorPositionException
+    {
+        if ( !available() )
+        {
+            throw new InvalidCursorPositionException();
+        }
+
+        return response;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SearchResultDone getSearchResultDone()
+    {
+        return searchDoneResp;
+    }
+
+
+    /**
+     * @return The number of entries returned so far by this cursor
+     */
+    public long getEntryCount()
+    {
+        return returnedEntries;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean available()
+    {
+        return response != null;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException
+    {
+        close( null );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close( Exception cause ) throws IOException
+    {
+        if ( LOG_CURSOR.isDebugEnabled() )
+        {
+            LOG_CURSOR.debug( I18n.msg( I18n.MSG_04171_CLOSING_SEARCH_CURSOR, this ) );
+        }
+
+        if ( !done )
+        {
+            cancelFutures();
+            done = true;
+            response = null;
+        }
+
+        if ( cause != null )
+        {
+            super.close( cause );
+        }
+        else
+        {
+            super.close();
+        }
+    }
+
+
+    // rest of all operations will throw UnsupportedOperationException
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public void after( Response element ) throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "after( Response element )" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterLast() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "afterLast()" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public void before( Response element ) throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "before( Response element )" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public void beforeFirst() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "beforeFirst()" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean first() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "first()" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean last() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "last()" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean previous() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "previous()" ) ) );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isDone()
+    {
+        return done;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isReferral()
+    {
+        return response instanceof SearchResultReference;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Referral getReferral() throws LdapException
+    {
+        if ( isReferral() )
+        {
+            return ( ( SearchResultReference ) response ).getReferral();
+        }
+
+        throw new LdapException();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEntry()
+    {
+        return response instanceof SearchResultEntry;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry getEntry() throws LdapException
+    {
+        if ( isEntry() )
+        {
+            return ( ( SearchResultEntry ) response ).getEntry();
+        }
+
+        if ( isReferral() )
+        {
+            Referral referral = ( ( SearchResultReference ) response ).getReferral();
+            throw new LdapReferralException( referral.getLdapUrls() );
+        }
+
+        throw new LdapException();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isIntermediate()
+    {
+        return response instanceof IntermediateResponse;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IntermediateResponse getIntermediate() throws LdapException
+    {
+        if ( isIntermediate() )
+        {
+            return ( IntermediateResponse ) response;
+        }
+
+        throw new LdapException();
+    }
+}
@@ -0,0 +1,888 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.model.constants.Loggers;
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.cursor.AbstractCursor;
+import org.apache.directory.api.ldap.model.cursor.CursorException;
+import org.apache.directory.api.ldap.model.cursor.InvalidCursorPositionException;
+import org.apache.directory.api.ldap.model.cursor.SearchCursor;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.exception.LdapReferralException;
+import org.apache.directory.api.ldap.model.filter.ObjectClassNode;
+import org.apache.directory.api.ldap.model.message.AliasDerefMode;
+import org.apache.directory.api.ldap.model.message.IntermediateResponse;
+import org.apache.directory.api.ldap.model.message.Referral;
+import org.apache.directory.api.ldap.model.message.Response;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchResultReference;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.message.controls.PagedResults;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A SearchCursor which splits a search into many partitions, searched in parallel
+ * using connections taken from a {@link LdapConnectionPool}. The results of all the
+ * partitions are merged into one stream of responses, in no particular order.
+ * <p>
+ * By default, a SUBTREE search is split using the children of the search base : the
+ * base entry is searched alone, and each child is the base of a SUBTREE search. The
+ * partitions can also be given by the application, each one being searched using the
+ * original request with another base. Any other scope is not split.
+ * <p>
+ * When the partitions may overlap, the duplicate entries can be removed, at the price
+ * of keeping the Dn of all the returned entries in memory. The request size limit is
+ * applied to the whole search.
+ * <p>
+ * The searches are started by the first call to next(). The responses are kept in a
+ * bounded queue, so that the partitions are not read faster than the application
+ * consumes them.
+ * <pre>
+ * try ( ParallelSearchCursor cursor = new ParallelSearchCursor( pool, searchRequest, 8 ) )
+ * {
+ *     while ( cursor.next() )
+ *     {
+ *         ...
+ *     }
+ * }
+ * </pre>
+ * Note: This is a forward only cursor hence the only valid operations are next(), get() and close()
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class ParallelSearchCursor extends AbstractCursor<Response> implements SearchCursor
+{
+    /** A dedicated log for cursors */
+    private static final Logger LOG_CURSOR = LoggerFactory.getLogger( Loggers.CURSOR_LOG.getName() );
+
+    /** The default number of responses kept in memory */
+    public static final int DEFAULT_QUEUE_SIZE = 1024;
+
+    /** The pool providing the connections */
+    private LdapConnectionPool pool;
+
+    /** The original search request */
+    private SearchRequest searchRequest;
+
+    /** The bases of the partitions, or null if they are computed from the search base */
+    private List<Dn> partitionBases;
+
+    /** The maximum number of partitions searched at the same time */
+    private int parallelism;
+
+    /** Tells if the duplicate entries are removed */
+    private boolean deduplicate;
+
+    /** The number of responses kept in memory */
+    private int queueSize = DEFAULT_QUEUE_SIZE;
+
+    /** The maximum number of entries to return, 0 if there is no limit */
+    private long sizeLimit;
+
+    /** The partition requests, not yet searched */
+    private Queue<SearchRequest> partitions = new ConcurrentLinkedQueue<>();
+
+    /** The responses returned before the partitions are searched */
+    private Queue<Response> initialResponses = new ArrayDeque<>();
+
+    /** The responses returned by the partitions */
+    private BlockingQueue<Response> responses;
+
+    /** The marker pushed when all the partitions have been searched */
+    private final SearchResultDone endMarker = new SearchResultDoneImpl();
+
+    /** The threads searching the partitions */
+    private ExecutorService executor;
+
+    /** The number of running searches */
+    private AtomicInteger runningSearches = new AtomicInteger();
+
+    /** The first error met by a search */
+    private AtomicReference<LdapException> failure = new AtomicReference<>();
+
+    /** The first SearchResultDone which was not successful */
+    private AtomicReference<SearchResultDone> failedDone = new AtomicReference<>();
+
+    /** The Dn of the returned entries, if duplicates are removed */
+    private Set<String> returnedDns;
+
+    /** The number of entries returned by the cursor */
+    private long returnedEntries;
+
+    /** Tells if the cursor has been started */
+    private boolean started;
+
+    /** a reference to hold the current response */
+    private Response response;
+
+    /** the done flag */
+    private volatile boolean done;
+
+    /** a reference to hold the final SearchResultDone response */
+    private SearchResultDone searchDoneResp;
+
+
+    /**
+     * Creates a new ParallelSearchCursor, splitting a SUBTREE search using the children of
+     * the search base.
+     *
+     * @param pool The pool providing the connections
+     * @param searchRequest The search request
+     * @param parallelism The maximum number of partitions searched at the same time
+     */
+    public ParallelSearchCursor( LdapConnectionPool pool, SearchRequest searchRequest, int parallelism )
+    {
+        this( pool, searchRequest, null, parallelism );
+    }
+
+
+    /**
+     * Creates a new ParallelSearchCursor, using the given partitions. Each partition is
+     * searched using the search request with another base.
+     *
+     * @param pool The pool providing the connections
+     * @param searchRequest The search request
+     * @param partitionBases The bases of the partitions, or <code>null</code> to split the search
+     * using the children of the search base
+     * @param parallelism The maximum number of partitions searched at the same time
+     */
+    public ParallelSearchCursor( LdapConnectionPool pool, SearchRequest searchRequest, List<Dn> partitionBases,
+        int parallelism )
+    {
+        if ( parallelism < 1 )
+        {
+            throw new IllegalArgumentException( I18n.err( I18n.ERR_04182_INVALID_PARALLELISM, parallelism ) );
+        }
+
+        if ( LOG_CURSOR.isDebugEnabled() )
+        {
+            LOG_CURSOR.debug( I18n.msg( I18n.MSG_04170_CREATING_SEARCH_CURSOR, this ) );
+        }
+
+        this.pool = pool;
+        this.searchRequest = searchRequest;
+        this.partitionBases = partitionBases;
+        this.parallelism = parallelism;
+        this.sizeLimit = Math.max( 0L, searchRequest.getSizeLimit() );
+    }
+
+
+    /**
+     * Tells the cursor to remove the duplicate entries, when the partitions may overlap.
+     * It must be called before the first call to next().
+     *
+     * @param deduplicate <code>true</code> to remove the duplicate entries
+     */
+    public void setDeduplicate( boolean deduplicate )
+    {
+        this.deduplicate = deduplicate;
+    }
+
+
+    /**
+     * Sets the number of responses kept in memory while the application reads them.
+     * It must be called before the first call to next().
+     *
+     * @param queueSize The number of responses kept in memory
+     */
+    public void setQueueSize( int queueSize )
+    {
+        this.queueSize = queueSize;
+    }
+
+
+    /**
+     * Creates the request used to search a partition, copying the original request
+     *
+     * @param base The partition base
+     * @param scope The partition scope
+     * @return The partition request
+     */
+    private SearchRequest createPartitionRequest( Dn base, SearchScope scope )
+    {
+        SearchRequest partitionRequest = new SearchRequestImpl();
+        partitionRequest.setBase( base );
+        partitionRequest.setScope( scope );
+        partitionRequest.setFilter( searchRequest.getFilter() );
+        partitionRequest.setDerefAliases( searchRequest.getDerefAliases() );
+        partitionRequest.setSizeLimit( searchRequest.getSizeLimit() );
+        partitionRequest.setTimeLimit( searchRequest.getTimeLimit() );
+        partitionRequest.setTypesOnly( searchRequest.getTypesOnly() );
+        partitionRequest.addAttributes( searchRequest.getAttributes().toArray( new String[0] ) );
+
+        // A PagedResults control can't be shared by many searches
+        searchRequest.getControls().values().stream()
+            .filter( control -> !PagedResults.OID.equals( control.getOid() ) )
+            .forEach( partitionRequest::addControl );
+
+        return partitionRequest;
+    }
+
+
+    /**
+     * Compute the partitions, using the children of the search base when they are not
+     * given.
+     *
+     * @throws LdapException If the children can't be read
+     * @throws CursorException If the children can't be read
+     */
+    private void createPartitions() throws LdapException, CursorException
+    {
+        if ( partitionBases != null )
+        {
+            for ( Dn base : partitionBases )
+            {
+                partitions.add( createPartitionRequest( base, searchRequest.getScope() ) );
+            }
+
+            return;
+        }
+
+        if ( searchRequest.getScope() != SearchScope.SUBTREE )
+        {
+            partitions.add( createPartitionRequest( searchRequest.getBase(), searchRequest.getScope() ) );
+
+            return;
+        }
+
+        // The base entry, then all the subtrees below it
+        partitions.add( createPartitionRequest( searchRequest.getBase(), SearchScope.OBJECT ) );
+
+        SearchRequest childrenRequest = new SearchRequestImpl();
+        childrenRequest.setBase( searchRequest.getBase() );
+        childrenRequest.setScope( SearchScope.ONELEVEL );
+        childrenRequest.setFilter( ObjectClassNode.OBJECT_CLASS_NODE );
+        childrenRequest.setDerefAliases( AliasDerefMode.NEVER_DEREF_ALIASES );
+        childrenRequest.addAttributes( SchemaConstants.NO_ATTRIBUTE );
+
+        if ( searchRequest.isIgnoreReferrals() )
+        {
+            childrenRequest.ignoreReferrals();
+        }
+
+        LdapConnection connection = pool.getConnection();
+
+        try ( SearchCursor children = connection.search( childrenRequest ) )
+        {
+            while ( children.next() )
+            {
+                Response child = children.get();
+
+                if ( child instanceof SearchResultEntry )
+                {
+                    partitions.add( createPartitionRequest( ( ( SearchResultEntry ) child ).getObjectName(),
+                        SearchScope.SUBTREE ) );
+                }
+                else if ( child instanceof SearchResultReference )
+                {
+                    // The referrals are returned as the server would have done
+                    initialResponses.add( child );
+                }
+            }
+
+            SearchResultDone childrenDone = children.getSearchResultDone();
+
+            if ( ( childrenDone != null ) && ( childrenDone.getLdapResult().getResultCode() != ResultCodeEnum.SUCCESS ) )
+            {
+                // The base can't be split, search it as a whole
+                partitions.clear();
+                initialResponses.clear();
+                partitions.add( createPartitionRequest( searchRequest.getBase(), SearchScope.SUBTREE ) );
+            }
+        }
+        catch ( IOException ioe )
+        {
+            throw new LdapException( ioe.getMessage(), ioe );
+        }
+        finally
+        {
+            pool.releaseConnection( connection );
+        }
+    }
+
+
+    /**
+     * Start the searches
+     *
+     * @throws LdapException If the partitions can't be computed
+     * @throws CursorException If the partitions can't be computed
+     */
+    private void start() throws LdapException, CursorException
+    {
+        started = true;
+
+        if ( deduplicate )
+        {
+            returnedDns = new HashSet<>();
+        }
+
+        createPartitions();
+
+        int nbThreads = Math.min( parallelism, partitions.size() );
+
+        if ( LOG_CURSOR.isDebugEnabled() )
+        {
+            LOG_CURSOR.debug( I18n.msg( I18n.MSG_04179_PARALLEL_SEARCH, partitions.size(), nbThreads ) );
+        }
+
+        responses = new ArrayBlockingQueue<>( Math.max( 1, queueSize ) );
+
+        if ( nbThreads == 0 )
+        {
+            responses.add( endMarker );
+
+            return;
+        }
+
+        executor = Executors.newFixedThreadPool( nbThreads );
+        runningSearches.set( nbThreads );
+
+        for ( int i = 0; i < nbThreads; i++ )
+        {
+            executor.execute( this::searchPartitions );
+        }
+
+        executor.shutdown();
+    }
+
+
+    /**
+     * Search the partitions, until there are no more. Runs in the executor threads.
+     */
+    private void searchPartitions()
+    {
+        LdapConnection connection = null;
+
+        try
+        {
+            connection = pool.getConnection();
+            SearchRequest partitionRequest = partitions.poll();
+
+            while ( !done && ( partitionRequest != null ) )
+            {
+                searchPartition( connection, partitionRequest );
+                partitionRequest = partitions.poll();
+            }
+        }
+        catch ( InterruptedException ie )
+        {
+            // The cursor has been closed
+            Thread.currentThread().interrupt();
+        }
+        catch ( LdapException le )
+        {
+            failure.compareAndSet( null, le );
+
+            // The search has failed, don't search the remaining partitions
+            partitions.clear();
+        }
+        finally
+        {
+            if ( connection != null )
+            {
+                try
+                {
+                    pool.releaseConnection( connection );
+                }
+                catch ( LdapException le )
+                {
+                    failure.compareAndSet( null, le );
+                }
+            }
+
+            if ( runningSearches.decrementAndGet() == 0 )
+            {
+                // The consumer may be waiting, the queue can't be full for long
+                try
+                {
+                    if ( !done )
+                    {
+                        responses.put( endMarker );
+                    }
+                }
+                catch ( InterruptedException ie )
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Search one partition, pushing its responses in the queue
+     *
+     * @param connection The connection to use
+     * @param partitionRequest The partition request
+     * @throws LdapException If the search failed
+     * @throws InterruptedException If the cursor has been closed
+     */
+    private void searchPartition( LdapConnection connection, SearchRequest partitionRequest )
+        throws LdapException, InterruptedException
+    {
+        try ( SearchCursor partition = connection.search( partitionRequest ) )
+        {
+            while ( !done && partition.next() )
+            {
+                responses.put( partition.get() );
+            }
+
+            SearchResultDone partitionDone = partition.getSearchResultDone();
+
+            if ( ( partitionDone != null ) && ( partitionDone.getLdapResult().getResultCode() != ResultCodeEnum.SUCCESS ) )
+            {
+                failedDone.compareAndSet( null, partitionDone );
+            }
+        }
+        catch ( CursorException | IOException e )
+        {
+            throw new LdapException( I18n.err( I18n.ERR_04183_PARTITION_SEARCH_FAILED, partitionRequest.getBase(),
+                e.getMessage() ), e );
+        }
+    }
+
+
+    /**
+     * Create the SearchResultDone returned at the end of the search
+     *
+     * @param resultCode The result code
+     */
+    private void finish( ResultCodeEnum resultCode )
+    {
+        SearchResultDone failed = failedDone.get();
+
+        if ( ( resultCode == ResultCodeEnum.SUCCESS ) && ( failed != null ) )
+        {
+            searchDoneResp = failed;
+        }
+        else
+        {
+            searchDoneResp = new SearchResultDoneImpl( searchRequest.getMessageId() );
+            searchDoneResp.getLdapResult().setResultCode( resultCode );
+        }
+
+        response = null;
+        done = true;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean next() throws LdapException, CursorException
+    {
+        if ( done )
+        {
+            return false;
+        }
+
+        if ( !started )
+        {
+            start();
+        }
+
+        while ( !done )
+        {
+            Response next = initialResponses.poll();
+
+            if ( next == null )
+            {
+                try
+                {
+                    next = responses.take();
+                }
+                catch ( InterruptedException ie )
+                {
+                    Thread.currentThread().interrupt();
+
+                    throw abort( new LdapException( LdapNetworkConnection.NO_RESPONSE_ERROR, ie ) );
+                }
+            }
+
+            if ( next == endMarker )
+            {
+                LdapException searchFailure = failure.get();
+
+                if ( searchFailure != null )
+                {
+                    throw abort( searchFailure );
+                }
+
+                finish( ResultCodeEnum.SUCCESS );
+
+                return false;
+            }
+
+            if ( next instanceof SearchResultEntry )
+            {
+                if ( ( returnedDns != null ) && !returnedDns.add( ( ( SearchResultEntry ) next ).getObjectName().getNormName() ) )
+                {
+                    // Already returned by another partition
+                    continue;
+                }
+
+                returnedEntries++;
+
+                if ( ( sizeLimit > 0L ) && ( returnedEntries > sizeLimit ) )
+                {
+                    stop();
+                    finish( ResultCodeEnum.SIZE_LIMIT_EXCEEDED );
+
+                    return false;
+                }
+            }
+
+            response = next;
+
+            return true;
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Close the cursor because of an error
+     *
+     * @param cause The error
+     * @return The error to throw
+     */
+    private LdapException abort( LdapException cause )
+    {
+        try
+        {
+            close( cause );
+        }
+        catch ( IOException ioe )
+        {
+            return new LdapException( ioe.getMessage(), ioe );
+        }
+
+        return cause;
+    }
+
+
+    /**
+     * Stop the running searches
+     */
+    private void stop()
+    {
+        done = true;
+
+        if ( executor != null )
+        {
+            // Interrupt the threads waiting for some room in the queue
+            executor.shutdownNow();
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Response get() throws InvalidCursorPositionException
+    {
+        if ( !available() )
+        {
+            throw new InvalidCursorPositionException();
+        }
+
+        return response;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SearchResultDone getSearchResultDone()
+    {
+        return searchDoneResp;
+    }
+
+
+    /**
+     * @return The number of entries returned so far by this cursor
+     */
+    public long getEntryCount()
+    {
+        return returnedEntries;
+    }
+
+
+    /**
+     * @return The partition requests which have not been searched yet
+     */
+    public List<SearchRequest> getPendingPartitions()
+    {
+        return new ArrayList<>( partitions );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean available()
+    {
+        return response != null;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException
+    {
+        close( null );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close( Exception cause ) throws IOException
+    {
+        if ( LOG_CURSOR.isDebugEnabled() )
+        {
+            LOG_CURSOR.debug( I18n.msg( I18n.MSG_04171_CLOSING_SEARCH_CURSOR, this ) );
+        }
+
+        stop();
+        response = null;
+
+        if ( cause != null )
+        {
+            super.close( cause );
+        }
+        else
+        {
+            super.close();
+        }
+    }
+
+
+    // rest of all operations will throw UnsupportedOperationException
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public void after( Response element ) throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "after( Response element )" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterLast() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "afterLast()" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public void before( Response element ) throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "before( Response element )" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public void beforeFirst() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "beforeFirst()" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean first() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "first()" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean last() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "last()" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean previous() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "previous()" ) ) );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isDone()
+    {
+        return done;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isReferral()
+    {
+        return response instanceof SearchResultReference;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Referral getReferral() throws LdapException
+    {
+        if ( isReferral() )
+        {
+            return ( ( SearchResultReference ) response ).getReferral();
+        }
+
+        throw new LdapException();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEntry()
+    {
+        return response instanceof SearchResultEntry;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry getEntry() throws LdapException
+    {
+        if ( isEntry() )
+        {
+            return ( ( SearchResultEntry ) response ).getEntry();
+        }
+
+        if ( isReferral() )
+        {
+            Referral referral = ( ( SearchResultReference ) response ).getReferral();
+            throw new LdapReferralException( referral.getLdapUrls() );
+        }
+
+        throw new LdapException();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isIntermediate()
+    {
+        return response instanceof IntermediateResponse;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IntermediateResponse getIntermediate() throws LdapException
+    {
+        if ( isIntermediate() )
+        {
+            return ( IntermediateResponse ) response;
+        }
+
+        throw new LdapException();
+    }
+}
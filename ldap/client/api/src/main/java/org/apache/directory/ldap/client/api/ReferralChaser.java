@@ -0,0 +1,357 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.apache.directory.api.ldap.model.url.LdapUrl;
+
+
+/**
+ * Holds what is needed to chase the referrals returned by the searches : the connection
+ * pools to the referred servers, one per host, and the chasing limits. A ReferralChaser is
+ * set on a {@link LdapNetworkConnection}, and is used by the searches whose request asks for
+ * the referrals to be followed (see SearchRequest#followReferrals()). The same chaser can be
+ * shared by many connections, so that the connections to the referred servers are reused.
+ * <p>
+ * The connections to the referred servers are configured as the given configuration, the host,
+ * port and SSL usage being those of the referral URL. When the configuration uses SSL or TLS, the
+ * connections to the servers referred by a ldap:// URL use StartTLS. The configured name and
+ * credentials are only sent to the trusted hosts, which are by default the configured host only :
+ * the connections to the other hosts are bound anonymously.
+ * <p>
+ * The number of pools is bounded : when a referral to a new host is chased while the maximum is
+ * reached, the least recently used pool is closed.
+ * <pre>
+ * ReferralChaser chaser = new ReferralChaser( config );
+ * chaser.addTrustedHost( "replica.example.com" );
+ * connection.setReferralChaser( chaser );
+ *
+ * SearchRequest searchRequest = new SearchRequestImpl();
+ * ...
+ * searchRequest.followReferrals();
+ *
+ * try ( SearchCursor cursor = connection.search( searchRequest ) )
+ * {
+ *     ...
+ * }
+ *
+ * chaser.close();
+ * </pre>
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class ReferralChaser implements Closeable
+{
+    /** The default maximum number of referrals followed in a row */
+    public static final int DEFAULT_HOP_LIMIT = 5;
+
+    /** The default maximum number of referrals chased at the same time by a search */
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    /** The default maximum number of pools kept open */
+    public static final int DEFAULT_MAX_POOLS = 16;
+
+    /** The configuration of the connections to the referred servers */
+    private LdapConnectionConfig config;
+
+    /** The configuration of the pools */
+    private GenericObjectPoolConfig poolConfig;
+
+    /** The pools, per host, in access order */
+    private Map<String, LdapConnectionPool> pools = new LinkedHashMap<>( 16, 0.75f, true );
+
+    /** The maximum number of pools kept open */
+    private int maxPools = DEFAULT_MAX_POOLS;
+
+    /** The hosts the configured name and credentials can be sent to */
+    private Set<String> trustedHosts = ConcurrentHashMap.newKeySet();
+
+    /** The maximum number of referrals followed in a row */
+    private int hopLimit = DEFAULT_HOP_LIMIT;
+
+    /** The maximum number of referrals chased at the same time by a search */
+    private int parallelism = DEFAULT_PARALLELISM;
+
+
+    /**
+     * Creates a new instance of ReferralChaser.
+     *
+     * @param config The configuration of the connections to the referred servers
+     */
+    public ReferralChaser( LdapConnectionConfig config )
+    {
+        this( config, null );
+    }
+
+
+    /**
+     * Creates a new instance of ReferralChaser.
+     *
+     * @param config The configuration of the connections to the referred servers
+     * @param poolConfig The configuration of the pools, or null to use the default one
+     */
+    public ReferralChaser( LdapConnectionConfig config, GenericObjectPoolConfig poolConfig )
+    {
+        this.config = config;
+        this.poolConfig = poolConfig;
+
+        if ( config.getLdapHost() != null )
+        {
+            addTrustedHost( config.getLdapHost() );
+        }
+    }
+
+
+    /**
+     * @return The maximum number of referrals followed in a row
+     */
+    public int getHopLimit()
+    {
+        return hopLimit;
+    }
+
+
+    /**
+     * Set the maximum number of referrals followed in a row. A referral returned by a
+     * server which has been reached following this number of referrals is not chased : it
+     * is returned to the application as a SearchResultReference.
+     *
+     * @param hopLimit The maximum number of referrals followed in a row
+     */
+    public void setHopLimit( int hopLimit )
+    {
+        this.hopLimit = hopLimit;
+    }
+
+
+    /**
+     * @return The maximum number of referrals chased at the same time by a search
+     */
+    public int getParallelism()
+    {
+        return parallelism;
+    }
+
+
+    /**
+     * @param parallelism The maximum number of referrals chased at the same time by a search
+     */
+    public void setParallelism( int parallelism )
+    {
+        this.parallelism = Math.max( parallelism, 1 );
+    }
+
+
+    /**
+     * @return The maximum number of pools kept open
+     */
+    public int getMaxPools()
+    {
+        return maxPools;
+    }
+
+
+    /**
+     * @param maxPools The maximum number of pools kept open
+     */
+    public void setMaxPools( int maxPools )
+    {
+        this.maxPools = Math.max( maxPools, 1 );
+    }
+
+
+    /**
+     * Allow the configured name and credentials to be sent to a referred host
+     *
+     * @param host The trusted host
+     */
+    public void addTrustedHost( String host )
+    {
+        trustedHosts.add( host.toLowerCase( Locale.ROOT ) );
+    }
+
+
+    /**
+     * Tells if the configured name and credentials can be sent to a referred host
+     *
+     * @param host The referred host
+     * @return <code>true</code> if the host is trusted
+     */
+    public boolean isTrustedHost( String host )
+    {
+        return ( host != null ) && trustedHosts.contains( host.toLowerCase( Locale.ROOT ) );
+    }
+
+
+    /**
+     * Get the key of the server an URL refers to
+     *
+     * @param url The URL
+     * @return The server key, like "ldap://host:389"
+     */
+    static String serverKey( LdapUrl url )
+    {
+        boolean useSsl = LdapUrl.LDAPS_SCHEME.equals( url.getScheme() );
+        int port = url.getPort();
+
+        if ( port <= 0 )
+        {
+            port = useSsl ? LdapConnectionConfig.DEFAULT_LDAPS_PORT : LdapConnectionConfig.DEFAULT_LDAP_PORT;
+        }
+
+        return url.getScheme() + url.getHost().toLowerCase( Locale.ROOT ) + ':' + port;
+    }
+
+
+    /**
+     * Get a pool of connections to the server an URL refers to
+     *
+     * @param url The URL
+     * @return The connection pool
+     */
+    public LdapConnectionPool getPool( LdapUrl url )
+    {
+        String key = serverKey( url );
+        LdapConnectionPool pool;
+        LdapConnectionPool evicted = null;
+
+        synchronized ( pools )
+        {
+            pool = pools.get( key );
+
+            if ( pool == null )
+            {
+                if ( pools.size() >= maxPools )
+                {
+                    // Close the least recently used pool
+                    Iterator<LdapConnectionPool> eldest = pools.values().iterator();
+                    evicted = eldest.next();
+                    eldest.remove();
+                }
+
+                pool = createPool( createConfig( url ) );
+                pools.put( key, pool );
+            }
+        }
+
+        if ( evicted != null )
+        {
+            // The connections still in use are closed when they are released
+            evicted.close();
+        }
+
+        return pool;
+    }
+
+
+    /**
+     * Create the configuration of the connections to the server an URL refers to
+     */
+    private LdapConnectionConfig createConfig( LdapUrl url )
+    {
+        boolean useSsl = LdapUrl.LDAPS_SCHEME.equals( url.getScheme() );
+        LdapConnectionConfig urlConfig = new LdapConnectionConfig();
+
+        urlConfig.setLdapHost( url.getHost() );
+        urlConfig.setUseSsl( useSsl );
+
+        if ( url.getPort() > 0 )
+        {
+            urlConfig.setLdapPort( url.getPort() );
+        }
+        else
+        {
+            urlConfig.setLdapPort( useSsl ? LdapConnectionConfig.DEFAULT_LDAPS_PORT : LdapConnectionConfig.DEFAULT_LDAP_PORT );
+        }
+
+        // Never send in clear what has been protected on the original connection
+        urlConfig.setUseTls( !useSsl && ( config.isUseTls() || config.isUseSsl() ) );
+
+        if ( isTrustedHost( url.getHost() ) )
+        {
+            urlConfig.setName( config.getName() );
+            urlConfig.setCredentials( config.getCredentials() );
+        }
+
+        urlConfig.setTimeout( config.getTimeout() );
+        urlConfig.setSslProtocol( config.getSslProtocol() );
+        urlConfig.setKeyManagers( config.getKeyManagers() );
+        urlConfig.setSecureRandom( config.getSecureRandom() );
+        urlConfig.setEnabledCipherSuites( config.getEnabledCipherSuites() );
+        urlConfig.setBinaryAttributeDetector( config.getBinaryAttributeDetector() );
+        urlConfig.setLdapApiService( config.getLdapApiService() );
+
+        if ( config.getTrustManagers() != null )
+        {
+            urlConfig.setTrustManagers( config.getTrustManagers() );
+        }
+
+        if ( config.getEnabledProtocols() != null )
+        {
+            urlConfig.setEnabledProtocols( config.getEnabledProtocols() );
+        }
+
+        return urlConfig;
+    }
+
+
+    /**
+     * Create a pool of connections to a referred server. The connections are bound using
+     * the name and credentials of the given configuration, which are only set for the
+     * trusted hosts.
+     *
+     * @param urlConfig The configuration of the connections to the referred server
+     * @return The connection pool
+     */
+    protected LdapConnectionPool createPool( LdapConnectionConfig urlConfig )
+    {
+        DefaultLdapConnectionFactory factory = new DefaultLdapConnectionFactory( urlConfig );
+        factory.setLdapApiService( urlConfig.getLdapApiService() );
+
+        return new LdapConnectionPool( new ValidatingPoolableLdapConnectionFactory( factory ), poolConfig );
+    }
+
+
+    /**
+     * Close all the connection pools
+     */
+    @Override
+    public void close()
+    {
+        synchronized ( pools )
+        {
+            for ( LdapConnectionPool pool : pools.values() )
+            {
+                pool.close();
+            }
+
+            pools.clear();
+        }
+    }
+}
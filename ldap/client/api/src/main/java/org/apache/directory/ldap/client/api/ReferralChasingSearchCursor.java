@@ -0,0 +1,1007 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.model.constants.Loggers;
+import org.apache.directory.api.ldap.model.cursor.AbstractCursor;
+import org.apache.directory.api.ldap.model.cursor.CursorException;
+import org.apache.directory.api.ldap.model.cursor.InvalidCursorPositionException;
+import org.apache.directory.api.ldap.model.cursor.SearchCursor;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.exception.LdapReferralException;
+import org.apache.directory.api.ldap.model.exception.LdapURLEncodingException;
+import org.apache.directory.api.ldap.model.message.IntermediateResponse;
+import org.apache.directory.api.ldap.model.message.Referral;
+import org.apache.directory.api.ldap.model.message.Response;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchResultReference;
+import org.apache.directory.api.ldap.model.message.SearchResultReferenceImpl;
+import org.apache.directory.api.ldap.model.message.controls.PagedResults;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.url.LdapUrl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A SearchCursor which follows the referrals returned by a search : the continuation
+ * references (SearchResultReference) and the referral result of the search itself. The
+ * referred servers are searched in parallel, using the connection pools of a
+ * {@link ReferralChaser}, and their responses are merged with the responses of the
+ * original search, in no particular order.
+ * <p>
+ * The URLs of a referral are alternatives : the first one that can be searched is used.
+ * A referral is not chased when one of its targets has already been searched by this cursor,
+ * which breaks the loops, or when the hop limit is reached. The referrals that can't be
+ * chased, because of the hop limit or because none of their servers can be searched, are
+ * returned to the application as SearchResultReferences. If a referred server fails after
+ * some of its entries have been returned, its referral is returned too, after these entries.
+ * <p>
+ * The target of a referral is searched using the original request, with the base, scope and
+ * filter given by the URL, if any. The request size limit is applied to the whole search.
+ * <p>
+ * This cursor is returned by the LdapNetworkConnection searches when a ReferralChaser has
+ * been set, and when the request asks for the referrals to be followed.
+ * Note: This is a forward only cursor hence the only valid operations are next(), get() and close()
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class ReferralChasingSearchCursor extends AbstractCursor<Response> implements SearchCursor
+{
+    /** A dedicated log for cursors */
+    private static final Logger LOG_CURSOR = LoggerFactory.getLogger( Loggers.CURSOR_LOG.getName() );
+
+    /** The logger for this class */
+    private static final Logger LOG = LoggerFactory.getLogger( ReferralChasingSearchCursor.class );
+
+    /** The default number of responses kept in memory */
+    public static final int DEFAULT_QUEUE_SIZE = 1024;
+
+    /** The cursor on the original search */
+    private SearchCursor origin;
+
+    /** The original search request */
+    private SearchRequest searchRequest;
+
+    /** The chaser, providing the connections */
+    private ReferralChaser chaser;
+
+    /** The maximum number of entries to return, 0 if there is no limit */
+    private long sizeLimit;
+
+    /** The responses returned by the referred servers */
+    private BlockingQueue<Response> responses;
+
+    /** The marker pushed when all the searches are done */
+    private final SearchResultDone endMarker = new SearchResultDoneImpl();
+
+    /** The threads chasing the referrals, created when the first referral is chased */
+    private ExecutorService executor;
+
+    /** The number of running searches, including the original search */
+    private AtomicInteger runningSearches = new AtomicInteger( 1 );
+
+    /** The targets already searched */
+    private Set<String> searchedTargets = ConcurrentHashMap.newKeySet();
+
+    /** The first SearchResultDone which was not successful */
+    private AtomicReference<SearchResultDone> failedDone = new AtomicReference<>();
+
+    /** The number of chased referrals */
+    private AtomicInteger chasedReferrals = new AtomicInteger();
+
+    /** Tells if all the responses of the original search have been read */
+    private boolean originDone;
+
+    /** Tells if the original search was the last one running */
+    private boolean originLast;
+
+    /** The number of entries returned by the cursor */
+    private long returnedEntries;
+
+    /** a reference to hold the current response */
+    private Response response;
+
+    /** the done flag */
+    private volatile boolean done;
+
+    /** a reference to hold the final SearchResultDone response */
+    private SearchResultDone searchDoneResp;
+
+
+    /**
+     * A referred server to search
+     */
+    private static final class Target
+    {
+        /** The referral URL */
+        private final LdapUrl url;
+
+        /** The request to send */
+        private final SearchRequest request;
+
+
+        private Target( LdapUrl url, SearchRequest request )
+        {
+            this.url = url;
+            this.request = request;
+        }
+    }
+
+
+    /**
+     * Creates a new ReferralChasingSearchCursor.
+     *
+     * @param origin The cursor on the original search
+     * @param searchRequest The original search request
+     * @param chaser The chaser providing the connections to the referred servers
+     */
+    public ReferralChasingSearchCursor( SearchCursor origin, SearchRequest searchRequest, ReferralChaser chaser )
+    {
+        if ( LOG_CURSOR.isDebugEnabled() )
+        {
+            LOG_CURSOR.debug( I18n.msg( I18n.MSG_04170_CREATING_SEARCH_CURSOR, this ) );
+        }
+
+        this.origin = origin;
+        this.searchRequest = searchRequest;
+        this.chaser = chaser;
+        this.sizeLimit = Math.max( 0L, searchRequest.getSizeLimit() );
+        responses = new ArrayBlockingQueue<>( DEFAULT_QUEUE_SIZE );
+    }
+
+
+    /**
+     * Tells the cursor which server the original search is sent to, so that a referral
+     * back to this server and this search base is not chased.
+     *
+     * @param server The URL of the server, only its scheme, host and port are used
+     */
+    public void setOrigin( LdapUrl server )
+    {
+        searchedTargets.add( targetKey( server, searchRequest ) );
+    }
+
+
+    /**
+     * Get the key identifying a search on a server
+     */
+    private static String targetKey( LdapUrl server, SearchRequest request )
+    {
+        return ReferralChaser.serverKey( server ) + '/' + request.getBase().getNormName() + '?'
+            + request.getScope() + '?' + request.getFilter();
+    }
+
+
+    /**
+     * Tells if a referral URL contains a scope. If it does not, the scope of the
+     * original request is used.
+     */
+    private static boolean hasScope( String url )
+    {
+        int schemeEnd = url.indexOf( "://" );
+        int dnStart = url.indexOf( '/', schemeEnd + 3 );
+
+        if ( ( schemeEnd < 0 ) || ( dnStart < 0 ) )
+        {
+            return false;
+        }
+
+        // dn?attributes?scope?filter?extensions
+        String[] parts = url.substring( dnStart + 1 ).split( "\\?", -1 );
+
+        return ( parts.length > 2 ) && !parts[2].isEmpty();
+    }
+
+
+    /**
+     * Creates the request used to search a referred server, copying the original request
+     *
+     * @param url The referral URL
+     * @param rawUrl The referral URL, as returned by the server
+     * @return The request to send to the referred server
+     * @throws LdapException If the URL filter is invalid
+     */
+    private SearchRequest createReferralRequest( LdapUrl url, String rawUrl ) throws LdapException
+    {
+        SearchRequest referralRequest = new SearchRequestImpl();
+        Dn base = url.getDn();
+
+        referralRequest.setBase( ( base == null ) || base.isEmpty() ? searchRequest.getBase() : base );
+        referralRequest.setScope( hasScope( rawUrl ) ? url.getScope() : searchRequest.getScope() );
+
+        if ( url.getFilter() != null )
+        {
+            referralRequest.setFilter( url.getFilter() );
+        }
+        else
+        {
+            referralRequest.setFilter( searchRequest.getFilter() );
+        }
+
+        referralRequest.setDerefAliases( searchRequest.getDerefAliases() );
+        referralRequest.setSizeLimit( searchRequest.getSizeLimit() );
+        referralRequest.setTimeLimit( searchRequest.getTimeLimit() );
+        referralRequest.setTypesOnly( searchRequest.getTypesOnly() );
+        referralRequest.addAttributes( searchRequest.getAttributes().toArray( new String[0] ) );
+
+        // A PagedResults cookie is only valid on the server which created it
+        searchRequest.getControls().values().stream()
+            .filter( control -> !PagedResults.OID.equals( control.getOid() ) )
+            .forEach( referralRequest::addControl );
+
+        return referralRequest;
+    }
+
+
+    /**
+     * Start chasing a referral, if possible.
+     *
+     * @param referral The response containing the referral
+     * @param urls The referral URLs, which are alternatives
+     * @param hops The number of referrals followed to reach the referred server
+     * @return <code>true</code> if the referral is being chased, or has been ignored because
+     * of a loop, <code>false</code> if it can't be chased
+     */
+    private boolean chase( Response referral, Collection<String> urls, int hops )
+    {
+        if ( done )
+        {
+            return true;
+        }
+
+        if ( hops > chaser.getHopLimit() )
+        {
+            if ( LOG.isDebugEnabled() )
+            {
+                LOG.debug( I18n.msg( I18n.MSG_04194_REFERRAL_HOP_LIMIT, urls, chaser.getHopLimit() ) );
+            }
+
+            return false;
+        }
+
+        List<Target> targets = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+
+        for ( String rawUrl : urls )
+        {
+            try
+            {
+                LdapUrl url = new LdapUrl( rawUrl );
+
+                if ( url.getHost() == null )
+                {
+                    throw new LdapURLEncodingException( rawUrl );
+                }
+
+                SearchRequest referralRequest = createReferralRequest( url, rawUrl );
+                String key = targetKey( url, referralRequest );
+
+                if ( searchedTargets.contains( key ) )
+                {
+                    if ( LOG.isDebugEnabled() )
+                    {
+                        LOG.debug( I18n.msg( I18n.MSG_04193_REFERRAL_LOOP, rawUrl ) );
+                    }
+
+                    return true;
+                }
+
+                keys.add( key );
+                targets.add( new Target( url, referralRequest ) );
+            }
+            catch ( LdapException e )
+            {
+                LOG.warn( I18n.err( I18n.ERR_04197_REFERRAL_CHASING_FAILED, rawUrl, e.getMessage() ) );
+            }
+        }
+
+        if ( targets.isEmpty() )
+        {
+            return false;
+        }
+
+        searchedTargets.addAll( keys );
+        runningSearches.incrementAndGet();
+
+        try
+        {
+            getExecutor().execute( () -> searchReferral( referral, targets, hops ) );
+            chasedReferrals.incrementAndGet();
+
+            return true;
+        }
+        catch ( RejectedExecutionException ree )
+        {
+            // The cursor has been closed
+            runningSearches.decrementAndGet();
+
+            return true;
+        }
+    }
+
+
+    /**
+     * @return The executor running the referral searches, created on the first call
+     */
+    private synchronized ExecutorService getExecutor()
+    {
+        if ( done )
+        {
+            throw new RejectedExecutionException();
+        }
+
+        if ( executor == null )
+        {
+            executor = Executors.newFixedThreadPool( chaser.getParallelism() );
+        }
+
+        return executor;
+    }
+
+
+    /**
+     * Convert a referral to a SearchResultReference, to be returned to the application
+     */
+    private Response asReference( Response referral )
+    {
+        if ( referral instanceof SearchResultReference )
+        {
+            return referral;
+        }
+
+        SearchResultReference reference = new SearchResultReferenceImpl( searchRequest.getMessageId() );
+        reference.setReferral( ( ( SearchResultDone ) referral ).getLdapResult().getReferral() );
+
+        return reference;
+    }
+
+
+    /**
+     * Search a referred server, trying each alternative until one can be searched, and push
+     * its responses in the queue. Runs in the executor threads.
+     *
+     * @param referral The response containing the referral
+     * @param targets The alternative targets
+     * @param hops The number of referrals followed to reach the referred server
+     */
+    private void searchReferral( Response referral, List<Target> targets, int hops )
+    {
+        try
+        {
+            for ( Target target : targets )
+            {
+                LdapConnectionPool pool = chaser.getPool( target.url );
+                LdapConnection connection = null;
+
+                try
+                {
+                    connection = pool.getConnection();
+
+                    if ( LOG.isDebugEnabled() )
+                    {
+                        LOG.debug( I18n.msg( I18n.MSG_04192_CHASING_REFERRAL, target.url, hops ) );
+                    }
+
+                    searchTarget( connection, referral, target, hops );
+
+                    return;
+                }
+                catch ( LdapException | CursorException | IOException e )
+                {
+                    LOG.warn( I18n.err( I18n.ERR_04197_REFERRAL_CHASING_FAILED, target.url, e.getMessage() ) );
+                }
+                finally
+                {
+                    if ( connection != null )
+                    {
+                        pool.releaseConnection( connection );
+                    }
+                }
+            }
+
+            // None of the alternatives could be searched
+            if ( !done )
+            {
+                responses.put( asReference( referral ) );
+            }
+        }
+        catch ( InterruptedException ie )
+        {
+            // The cursor has been closed
+            Thread.currentThread().interrupt();
+        }
+        catch ( LdapException le )
+        {
+            LOG.warn( I18n.err( I18n.ERR_04197_REFERRAL_CHASING_FAILED, referral, le.getMessage() ) );
+        }
+        finally
+        {
+            if ( runningSearches.decrementAndGet() == 0 )
+            {
+                try
+                {
+                    if ( !done )
+                    {
+                        responses.put( endMarker );
+                    }
+                }
+                catch ( InterruptedException ie )
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Search a referred server, and push its responses in the queue
+     *
+     * @param connection The connection to the referred server
+     * @param referral The response containing the referral
+     * @param target The target to search
+     * @param hops The number of referrals followed to reach the referred server
+     * @throws LdapException If the search failed before any response was returned
+     * @throws CursorException If the search failed before any response was returned
+     * @throws IOException If the search cursor can't be closed
+     * @throws InterruptedException If the cursor has been closed
+     */
+    private void searchTarget( LdapConnection connection, Response referral, Target target, int hops )
+        throws LdapException, CursorException, IOException, InterruptedException
+    {
+        boolean returned = false;
+
+        try ( SearchCursor cursor = connection.search( target.request ) )
+        {
+            while ( !done && cursor.next() )
+            {
+                Response next = cursor.get();
+                returned = true;
+
+                if ( next instanceof SearchResultReference )
+                {
+                    if ( !chase( next, ( ( SearchResultReference ) next ).getReferral().getLdapUrls(), hops + 1 ) )
+                    {
+                        responses.put( next );
+                    }
+                }
+                else
+                {
+                    responses.put( next );
+                }
+            }
+
+            SearchResultDone targetDone = cursor.getSearchResultDone();
+
+            if ( targetDone != null )
+            {
+                targetDone( targetDone, hops );
+            }
+        }
+        catch ( LdapException | CursorException e )
+        {
+            if ( !returned )
+            {
+                // The next alternative can be tried
+                throw e;
+            }
+
+            // Some responses have already been returned, the referral is returned too
+            LOG.warn( I18n.err( I18n.ERR_04197_REFERRAL_CHASING_FAILED, target.url, e.getMessage() ) );
+            responses.put( asReference( referral ) );
+        }
+    }
+
+
+    /**
+     * Process the SearchResultDone of a referred server
+     *
+     * @param targetDone The SearchResultDone
+     * @param hops The number of referrals followed to reach the referred server
+     * @throws InterruptedException If the cursor has been closed
+     */
+    private void targetDone( SearchResultDone targetDone, int hops ) throws InterruptedException
+    {
+        ResultCodeEnum resultCode = targetDone.getLdapResult().getResultCode();
+
+        if ( resultCode == ResultCodeEnum.REFERRAL )
+        {
+            if ( !chase( targetDone, targetDone.getLdapResult().getReferral().getLdapUrls(), hops + 1 ) )
+            {
+                responses.put( asReference( targetDone ) );
+            }
+        }
+        else if ( resultCode != ResultCodeEnum.SUCCESS )
+        {
+            failedDone.compareAndSet( null, targetDone );
+        }
+    }
+
+
+    /**
+     * Process the SearchResultDone of the original search, once all its responses have been read
+     */
+    private void originDone()
+    {
+        originDone = true;
+        SearchResultDone originResult = origin.getSearchResultDone();
+
+        if ( originResult != null )
+        {
+            ResultCodeEnum resultCode = originResult.getLdapResult().getResultCode();
+
+            if ( resultCode == ResultCodeEnum.REFERRAL )
+            {
+                // The search base is held by another server
+                if ( !chase( originResult, originResult.getLdapResult().getReferral().getLdapUrls(), 1 ) )
+                {
+                    failedDone.compareAndSet( null, originResult );
+                }
+            }
+            else if ( resultCode != ResultCodeEnum.SUCCESS )
+            {
+                failedDone.compareAndSet( null, originResult );
+            }
+        }
+
+        // If no referral is being chased, the queue is complete
+        originLast = runningSearches.decrementAndGet() == 0;
+    }
+
+
+    /**
+     * Create the SearchResultDone returned at the end of the search
+     *
+     * @param resultCode The result code
+     */
+    private void finish( ResultCodeEnum resultCode )
+    {
+        SearchResultDone failed = failedDone.get();
+
+        if ( ( resultCode == ResultCodeEnum.SUCCESS ) && ( failed != null ) )
+        {
+            searchDoneResp = failed;
+        }
+        else
+        {
+            searchDoneResp = new SearchResultDoneImpl( searchRequest.getMessageId() );
+            searchDoneResp.getLdapResult().setResultCode( resultCode );
+        }
+
+        response = null;
+        stop();
+    }
+
+
+    /**
+     * Read the next response, from the referred servers first, then from the original search
+     *
+     * @return The next response
+     * @throws LdapException If the original search failed
+     * @throws CursorException If the original search failed
+     * @throws InterruptedException If the thread has been interrupted
+     */
+    private Response nextResponse() throws LdapException, CursorException, InterruptedException
+    {
+        while ( !originDone )
+        {
+            Response next = responses.poll();
+
+            if ( next != null )
+            {
+                return next;
+            }
+
+            if ( !origin.next() )
+            {
+                originDone();
+                break;
+            }
+
+            next = origin.get();
+
+            if ( !( next instanceof SearchResultReference )
+                || !chase( next, ( ( SearchResultReference ) next ).getReferral().getLdapUrls(), 1 ) )
+            {
+                return next;
+            }
+        }
+
+        if ( originLast )
+        {
+            // Nothing is pushed in the queue anymore
+            Response next = responses.poll();
+
+            return next == null ? endMarker : next;
+        }
+
+        return responses.take();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean next() throws LdapException, CursorException
+    {
+        while ( !done )
+        {
+            Response next;
+
+            try
+            {
+                next = nextResponse();
+            }
+            catch ( InterruptedException ie )
+            {
+                Thread.currentThread().interrupt();
+
+                throw abort( new LdapException( LdapNetworkConnection.NO_RESPONSE_ERROR, ie ) );
+            }
+            catch ( LdapException le )
+            {
+                throw abort( le );
+            }
+
+            if ( next == endMarker )
+            {
+                finish( ResultCodeEnum.SUCCESS );
+
+                return false;
+            }
+
+            if ( next instanceof SearchResultEntry )
+            {
+                returnedEntries++;
+
+                if ( ( sizeLimit > 0L ) && ( returnedEntries > sizeLimit ) )
+                {
+                    finish( ResultCodeEnum.SIZE_LIMIT_EXCEEDED );
+
+                    return false;
+                }
+            }
+
+            response = next;
+
+            return true;
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Close the cursor because of an error
+     *
+     * @param cause The error
+     * @return The error to throw
+     */
+    private LdapException abort( LdapException cause )
+    {
+        try
+        {
+            close( cause );
+        }
+        catch ( IOException ioe )
+        {
+            return new LdapException( ioe.getMessage(), ioe );
+        }
+
+        return cause;
+    }
+
+
+    /**
+     * Stop the running searches
+     */
+    private synchronized void stop()
+    {
+        done = true;
+
+        if ( executor != null )
+        {
+            // Interrupt the threads waiting for some room in the queue
+            executor.shutdownNow();
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Response get() throws InvalidCursorPositionException
+    {
+        if ( !available() )
+        {
+            throw new InvalidCursorPositionException();
+        }
+
+        return response;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SearchResultDone getSearchResultDone()
+    {
+        return searchDoneResp;
+    }
+
+
+    /**
+     * @return The number of referrals chased so far
+     */
+    public int getChasedReferrals()
+    {
+        return chasedReferrals.get();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean available()
+    {
+        return response != null;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException
+    {
+        close( null );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close( Exception cause ) throws IOException
+    {
+        if ( LOG_CURSOR.isDebugEnabled() )
+        {
+            LOG_CURSOR.debug( I18n.msg( I18n.MSG_04171_CLOSING_SEARCH_CURSOR, this ) );
+        }
+
+        stop();
+        response = null;
+
+        if ( cause != null )
+        {
+            origin.close( cause );
+            super.close( cause );
+        }
+        else
+        {
+            origin.close();
+            super.close();
+        }
+    }
+
+
+    // rest of all operations will throw UnsupportedOperationException
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public void after( Response element ) throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "after( Response element )" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterLast() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "afterLast()" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public void before( Response element ) throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "before( Response element )" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public void beforeFirst() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "beforeFirst()" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean first() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "first()" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean last() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "last()" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean previous() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "previous()" ) ) );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isDone()
+    {
+        return done;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isReferral()
+    {
+        return response instanceof SearchResultReference;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Referral getReferral() throws LdapException
+    {
+        if ( isReferral() )
+        {
+            return ( ( SearchResultReference ) response ).getReferral();
+        }
+
+        throw new LdapException();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEntry()
+    {
+        return response instanceof SearchResultEntry;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry getEntry() throws LdapException
+    {
+        if ( isEntry() )
+        {
+            return ( ( SearchResultEntry ) response ).getEntry();
+        }
+
+        if ( isReferral() )
+        {
+            Referral referral = ( ( SearchResultReference ) response ).getReferral();
+            throw new LdapReferralException( referral.getLdapUrls() );
+        }
+
+        throw new LdapException();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isIntermediate()
+    {
+        return response instanceof IntermediateResponse;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IntermediateResponse getIntermediate() throws LdapException
+    {
+        if ( isIntermediate() )
+        {
+            return ( IntermediateResponse ) response;
+        }
+
+        throw new LdapException();
+    }
+}
@@ -0,0 +1,1013 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.model.constants.Loggers;
+import org.apache.directory.api.ldap.model.cursor.AbstractCursor;
+import org.apache.directory.api.ldap.model.cursor.CursorException;
+import org.apache.directory.api.ldap.model.cursor.InvalidCursorPositionException;
+import org.apache.directory.api.ldap.model.cursor.SearchCursor;
+import org.apache.directory.api.ldap.model.entry.Attribute;
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.entry.Value;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.exception.LdapReferralException;
+import org.apache.directory.api.ldap.model.message.IntermediateResponse;
+import org.apache.directory.api.ldap.model.message.Referral;
+import org.apache.directory.api.ldap.model.message.Response;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchResultEntryImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultReference;
+import org.apache.directory.api.ldap.model.message.controls.SortKey;
+import org.apache.directory.api.ldap.model.schema.AttributeType;
+import org.apache.directory.api.ldap.model.schema.LdapComparator;
+import org.apache.directory.api.ldap.model.schema.MatchingRule;
+import org.apache.directory.api.ldap.model.schema.Normalizer;
+import org.apache.directory.api.ldap.model.schema.SchemaManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A SearchCursor which sorts the entries returned by another SearchCursor on the client side,
+ * for servers which don't support the SortRequest control (RFC 2891).
+ * <p>
+ * The entries are compared using the ordering MatchingRule of the sort key attributes, or the
+ * MatchingRule given in the sort key, when a SchemaManager is available. When the attribute has
+ * no ordering MatchingRule, the comparator of its equality MatchingRule is used, and otherwise
+ * the values are compared as they are. For multi-valued attributes, the value which sorts first
+ * is used. The entries which don't have a sort key attribute are returned after the others.
+ * <p>
+ * All the entries are read when the cursor is first moved. They are kept in memory up to a
+ * given number : beyond that, the entries in memory are sorted and written to a temporary file,
+ * and the sorted files are merged at the end. The referrals and the intermediate responses are
+ * returned before the entries. The sorted entries are returned without their controls, whether
+ * they have been kept in memory or written in a file.
+ * <p>
+ * Note: This is a forward only cursor hence the only valid operations are next(), get() and close()
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class SortingSearchCursor extends AbstractCursor<Response> implements SearchCursor
+{
+    /** A dedicated log for cursors */
+    private static final Logger LOG_CURSOR = LoggerFactory.getLogger( Loggers.CURSOR_LOG.getName() );
+
+    /** The default maximum number of entries kept in memory */
+    public static final int DEFAULT_MAX_ENTRIES_IN_MEMORY = 10000;
+
+    /** The sorted cursor */
+    private SearchCursor wrapped;
+
+    /** The SchemaManager used to compare the values, if any */
+    private SchemaManager schemaManager;
+
+    /** The sort keys */
+    private List<KeyComparator> keys = new ArrayList<>();
+
+    /** The comparator used to sort the entries */
+    private Comparator<SortedEntry> entryComparator;
+
+    /** The maximum number of entries kept in memory */
+    private int maxEntriesInMemory = DEFAULT_MAX_ENTRIES_IN_MEMORY;
+
+    /** The directory where the temporary files are created, the default temporary directory if null */
+    private Path tempDirectory;
+
+    /** The temporary files */
+    private List<Path> runFiles = new ArrayList<>();
+
+    /** The sorted runs being merged */
+    private PriorityQueue<Run> runs;
+
+    /** The responses which are not entries, returned first */
+    private Queue<Response> otherResponses = new ArrayDeque<>();
+
+    /** The messageId of the entries */
+    private int messageId;
+
+    /** Tells if the entries have been sorted */
+    private boolean sorted;
+
+    /** a reference to hold the current response */
+    private Response response;
+
+    /** the done flag */
+    private boolean done;
+
+    /** a reference to hold the last SearchResultDone response */
+    private SearchResultDone searchDoneResp;
+
+
+    /**
+     * An entry, with its sort key values
+     */
+    private static final class SortedEntry
+    {
+        /** The entry */
+        private final SearchResultEntry entry;
+
+        /** The sort key values, null if the entry does not have the attribute */
+        private final Object[] keyValues;
+
+
+        private SortedEntry( SearchResultEntry entry, Object[] keyValues )
+        {
+            this.entry = entry;
+            this.keyValues = keyValues;
+        }
+    }
+
+
+    /**
+     * The comparison of the entries using a sort key
+     */
+    private static final class KeyComparator
+    {
+        /** The sort key */
+        private final SortKey sortKey;
+
+        /** The normalizer to apply on the values, if any */
+        private Normalizer normalizer;
+
+        /** The ordering comparator, if any */
+        private LdapComparator<? super Object> comparator;
+
+
+        /**
+         * Creates a new KeyComparator, looking for the MatchingRule to use in the schema
+         *
+         * @param sortKey The sort key
+         * @param schemaManager The SchemaManager, may be null
+         */
+        private KeyComparator( SortKey sortKey, SchemaManager schemaManager )
+        {
+            this.sortKey = sortKey;
+
+            if ( schemaManager == null )
+            {
+                return;
+            }
+
+            try
+            {
+                MatchingRule matchingRule;
+
+                if ( sortKey.getMatchingRuleId() != null )
+                {
+                    matchingRule = schemaManager.lookupMatchingRuleRegistry( sortKey.getMatchingRuleId() );
+                }
+                else
+                {
+                    AttributeType attributeType = schemaManager.lookupAttributeTypeRegistry(
+                        sortKey.getAttributeTypeDesc() );
+                    matchingRule = attributeType.getOrdering();
+
+                    if ( matchingRule == null )
+                    {
+                        // The equality comparators also order the values
+                        matchingRule = attributeType.getEquality();
+                    }
+                }
+
+                if ( matchingRule == null )
+                {
+                    return;
+                }
+
+                normalizer = matchingRule.getNormalizer();
+                comparator = matchingRule.getLdapComparator();
+            }
+            catch ( LdapException le )
+            {
+                // Unknown in the schema : compare the values as they are
+                if ( LOG_CURSOR.isDebugEnabled() )
+                {
+                    LOG_CURSOR.debug( le.getMessage() );
+                }
+            }
+        }
+
+
+        /**
+         * Get the value of an entry used to sort it : the one which sorts first.
+         *
+         * @param entry The entry
+         * @return The sort value, or null if the entry does not have the attribute
+         */
+        private Object getKeyValue( Entry entry )
+        {
+            Attribute attribute = entry.get( sortKey.getAttributeTypeDesc() );
+
+            if ( attribute == null )
+            {
+                return null;
+            }
+
+            Object keyValue = null;
+
+            for ( Value value : attribute )
+            {
+                Object normalized = normalize( value );
+
+                if ( ( keyValue == null ) || ( compare( normalized, keyValue ) < 0 ) )
+                {
+                    keyValue = normalized;
+                }
+            }
+
+            return keyValue;
+        }
+
+
+        /**
+         * Normalize a value
+         *
+         * @param value The value
+         * @return The normalized String, or the bytes of a binary value
+         */
+        private Object normalize( Value value )
+        {
+            if ( !value.isHumanReadable() )
+            {
+                return value.getBytes();
+            }
+
+            String string = value.getString();
+
+            if ( normalizer != null )
+            {
+                try
+                {
+                    return normalizer.normalize( string );
+                }
+                catch ( LdapException le )
+                {
+                    // Use the value as it is
+                }
+            }
+
+            return string;
+        }
+
+
+        /**
+         * Compare two normalized values, in the sort key order
+         *
+         * @param value1 The first value
+         * @param value2 The second value
+         * @return The comparison result
+         */
+        private int compare( Object value1, Object value2 )
+        {
+            int result = compareAscending( value1, value2 );
+
+            return sortKey.isReverseOrder() ? -result : result;
+        }
+
+
+        /**
+         * Compare two normalized values
+         *
+         * @param value1 The first value
+         * @param value2 The second value
+         * @return The comparison result
+         */
+        private int compareAscending( Object value1, Object value2 )
+        {
+            if ( value1 instanceof String )
+            {
+                if ( !( value2 instanceof String ) )
+                {
+                    return -1;
+                }
+
+                if ( comparator != null )
+                {
+                    try
+                    {
+                        return comparator.compare( value1, value2 );
+                    }
+                    catch ( RuntimeException re )
+                    {
+                        // The comparator can't handle those values
+                    }
+                }
+
+                return ( ( String ) value1 ).compareTo( ( String ) value2 );
+            }
+
+            if ( value2 instanceof String )
+            {
+                return 1;
+            }
+
+            byte[] bytes1 = ( byte[] ) value1;
+            byte[] bytes2 = ( byte[] ) value2;
+
+            for ( int i = 0; i < Math.min( bytes1.length, bytes2.length ); i++ )
+            {
+                int result = ( bytes1[i] & 0xFF ) - ( bytes2[i] & 0xFF );
+
+                if ( result != 0 )
+                {
+                    return result;
+                }
+            }
+
+            return bytes1.length - bytes2.length;
+        }
+    }
+
+
+    /**
+     * A sorted run of entries, either in memory or in a temporary file
+     */
+    private final class Run implements Closeable
+    {
+        /** The index of the run, used to keep the order of equal entries */
+        private final int index;
+
+        /** The entries, for a run in memory */
+        private Iterator<SortedEntry> entries;
+
+        /** The stream, for a run in a file */
+        private ObjectInputStream in;
+
+        /** The file */
+        private Path file;
+
+        /** The number of entries not yet read from the file */
+        private int remaining;
+
+        /** The current entry of the run */
+        private SortedEntry head;
+
+
+        /**
+         * Creates a run in memory
+         */
+        private Run( int index, List<SortedEntry> entries )
+        {
+            this.index = index;
+            this.entries = entries.iterator();
+        }
+
+
+        /**
+         * Creates a run reading a file
+         */
+        private Run( int index, Path file ) throws IOException
+        {
+            this.index = index;
+            this.file = file;
+            in = new ObjectInputStream( new BufferedInputStream( Files.newInputStream( file ) ) );
+            remaining = in.readInt();
+        }
+
+
+        /**
+         * Read the next entry of the run
+         *
+         * @return <code>false</code> if the run is exhausted
+         */
+        private boolean advance() throws IOException
+        {
+            head = null;
+
+            if ( entries != null )
+            {
+                if ( entries.hasNext() )
+                {
+                    head = entries.next();
+                }
+            }
+            else if ( remaining > 0 )
+            {
+                Entry entry = new DefaultEntry( schemaManager );
+
+                try
+                {
+                    entry.readExternal( in );
+                }
+                catch ( ClassNotFoundException cnfe )
+                {
+                    throw new IOException( cnfe.getMessage(), cnfe );
+                }
+
+                remaining--;
+                SearchResultEntry resultEntry = new SearchResultEntryImpl( messageId );
+                resultEntry.setEntry( entry );
+                head = createSortedEntry( resultEntry );
+            }
+
+            return head != null;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() throws IOException
+        {
+            if ( in != null )
+            {
+                in.close();
+                in = null;
+                Files.deleteIfExists( file );
+            }
+        }
+    }
+
+
+    /**
+     * Instantiates a new sorting search cursor.
+     *
+     * @param cursor The cursor to sort
+     * @param schemaManager The SchemaManager used to find the MatchingRules, may be null
+     * @param sortKeys The sort keys, in order of precedence
+     */
+    public SortingSearchCursor( SearchCursor cursor, SchemaManager schemaManager, SortKey... sortKeys )
+    {
+        if ( ( sortKeys == null ) || ( sortKeys.length == 0 ) )
+        {
+            throw new IllegalArgumentException( I18n.err( I18n.ERR_04191_NO_SORT_KEY ) );
+        }
+
+        if ( LOG_CURSOR.isDebugEnabled() )
+        {
+            LOG_CURSOR.debug( I18n.msg( I18n.MSG_04170_CREATING_SEARCH_CURSOR, this ) );
+        }
+
+        this.wrapped = cursor;
+        this.schemaManager = schemaManager;
+
+        for ( SortKey sortKey : sortKeys )
+        {
+            keys.add( new KeyComparator( sortKey, schemaManager ) );
+        }
+
+        entryComparator = this::compare;
+    }
+
+
+    /**
+     * @param maxEntriesInMemory The maximum number of entries kept in memory before writing them
+     * in a temporary file
+     */
+    public void setMaxEntriesInMemory( int maxEntriesInMemory )
+    {
+        this.maxEntriesInMemory = Math.max( 1, maxEntriesInMemory );
+    }
+
+
+    /**
+     * @param tempDirectory The directory where the temporary files are created. The default
+     * temporary directory is used if null.
+     */
+    public void setTempDirectory( Path tempDirectory )
+    {
+        this.tempDirectory = tempDirectory;
+    }
+
+
+    /**
+     * @return The number of temporary files which have been written
+     */
+    public int getRunCount()
+    {
+        return runFiles.size();
+    }
+
+
+    /**
+     * Compute the sort values of an entry
+     *
+     * @param entry The entry
+     * @return The entry with its sort values
+     */
+    private SortedEntry createSortedEntry( SearchResultEntry entry )
+    {
+        Object[] keyValues = new Object[keys.size()];
+
+        for ( int i = 0; i < keyValues.length; i++ )
+        {
+            keyValues[i] = keys.get( i ).getKeyValue( entry.getEntry() );
+        }
+
+        return new SortedEntry( entry, keyValues );
+    }
+
+
+    /**
+     * Compare two entries, using all the sort keys
+     *
+     * @param entry1 The first entry
+     * @param entry2 The second entry
+     * @return The comparison result
+     */
+    private int compare( SortedEntry entry1, SortedEntry entry2 )
+    {
+        for ( int i = 0; i < keys.size(); i++ )
+        {
+            Object value1 = entry1.keyValues[i];
+            Object value2 = entry2.keyValues[i];
+            int result;
+
+            if ( value1 == null )
+            {
+                // The entries without the attribute are placed at the end
+                result = value2 == null ? 0 : 1;
+            }
+            else if ( value2 == null )
+            {
+                result = -1;
+            }
+            else
+            {
+                result = keys.get( i ).compare( value1, value2 );
+            }
+
+            if ( result != 0 )
+            {
+                return result;
+            }
+        }
+
+        return 0;
+    }
+
+
+    /**
+     * Read all the responses of the wrapped cursor, sort the entries, writing them in temporary
+     * files when there are too many, and prepare the merge.
+     */
+    private void sort() throws LdapException, CursorException
+    {
+        List<SortedEntry> entries = new ArrayList<>();
+
+        try
+        {
+            while ( wrapped.next() )
+            {
+                Response received = wrapped.get();
+
+                if ( received instanceof SearchResultEntry )
+                {
+                    // The controls are dropped, as they can't be written in a file
+                    messageId = received.getMessageId();
+                    SearchResultEntry entry = new SearchResultEntryImpl( messageId );
+                    entry.setEntry( ( ( SearchResultEntry ) received ).getEntry() );
+                    entries.add( createSortedEntry( entry ) );
+
+                    if ( entries.size() >= maxEntriesInMemory )
+                    {
+                        writeRun( entries );
+                        entries.clear();
+                    }
+                }
+                else
+                {
+                    otherResponses.add( received );
+                }
+            }
+
+            searchDoneResp = wrapped.getSearchResultDone();
+            entries.sort( entryComparator );
+
+            runs = new PriorityQueue<>( runFiles.size() + 1, ( run1, run2 ) ->
+            {
+                int result = compare( run1.head, run2.head );
+
+                return result != 0 ? result : run1.index - run2.index;
+            } );
+
+            for ( int i = 0; i < runFiles.size(); i++ )
+            {
+                addRun( new Run( i, runFiles.get( i ) ) );
+            }
+
+            addRun( new Run( runFiles.size(), entries ) );
+        }
+        catch ( IOException ioe )
+        {
+            throw new LdapException( I18n.err( I18n.ERR_04192_SORT_RUN_FAILED, tempDirectory, ioe.getMessage() ), ioe );
+        }
+    }
+
+
+    /**
+     * Sort some entries, and write them in a temporary file
+     *
+     * @param entries The entries to write
+     * @throws IOException If the file can't be written
+     */
+    private void writeRun( List<SortedEntry> entries ) throws IOException
+    {
+        entries.sort( entryComparator );
+
+        Path file;
+
+        if ( tempDirectory == null )
+        {
+            file = Files.createTempFile( "ldap-sort", ".run" );
+        }
+        else
+        {
+            file = Files.createTempFile( tempDirectory, "ldap-sort", ".run" );
+        }
+
+        runFiles.add( file );
+
+        try ( ObjectOutputStream out = new ObjectOutputStream(
+            new BufferedOutputStream( Files.newOutputStream( file ) ) ) )
+        {
+            out.writeInt( entries.size() );
+
+            for ( SortedEntry sortedEntry : entries )
+            {
+                sortedEntry.entry.getEntry().writeExternal( out );
+            }
+        }
+
+        if ( LOG_CURSOR.isDebugEnabled() )
+        {
+            LOG_CURSOR.debug( I18n.msg( I18n.MSG_04186_SORT_RUN_SPILLED, entries.size(), file ) );
+        }
+    }
+
+
+    /**
+     * Add a run to the merge, if it's not empty
+     *
+     * @param run The run to add
+     * @throws IOException If the run can't be read
+     */
+    private void addRun( Run run ) throws IOException
+    {
+        if ( run.advance() )
+        {
+            runs.add( run );
+        }
+        else
+        {
+            run.close();
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean next() throws LdapException, CursorException
+    {
+        if ( done )
+        {
+            return false;
+        }
+
+        if ( !sorted )
+        {
+            sorted = true;
+            sort();
+        }
+
+        if ( !otherResponses.isEmpty() )
+        {
+            response = otherResponses.poll();
+
+            return true;
+        }
+
+        Run run = runs.poll();
+
+        if ( run == null )
+        {
+            response = null;
+            done = true;
+
+            return false;
+        }
+
+        response = run.head.entry;
+
+        try
+        {
+            addRun( run );
+        }
+        catch ( IOException ioe )
+        {
+            throw new LdapException( I18n.err( I18n.ERR_04192_SORT_RUN_FAILED, run.file, ioe.getMessage() ), ioe );
+        }
+
+        return true;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Response get() throws InvalidCursorPositionException
+    {
+        if ( !available() )
+        {
+            throw new InvalidCursorPositionException();
+        }
+
+        return response;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SearchResultDone getSearchResultDone()
+    {
+        return searchDoneResp;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean available()
+    {
+        return response != null;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException
+    {
+        close( null );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close( Exception cause ) throws IOException
+    {
+        if ( LOG_CURSOR.isDebugEnabled() )
+        {
+            LOG_CURSOR.debug( I18n.msg( I18n.MSG_04171_CLOSING_SEARCH_CURSOR, this ) );
+        }
+
+        done = true;
+        response = null;
+
+        try
+        {
+            wrapped.close();
+        }
+        finally
+        {
+            if ( runs != null )
+            {
+                for ( Run run : runs )
+                {
+                    run.close();
+                }
+
+                runs.clear();
+            }
+
+            for ( Path file : runFiles )
+            {
+                Files.deleteIfExists( file );
+            }
+
+            if ( cause != null )
+            {
+                super.close( cause );
+            }
+            else
+            {
+                super.close();
+            }
+        }
+    }
+
+
+    // rest of all operations will throw UnsupportedOperationException
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public void after( Response element ) throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "after( Response element )" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterLast() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "afterLast()" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public void before( Response element ) throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "before( Response element )" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public void beforeFirst() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "beforeFirst()" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean first() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "first()" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean last() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "last()" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean previous() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "previous()" ) ) );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isDone()
+    {
+        return done;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isReferral()
+    {
+        return response instanceof SearchResultReference;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Referral getReferral() throws LdapException
+    {
+        if ( isReferral() )
+        {
+            return ( ( SearchResultReference ) response ).getReferral();
+        }
+
+        throw new LdapException();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEntry()
+    {
+        return response instanceof SearchResultEntry;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry getEntry() throws LdapException
+    {
+        if ( isEntry() )
+        {
+            return ( ( SearchResultEntry ) response ).getEntry();
+        }
+
+        if ( isReferral() )
+        {
+            Referral referral = ( ( SearchResultReference ) response ).getReferral();
+            throw new LdapReferralException( referral.getLdapUrls() );
+        }
+
+        throw new LdapException();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isIntermediate()
+    {
+        return response instanceof IntermediateResponse;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IntermediateResponse getIntermediate() throws LdapException
+    {
+        if ( isIntermediate() )
+        {
+            return ( IntermediateResponse ) response;
+        }
+
+        throw new LdapException();
+    }
+}
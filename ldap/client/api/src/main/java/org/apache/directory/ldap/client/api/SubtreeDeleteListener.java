@@ -0,0 +1,78 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.name.Dn;
+
+
+/**
+ * A listener notified of the progress of a {@link SubtreeDeleter}. The entry notifications
+ * are sent by the threads reading the responses, they must not block.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public interface SubtreeDeleteListener
+{
+    /**
+     * Called when the subtree has been read, before any entry is deleted.
+     *
+     * @param entries The number of entries in the subtree
+     */
+    default void subtreeRead( long entries )
+    {
+    }
+
+
+    /**
+     * Called before the entries of a level are deleted. The levels are deleted from the
+     * deepest one up to the subtree root, at depth 0.
+     *
+     * @param depth The depth of the level, relative to the subtree root
+     * @param entries The number of entries in this level
+     */
+    default void levelStarted( int depth, int entries )
+    {
+    }
+
+
+    /**
+     * Called when an entry has been deleted.
+     *
+     * @param dn The deleted entry Dn
+     * @param deleted The number of entries deleted so far
+     * @param total The number of entries in the subtree
+     */
+    default void entryDeleted( Dn dn, long deleted, long total )
+    {
+    }
+
+
+    /**
+     * Called when an entry could not be deleted. Its ancestors are not deleted either.
+     *
+     * @param dn The entry Dn
+     * @param resultCode The result returned by the server
+     */
+    default void entryFailed( Dn dn, ResultCodeEnum resultCode )
+    {
+    }
+}
@@ -0,0 +1,688 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.extras.controls.ad.TreeDelete;
+import org.apache.directory.api.ldap.extras.controls.ad.TreeDeleteImpl;
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.cursor.CursorException;
+import org.apache.directory.api.ldap.model.cursor.SearchCursor;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.filter.ObjectClassNode;
+import org.apache.directory.api.ldap.model.message.AliasDerefMode;
+import org.apache.directory.api.ldap.model.message.DeleteRequest;
+import org.apache.directory.api.ldap.model.message.DeleteRequestImpl;
+import org.apache.directory.api.ldap.model.message.DeleteResponse;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.message.controls.ManageDsaITImpl;
+import org.apache.directory.api.ldap.model.message.controls.PagedResults;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.ldap.client.api.future.DeleteFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Deletes a whole subtree, using connections taken from a {@link LdapConnectionPool}.
+ * <p>
+ * When the server advertises the TreeDelete control in its RootDSE, the subtree is
+ * deleted by the server with one single request. Otherwise, the Dn of all the entries
+ * are read, using a paged search if possible, and grouped by depth. The levels are then
+ * deleted from the deepest one up to the subtree root : the deletes of a level are sent
+ * on all the connections without waiting for their responses, each connection keeping a
+ * window of outstanding requests, and the next level is started once they have all been
+ * answered.
+ * <p>
+ * When an entry cannot be deleted, its ancestors are not deleted either, and the
+ * delete fails once all the other entries have been deleted.
+ * <pre>
+ * SubtreeDeleter deleter = new SubtreeDeleter( pool );
+ * deleter.setParallelism( 8 );
+ * deleter.setListener( new SubtreeDeleteListener()
+ * {
+ *     public void levelStarted( int depth, int entries )
+ *     {
+ *         System.out.println( "Deleting " + entries + " entries at depth " + depth );
+ *     }
+ * } );
+ *
+ * deleter.delete( "ou=tenant42,dc=example,dc=com" );
+ * </pre>
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class SubtreeDeleter
+{
+    /** The logger for this class */
+    private static final Logger LOG = LoggerFactory.getLogger( SubtreeDeleter.class );
+
+    /** The default number of connections used */
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    /** The default number of outstanding deletes per connection */
+    public static final int DEFAULT_WINDOW = 32;
+
+    /** The default number of entries read per page */
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+
+    /** The pool providing the connections */
+    private final LdapConnectionPool pool;
+
+    /** The number of connections used */
+    private int parallelism = DEFAULT_PARALLELISM;
+
+    /** The number of outstanding deletes per connection */
+    private int window = DEFAULT_WINDOW;
+
+    /** The number of entries read per page, 0 to read the subtree without paging */
+    private int pageSize = DEFAULT_PAGE_SIZE;
+
+    /** The time to wait for a response, in milliseconds */
+    private long timeout = LdapConnectionConfig.DEFAULT_TIMEOUT;
+
+    /** Tells if the TreeDelete control is used when the server supports it */
+    private boolean useTreeDelete = true;
+
+    /** The listener notified of the progress */
+    private SubtreeDeleteListener listener = new SubtreeDeleteListener()
+    {
+    };
+
+    /** The Dn of the entries which cannot be deleted because of a failed child */
+    private final Set<String> blocked = ConcurrentHashMap.newKeySet();
+
+    /** The number of entries in the subtree */
+    private volatile long total;
+
+    /** The number of deleted entries */
+    private final AtomicLong deleted = new AtomicLong();
+
+    /** The number of entries which could not be deleted */
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * A connection, with its window of outstanding deletes
+     */
+    private static final class Slot
+    {
+        /** The connection */
+        private final LdapAsyncConnection connection;
+
+        /** The free places in the window */
+        private final Semaphore permits;
+
+        /** The outstanding deletes, in the order they were sent */
+        private final BlockingQueue<Pending> pending = new LinkedBlockingQueue<>();
+
+
+        private Slot( LdapAsyncConnection connection, int window )
+        {
+            this.connection = connection;
+            permits = new Semaphore( window );
+        }
+    }
+
+    /**
+     * An outstanding delete
+     */
+    private static final class Pending
+    {
+        /** The deleted entry, null for the marker stopping a slot */
+        private final Dn dn;
+
+        /** The pending response */
+        private final DeleteFuture future;
+
+
+        private Pending( Dn dn, DeleteFuture future )
+        {
+            this.dn = dn;
+            this.future = future;
+        }
+    }
+
+
+    /**
+     * Creates a new SubtreeDeleter.
+     *
+     * @param pool The pool providing the connections. They must be {@link LdapAsyncConnection}s
+     */
+    public SubtreeDeleter( LdapConnectionPool pool )
+    {
+        this.pool = pool;
+    }
+
+
+    /**
+     * @return The number of connections used
+     */
+    public int getParallelism()
+    {
+        return parallelism;
+    }
+
+
+    /**
+     * @param parallelism The number of connections used to delete the entries
+     */
+    public void setParallelism( int parallelism )
+    {
+        if ( parallelism < 1 )
+        {
+            throw new IllegalArgumentException( I18n.err( I18n.ERR_04203_INVALID_DELETER_PARALLELISM, parallelism ) );
+        }
+
+        this.parallelism = parallelism;
+    }
+
+
+    /**
+     * @return The maximum number of outstanding deletes per connection
+     */
+    public int getWindow()
+    {
+        return window;
+    }
+
+
+    /**
+     * @param window The maximum number of outstanding deletes per connection
+     */
+    public void setWindow( int window )
+    {
+        if ( window < 1 )
+        {
+            throw new IllegalArgumentException( I18n.err( I18n.ERR_04201_INVALID_LOADER_WINDOW, window ) );
+        }
+
+        this.window = window;
+    }
+
+
+    /**
+     * @return The number of entries read per page
+     */
+    public int getPageSize()
+    {
+        return pageSize;
+    }
+
+
+    /**
+     * Sets the number of entries read per page, when the server supports the PagedResults
+     * control. With 0, the subtree is read using one single search.
+     *
+     * @param pageSize The number of entries read per page
+     */
+    public void setPageSize( int pageSize )
+    {
+        this.pageSize = pageSize;
+    }
+
+
+    /**
+     * @return The time to wait for a response, in milliseconds
+     */
+    public long getTimeout()
+    {
+        return timeout;
+    }
+
+
+    /**
+     * @param timeout The time to wait for a response, in milliseconds
+     */
+    public void setTimeout( long timeout )
+    {
+        this.timeout = timeout;
+    }
+
+
+    /**
+     * @return <code>true</code> if the TreeDelete control is used when the server supports it
+     */
+    public boolean isUseTreeDelete()
+    {
+        return useTreeDelete;
+    }
+
+
+    /**
+     * @param useTreeDelete Tells if the TreeDelete control is used when the server supports it
+     */
+    public void setUseTreeDelete( boolean useTreeDelete )
+    {
+        this.useTreeDelete = useTreeDelete;
+    }
+
+
+    /**
+     * @param listener The listener notified of the progress
+     */
+    public void setListener( SubtreeDeleteListener listener )
+    {
+        this.listener = listener;
+    }
+
+
+    /**
+     * @return The number of entries in the last deleted subtree
+     */
+    public long getTotal()
+    {
+        return total;
+    }
+
+
+    /**
+     * @return The number of entries deleted by the last delete
+     */
+    public long getDeleted()
+    {
+        return deleted.get();
+    }
+
+
+    /**
+     * @return The number of entries the last delete has not been able to delete
+     */
+    public long getFailed()
+    {
+        return failed.get();
+    }
+
+
+    /**
+     * Deletes an entry and all its descendants.
+     *
+     * @param root The subtree root Dn
+     * @return The number of deleted entries, or -1 if the subtree has been deleted using the
+     * TreeDelete control
+     * @throws LdapException If the subtree cannot be read, or if some entries cannot be deleted
+     */
+    public long delete( String root ) throws LdapException
+    {
+        return delete( new Dn( root ) );
+    }
+
+
+    /**
+     * Deletes an entry and all its descendants.
+     *
+     * @param root The subtree root Dn
+     * @return The number of deleted entries, or -1 if the subtree has been deleted using the
+     * TreeDelete control
+     * @throws LdapException If the subtree cannot be read, or if some entries cannot be deleted
+     */
+    public long delete( Dn root ) throws LdapException
+    {
+        total = 0L;
+        deleted.set( 0L );
+        failed.set( 0L );
+        blocked.clear();
+
+        List<Slot> slots = new ArrayList<>( parallelism );
+        ExecutorService completionExecutor = null;
+
+        try
+        {
+            LdapAsyncConnection connection = borrow( slots );
+
+            if ( useTreeDelete && connection.isControlSupported( TreeDelete.OID ) )
+            {
+                if ( LOG.isDebugEnabled() )
+                {
+                    LOG.debug( I18n.msg( I18n.MSG_04197_TREE_DELETE, root ) );
+                }
+
+                DeleteRequest deleteRequest = new DeleteRequestImpl();
+                deleteRequest.setName( root );
+                deleteRequest.addControl( new TreeDeleteImpl() );
+                DeleteResponse deleteResponse = connection.delete( deleteRequest );
+
+                ResultCodeEnum.processResponse( deleteResponse );
+
+                return -1L;
+            }
+
+            NavigableMap<Integer, List<Dn>> levels = readSubtree( connection, root );
+            listener.subtreeRead( total );
+
+            while ( slots.size() < parallelism )
+            {
+                borrow( slots );
+            }
+
+            completionExecutor = Executors.newFixedThreadPool( parallelism );
+
+            for ( Slot slot : slots )
+            {
+                completionExecutor.execute( () -> complete( slot ) );
+            }
+
+            for ( Map.Entry<Integer, List<Dn>> level : levels.descendingMap().entrySet() )
+            {
+                if ( LOG.isDebugEnabled() )
+                {
+                    LOG.debug( I18n.msg( I18n.MSG_04198_DELETING_LEVEL, level.getValue().size(), level.getKey(),
+                        root ) );
+                }
+
+                listener.levelStarted( level.getKey(), level.getValue().size() );
+
+                for ( Dn dn : level.getValue() )
+                {
+                    submit( slots, dn );
+                }
+
+                // Wait for the whole level to be deleted before starting the parents
+                for ( Slot slot : slots )
+                {
+                    slot.permits.acquire( window );
+                    slot.permits.release( window );
+                }
+            }
+        }
+        catch ( InterruptedException ie )
+        {
+            Thread.currentThread().interrupt();
+
+            throw new LdapException( ie.getMessage(), ie );
+        }
+        finally
+        {
+            if ( completionExecutor != null )
+            {
+                for ( Slot slot : slots )
+                {
+                    slot.pending.add( new Pending( null, null ) );
+                }
+
+                completionExecutor.shutdown();
+
+                try
+                {
+                    completionExecutor.awaitTermination( timeout, TimeUnit.MILLISECONDS );
+                }
+                catch ( InterruptedException ie )
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            for ( Slot slot : slots )
+            {
+                pool.releaseConnection( slot.connection );
+            }
+        }
+
+        if ( failed.get() > 0L )
+        {
+            throw new LdapException( I18n.err( I18n.ERR_04202_SUBTREE_DELETE_FAILED, failed.get(), total, root ) );
+        }
+
+        return deleted.get();
+    }
+
+
+    /**
+     * Borrows a connection from the pool.
+     */
+    private LdapAsyncConnection borrow( List<Slot> slots ) throws LdapException
+    {
+        LdapConnection connection = pool.getConnection();
+
+        if ( !( connection instanceof LdapAsyncConnection ) )
+        {
+            pool.releaseConnection( connection );
+
+            throw new IllegalArgumentException( I18n.err( I18n.ERR_04184_NOT_AN_ASYNC_CONNECTION,
+                connection.getClass().getName() ) );
+        }
+
+        Slot slot = new Slot( ( LdapAsyncConnection ) connection, window );
+        slots.add( slot );
+
+        return slot.connection;
+    }
+
+
+    /**
+     * Reads the Dn of all the entries of the subtree, grouped by depth.
+     */
+    private NavigableMap<Integer, List<Dn>> readSubtree( LdapAsyncConnection connection, Dn root )
+        throws LdapException
+    {
+        SearchRequest searchRequest = new SearchRequestImpl();
+        searchRequest.setBase( root );
+        searchRequest.setScope( SearchScope.SUBTREE );
+        searchRequest.setFilter( ObjectClassNode.OBJECT_CLASS_NODE );
+        searchRequest.setDerefAliases( AliasDerefMode.NEVER_DEREF_ALIASES );
+        searchRequest.addAttributes( SchemaConstants.NO_ATTRIBUTE );
+
+        // The referrals must be deleted as any other entry
+        searchRequest.addControl( new ManageDsaITImpl() );
+
+        NavigableMap<Integer, List<Dn>> levels = new TreeMap<>();
+        SearchCursor cursor;
+
+        if ( ( pageSize > 0 ) && connection.isControlSupported( PagedResults.OID ) )
+        {
+            cursor = new PagedSearchCursor( connection, searchRequest, pageSize, timeout, TimeUnit.MILLISECONDS );
+        }
+        else
+        {
+            cursor = connection.search( searchRequest );
+        }
+
+        try
+        {
+            while ( cursor.next() )
+            {
+                if ( cursor.isEntry() )
+                {
+                    Dn dn = cursor.getEntry().getDn();
+                    levels.computeIfAbsent( dn.size() - root.size(), depth -> new ArrayList<>() ).add( dn );
+                    total++;
+                }
+            }
+
+            SearchResultDone done = cursor.getSearchResultDone();
+
+            if ( done != null )
+            {
+                ResultCodeEnum.processResponse( done );
+            }
+        }
+        catch ( CursorException ce )
+        {
+            throw new LdapException( ce.getMessage(), ce );
+        }
+        finally
+        {
+            try
+            {
+                cursor.close();
+            }
+            catch ( IOException ioe )
+            {
+                LOG.error( ioe.getMessage(), ioe );
+            }
+        }
+
+        return levels;
+    }
+
+
+    /**
+     * Sends a delete on the least loaded connection, unless one of the entry children
+     * could not be deleted.
+     */
+    private void submit( List<Slot> slots, Dn dn ) throws InterruptedException
+    {
+        if ( blocked.contains( dn.getNormName() ) )
+        {
+            fail( dn, ResultCodeEnum.NOT_ALLOWED_ON_NON_LEAF );
+
+            return;
+        }
+
+        Slot slot = slots.get( 0 );
+
+        for ( Slot candidate : slots )
+        {
+            if ( candidate.permits.availablePermits() > slot.permits.availablePermits() )
+            {
+                slot = candidate;
+            }
+        }
+
+        slot.permits.acquire();
+
+        try
+        {
+            DeleteRequest deleteRequest = new DeleteRequestImpl();
+            deleteRequest.setName( dn );
+            slot.pending.add( new Pending( dn, slot.connection.deleteAsync( deleteRequest ) ) );
+        }
+        catch ( LdapException le )
+        {
+            LOG.error( le.getMessage(), le );
+            slot.permits.release();
+            fail( dn, ResultCodeEnum.OTHER );
+        }
+    }
+
+
+    /**
+     * Reads the responses of the deletes sent on a connection, in the order they were sent.
+     */
+    private void complete( Slot slot )
+    {
+        try
+        {
+            while ( true )
+            {
+                Pending pending = slot.pending.take();
+
+                if ( pending.dn == null )
+                {
+                    return;
+                }
+
+                try
+                {
+                    complete( pending );
+                }
+                finally
+                {
+                    // Whatever happened, the level must not wait for this delete anymore
+                    slot.permits.release();
+                }
+            }
+        }
+        catch ( InterruptedException ie )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * Reads the response of a delete. A failure of the listener or of the future is counted as
+     * a failure of the delete, if it has not been counted yet.
+     */
+    private void complete( Pending pending ) throws InterruptedException
+    {
+        boolean counted = false;
+
+        try
+        {
+            DeleteResponse response = pending.future.get( timeout, TimeUnit.MILLISECONDS );
+
+            if ( response == null )
+            {
+                pending.future.cancel( true );
+                counted = true;
+                fail( pending.dn, ResultCodeEnum.OTHER );
+            }
+            else if ( response.getLdapResult().getResultCode() == ResultCodeEnum.SUCCESS )
+            {
+                long count = deleted.incrementAndGet();
+                counted = true;
+                listener.entryDeleted( pending.dn, count, total );
+            }
+            else
+            {
+                counted = true;
+                fail( pending.dn, response.getLdapResult().getResultCode() );
+            }
+        }
+        catch ( RuntimeException re )
+        {
+            LOG.error( re.getMessage(), re );
+
+            if ( !counted )
+            {
+                failed.incrementAndGet();
+                blocked.add( pending.dn.getParent().getNormName() );
+            }
+        }
+    }
+
+
+    /**
+     * Counts an entry which could not be deleted, and blocks the deletion of its parent.
+     */
+    private void fail( Dn dn, ResultCodeEnum resultCode )
+    {
+        failed.incrementAndGet();
+        blocked.add( dn.getParent().getNormName() );
+
+        if ( LOG.isDebugEnabled() )
+        {
+            LOG.debug( I18n.msg( I18n.MSG_04199_ENTRY_NOT_DELETED, dn, resultCode ) );
+        }
+
+        listener.entryFailed( dn, resultCode );
+    }
+}
@@ -22,7 +22,6 @@ package org.apache.directory.ldap.client.api;
 
 
 import org.apache.commons.pool2.PooledObject;
-import org.apache.commons.pool2.impl.DefaultPooledObject;
 import org.apache.directory.api.asn1.util.Oid;
 import org.apache.directory.api.i18n.I18n;
 import org.apache.directory.api.ldap.model.exception.LdapException;
@@ -144,7 +143,7 @@ public class ValidatingPoolableLdapConnectionFactory extends AbstractPoolableLda
             LOG.debug( I18n.msg( I18n.MSG_04150_CREATING_LDAP_CONNECTION ) );
         }
         
-        return new DefaultPooledObject<LdapConnection>( new MonitoringLdapConnection( connectionFactory.newLdapConnection() ) );
+        return newPooledObject( new MonitoringLdapConnection( connectionFactory.newLdapConnection() ) );
     }
 
 
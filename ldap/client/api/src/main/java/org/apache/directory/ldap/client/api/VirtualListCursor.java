@@ -0,0 +1,837 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.extras.controls.vlv.VirtualListViewRequest;
+import org.apache.directory.api.ldap.extras.controls.vlv.VirtualListViewRequestImpl;
+import org.apache.directory.api.ldap.extras.controls.vlv.VirtualListViewResponse;
+import org.apache.directory.api.ldap.extras.controls.vlv.VirtualListViewResultCode;
+import org.apache.directory.api.ldap.model.constants.Loggers;
+import org.apache.directory.api.ldap.model.cursor.AbstractCursor;
+import org.apache.directory.api.ldap.model.cursor.CursorException;
+import org.apache.directory.api.ldap.model.cursor.InvalidCursorPositionException;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.message.Control;
+import org.apache.directory.api.ldap.model.message.Response;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.controls.SortRequest;
+import org.apache.directory.api.util.Strings;
+import org.apache.directory.ldap.client.api.exception.LdapConnectionTimeOutException;
+import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A random access Cursor over a sorted search result, using the Virtual List View control
+ * (draft-ietf-ldapext-ldapv3-vlv). The entries are numbered from 1 to the content count
+ * returned by the server. The cursor can be moved forward and backward, and positioned
+ * before a given offset, or before the first entry which is greater than or equal to an
+ * assertion value.
+ * <p>
+ * The entries are read by pages, and the last read pages are kept in a LRU cache. When the
+ * cursor reaches a page whose neighbour in the scrolling direction is not cached, the next
+ * pages are requested asynchronously, while the current page is being read. The number of
+ * prefetched pages doubles each time the cursor keeps scrolling in the same direction, up to
+ * a maximum, and is reset when the direction changes or when the cursor is positioned.
+ * <p>
+ * The search request must contain a SortRequest control. It is never modified : a copy of it,
+ * with its own VirtualListViewRequest control, is sent for each page. When the content count
+ * returned by the server changes, the cache is cleared.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class VirtualListCursor extends AbstractCursor<Entry>
+{
+    /** A dedicated log for cursors */
+    private static final Logger LOG_CURSOR = LoggerFactory.getLogger( Loggers.CURSOR_LOG.getName() );
+
+    /** The default maximum number of pages prefetched at once */
+    public static final int DEFAULT_MAX_PREFETCH_PAGES = 8;
+
+    /** The default number of pages kept in the cache */
+    public static final int DEFAULT_CACHE_SIZE = 32;
+
+    /** The scrolling directions */
+    private enum Direction
+    {
+        NONE,
+        FORWARD,
+        BACKWARD
+    }
+
+    /**
+     * A LRU cache of pages, indexed by their position in the list
+     *
+     * @param <P> The page type
+     */
+    private static class PageCache<P> extends LinkedHashMap<Integer, P>
+    {
+        private static final long serialVersionUID = 1L;
+
+        /** The maximum number of pages */
+        private int maxSize;
+
+
+        PageCache( int maxSize )
+        {
+            super( 16, 0.75f, true );
+            this.maxSize = maxSize;
+        }
+
+
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<Integer, P> eldest )
+        {
+            return size() > maxSize;
+        }
+    }
+
+    /** The connection used to send the requests */
+    private LdapAsyncConnection connection;
+
+    /** The search request, copied for each page */
+    private SearchRequest searchRequest;
+
+    /** The number of entries per page */
+    private int pageSize;
+
+    /** wait time while polling for a SearchResponse */
+    private long timeout;
+
+    /** time units of timeout value */
+    private TimeUnit timeUnit;
+
+    /** The maximum number of pages prefetched at once */
+    private int maxPrefetchPages = DEFAULT_MAX_PREFETCH_PAGES;
+
+    /** The cached pages */
+    private PageCache<List<Entry>> pages = new PageCache<>( DEFAULT_CACHE_SIZE );
+
+    /** The context ID returned by the server */
+    private byte[] contextId;
+
+    /** The number of entries in the list, as returned by the server. -1 if it's not yet known */
+    private int contentCount = -1;
+
+    /** The current position, starting at 1. 0 is before the first entry */
+    private int position;
+
+    /** The current scrolling direction */
+    private Direction direction = Direction.NONE;
+
+    /** The number of pages to prefetch */
+    private int prefetchPages = 1;
+
+    /** The future of the pending prefetch, if any */
+    private SearchFuture prefetchFuture;
+
+
+    /**
+     * Instantiates a new virtual list cursor. No request is sent until the cursor is moved.
+     *
+     * @param connection The connection to use
+     * @param searchRequest The search request, with a SortRequest control
+     * @param pageSize The number of entries to request per page
+     * @param timeout the timeout
+     * @param timeUnit the time unit
+     */
+    public VirtualListCursor( LdapAsyncConnection connection, SearchRequest searchRequest, int pageSize,
+        long timeout, TimeUnit timeUnit )
+    {
+        if ( pageSize < 1 )
+        {
+            throw new IllegalArgumentException( I18n.err( I18n.ERR_04181_INVALID_PAGE_SIZE, pageSize ) );
+        }
+
+        if ( !searchRequest.hasControl( SortRequest.OID ) )
+        {
+            throw new IllegalArgumentException( I18n.err( I18n.ERR_04188_VLV_SORT_CONTROL_MISSING ) );
+        }
+
+        if ( LOG_CURSOR.isDebugEnabled() )
+        {
+            LOG_CURSOR.debug( I18n.msg( I18n.MSG_04170_CREATING_SEARCH_CURSOR, this ) );
+        }
+
+        this.connection = connection;
+        this.searchRequest = searchRequest;
+        this.pageSize = pageSize;
+        this.timeout = timeout;
+        this.timeUnit = timeUnit;
+    }
+
+
+    /**
+     * @param maxPrefetchPages The maximum number of pages prefetched at once
+     */
+    public void setMaxPrefetchPages( int maxPrefetchPages )
+    {
+        this.maxPrefetchPages = Math.max( 1, maxPrefetchPages );
+    }
+
+
+    /**
+     * @param cacheSize The maximum number of pages kept in the cache. It should not be lower
+     * than the maximum number of prefetched pages.
+     */
+    public void setCacheSize( int cacheSize )
+    {
+        pages.maxSize = Math.max( 1, cacheSize );
+    }
+
+
+    /**
+     * @return The number of entries in the list, as returned by the server, or -1 if no
+     * request has been sent yet
+     */
+    public int getContentCount()
+    {
+        return contentCount;
+    }
+
+
+    /**
+     * @return The current position, starting at 1. 0 if the cursor is before the first entry
+     */
+    public int getPosition()
+    {
+        return position;
+    }
+
+
+    /**
+     * Position the cursor before the entry at the given offset : the next call to
+     * {@link #next()} will return this entry.
+     *
+     * @param offset The entry offset, starting at 1
+     */
+    public void seek( int offset )
+    {
+        position = Math.max( 0, offset - 1 );
+        resetDirection();
+    }
+
+
+    /**
+     * Position the cursor before the first entry which is greater than or equal to the given
+     * value, using the ordering of the first sort key : the next call to {@link #next()} will
+     * return this entry. If there is no such entry, the cursor is positioned after the last entry.
+     *
+     * @param assertionValue The value to compare the entries with
+     * @throws LdapException If the request failed
+     * @throws CursorException If the cursor is closed
+     */
+    public void seek( String assertionValue ) throws LdapException, CursorException
+    {
+        checkNotClosed();
+        cancelPrefetch();
+
+        VirtualListViewRequest vlvRequest = new VirtualListViewRequestImpl();
+        vlvRequest.setAssertionValue( Strings.getBytesUtf8( assertionValue ) );
+        vlvRequest.setBeforeCount( 0 );
+        vlvRequest.setAfterCount( pageSize - 1 );
+        vlvRequest.setContextId( contextId );
+
+        int targetPosition = read( send( vlvRequest ) );
+
+        position = Math.max( 0, Math.min( targetPosition, contentCount + 1 ) - 1 );
+        resetDirection();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean available()
+    {
+        return ( position > 0 ) && ( position <= contentCount );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean next() throws LdapException, CursorException
+    {
+        checkNotClosed();
+
+        if ( ( contentCount >= 0 ) && ( position >= contentCount ) )
+        {
+            position = contentCount + 1;
+
+            return false;
+        }
+
+        return move( position + 1, Direction.FORWARD );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean previous() throws LdapException, CursorException
+    {
+        checkNotClosed();
+
+        if ( position <= 1 )
+        {
+            position = 0;
+
+            return false;
+        }
+
+        if ( ( contentCount >= 0 ) && ( position > contentCount + 1 ) )
+        {
+            position = contentCount + 1;
+        }
+
+        return move( position - 1, Direction.BACKWARD );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry get() throws CursorException
+    {
+        checkNotClosed();
+
+        if ( !available() )
+        {
+            throw new InvalidCursorPositionException();
+        }
+
+        try
+        {
+            List<Entry> entries = loadPage( ( position - 1 ) / pageSize );
+            int index = ( position - 1 ) % pageSize;
+
+            if ( index >= entries.size() )
+            {
+                throw new InvalidCursorPositionException();
+            }
+
+            return entries.get( index );
+        }
+        catch ( LdapException le )
+        {
+            throw new CursorException( le.getMessage(), le );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void beforeFirst() throws LdapException, CursorException
+    {
+        checkNotClosed();
+        seek( 1 );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterLast() throws LdapException, CursorException
+    {
+        checkNotClosed();
+
+        if ( contentCount < 0 )
+        {
+            // Get the content count
+            loadPage( 0 );
+        }
+
+        seek( contentCount + 2 );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean first() throws LdapException, CursorException
+    {
+        beforeFirst();
+
+        return next();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean last() throws LdapException, CursorException
+    {
+        afterLast();
+
+        return previous();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isBeforeFirst()
+    {
+        return position == 0;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isAfterLast()
+    {
+        return ( contentCount >= 0 ) && ( position > contentCount );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isFirst()
+    {
+        return ( position == 1 ) && ( contentCount > 0 );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isLast()
+    {
+        return ( position > 0 ) && ( position == contentCount );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException
+    {
+        close( null );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close( Exception cause ) throws IOException
+    {
+        if ( LOG_CURSOR.isDebugEnabled() )
+        {
+            LOG_CURSOR.debug( I18n.msg( I18n.MSG_04171_CLOSING_SEARCH_CURSOR, this ) );
+        }
+
+        cancelPrefetch();
+        pages.clear();
+
+        if ( cause != null )
+        {
+            super.close( cause );
+        }
+        else
+        {
+            super.close();
+        }
+    }
+
+
+    // rest of all operations will throw UnsupportedOperationException
+
+    /**
+     * This operation is not supported in VirtualListCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public void after( Entry element ) throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "after( Entry element )" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in VirtualListCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public void before( Entry element ) throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "before( Entry element )" ) ) );
+    }
+
+
+    /**
+     * Reset the scrolling direction, and the number of pages to prefetch
+     */
+    private void resetDirection()
+    {
+        direction = Direction.NONE;
+        prefetchPages = 1;
+    }
+
+
+    /**
+     * Move the cursor to a new position, and prefetch the next pages if needed
+     *
+     * @param newPosition The new position
+     * @param moveDirection The direction of the move
+     * @return <code>true</code> if there is an entry at the new position
+     * @throws LdapException If the entries can't be read
+     */
+    private boolean move( int newPosition, Direction moveDirection ) throws LdapException
+    {
+        if ( moveDirection != direction )
+        {
+            direction = moveDirection;
+            prefetchPages = 1;
+        }
+
+        int page = ( newPosition - 1 ) / pageSize;
+        loadPage( page );
+
+        if ( newPosition > contentCount )
+        {
+            position = contentCount + 1;
+
+            return false;
+        }
+
+        position = newPosition;
+        prefetch( page );
+
+        return true;
+    }
+
+
+    /**
+     * Get a page from the cache, or read it from the server
+     *
+     * @param page The page index, starting at 0
+     * @return The page entries, empty if the page is after the last entry
+     * @throws LdapException If the page can't be read
+     */
+    private List<Entry> loadPage( int page ) throws LdapException
+    {
+        List<Entry> entries = pages.get( page );
+
+        if ( entries != null )
+        {
+            return entries;
+        }
+
+        if ( prefetchFuture != null )
+        {
+            // Wait for the pending prefetch, it may contain the page
+            SearchFuture future = prefetchFuture;
+            prefetchFuture = null;
+            read( future );
+
+            entries = pages.get( page );
+
+            if ( entries != null )
+            {
+                return entries;
+            }
+        }
+
+        int offset = page * pageSize + 1;
+
+        if ( ( contentCount >= 0 ) && ( offset > contentCount ) )
+        {
+            return Collections.emptyList();
+        }
+
+        read( request( offset, pageSize ) );
+        entries = pages.get( page );
+
+        if ( entries == null )
+        {
+            return Collections.emptyList();
+        }
+
+        return entries;
+    }
+
+
+    /**
+     * Request the pages following the given page in the scrolling direction, if they are not
+     * already cached or requested.
+     *
+     * @param page The current page
+     * @throws LdapException If the request can't be sent
+     */
+    private void prefetch( int page ) throws LdapException
+    {
+        if ( prefetchFuture != null )
+        {
+            return;
+        }
+
+        int lastPage = ( contentCount - 1 ) / pageSize;
+        int first;
+        int last;
+
+        if ( direction == Direction.FORWARD )
+        {
+            first = page + 1;
+            last = Math.min( page + prefetchPages, lastPage );
+
+            if ( ( first > lastPage ) || pages.containsKey( first ) )
+            {
+                return;
+            }
+        }
+        else if ( direction == Direction.BACKWARD )
+        {
+            first = Math.max( page - prefetchPages, 0 );
+            last = page - 1;
+
+            if ( ( last < 0 ) || pages.containsKey( last ) )
+            {
+                return;
+            }
+        }
+        else
+        {
+            return;
+        }
+
+        prefetchFuture = request( first * pageSize + 1, ( last - first + 1 ) * pageSize );
+
+        // Keep scrolling in the same direction : prefetch more pages the next time
+        prefetchPages = Math.min( prefetchPages * 2, maxPrefetchPages );
+    }
+
+
+    /**
+     * Abandon the pending prefetch, if any
+     */
+    private void cancelPrefetch()
+    {
+        if ( prefetchFuture != null )
+        {
+            if ( !prefetchFuture.isCancelled() && connection.isConnected() )
+            {
+                prefetchFuture.cancel( true );
+            }
+
+            prefetchFuture = null;
+        }
+    }
+
+
+    /**
+     * Request some entries, starting at the given offset
+     *
+     * @param offset The offset of the first entry
+     * @param count The number of entries
+     * @return The future for the request
+     * @throws LdapException If the request can't be sent
+     */
+    private SearchFuture request( int offset, int count ) throws LdapException
+    {
+        if ( LOG_CURSOR.isDebugEnabled() )
+        {
+            LOG_CURSOR.debug( I18n.msg( I18n.MSG_04185_VLV_FETCH, count, offset, this ) );
+        }
+
+        // A zero content count means the offset is an absolute position
+        VirtualListViewRequest vlvRequest = new VirtualListViewRequestImpl();
+        vlvRequest.setOffset( offset );
+        vlvRequest.setContentCount( 0 );
+        vlvRequest.setBeforeCount( 0 );
+        vlvRequest.setAfterCount( count - 1 );
+        vlvRequest.setContextId( contextId );
+
+        return send( vlvRequest );
+    }
+
+
+    /**
+     * Send a copy of the search request, with a VirtualListViewRequest control and its
+     * own messageId
+     *
+     * @param vlvRequest The control to send
+     * @return The future for the request
+     * @throws LdapException If the request can't be sent
+     */
+    private SearchFuture send( VirtualListViewRequest vlvRequest ) throws LdapException
+    {
+        SearchRequest pageRequest = new SearchRequestImpl();
+        pageRequest.setBase( searchRequest.getBase() );
+        pageRequest.setScope( searchRequest.getScope() );
+        pageRequest.setDerefAliases( searchRequest.getDerefAliases() );
+        pageRequest.setSizeLimit( searchRequest.getSizeLimit() );
+        pageRequest.setTimeLimit( searchRequest.getTimeLimit() );
+        pageRequest.setTypesOnly( searchRequest.getTypesOnly() );
+        pageRequest.setFilter( searchRequest.getFilter() );
+        pageRequest.addAttributes( searchRequest.getAttributes().toArray( new String[0] ) );
+
+        for ( Control control : searchRequest.getControls().values() )
+        {
+            if ( !VirtualListViewRequest.OID.equals( control.getOid() ) )
+            {
+                pageRequest.addControl( control );
+            }
+        }
+
+        pageRequest.addControl( vlvRequest );
+
+        return connection.searchAsync( pageRequest );
+    }
+
+
+    /**
+     * Read all the responses of a request, and store the complete pages in the cache
+     *
+     * @param future The future of the request
+     * @return The position of the first returned entry
+     * @throws LdapException If the request failed
+     */
+    private int read( SearchFuture future ) throws LdapException
+    {
+        List<Entry> entries = new ArrayList<>();
+        SearchResultDone done = null;
+
+        while ( done == null )
+        {
+            Response response;
+
+            try
+            {
+                response = future.get( timeout, timeUnit );
+            }
+            catch ( Exception e )
+            {
+                throw new LdapException( LdapNetworkConnection.NO_RESPONSE_ERROR, e );
+            }
+
+            if ( response == null )
+            {
+                future.cancel( true );
+
+                throw new LdapConnectionTimeOutException( LdapNetworkConnection.TIME_OUT_ERROR );
+            }
+
+            if ( response instanceof SearchResultEntry )
+            {
+                entries.add( ( ( SearchResultEntry ) response ).getEntry() );
+            }
+            else if ( response instanceof SearchResultDone )
+            {
+                done = ( SearchResultDone ) response;
+            }
+        }
+
+        VirtualListViewResponse vlvResponse = ( VirtualListViewResponse ) done.getControl(
+            VirtualListViewResponse.OID );
+
+        if ( ( vlvResponse != null ) && ( vlvResponse.getVirtualListViewResult() != VirtualListViewResultCode.SUCCESS ) )
+        {
+            throw new LdapException( I18n.err( I18n.ERR_04189_VLV_FAILED, vlvResponse.getVirtualListViewResult() ) );
+        }
+
+        if ( done.getLdapResult().getResultCode() != ResultCodeEnum.SUCCESS )
+        {
+            throw new LdapException( I18n.err( I18n.ERR_04189_VLV_FAILED, done.getLdapResult().getResultCode() ) );
+        }
+
+        if ( vlvResponse == null )
+        {
+            throw new LdapException( I18n.err( I18n.ERR_04190_NO_VLV_RESPONSE_CONTROL ) );
+        }
+
+        contextId = vlvResponse.getContextId();
+
+        if ( vlvResponse.getContentCount() != contentCount )
+        {
+            // The list has changed, the cached pages may be wrong
+            pages.clear();
+            contentCount = vlvResponse.getContentCount();
+        }
+
+        int targetPosition = vlvResponse.getTargetPosition();
+        store( targetPosition, entries );
+
+        return targetPosition;
+    }
+
+
+    /**
+     * Store the complete pages contained in a list of entries
+     *
+     * @param firstPosition The position of the first entry
+     * @param entries The entries
+     */
+    private void store( int firstPosition, List<Entry> entries )
+    {
+        int index = 0;
+
+        while ( index < entries.size() )
+        {
+            int entryPosition = firstPosition + index;
+            int page = ( entryPosition - 1 ) / pageSize;
+            int pageStart = page * pageSize + 1;
+            int pageEnd = Math.min( pageStart + pageSize - 1, contentCount );
+            int available = Math.min( pageEnd - entryPosition + 1, entries.size() - index );
+
+            if ( ( entryPosition == pageStart ) && ( entryPosition + available - 1 == pageEnd ) )
+            {
+                pages.put( page, new ArrayList<>( entries.subList( index, index + available ) ) );
+            }
+
+            index += Math.max( available, 1 );
+        }
+    }
+}
@@ -0,0 +1,548 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.cache;
+
+
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.entry.Modification;
+import org.apache.directory.api.ldap.model.entry.ModificationOperation;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.message.AddRequest;
+import org.apache.directory.api.ldap.model.message.AddResponse;
+import org.apache.directory.api.ldap.model.message.Control;
+import org.apache.directory.api.ldap.model.message.DeleteRequest;
+import org.apache.directory.api.ldap.model.message.DeleteResponse;
+import org.apache.directory.api.ldap.model.message.ModifyDnRequest;
+import org.apache.directory.api.ldap.model.message.ModifyDnResponse;
+import org.apache.directory.api.ldap.model.message.ModifyRequest;
+import org.apache.directory.api.ldap.model.message.ModifyResponse;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.name.Rdn;
+import org.apache.directory.api.util.Strings;
+import org.apache.directory.ldap.client.api.LdapConnection;
+import org.apache.directory.ldap.client.api.LdapConnectionWrapper;
+
+
+/**
+ * A LdapConnection which serves the lookup() and exists() calls from an {@link EntryCache},
+ * and only sends them to the server when the entry is not cached. The lookups using some
+ * controls are always sent to the server.
+ * <p>
+ * The changes done through this connection invalidate the modified Dns, whatever the result
+ * of the operation. The changes done by other clients must be tracked by an
+ * {@link EntryCacheInvalidator} : otherwise, the cached entries will only be refreshed when
+ * they expire. The searches are not cached, as a change on any entry may change the result of
+ * a filter.
+ * <pre>
+ * EntryCache cache = new EntryCache( 10000, 60000L );
+ * EntryCacheInvalidator invalidator = new EntryCacheInvalidator( connectionFactory, cache, baseDn );
+ * new Thread( invalidator ).start();
+ *
+ * LdapConnection connection = new CachingLdapConnection( connectionFactory.newLdapConnection(), cache );
+ * </pre>
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class CachingLdapConnection extends LdapConnectionWrapper
+{
+    /** The shared cache */
+    private final EntryCache cache;
+
+
+    /**
+     * Creates a new CachingLdapConnection instance
+     *
+     * @param connection The wrapped connection
+     * @param cache The cache, which may be shared by connections bound with the same identity.
+     * If it has no SchemaManager yet, it uses the one of the wrapped connection to normalize
+     * the Dns.
+     */
+    public CachingLdapConnection( LdapConnection connection, EntryCache cache )
+    {
+        super( connection );
+
+        this.cache = cache;
+        cache.setSchemaManager( connection.getSchemaManager() );
+    }
+
+
+    /**
+     * @return The cache used by this connection
+     */
+    public EntryCache getCache()
+    {
+        return cache;
+    }
+
+
+    /**
+     * Build the cache key for a set of requested attributes
+     */
+    private static String attributesKey( String... attributes )
+    {
+        if ( ( attributes == null ) || ( attributes.length == 0 ) )
+        {
+            // No attributes means all the user attributes
+            return SchemaConstants.ALL_USER_ATTRIBUTES;
+        }
+
+        StringBuilder sb = new StringBuilder();
+
+        for ( String attribute : attributes )
+        {
+            if ( sb.length() > 0 )
+            {
+                sb.append( ',' );
+            }
+
+            sb.append( Strings.toLowerCaseAscii( Strings.trim( attribute ) ) );
+        }
+
+        return sb.toString();
+    }
+
+
+    /**
+     * Read an entry from the cache, or from the server if it's not cached
+     */
+    private Entry cachedLookup( Dn dn, String... attributes ) throws LdapException
+    {
+        String key = attributesKey( attributes );
+        Entry entry = cache.getEntry( dn, key );
+
+        if ( entry != null )
+        {
+            return entry == EntryCache.ABSENT ? null : entry;
+        }
+
+        long generation = cache.getGeneration();
+        entry = connection.lookup( dn, attributes );
+        cache.putEntry( dn, key, entry, generation );
+
+        return entry;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry lookup( Dn dn ) throws LdapException
+    {
+        return cachedLookup( dn, SchemaConstants.ALL_USER_ATTRIBUTES_ARRAY );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry lookup( String dn ) throws LdapException
+    {
+        return cachedLookup( new Dn( dn ), SchemaConstants.ALL_USER_ATTRIBUTES_ARRAY );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry lookup( Dn dn, String... attributes ) throws LdapException
+    {
+        return cachedLookup( dn, attributes );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry lookup( String dn, String... attributes ) throws LdapException
+    {
+        return cachedLookup( new Dn( dn ), attributes );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry lookup( Dn dn, Control[] controls, String... attributes ) throws LdapException
+    {
+        if ( ( controls != null ) && ( controls.length > 0 ) )
+        {
+            return connection.lookup( dn, controls, attributes );
+        }
+
+        return cachedLookup( dn, attributes );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry lookup( String dn, Control[] controls, String... attributes ) throws LdapException
+    {
+        return lookup( new Dn( dn ), controls, attributes );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean exists( Dn dn ) throws LdapException
+    {
+        Boolean exists = cache.getExists( dn );
+
+        if ( exists != null )
+        {
+            return exists;
+        }
+
+        long generation = cache.getGeneration();
+        boolean found = connection.exists( dn );
+        cache.putExists( dn, found, generation );
+
+        return found;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean exists( String dn ) throws LdapException
+    {
+        return exists( new Dn( dn ) );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void add( Entry entry ) throws LdapException
+    {
+        try
+        {
+            connection.add( entry );
+        }
+        finally
+        {
+            cache.invalidate( entry.getDn() );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AddResponse add( AddRequest addRequest ) throws LdapException
+    {
+        try
+        {
+            return connection.add( addRequest );
+        }
+        finally
+        {
+            cache.invalidate( addRequest.getEntryDn() );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void modify( Dn dn, Modification... modifications ) throws LdapException
+    {
+        try
+        {
+            connection.modify( dn, modifications );
+        }
+        finally
+        {
+            cache.invalidate( dn );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void modify( String dn, Modification... modifications ) throws LdapException
+    {
+        modify( new Dn( dn ), modifications );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void modify( Entry entry, ModificationOperation modOp ) throws LdapException
+    {
+        try
+        {
+            connection.modify( entry, modOp );
+        }
+        finally
+        {
+            cache.invalidate( entry.getDn() );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ModifyResponse modify( ModifyRequest modRequest ) throws LdapException
+    {
+        try
+        {
+            return connection.modify( modRequest );
+        }
+        finally
+        {
+            cache.invalidate( modRequest.getName() );
+        }
+    }
+
+
+    /**
+     * Invalidate the subtrees of the old and the new Dns of a renamed or moved entry
+     */
+    private void invalidateMoved( Dn entryDn, Dn newDn )
+    {
+        cache.invalidateSubtree( entryDn );
+
+        if ( newDn != null )
+        {
+            cache.invalidateSubtree( newDn );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void rename( String entryDn, String newRdn ) throws LdapException
+    {
+        rename( new Dn( entryDn ), new Rdn( newRdn ), true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void rename( Dn entryDn, Rdn newRdn ) throws LdapException
+    {
+        rename( entryDn, newRdn, true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void rename( String entryDn, String newRdn, boolean deleteOldRdn ) throws LdapException
+    {
+        rename( new Dn( entryDn ), new Rdn( newRdn ), deleteOldRdn );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void rename( Dn entryDn, Rdn newRdn, boolean deleteOldRdn ) throws LdapException
+    {
+        Dn newDn = entryDn.getParent().add( newRdn );
+
+        try
+        {
+            connection.rename( entryDn, newRdn, deleteOldRdn );
+        }
+        finally
+        {
+            invalidateMoved( entryDn, newDn );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void move( String entryDn, String newSuperiorDn ) throws LdapException
+    {
+        move( new Dn( entryDn ), new Dn( newSuperiorDn ) );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void move( Dn entryDn, Dn newSuperiorDn ) throws LdapException
+    {
+        Dn newDn = newSuperiorDn.add( entryDn.getRdn() );
+
+        try
+        {
+            connection.move( entryDn, newSuperiorDn );
+        }
+        finally
+        {
+            invalidateMoved( entryDn, newDn );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void moveAndRename( Dn entryDn, Dn newDn ) throws LdapException
+    {
+        moveAndRename( entryDn, newDn, true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void moveAndRename( String entryDn, String newDn ) throws LdapException
+    {
+        moveAndRename( new Dn( entryDn ), new Dn( newDn ), true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void moveAndRename( Dn entryDn, Dn newDn, boolean deleteOldRdn ) throws LdapException
+    {
+        try
+        {
+            connection.moveAndRename( entryDn, newDn, deleteOldRdn );
+        }
+        finally
+        {
+            invalidateMoved( entryDn, newDn );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void moveAndRename( String entryDn, String newDn, boolean deleteOldRdn ) throws LdapException
+    {
+        moveAndRename( new Dn( entryDn ), new Dn( newDn ), deleteOldRdn );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ModifyDnResponse modifyDn( ModifyDnRequest modDnRequest ) throws LdapException
+    {
+        Dn newDn = null;
+
+        if ( modDnRequest.getNewRdn() != null )
+        {
+            Dn newSuperior = modDnRequest.getNewSuperior() == null
+                ? modDnRequest.getName().getParent()
+                : modDnRequest.getNewSuperior();
+            newDn = newSuperior.add( modDnRequest.getNewRdn() );
+        }
+        else if ( modDnRequest.getNewSuperior() != null )
+        {
+            newDn = modDnRequest.getNewSuperior().add( modDnRequest.getName().getRdn() );
+        }
+
+        try
+        {
+            return connection.modifyDn( modDnRequest );
+        }
+        finally
+        {
+            invalidateMoved( modDnRequest.getName(), newDn );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void delete( String dn ) throws LdapException
+    {
+        delete( new Dn( dn ) );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void delete( Dn dn ) throws LdapException
+    {
+        try
+        {
+            connection.delete( dn );
+        }
+        finally
+        {
+            cache.invalidate( dn );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DeleteResponse delete( DeleteRequest deleteRequest ) throws LdapException
+    {
+        try
+        {
+            return connection.delete( deleteRequest );
+        }
+        finally
+        {
+            // The request may carry a TreeDelete control
+            cache.invalidateSubtree( deleteRequest.getName() );
+        }
+    }
+}
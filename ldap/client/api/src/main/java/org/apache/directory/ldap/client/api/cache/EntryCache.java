@@ -0,0 +1,556 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.cache;
+
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.schema.SchemaManager;
+import org.apache.directory.api.util.Strings;
+
+
+/**
+ * A bounded cache of the entries read by the {@link CachingLdapConnection}s sharing it.
+ * The entries are grouped by Dn, as an entry may have been read with various sets of
+ * attributes, and they all expire after a configurable time to live. The absence of an
+ * entry is cached too. When the cache is full, the Dns which have not been read recently
+ * are evicted, using the CLOCK algorithm : reads don't take any lock.
+ * <p>
+ * The Dns are normalized before being used as keys, so that the various spellings of a Dn
+ * are found in the cache, and are invalidated, together. If the cache has a SchemaManager,
+ * the Dns are normalized using the schema, otherwise they are case-folded.
+ * <p>
+ * The cache is kept coherent by invalidating the Dns which have changed : the changes done
+ * through a CachingLdapConnection are invalidated by the connection itself, and the changes
+ * done by other clients are invalidated by an {@link EntryCacheInvalidator}. An entry which
+ * has been read while some invalidation was done is not stored, as it may have been read before
+ * the change. When the cache is not coherent, typically when the EntryCacheInvalidator has lost
+ * its connection, all the reads are sent to the server.
+ * <p>
+ * The entries are read with the identity of the connection which has read them first : a cache
+ * must only be shared by connections bound with the same identity.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class EntryCache
+{
+    /** The default number of Dns kept in the cache */
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
+    /** The marker used to cache the absence of an entry */
+    static final Entry ABSENT = new DefaultEntry();
+
+    /** The cached Dns, per normalized Dn */
+    private final ConcurrentMap<String, CachedDn> cache = new ConcurrentHashMap<>();
+
+    /** The cached Dns, in the order the clock hand visits them. Also used as a lock for the updates */
+    private final Queue<String> clock = new ConcurrentLinkedQueue<>();
+
+    /** The maximum number of Dns kept in the cache */
+    private final int cacheSize;
+
+    /** The time an entry is kept in the cache, in milliseconds */
+    private final long timeToLive;
+
+    /** The SchemaManager used to normalize the Dns, if any */
+    private volatile SchemaManager schemaManager;
+
+    /** Incremented each time some entries are invalidated */
+    private final AtomicLong generation = new AtomicLong();
+
+    /** Tells if the cache can be used */
+    private volatile boolean coherent = true;
+
+    /** The number of reads served by the cache */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** The number of reads sent to the server */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * The entries read for a Dn
+     */
+    private static final class CachedDn
+    {
+        /** The normalized entry Dn */
+        private final Dn dn;
+
+        /** The date after which the entries must be read again */
+        private final long expiration;
+
+        /** The entries, per requested attributes */
+        private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+        /** The result of an exists() call, if any */
+        private volatile Boolean exists;
+
+        /** Set when the Dn is found in the cache, cleared by the clock hand */
+        private volatile boolean referenced;
+
+
+        private CachedDn( Dn dn, long expiration )
+        {
+            this.dn = dn;
+            this.expiration = expiration;
+        }
+    }
+
+
+    /**
+     * Creates a new instance of EntryCache, which case-folds the Dns until a SchemaManager
+     * is set.
+     *
+     * @param cacheSize The maximum number of Dns kept in the cache
+     * @param timeToLive The time an entry is kept in the cache, in milliseconds. A value
+     * of 0 or below means the entries never expire
+     */
+    public EntryCache( int cacheSize, long timeToLive )
+    {
+        this( cacheSize, timeToLive, null );
+    }
+
+
+    /**
+     * Creates a new instance of EntryCache.
+     *
+     * @param cacheSize The maximum number of Dns kept in the cache
+     * @param timeToLive The time an entry is kept in the cache, in milliseconds. A value
+     * of 0 or below means the entries never expire
+     * @param schemaManager The SchemaManager used to normalize the Dns, or null to case-fold them
+     */
+    public EntryCache( int cacheSize, long timeToLive, SchemaManager schemaManager )
+    {
+        this.cacheSize = cacheSize;
+        this.timeToLive = timeToLive;
+        this.schemaManager = schemaManager;
+    }
+
+
+    /**
+     * Set the SchemaManager used to normalize the Dns, if the cache doesn't have one yet. The
+     * cache is emptied, as the Dns it contains have been normalized differently.
+     *
+     * @param schemaManager The SchemaManager, ignored if null
+     */
+    public void setSchemaManager( SchemaManager schemaManager )
+    {
+        if ( ( schemaManager == null ) || ( this.schemaManager != null ) )
+        {
+            return;
+        }
+
+        synchronized ( clock )
+        {
+            if ( this.schemaManager == null )
+            {
+                generation.incrementAndGet();
+                this.schemaManager = schemaManager;
+                cache.clear();
+                clock.clear();
+            }
+        }
+    }
+
+
+    /**
+     * @return The SchemaManager used to normalize the Dns, if any
+     */
+    public SchemaManager getSchemaManager()
+    {
+        return schemaManager;
+    }
+
+
+    /**
+     * Normalize a Dn, with the schema if there is one, otherwise by case-folding it.
+     */
+    private Dn normalize( Dn dn )
+    {
+        SchemaManager manager = schemaManager;
+
+        if ( manager != null )
+        {
+            try
+            {
+                return new Dn( manager, dn );
+            }
+            catch ( LdapInvalidDnException lide )
+            {
+                // The Dn does not fit the schema, case-fold it
+            }
+        }
+
+        try
+        {
+            return new Dn( Strings.toLowerCase( dn.getNormName() ) );
+        }
+        catch ( LdapInvalidDnException lide )
+        {
+            return dn;
+        }
+    }
+
+
+    /**
+     * @return The current generation, to be given back when storing what has been read
+     */
+    long getGeneration()
+    {
+        return generation.get();
+    }
+
+
+    /**
+     * Get the non expired CachedDn for a Dn, without taking any lock.
+     */
+    private CachedDn getCachedDn( Dn dn )
+    {
+        CachedDn cachedDn = cache.get( normalize( dn ).getNormName() );
+
+        if ( cachedDn == null )
+        {
+            return null;
+        }
+
+        if ( ( timeToLive > 0L ) && ( cachedDn.expiration < System.currentTimeMillis() ) )
+        {
+            // It will be replaced when the entry is read again
+            return null;
+        }
+
+        cachedDn.referenced = true;
+
+        return cachedDn;
+    }
+
+
+    /**
+     * Get or create the CachedDn for a Dn. The caller must hold the clock lock.
+     */
+    private CachedDn getOrCreateCachedDn( Dn dn )
+    {
+        Dn normDn = normalize( dn );
+        String key = normDn.getNormName();
+        CachedDn cachedDn = cache.get( key );
+
+        if ( cachedDn == null )
+        {
+            evict();
+            clock.offer( key );
+        }
+        else if ( ( timeToLive <= 0L ) || ( cachedDn.expiration >= System.currentTimeMillis() ) )
+        {
+            return cachedDn;
+        }
+
+        // A new Dn, or an expired one which keeps its place in the clock
+        cachedDn = new CachedDn( normDn, System.currentTimeMillis() + timeToLive );
+        cache.put( key, cachedDn );
+
+        return cachedDn;
+    }
+
+
+    /**
+     * Make some room for a new Dn, moving the clock hand until it finds a Dn which has not
+     * been read since its last visit. Must be called while holding the clock lock.
+     */
+    private void evict()
+    {
+        // Bound the number of second chances, concurrent reads may keep setting the flags
+        int secondChances = 0;
+
+        while ( cache.size() >= cacheSize )
+        {
+            String key = clock.poll();
+
+            if ( key == null )
+            {
+                return;
+            }
+
+            CachedDn candidate = cache.get( key );
+
+            if ( candidate == null )
+            {
+                continue;
+            }
+
+            if ( candidate.referenced && ( secondChances++ < cacheSize ) )
+            {
+                candidate.referenced = false;
+                clock.offer( key );
+            }
+            else
+            {
+                cache.remove( key );
+            }
+        }
+    }
+
+
+    /**
+     * Get a copy of an entry read with some attributes.
+     *
+     * @param dn The entry Dn
+     * @param attributes The key of the requested attributes
+     * @return A copy of the cached entry, {@link #ABSENT} if the entry does not exist, or null
+     * if nothing is cached
+     */
+    Entry getEntry( Dn dn, String attributes )
+    {
+        if ( !coherent )
+        {
+            misses.incrementAndGet();
+
+            return null;
+        }
+
+        Entry entry = null;
+        CachedDn cachedDn = getCachedDn( dn );
+
+        if ( cachedDn != null )
+        {
+            entry = cachedDn.entries.get( attributes );
+        }
+
+        if ( entry == null )
+        {
+            misses.incrementAndGet();
+
+            return null;
+        }
+
+        hits.incrementAndGet();
+
+        return entry == ABSENT ? ABSENT : entry.clone();
+    }
+
+
+    /**
+     * Store an entry read with some attributes, unless some entries have been invalidated
+     * since the given generation.
+     *
+     * @param dn The entry Dn
+     * @param attributes The key of the requested attributes
+     * @param entry The read entry, or null if it does not exist
+     * @param readGeneration The generation when the entry was read
+     */
+    void putEntry( Dn dn, String attributes, Entry entry, long readGeneration )
+    {
+        Entry cachedEntry = entry == null ? ABSENT : entry.clone();
+
+        synchronized ( clock )
+        {
+            if ( !coherent || ( readGeneration != generation.get() ) )
+            {
+                return;
+            }
+
+            getOrCreateCachedDn( dn ).entries.put( attributes, cachedEntry );
+        }
+    }
+
+
+    /**
+     * Tells if an entry exists.
+     *
+     * @param dn The entry Dn
+     * @return The existence of the entry, or null if it is not known
+     */
+    Boolean getExists( Dn dn )
+    {
+        Boolean exists = null;
+
+        if ( coherent )
+        {
+            CachedDn cachedDn = getCachedDn( dn );
+
+            if ( cachedDn != null )
+            {
+                exists = cachedDn.exists;
+
+                // Otherwise, any read entry will do
+                Iterator<Entry> entries = cachedDn.entries.values().iterator();
+
+                if ( ( exists == null ) && entries.hasNext() )
+                {
+                    exists = entries.next() != ABSENT;
+                }
+            }
+        }
+
+        if ( exists == null )
+        {
+            misses.incrementAndGet();
+        }
+        else
+        {
+            hits.incrementAndGet();
+        }
+
+        return exists;
+    }
+
+
+    /**
+     * Store the existence of an entry, unless some entries have been invalidated since the
+     * given generation.
+     *
+     * @param dn The entry Dn
+     * @param exists Tells if the entry exists
+     * @param readGeneration The generation when the existence was checked
+     */
+    void putExists( Dn dn, boolean exists, long readGeneration )
+    {
+        synchronized ( clock )
+        {
+            if ( !coherent || ( readGeneration != generation.get() ) )
+            {
+                return;
+            }
+
+            getOrCreateCachedDn( dn ).exists = exists;
+        }
+    }
+
+
+    /**
+     * Remove the entries read for a Dn
+     *
+     * @param dn The changed Dn
+     */
+    public void invalidate( Dn dn )
+    {
+        String key = normalize( dn ).getNormName();
+
+        synchronized ( clock )
+        {
+            generation.incrementAndGet();
+
+            if ( cache.remove( key ) != null )
+            {
+                clock.remove( key );
+            }
+        }
+    }
+
+
+    /**
+     * Remove the entries read for a Dn and all its descendants
+     *
+     * @param dn The root of the changed subtree
+     */
+    public void invalidateSubtree( Dn dn )
+    {
+        Dn normDn = normalize( dn );
+
+        synchronized ( clock )
+        {
+            generation.incrementAndGet();
+
+            if ( cache.values().removeIf( cachedDn -> cachedDn.dn.isDescendantOf( normDn ) ) )
+            {
+                clock.removeIf( key -> !cache.containsKey( key ) );
+            }
+        }
+    }
+
+
+    /**
+     * Tells if the cache can be used. When it's not coherent, it's emptied, and nothing is read
+     * from or stored into it.
+     *
+     * @param coherent <code>false</code> if the changes can't be tracked anymore
+     */
+    public void setCoherent( boolean coherent )
+    {
+        synchronized ( clock )
+        {
+            generation.incrementAndGet();
+            cache.clear();
+            clock.clear();
+            this.coherent = coherent;
+        }
+    }
+
+
+    /**
+     * @return <code>true</code> if the cache can be used
+     */
+    public boolean isCoherent()
+    {
+        return coherent;
+    }
+
+
+    /**
+     * @return The number of reads served by the cache
+     */
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+
+    /**
+     * @return The number of reads sent to the server
+     */
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+
+    /**
+     * @return The number of Dns currently stored in the cache
+     */
+    public int getSize()
+    {
+        return cache.size();
+    }
+
+
+    /**
+     * Remove all the entries from the cache, and reset the counters
+     */
+    public void clear()
+    {
+        synchronized ( clock )
+        {
+            generation.incrementAndGet();
+            cache.clear();
+            clock.clear();
+        }
+
+        hits.set( 0L );
+        misses.set( 0L );
+    }
+}
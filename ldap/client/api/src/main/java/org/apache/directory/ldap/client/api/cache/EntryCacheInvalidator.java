@@ -0,0 +1,432 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.cache;
+
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.message.Response;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.message.controls.ChangeType;
+import org.apache.directory.api.ldap.model.message.controls.EntryChange;
+import org.apache.directory.api.ldap.model.message.controls.PersistentSearch;
+import org.apache.directory.api.ldap.model.message.controls.PersistentSearchImpl;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.ldap.client.api.LdapAsyncConnection;
+import org.apache.directory.ldap.client.api.LdapConnection;
+import org.apache.directory.ldap.client.api.LdapConnectionFactory;
+import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Keeps an {@link EntryCache} coherent with the server, using a Persistent Search
+ * (draft-ietf-ldapext-psearch) on a dedicated connection : each entry changed under the
+ * base Dn is removed from the cache. When the server sends the EntryChange control, only the
+ * changed entry is invalidated, unless it has been renamed or moved, in which case both its
+ * old and new subtrees are invalidated. Without this control, the whole subtree of the changed
+ * entry is invalidated.
+ * <p>
+ * The changes done while the persistent search is not running can't be known, so the cache is
+ * disabled until the search is accepted by the server, and each time it fails. A new connection
+ * is then created after a delay, which doubles after each failure, up to a maximum. As the
+ * Persistent Search has no acknowledgement, the search is considered as accepted once the server
+ * has not rejected it for a second. The changes done while the search is being set up may be
+ * missed : the cache time to live bounds how long such a change can be ignored.
+ * <pre>
+ * EntryCacheInvalidator invalidator = new EntryCacheInvalidator( connectionFactory, cache, baseDn );
+ * Thread thread = new Thread( invalidator );
+ * thread.start();
+ * ...
+ * invalidator.stop();
+ * </pre>
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class EntryCacheInvalidator implements Runnable
+{
+    /** The logger for this class */
+    private static final Logger LOG = LoggerFactory.getLogger( EntryCacheInvalidator.class );
+
+    /** The time to wait for a change before checking the connection, in ms */
+    private static final long POLL_INTERVAL = 1000L;
+
+    /** The factory creating the connections */
+    private final LdapConnectionFactory connectionFactory;
+
+    /** The cache to keep coherent */
+    private final EntryCache cache;
+
+    /** The base of the tracked entries */
+    private final Dn baseDn;
+
+    /** The filter of the tracked entries */
+    private String filter = "(objectClass=*)";
+
+    /** The delay before the first reconnection, in ms */
+    private long reconnectDelay = 1000L;
+
+    /** The maximum delay between two reconnections, in ms */
+    private long maxReconnectDelay = 60000L;
+
+    /** Tells if the invalidator has been stopped */
+    private volatile boolean stopped;
+
+    /** The current connection */
+    private volatile LdapAsyncConnection connection;
+
+    /** The future of the current persistent search */
+    private volatile SearchFuture future;
+
+
+    /**
+     * Creates a new EntryCacheInvalidator
+     *
+     * @param connectionFactory The factory creating the bound connections
+     * @param cache The cache to keep coherent
+     * @param baseDn The base of the tracked entries
+     */
+    public EntryCacheInvalidator( LdapConnectionFactory connectionFactory, EntryCache cache, Dn baseDn )
+    {
+        this.connectionFactory = connectionFactory;
+        this.cache = cache;
+        this.baseDn = baseDn;
+    }
+
+
+    /**
+     * @param filter The filter of the tracked entries. The entries which don't match it must
+     * never be read through the cache.
+     */
+    public void setFilter( String filter )
+    {
+        this.filter = filter;
+    }
+
+
+    /**
+     * @param reconnectDelay The delay before the first reconnection, in ms
+     */
+    public void setReconnectDelay( long reconnectDelay )
+    {
+        this.reconnectDelay = reconnectDelay;
+    }
+
+
+    /**
+     * @param maxReconnectDelay The maximum delay between two reconnections, in ms
+     */
+    public void setMaxReconnectDelay( long maxReconnectDelay )
+    {
+        this.maxReconnectDelay = maxReconnectDelay;
+    }
+
+
+    /**
+     * Run the persistent search until the invalidator is stopped.
+     */
+    @Override
+    public void run()
+    {
+        long delay = reconnectDelay;
+
+        while ( !stopped )
+        {
+            try
+            {
+                listen();
+            }
+            catch ( LdapException | IOException e )
+            {
+                if ( stopped )
+                {
+                    return;
+                }
+
+                LOG.warn( I18n.err( I18n.ERR_04193_ENTRY_CACHE_INVALIDATOR_FAILED, e.getMessage() ), e );
+
+                // Only reset the delay if the search has been accepted
+                if ( cache.isCoherent() )
+                {
+                    delay = reconnectDelay;
+                }
+                else
+                {
+                    delay = Math.min( delay * 2, maxReconnectDelay );
+                }
+            }
+            finally
+            {
+                cache.setCoherent( false );
+                closeConnection();
+            }
+
+            if ( LOG.isDebugEnabled() )
+            {
+                LOG.debug( I18n.msg( I18n.MSG_04190_ENTRY_CACHE_RECONNECT, delay ) );
+            }
+
+            if ( !pause( delay ) )
+            {
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * Stop the invalidator. The cache is disabled, as it can't be kept coherent anymore.
+     */
+    public void stop()
+    {
+        stopped = true;
+        cache.setCoherent( false );
+
+        SearchFuture currentFuture = future;
+
+        if ( currentFuture != null )
+        {
+            currentFuture.cancel( true );
+        }
+    }
+
+
+    /**
+     * @return <code>true</code> if the invalidator has been stopped
+     */
+    public boolean isStopped()
+    {
+        return stopped;
+    }
+
+
+    /**
+     * Wait before the next connection
+     *
+     * @param wait The time to wait, in ms
+     * @return <code>false</code> if the invalidator has been stopped meanwhile
+     */
+    private boolean pause( long wait )
+    {
+        long end = System.currentTimeMillis() + wait;
+
+        try
+        {
+            while ( !stopped )
+            {
+                long remaining = end - System.currentTimeMillis();
+
+                if ( remaining <= 0L )
+                {
+                    return true;
+                }
+
+                // Check the stop flag regularly
+                Thread.sleep( Math.min( remaining, 100L ) );
+            }
+        }
+        catch ( InterruptedException ie )
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Run the persistent search, until it fails or the invalidator is stopped
+     *
+     * @throws LdapException If the search failed
+     * @throws IOException If the connection can't be closed
+     */
+    private void listen() throws LdapException, IOException
+    {
+        cache.setCoherent( false );
+
+        LdapConnection newConnection = connectionFactory.newLdapConnection();
+
+        if ( !( newConnection instanceof LdapAsyncConnection ) )
+        {
+            newConnection.close();
+
+            throw new LdapException( I18n.err( I18n.ERR_04184_NOT_AN_ASYNC_CONNECTION, newConnection ) );
+        }
+
+        connection = ( LdapAsyncConnection ) newConnection;
+
+        if ( stopped )
+        {
+            return;
+        }
+
+        future = connection.searchAsync( createRequest() );
+
+        while ( !stopped )
+        {
+            Response response;
+
+            try
+            {
+                response = future.get( POLL_INTERVAL, TimeUnit.MILLISECONDS );
+            }
+            catch ( InterruptedException ie )
+            {
+                Thread.currentThread().interrupt();
+                stop();
+
+                break;
+            }
+
+            if ( response == null )
+            {
+                if ( future.isCancelled() || !connection.isConnected() )
+                {
+                    if ( stopped )
+                    {
+                        break;
+                    }
+
+                    throw new LdapException( I18n.err( I18n.ERR_04160_SESSION_HAS_BEEN_CLOSED ) );
+                }
+
+                if ( !cache.isCoherent() )
+                {
+                    // The search has not been rejected, the changes are now tracked
+                    cache.setCoherent( true );
+                }
+
+                continue;
+            }
+
+            if ( response instanceof SearchResultEntry )
+            {
+                processEntry( ( SearchResultEntry ) response );
+            }
+            else if ( response instanceof SearchResultDone )
+            {
+                throw new LdapException( I18n.err( I18n.ERR_04194_PERSISTENT_SEARCH_ENDED,
+                    ( ( SearchResultDone ) response ).getLdapResult() ) );
+            }
+        }
+    }
+
+
+    /**
+     * Create the persistent search request
+     *
+     * @return The search request
+     * @throws LdapException If the filter is invalid
+     */
+    private SearchRequest createRequest() throws LdapException
+    {
+        SearchRequest searchRequest = new SearchRequestImpl();
+        searchRequest.setBase( baseDn );
+        searchRequest.setFilter( filter );
+        searchRequest.setScope( SearchScope.SUBTREE );
+        searchRequest.addAttributes( SchemaConstants.NO_ATTRIBUTE );
+
+        PersistentSearch persistentSearch = new PersistentSearchImpl();
+        persistentSearch.setCritical( true );
+        persistentSearch.setChangesOnly( true );
+        persistentSearch.setReturnECs( true );
+        persistentSearch.setChangeTypes( PersistentSearch.CHANGE_TYPES_MAX );
+        searchRequest.addControl( persistentSearch );
+
+        return searchRequest;
+    }
+
+
+    /**
+     * Invalidate a changed entry
+     *
+     * @param entry The changed entry
+     */
+    private void processEntry( SearchResultEntry entry )
+    {
+        Dn dn = entry.getObjectName();
+        EntryChange entryChange = ( EntryChange ) entry.getControl( EntryChange.OID );
+        ChangeType changeType = entryChange == null ? null : entryChange.getChangeType();
+
+        if ( LOG.isDebugEnabled() )
+        {
+            LOG.debug( I18n.msg( I18n.MSG_04189_ENTRY_CACHE_INVALIDATED, dn, changeType ) );
+        }
+
+        if ( changeType == null )
+        {
+            // We don't know what happened
+            cache.invalidateSubtree( dn );
+        }
+        else if ( changeType == ChangeType.MODDN )
+        {
+            if ( entryChange.getPreviousDn() != null )
+            {
+                cache.invalidateSubtree( entryChange.getPreviousDn() );
+            }
+
+            cache.invalidateSubtree( dn );
+        }
+        else
+        {
+            cache.invalidate( dn );
+        }
+    }
+
+
+    /**
+     * Close the current connection, abandoning the persistent search if it's still running
+     */
+    private void closeConnection()
+    {
+        SearchFuture currentFuture = future;
+        future = null;
+
+        if ( ( currentFuture != null ) && !currentFuture.isCancelled() && ( connection != null )
+            && connection.isConnected() )
+        {
+            // Abandon the search if it's still running
+            currentFuture.cancel( true );
+        }
+
+        if ( connection != null )
+        {
+            try
+            {
+                connection.close();
+            }
+            catch ( IOException ioe )
+            {
+                LOG.warn( ioe.getMessage(), ioe );
+            }
+
+            connection = null;
+        }
+    }
+}
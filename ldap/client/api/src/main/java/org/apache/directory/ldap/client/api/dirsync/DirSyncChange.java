@@ -0,0 +1,128 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.dirsync;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.directory.api.ldap.model.entry.Attribute;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.util.Strings;
+
+
+/**
+ * A change received by a {@link DirSyncEngine}, to be applied by a {@link DirSyncSink}.
+ * <p>
+ * The entry contains the attributes which have been modified, with all their values. When the
+ * incremental values flag is used, the values which have been added to or removed from a linked
+ * attribute (like member) are not part of the entry : they are given by {@link #getAddedValues()}
+ * and {@link #getRemovedValues()}, without the range option used by the server.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class DirSyncChange
+{
+    /** The objectGUID of the modified object */
+    private final byte[] objectGuid;
+
+    /** Tells if the object has been deleted */
+    private final boolean deleted;
+
+    /** The entry, with the modified attributes */
+    private final Entry entry;
+
+    /** The values added to linked attributes */
+    private final List<Attribute> addedValues = new ArrayList<>();
+
+    /** The values removed from linked attributes */
+    private final List<Attribute> removedValues = new ArrayList<>();
+
+
+    /**
+     * Creates a new DirSyncChange
+     *
+     * @param objectGuid The objectGUID of the modified object
+     * @param deleted Tells if the object has been deleted
+     * @param entry The entry, with the modified attributes
+     */
+    public DirSyncChange( byte[] objectGuid, boolean deleted, Entry entry )
+    {
+        this.objectGuid = objectGuid;
+        this.deleted = deleted;
+        this.entry = entry;
+    }
+
+
+    /**
+     * @return The objectGUID of the modified object
+     */
+    public byte[] getObjectGuid()
+    {
+        return objectGuid;
+    }
+
+
+    /**
+     * @return <code>true</code> if the object has been deleted. The entry Dn is then the tombstone Dn.
+     */
+    public boolean isDeleted()
+    {
+        return deleted;
+    }
+
+
+    /**
+     * @return The entry, with the modified attributes
+     */
+    public Entry getEntry()
+    {
+        return entry;
+    }
+
+
+    /**
+     * @return The values added to linked attributes, one attribute per modified linked attribute
+     */
+    public List<Attribute> getAddedValues()
+    {
+        return addedValues;
+    }
+
+
+    /**
+     * @return The values removed from linked attributes, one attribute per modified linked attribute
+     */
+    public List<Attribute> getRemovedValues()
+    {
+        return removedValues;
+    }
+
+
+    /**
+     * @see Object#toString()
+     */
+    @Override
+    public String toString()
+    {
+        return ( deleted ? "DELETE " : "MODIFY " ) + Strings.dumpBytes( objectGuid ) + " "
+            + ( entry == null ? "" : entry.getDn() );
+    }
+}
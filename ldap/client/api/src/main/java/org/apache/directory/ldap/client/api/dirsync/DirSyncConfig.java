@@ -0,0 +1,276 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.dirsync;
+
+
+import org.apache.directory.api.ldap.model.name.Dn;
+
+
+/**
+ * The configuration of a {@link DirSyncEngine}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class DirSyncConfig
+{
+    /** The default number of changes applied at once */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /** The default delay before the first reconnection, in ms */
+    public static final long DEFAULT_RECONNECT_DELAY = 1000L;
+
+    /** The default maximum delay between two reconnections, in ms */
+    public static final long DEFAULT_MAX_RECONNECT_DELAY = 60000L;
+
+    /** The synchronized naming context */
+    private Dn baseDn;
+
+    /** The filter selecting the synchronized objects */
+    private String filter = "(objectClass=*)";
+
+    /** The synchronized attributes, all the attributes if empty */
+    private String[] attributes = new String[0];
+
+    /** Tells if the LDAP_DIRSYNC_OBJECT_SECURITY flag is used */
+    private boolean objectSecurity;
+
+    /** Tells if the LDAP_DIRSYNC_ANCESTORS_FIRST_ORDER flag is used */
+    private boolean ancestorsFirst;
+
+    /** Tells if the LDAP_DIRSYNC_INCREMENTAL_VALUES flag is used */
+    private boolean incrementalValues = true;
+
+    /** The maximum size of a DirSync response, in bytes. 0 for the server default */
+    private int maxReturnLength;
+
+    /** The number of changes applied at once */
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /** The delay between two synchronizations, in ms. 0 to synchronize only once */
+    private long syncInterval;
+
+    /** The delay before the first reconnection, in ms */
+    private long reconnectDelay = DEFAULT_RECONNECT_DELAY;
+
+    /** The maximum delay between two reconnections, in ms */
+    private long maxReconnectDelay = DEFAULT_MAX_RECONNECT_DELAY;
+
+
+    /**
+     * @return The synchronized naming context
+     */
+    public Dn getBaseDn()
+    {
+        return baseDn;
+    }
+
+
+    /**
+     * @param baseDn The synchronized naming context
+     */
+    public void setBaseDn( Dn baseDn )
+    {
+        this.baseDn = baseDn;
+    }
+
+
+    /**
+     * @return The filter selecting the synchronized objects
+     */
+    public String getFilter()
+    {
+        return filter;
+    }
+
+
+    /**
+     * @param filter The filter selecting the synchronized objects
+     */
+    public void setFilter( String filter )
+    {
+        this.filter = filter;
+    }
+
+
+    /**
+     * @return The synchronized attributes, all the attributes if empty
+     */
+    public String[] getAttributes()
+    {
+        return attributes;
+    }
+
+
+    /**
+     * @param attributes The synchronized attributes, all the attributes if empty
+     */
+    public void setAttributes( String... attributes )
+    {
+        this.attributes = attributes;
+    }
+
+
+    /**
+     * @return <code>true</code> if the LDAP_DIRSYNC_OBJECT_SECURITY flag is used. With this flag, the
+     * server only returns the objects and attributes the user can read, and the user does not need
+     * the "Replicating Directory Changes" right.
+     */
+    public boolean isObjectSecurity()
+    {
+        return objectSecurity;
+    }
+
+
+    /**
+     * @param objectSecurity <code>true</code> if the LDAP_DIRSYNC_OBJECT_SECURITY flag is used
+     */
+    public void setObjectSecurity( boolean objectSecurity )
+    {
+        this.objectSecurity = objectSecurity;
+    }
+
+
+    /**
+     * @return <code>true</code> if the LDAP_DIRSYNC_ANCESTORS_FIRST_ORDER flag is used. With this flag, the
+     * parents are returned before their children.
+     */
+    public boolean isAncestorsFirst()
+    {
+        return ancestorsFirst;
+    }
+
+
+    /**
+     * @param ancestorsFirst <code>true</code> if the LDAP_DIRSYNC_ANCESTORS_FIRST_ORDER flag is used
+     */
+    public void setAncestorsFirst( boolean ancestorsFirst )
+    {
+        this.ancestorsFirst = ancestorsFirst;
+    }
+
+
+    /**
+     * @return <code>true</code> if the LDAP_DIRSYNC_INCREMENTAL_VALUES flag is used. With this flag, only the
+     * values added to or removed from a linked attribute are returned, instead of all its values.
+     */
+    public boolean isIncrementalValues()
+    {
+        return incrementalValues;
+    }
+
+
+    /**
+     * @param incrementalValues <code>true</code> if the LDAP_DIRSYNC_INCREMENTAL_VALUES flag is used
+     */
+    public void setIncrementalValues( boolean incrementalValues )
+    {
+        this.incrementalValues = incrementalValues;
+    }
+
+
+    /**
+     * @return The maximum size of a DirSync response, in bytes. 0 for the server default
+     */
+    public int getMaxReturnLength()
+    {
+        return maxReturnLength;
+    }
+
+
+    /**
+     * @param maxReturnLength The maximum size of a DirSync response, in bytes. 0 for the server default
+     */
+    public void setMaxReturnLength( int maxReturnLength )
+    {
+        this.maxReturnLength = maxReturnLength;
+    }
+
+
+    /**
+     * @return The number of changes applied at once
+     */
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+
+
+    /**
+     * @param batchSize The number of changes applied at once
+     */
+    public void setBatchSize( int batchSize )
+    {
+        this.batchSize = batchSize;
+    }
+
+
+    /**
+     * @return The delay between two synchronizations, in ms. 0 to synchronize only once
+     */
+    public long getSyncInterval()
+    {
+        return syncInterval;
+    }
+
+
+    /**
+     * @param syncInterval The delay between two synchronizations, in ms. 0 to synchronize only once
+     */
+    public void setSyncInterval( long syncInterval )
+    {
+        this.syncInterval = syncInterval;
+    }
+
+
+    /**
+     * @return The delay before the first reconnection, in ms
+     */
+    public long getReconnectDelay()
+    {
+        return reconnectDelay;
+    }
+
+
+    /**
+     * @param reconnectDelay The delay before the first reconnection, in ms
+     */
+    public void setReconnectDelay( long reconnectDelay )
+    {
+        this.reconnectDelay = reconnectDelay;
+    }
+
+
+    /**
+     * @return The maximum delay between two reconnections, in ms
+     */
+    public long getMaxReconnectDelay()
+    {
+        return maxReconnectDelay;
+    }
+
+
+    /**
+     * @param maxReconnectDelay The maximum delay between two reconnections, in ms
+     */
+    public void setMaxReconnectDelay( long maxReconnectDelay )
+    {
+        this.maxReconnectDelay = maxReconnectDelay;
+    }
+}
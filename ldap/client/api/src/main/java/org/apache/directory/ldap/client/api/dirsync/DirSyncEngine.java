@@ -0,0 +1,509 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.dirsync;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.extras.controls.ad.AdDirSyncRequest;
+import org.apache.directory.api.ldap.extras.controls.ad.AdDirSyncRequestImpl;
+import org.apache.directory.api.ldap.extras.controls.ad.AdDirSyncResponse;
+import org.apache.directory.api.ldap.extras.controls.ad.AdDirSyncResponseFlag;
+import org.apache.directory.api.ldap.model.cursor.CursorException;
+import org.apache.directory.api.ldap.model.cursor.SearchCursor;
+import org.apache.directory.api.ldap.model.entry.Attribute;
+import org.apache.directory.api.ldap.model.entry.DefaultAttribute;
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.entry.Value;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.message.AliasDerefMode;
+import org.apache.directory.api.ldap.model.message.Response;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.util.Strings;
+import org.apache.directory.ldap.client.api.LdapConnection;
+import org.apache.directory.ldap.client.api.LdapConnectionFactory;
+import org.apache.directory.ldap.client.api.syncrepl.CookieStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * An Active Directory DirSync client. It sends DirSync requests to a server until the server
+ * has no more changes to send, and gives the received changes to a {@link DirSyncSink}.
+ * <p>
+ * The changes are given to the sink in batches. Once all the changes returned by a DirSync
+ * request have been applied, the returned cookie is stored in a {@link CookieStore}, so that
+ * the next synchronization only gets the changes made since then. By default, the
+ * LDAP_DIRSYNC_INCREMENTAL_VALUES flag is used, so that only the values added to or removed
+ * from a linked attribute are transferred, instead of all its values.
+ * <p>
+ * With a synchronization interval, the engine runs until it is stopped. When a synchronization
+ * fails, the next one is started after a delay, which doubles after each failure, up to a maximum.
+ * <pre>
+ * DirSyncConfig config = new DirSyncConfig();
+ * config.setBaseDn( new Dn( "dc=example,dc=com" ) );
+ * config.setSyncInterval( 60000L );
+ *
+ * DirSyncEngine engine = new DirSyncEngine( connectionFactory, config, sink,
+ *     new FileCookieStore( Paths.get( "dirsync.cookie" ) ) );
+ * Thread thread = new Thread( engine );
+ * thread.start();
+ * ...
+ * engine.stop();
+ * </pre>
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class DirSyncEngine implements Runnable
+{
+    /** The logger for this class */
+    private static final Logger LOG = LoggerFactory.getLogger( DirSyncEngine.class );
+
+    /** The option used by the server for the incremental values of a linked attribute */
+    private static final String RANGE_OPTION = ";range=";
+
+    /** The attribute containing the object identifier */
+    private static final String OBJECT_GUID_AT = "objectGUID";
+
+    /** The attribute telling that an object has been deleted */
+    private static final String IS_DELETED_AT = "isDeleted";
+
+    /** The factory creating the connections */
+    private final LdapConnectionFactory connectionFactory;
+
+    /** The engine configuration */
+    private final DirSyncConfig config;
+
+    /** The sink receiving the changes */
+    private final DirSyncSink sink;
+
+    /** The cookie storage */
+    private final CookieStore cookieStore;
+
+    /** Tells if the engine has been stopped */
+    private volatile boolean stopped;
+
+    /** The current connection */
+    private volatile LdapConnection connection;
+
+    /** The last stored cookie */
+    private byte[] cookie;
+
+    /** Tells if the cookie has been loaded */
+    private boolean cookieLoaded;
+
+    /** The changes not yet applied */
+    private List<DirSyncChange> changes = new ArrayList<>();
+
+
+    /**
+     * Creates a new DirSyncEngine
+     *
+     * @param connectionFactory The factory creating the bound connections
+     * @param config The engine configuration
+     * @param sink The sink receiving the changes
+     * @param cookieStore The cookie storage
+     */
+    public DirSyncEngine( LdapConnectionFactory connectionFactory, DirSyncConfig config, DirSyncSink sink,
+        CookieStore cookieStore )
+    {
+        this.connectionFactory = connectionFactory;
+        this.config = config;
+        this.sink = sink;
+        this.cookieStore = cookieStore;
+    }
+
+
+    /**
+     * Run the synchronizations until the engine is stopped. Without any synchronization
+     * interval, returns after the first successful synchronization.
+     */
+    @Override
+    public void run()
+    {
+        long delay = config.getReconnectDelay();
+
+        while ( !stopped )
+        {
+            long wait;
+
+            try
+            {
+                synchronize();
+
+                if ( stopped || ( config.getSyncInterval() <= 0L ) )
+                {
+                    return;
+                }
+
+                delay = config.getReconnectDelay();
+                wait = config.getSyncInterval();
+            }
+            catch ( LdapException | IOException e )
+            {
+                if ( stopped )
+                {
+                    return;
+                }
+
+                LOG.warn( I18n.err( I18n.ERR_04186_DIRSYNC_FAILED, e.getMessage() ), e );
+
+                wait = delay;
+                delay = Math.min( delay * 2, config.getMaxReconnectDelay() );
+            }
+
+            if ( LOG.isDebugEnabled() )
+            {
+                LOG.debug( I18n.msg( I18n.MSG_04183_DIRSYNC_NEXT_SYNC, wait ) );
+            }
+
+            if ( !pause( wait ) )
+            {
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * Run a single synchronization, without retrying if it fails : DirSync requests are sent
+     * until the server has no more changes to send.
+     *
+     * @throws LdapException If the synchronization failed
+     * @throws IOException If the cookie can't be stored
+     */
+    public void synchronize() throws LdapException, IOException
+    {
+        if ( !cookieLoaded )
+        {
+            cookie = cookieStore.load();
+            cookieLoaded = true;
+        }
+
+        try
+        {
+            connection = connectionFactory.newLdapConnection();
+
+            if ( stopped )
+            {
+                return;
+            }
+
+            sink.beginSync( cookie == null );
+
+            boolean moreResults = true;
+
+            while ( moreResults && !stopped )
+            {
+                moreResults = requestChanges();
+            }
+
+            if ( !stopped )
+            {
+                sink.endSync();
+            }
+        }
+        finally
+        {
+            closeConnection();
+        }
+    }
+
+
+    /**
+     * Stop the engine. The current DirSync request is abandoned, the changes it has returned
+     * will be received again by the next synchronization.
+     */
+    public void stop()
+    {
+        stopped = true;
+        closeConnection();
+    }
+
+
+    /**
+     * @return <code>true</code> if the engine has been stopped
+     */
+    public boolean isStopped()
+    {
+        return stopped;
+    }
+
+
+    /**
+     * @return The last stored cookie
+     */
+    public byte[] getCookie()
+    {
+        return cookie;
+    }
+
+
+    /**
+     * Wait before the next synchronization
+     *
+     * @param wait The time to wait, in ms
+     * @return <code>false</code> if the engine has been stopped meanwhile
+     */
+    private boolean pause( long wait )
+    {
+        long end = System.currentTimeMillis() + wait;
+
+        try
+        {
+            while ( !stopped )
+            {
+                long remaining = end - System.currentTimeMillis();
+
+                if ( remaining <= 0L )
+                {
+                    return true;
+                }
+
+                // Check the stop flag regularly
+                Thread.sleep( Math.min( remaining, 100L ) );
+            }
+        }
+        catch ( InterruptedException ie )
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Send a DirSync request, apply the returned changes and store the returned cookie
+     *
+     * @return <code>true</code> if the server has more changes to send
+     * @throws LdapException If the request failed
+     * @throws IOException If the cookie can't be stored
+     */
+    private boolean requestChanges() throws LdapException, IOException
+    {
+        changes.clear();
+        int received = 0;
+        SearchResultDone done;
+
+        try ( SearchCursor cursor = connection.search( createRequest() ) )
+        {
+            while ( cursor.next() )
+            {
+                Response response = cursor.get();
+
+                if ( response instanceof SearchResultEntry )
+                {
+                    changes.add( createChange( ( ( SearchResultEntry ) response ).getEntry() ) );
+                    received++;
+
+                    if ( changes.size() >= config.getBatchSize() )
+                    {
+                        flushChanges();
+                    }
+                }
+            }
+
+            done = cursor.getSearchResultDone();
+        }
+        catch ( CursorException ce )
+        {
+            throw new LdapException( I18n.err( I18n.ERR_04186_DIRSYNC_FAILED, ce.getMessage() ), ce );
+        }
+
+        if ( stopped )
+        {
+            return false;
+        }
+
+        if ( ( done == null ) || ( done.getLdapResult().getResultCode() != ResultCodeEnum.SUCCESS ) )
+        {
+            throw new LdapException( I18n.err( I18n.ERR_04186_DIRSYNC_FAILED,
+                done == null ? I18n.err( I18n.ERR_04160_SESSION_HAS_BEEN_CLOSED )
+                    : done.getLdapResult().getDiagnosticMessage() ) );
+        }
+
+        AdDirSyncResponse dirSyncResponse = ( AdDirSyncResponse ) done.getControl( AdDirSyncResponse.OID );
+
+        if ( dirSyncResponse == null )
+        {
+            throw new LdapException( I18n.err( I18n.ERR_04187_NO_DIRSYNC_RESPONSE_CONTROL ) );
+        }
+
+        // The cookie is stored once all the changes have been applied
+        flushChanges();
+
+        byte[] receivedCookie = dirSyncResponse.getCookie();
+
+        if ( !Strings.isEmpty( receivedCookie ) )
+        {
+            cookieStore.save( receivedCookie );
+            cookie = receivedCookie;
+
+            if ( LOG.isDebugEnabled() )
+            {
+                LOG.debug( I18n.msg( I18n.MSG_04184_DIRSYNC_COOKIE_SAVED, received ) );
+            }
+        }
+
+        return dirSyncResponse.isMoreResults();
+    }
+
+
+    /**
+     * Create the DirSync request, with the last stored cookie
+     *
+     * @return The search request
+     * @throws LdapException If the filter is invalid
+     */
+    private SearchRequest createRequest() throws LdapException
+    {
+        SearchRequest request = new SearchRequestImpl();
+        request.setBase( config.getBaseDn() );
+        request.setFilter( config.getFilter() );
+        request.setScope( SearchScope.SUBTREE );
+        request.setDerefAliases( AliasDerefMode.NEVER_DEREF_ALIASES );
+        request.addAttributes( config.getAttributes() );
+
+        int flags = 0;
+
+        if ( config.isObjectSecurity() )
+        {
+            flags |= AdDirSyncResponseFlag.LDAP_DIRSYNC_OBJECT_SECURITY.getValue();
+        }
+
+        if ( config.isAncestorsFirst() )
+        {
+            flags |= AdDirSyncResponseFlag.LDAP_DIRSYNC_ANCESTORS_FIRST_ORDER.getValue();
+        }
+
+        if ( config.isIncrementalValues() )
+        {
+            flags |= AdDirSyncResponseFlag.LDAP_DIRSYNC_INCREMENTAL_VALUES.getValue();
+        }
+
+        AdDirSyncRequest dirSyncRequest = new AdDirSyncRequestImpl();
+        dirSyncRequest.setCritical( true );
+        dirSyncRequest.setParentsFirst( flags );
+        dirSyncRequest.setMaxAttributeCount( config.getMaxReturnLength() );
+        dirSyncRequest.setCookie( cookie );
+        request.addControl( dirSyncRequest );
+
+        return request;
+    }
+
+
+    /**
+     * Create a change from a returned entry. The incremental values of the linked attributes
+     * are returned by the server using a range option : range=1-1 for the added values, and
+     * range=0-0 for the removed values.
+     *
+     * @param received The returned entry
+     * @return The change
+     * @throws LdapException If the entry can't be copied
+     */
+    private DirSyncChange createChange( Entry received ) throws LdapException
+    {
+        Attribute objectGuid = received.get( OBJECT_GUID_AT );
+        Attribute isDeleted = received.get( IS_DELETED_AT );
+        boolean deleted = ( isDeleted != null ) && "TRUE".equalsIgnoreCase( isDeleted.get().getString() );
+        Entry entry = new DefaultEntry( received.getDn() );
+        DirSyncChange change = new DirSyncChange( objectGuid == null ? null : objectGuid.get().getBytes(),
+            deleted, entry );
+
+        for ( Attribute attribute : received )
+        {
+            String upId = attribute.getUpId();
+            int pos = Strings.toLowerCaseAscii( upId ).indexOf( RANGE_OPTION );
+
+            if ( pos < 0 )
+            {
+                entry.add( attribute );
+
+                continue;
+            }
+
+            String range = upId.substring( pos + RANGE_OPTION.length() );
+            Attribute values = new DefaultAttribute( upId.substring( 0, pos ) );
+
+            for ( Value value : attribute )
+            {
+                values.add( value );
+            }
+
+            if ( range.startsWith( "0-" ) )
+            {
+                change.getRemovedValues().add( values );
+            }
+            else
+            {
+                change.getAddedValues().add( values );
+            }
+        }
+
+        return change;
+    }
+
+
+    /**
+     * Give the pending changes to the sink
+     *
+     * @throws LdapException If the sink failed
+     */
+    private void flushChanges() throws LdapException
+    {
+        if ( !changes.isEmpty() )
+        {
+            sink.applyChanges( changes );
+            changes = new ArrayList<>();
+        }
+    }
+
+
+    /**
+     * Close the current connection
+     */
+    private void closeConnection()
+    {
+        LdapConnection currentConnection = connection;
+        connection = null;
+
+        if ( currentConnection != null )
+        {
+            try
+            {
+                currentConnection.close();
+            }
+            catch ( IOException ioe )
+            {
+                LOG.warn( ioe.getMessage(), ioe );
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.dirsync;
+
+
+import java.util.List;
+
+import org.apache.directory.api.ldap.model.exception.LdapException;
+
+
+/**
+ * The receiver of the changes read by a {@link DirSyncEngine}. The changes are given in
+ * batches, and the cookie is stored once all the changes returned by a DirSync request
+ * have been applied : after a failure, the changes applied since the last stored cookie
+ * are sent again, so the sink must accept a change it has already applied.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public interface DirSyncSink
+{
+    /**
+     * Called when a synchronization starts
+     *
+     * @param fullSync <code>true</code> if no cookie was sent, and all the objects will be received
+     * @throws LdapException If the sink can't be prepared
+     */
+    default void beginSync( boolean fullSync ) throws LdapException
+    {
+        // Nothing to do by default
+    }
+
+
+    /**
+     * Apply a batch of changes, in the order they have been received
+     *
+     * @param changes The changes to apply
+     * @throws LdapException If the changes can't be applied
+     */
+    void applyChanges( List<DirSyncChange> changes ) throws LdapException;
+
+
+    /**
+     * Called when the server has no more changes to send
+     *
+     * @throws LdapException If the sink can't be updated
+     */
+    default void endSync() throws LdapException
+    {
+        // Nothing to do by default
+    }
+}
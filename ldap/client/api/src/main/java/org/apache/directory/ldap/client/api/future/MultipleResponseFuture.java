@@ -128,6 +128,15 @@ public abstract class MultipleResponseFuture<R extends Response> implements Resp
     }
 
 
+    /**
+     * @return The number of responses received, and not yet read
+     */
+    public int getQueueSize()
+    {
+        return queue.size();
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,319 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.metrics;
+
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.directory.api.ldap.model.message.MessageTypeEnum;
+
+
+/**
+ * The default {@link LdapClientMetrics} implementation. It keeps, in memory :
+ * <ul>
+ *   <li>a latency histogram per request type, in ns</li>
+ *   <li>the number of sent, completed, aborted and in flight requests</li>
+ *   <li>the number of bytes sent and received, and the encoding and decoding time</li>
+ *   <li>the highest number of search responses waiting to be read by the application</li>
+ *   <li>the time spent waiting for a pooled connection, and the pool state at the last borrow</li>
+ * </ul>
+ * Nothing is locked : the counters can be read at any time, while they are updated, and the
+ * values read are then only approximately consistent with each other. The same instance can be
+ * shared by many connections and pools.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class DefaultLdapClientMetrics implements LdapClientMetrics
+{
+    /** The latency histograms, per request type */
+    private final Map<MessageTypeEnum, LatencyHistogram> latencies = new EnumMap<>( MessageTypeEnum.class );
+
+    /** The number of sent requests */
+    private final LongAdder sent = new LongAdder();
+
+    /** The number of requests that will never complete */
+    private final LongAdder aborted = new LongAdder();
+
+    /** The number of bytes sent */
+    private final LongAdder bytesSent = new LongAdder();
+
+    /** The number of bytes received */
+    private final LongAdder bytesReceived = new LongAdder();
+
+    /** The encoding time, per message */
+    private final LatencyHistogram encodingTimes = new LatencyHistogram();
+
+    /** The decoding time, per received buffer */
+    private final LatencyHistogram decodingTimes = new LatencyHistogram();
+
+    /** The time spent waiting for a pooled connection */
+    private final LatencyHistogram borrowWaitTimes = new LatencyHistogram();
+
+    /** The highest number of queued search responses */
+    private final LongAccumulator maxQueueDepth = new LongAccumulator( Math::max, 0L );
+
+    /** The number of borrowed connections, at the last borrow */
+    private final AtomicInteger poolActive = new AtomicInteger();
+
+    /** The number of idle connections, at the last borrow */
+    private final AtomicInteger poolIdle = new AtomicInteger();
+
+
+    /**
+     * Creates a new instance of DefaultLdapClientMetrics.
+     */
+    public DefaultLdapClientMetrics()
+    {
+        // The map is filled once, so that it can be read without lock
+        for ( MessageTypeEnum type : MessageTypeEnum.values() )
+        {
+            latencies.put( type, new LatencyHistogram() );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void requestSent( MessageTypeEnum requestType )
+    {
+        sent.increment();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void operationCompleted( MessageTypeEnum requestType, long durationNanos )
+    {
+        latencies.get( requestType ).record( durationNanos );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void operationAborted( MessageTypeEnum requestType )
+    {
+        aborted.increment();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void responseQueued( int queueDepth )
+    {
+        maxQueueDepth.accumulate( queueDepth );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void messageEncoded( long bytes, long durationNanos )
+    {
+        bytesSent.add( bytes );
+        encodingTimes.record( durationNanos );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void bytesDecoded( long bytes, long durationNanos )
+    {
+        bytesReceived.add( bytes );
+        decodingTimes.record( durationNanos );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void connectionBorrowed( long waitNanos, int active, int idle )
+    {
+        borrowWaitTimes.record( waitNanos );
+        poolActive.set( active );
+        poolIdle.set( idle );
+    }
+
+
+    /**
+     * Get the latency histogram of a request type. The latency is the time elapsed between the
+     * moment the request has been written and the moment its final response has been received.
+     *
+     * @param requestType The request type
+     * @return The latency histogram, in ns
+     */
+    public LatencyHistogram getLatency( MessageTypeEnum requestType )
+    {
+        return latencies.get( requestType );
+    }
+
+
+    /**
+     * @return The number of sent requests
+     */
+    public long getRequestsSent()
+    {
+        return sent.sum();
+    }
+
+
+    /**
+     * @return The number of requests that received their final response
+     */
+    public long getRequestsCompleted()
+    {
+        long completed = 0L;
+
+        for ( LatencyHistogram latency : latencies.values() )
+        {
+            completed += latency.getCount();
+        }
+
+        return completed;
+    }
+
+
+    /**
+     * @return The number of requests that were abandoned, or lost when their connection was closed
+     */
+    public long getRequestsAborted()
+    {
+        return aborted.sum();
+    }
+
+
+    /**
+     * @return The number of requests waiting for their final response
+     */
+    public long getRequestsInFlight()
+    {
+        return Math.max( 0L, getRequestsSent() - getRequestsCompleted() - getRequestsAborted() );
+    }
+
+
+    /**
+     * @return The number of bytes sent
+     */
+    public long getBytesSent()
+    {
+        return bytesSent.sum();
+    }
+
+
+    /**
+     * @return The number of bytes received
+     */
+    public long getBytesReceived()
+    {
+        return bytesReceived.sum();
+    }
+
+
+    /**
+     * @return The encoding time histogram, per message, in ns
+     */
+    public LatencyHistogram getEncodingTimes()
+    {
+        return encodingTimes;
+    }
+
+
+    /**
+     * @return The decoding time histogram, per received buffer, in ns
+     */
+    public LatencyHistogram getDecodingTimes()
+    {
+        return decodingTimes;
+    }
+
+
+    /**
+     * @return The histogram of the time spent waiting for a pooled connection, in ns
+     */
+    public LatencyHistogram getBorrowWaitTimes()
+    {
+        return borrowWaitTimes;
+    }
+
+
+    /**
+     * @return The highest number of search responses waiting to be read by the application
+     */
+    public long getMaxQueueDepth()
+    {
+        return maxQueueDepth.get();
+    }
+
+
+    /**
+     * @return The number of borrowed connections, when a connection was last borrowed
+     */
+    public int getPoolActive()
+    {
+        return poolActive.get();
+    }
+
+
+    /**
+     * @return The number of idle connections, when a connection was last borrowed
+     */
+    public int getPoolIdle()
+    {
+        return poolIdle.get();
+    }
+
+
+    /**
+     * Reset all the counters
+     */
+    public void reset()
+    {
+        for ( LatencyHistogram latency : latencies.values() )
+        {
+            latency.reset();
+        }
+
+        sent.reset();
+        aborted.reset();
+        bytesSent.reset();
+        bytesReceived.reset();
+        encodingTimes.reset();
+        decodingTimes.reset();
+        borrowWaitTimes.reset();
+        maxQueueDepth.reset();
+        poolActive.set( 0 );
+        poolIdle.set( 0 );
+    }
+}
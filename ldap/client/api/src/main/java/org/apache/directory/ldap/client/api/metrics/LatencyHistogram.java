@@ -0,0 +1,229 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.metrics;
+
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * A lock free histogram of positive values, in the spirit of HdrHistogram : the values are
+ * counted in buckets whose width grows with the magnitude of the values, so that any value is
+ * known with a relative precision better than 1/{@value #SUB_BUCKET_HALF_COUNT}, whatever its
+ * magnitude. The histogram has a fixed size, and recording a value only costs a few atomic
+ * increments.
+ * <p>
+ * The values below {@value #SUB_BUCKET_COUNT} are counted exactly. Above, the values between
+ * 2<sup>n</sup> and 2<sup>n+1</sup> are spread over {@value #SUB_BUCKET_HALF_COUNT} buckets.
+ * The percentiles are given as the highest value of the bucket containing them.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LatencyHistogram
+{
+    /** The number of buckets used for the smallest values */
+    static final int SUB_BUCKET_COUNT = 64;
+
+    /** The number of buckets used for each power of two */
+    static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+
+    /** The number of bits of the sub-bucket index */
+    private static final int SUB_BUCKET_HALF_BITS = Integer.numberOfTrailingZeros( SUB_BUCKET_HALF_COUNT );
+
+    /** The number of buckets needed to count any positive long */
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT
+        + ( 63 - SUB_BUCKET_HALF_BITS - 1 ) * SUB_BUCKET_HALF_COUNT;
+
+    /** The counts, per bucket */
+    private final AtomicLongArray counts = new AtomicLongArray( BUCKET_COUNT );
+
+    /** The number of recorded values */
+    private final LongAdder count = new LongAdder();
+
+    /** The sum of the recorded values */
+    private final LongAdder sum = new LongAdder();
+
+    /** The highest recorded value */
+    private final LongAccumulator max = new LongAccumulator( Math::max, 0L );
+
+
+    /**
+     * Get the bucket a value is counted in
+     *
+     * @param value The value
+     * @return The bucket index
+     */
+    static int bucketIndex( long value )
+    {
+        if ( value < SUB_BUCKET_COUNT )
+        {
+            return ( int ) value;
+        }
+
+        // The shift keeps the SUB_BUCKET_HALF_BITS + 1 highest bits of the value
+        int shift = 63 - Long.numberOfLeadingZeros( value ) - SUB_BUCKET_HALF_BITS;
+
+        return SUB_BUCKET_COUNT + ( shift - 1 ) * SUB_BUCKET_HALF_COUNT
+            + ( int ) ( value >>> shift ) - SUB_BUCKET_HALF_COUNT;
+    }
+
+
+    /**
+     * Get the highest value counted in a bucket
+     *
+     * @param index The bucket index
+     * @return The highest value of this bucket
+     */
+    static long highestValue( int index )
+    {
+        if ( index < SUB_BUCKET_COUNT )
+        {
+            return index;
+        }
+
+        int shift = ( index - SUB_BUCKET_COUNT ) / SUB_BUCKET_HALF_COUNT + 1;
+        long subBucket = ( index - SUB_BUCKET_COUNT ) % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+
+        long highest = ( ( subBucket + 1 ) << shift ) - 1;
+
+        // The last bucket goes up to Long.MAX_VALUE
+        return highest < 0L ? Long.MAX_VALUE : highest;
+    }
+
+
+    /**
+     * Record a value. The negative values are recorded as 0.
+     *
+     * @param value The value to record
+     */
+    public void record( long value )
+    {
+        long positive = Math.max( value, 0L );
+
+        counts.incrementAndGet( bucketIndex( positive ) );
+        count.increment();
+        sum.add( positive );
+        max.accumulate( positive );
+    }
+
+
+    /**
+     * @return The number of recorded values
+     */
+    public long getCount()
+    {
+        return count.sum();
+    }
+
+
+    /**
+     * @return The highest recorded value
+     */
+    public long getMax()
+    {
+        return max.get();
+    }
+
+
+    /**
+     * @return The mean of the recorded values, or 0 if nothing has been recorded
+     */
+    public double getMean()
+    {
+        long total = count.sum();
+
+        return total == 0L ? 0d : ( double ) sum.sum() / total;
+    }
+
+
+    /**
+     * Get the value below which a percentage of the recorded values are. As the values are
+     * recorded concurrently, the result is approximate while values are being recorded.
+     *
+     * @param percentile The percentage, between 0 and 100
+     * @return The value at this percentile, or 0 if nothing has been recorded
+     */
+    public long getValueAtPercentile( double percentile )
+    {
+        long total = 0L;
+
+        for ( int i = 0; i < BUCKET_COUNT; i++ )
+        {
+            total += counts.get( i );
+        }
+
+        if ( total == 0L )
+        {
+            return 0L;
+        }
+
+        long rank = Math.max( 1L, ( long ) Math.ceil( Math.min( percentile, 100d ) / 100d * total ) );
+        long seen = 0L;
+
+        for ( int i = 0; i < BUCKET_COUNT; i++ )
+        {
+            seen += counts.get( i );
+
+            if ( seen >= rank )
+            {
+                return Math.min( highestValue( i ), max.get() );
+            }
+        }
+
+        return max.get();
+    }
+
+
+    /**
+     * Remove all the recorded values. The values recorded concurrently may be partially kept.
+     */
+    public void reset()
+    {
+        for ( int i = 0; i < BUCKET_COUNT; i++ )
+        {
+            counts.set( i, 0L );
+        }
+
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+
+    /**
+     * @see Object#toString()
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append( "count=" ).append( getCount() );
+        sb.append( ", mean=" ).append( ( long ) getMean() );
+        sb.append( ", p50=" ).append( getValueAtPercentile( 50d ) );
+        sb.append( ", p99=" ).append( getValueAtPercentile( 99d ) );
+        sb.append( ", p99.9=" ).append( getValueAtPercentile( 99.9d ) );
+        sb.append( ", max=" ).append( getMax() );
+
+        return sb.toString();
+    }
+}
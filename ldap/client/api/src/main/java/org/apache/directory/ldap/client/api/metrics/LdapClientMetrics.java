@@ -0,0 +1,125 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.metrics;
+
+
+import org.apache.directory.api.ldap.model.message.MessageTypeEnum;
+
+
+/**
+ * The SPI used to plug a metrics registry into the LDAP client. An implementation can be set
+ * on a {@link org.apache.directory.ldap.client.api.LdapNetworkConnection} before it is
+ * connected, and on a {@link org.apache.directory.ldap.client.api.LdapConnectionPool}. When no
+ * implementation is set, nothing is measured, and the clock is not even read.
+ * <p>
+ * The methods are called by the I/O threads and by the application threads, concurrently and on
+ * the critical path : they must be thread safe, and must not block. All the methods do nothing
+ * by default, so that an implementation only has to override what it is interested in.
+ * {@link DefaultLdapClientMetrics} is a ready to use implementation, based on lock free
+ * histograms.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public interface LdapClientMetrics
+{
+    /**
+     * Called when a request has been written to the server
+     *
+     * @param requestType The request type
+     */
+    default void requestSent( MessageTypeEnum requestType )
+    {
+        // Nothing to do by default
+    }
+
+
+    /**
+     * Called when the final response of a request has been received
+     *
+     * @param requestType The request type
+     * @param durationNanos The time elapsed since the request has been written, in ns
+     */
+    default void operationCompleted( MessageTypeEnum requestType, long durationNanos )
+    {
+        // Nothing to do by default
+    }
+
+
+    /**
+     * Called when a request will never get a response, because it has been abandoned or the
+     * connection has been closed
+     *
+     * @param requestType The request type
+     */
+    default void operationAborted( MessageTypeEnum requestType )
+    {
+        // Nothing to do by default
+    }
+
+
+    /**
+     * Called when a search response has been queued into its SearchFuture, waiting to be read
+     * by the application
+     *
+     * @param queueDepth The number of responses waiting in the SearchFuture
+     */
+    default void responseQueued( int queueDepth )
+    {
+        // Nothing to do by default
+    }
+
+
+    /**
+     * Called when a message has been encoded
+     *
+     * @param bytes The number of encoded bytes
+     * @param durationNanos The encoding time, in ns
+     */
+    default void messageEncoded( long bytes, long durationNanos )
+    {
+        // Nothing to do by default
+    }
+
+
+    /**
+     * Called when some bytes received from the server have been decoded. The bytes may contain
+     * many messages, or only a part of a message.
+     *
+     * @param bytes The number of decoded bytes
+     * @param durationNanos The decoding time, in ns
+     */
+    default void bytesDecoded( long bytes, long durationNanos )
+    {
+        // Nothing to do by default
+    }
+
+
+    /**
+     * Called when a connection has been borrowed from a pool
+     *
+     * @param waitNanos The time spent waiting for the connection, in ns
+     * @param active The number of connections borrowed from the pool
+     * @param idle The number of connections waiting in the pool
+     */
+    default void connectionBorrowed( long waitNanos, int active, int idle )
+    {
+        // Nothing to do by default
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.metrics;
+
+
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.filter.codec.ProtocolCodecFactory;
+import org.apache.mina.filter.codec.ProtocolDecoder;
+import org.apache.mina.filter.codec.ProtocolDecoderOutput;
+import org.apache.mina.filter.codec.ProtocolEncoder;
+import org.apache.mina.filter.codec.ProtocolEncoderOutput;
+
+
+/**
+ * A ProtocolCodecFactory wrapping the LDAP codec, which reports the number of bytes sent and
+ * received, and the time spent encoding and decoding them, to a {@link LdapClientMetrics}.
+ * It is used by the LdapNetworkConnection in place of the LDAP codec factory when metrics are
+ * enabled, so that the codec is not wrapped at all otherwise.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class MeteredProtocolCodecFactory implements ProtocolCodecFactory
+{
+    /** The wrapped codec factory */
+    private final ProtocolCodecFactory wrapped;
+
+    /** The metrics to update */
+    private final LdapClientMetrics metrics;
+
+
+    /**
+     * Creates a new instance of MeteredProtocolCodecFactory.
+     *
+     * @param wrapped The codec factory to wrap
+     * @param metrics The metrics to update
+     */
+    public MeteredProtocolCodecFactory( ProtocolCodecFactory wrapped, LdapClientMetrics metrics )
+    {
+        this.wrapped = wrapped;
+        this.metrics = metrics;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ProtocolEncoder getEncoder( IoSession session ) throws Exception
+    {
+        return new MeteredEncoder( wrapped.getEncoder( session ) );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ProtocolDecoder getDecoder( IoSession session ) throws Exception
+    {
+        return new MeteredDecoder( wrapped.getDecoder( session ) );
+    }
+
+
+    /**
+     * An encoder measuring the wrapped encoder
+     */
+    private final class MeteredEncoder implements ProtocolEncoder
+    {
+        /** The wrapped encoder */
+        private final ProtocolEncoder encoder;
+
+
+        private MeteredEncoder( ProtocolEncoder encoder )
+        {
+            this.encoder = encoder;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void encode( IoSession session, Object message, ProtocolEncoderOutput out ) throws Exception
+        {
+            CountingEncoderOutput countingOut = new CountingEncoderOutput( out );
+            long start = System.nanoTime();
+
+            encoder.encode( session, message, countingOut );
+
+            metrics.messageEncoded( countingOut.bytes, System.nanoTime() - start );
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void dispose( IoSession session ) throws Exception
+        {
+            encoder.dispose( session );
+        }
+    }
+
+
+    /**
+     * An encoder output counting the encoded bytes
+     */
+    private static final class CountingEncoderOutput implements ProtocolEncoderOutput
+    {
+        /** The wrapped output */
+        private final ProtocolEncoderOutput out;
+
+        /** The number of bytes written so far */
+        private long bytes;
+
+
+        private CountingEncoderOutput( ProtocolEncoderOutput out )
+        {
+            this.out = out;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write( Object encodedMessage )
+        {
+            if ( encodedMessage instanceof IoBuffer )
+            {
+                bytes += ( ( IoBuffer ) encodedMessage ).remaining();
+            }
+
+            out.write( encodedMessage );
+        }
+    }
+
+
+    /**
+     * A decoder measuring the wrapped decoder
+     */
+    private final class MeteredDecoder implements ProtocolDecoder
+    {
+        /** The wrapped decoder */
+        private final ProtocolDecoder decoder;
+
+
+        private MeteredDecoder( ProtocolDecoder decoder )
+        {
+            this.decoder = decoder;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void decode( IoSession session, IoBuffer in, ProtocolDecoderOutput out ) throws Exception
+        {
+            long bytes = in.remaining();
+            long start = System.nanoTime();
+
+            decoder.decode( session, in, out );
+
+            metrics.bytesDecoded( bytes, System.nanoTime() - start );
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void finishDecode( IoSession session, ProtocolDecoderOutput out ) throws Exception
+        {
+            decoder.finishDecode( session, out );
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void dispose( IoSession session ) throws Exception
+        {
+            decoder.dispose( session );
+        }
+    }
+}
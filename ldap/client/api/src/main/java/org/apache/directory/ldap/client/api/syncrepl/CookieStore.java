@@ -0,0 +1,48 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.syncrepl;
+
+
+import java.io.IOException;
+
+
+/**
+ * Stores the syncrepl cookie of a {@link SyncReplConsumer}, so that a new session can
+ * restart where the previous one has stopped.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public interface CookieStore
+{
+    /**
+     * @return The stored cookie, or <code>null</code> if there is none
+     * @throws IOException If the cookie can't be read
+     */
+    byte[] load() throws IOException;
+
+
+    /**
+     * Store the cookie. It must be durably stored when this method returns.
+     *
+     * @param cookie The cookie to store, or <code>null</code> to remove the stored cookie
+     * @throws IOException If the cookie can't be stored
+     */
+    void save( byte[] cookie ) throws IOException;
+}
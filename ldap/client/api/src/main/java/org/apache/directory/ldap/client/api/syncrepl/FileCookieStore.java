@@ -0,0 +1,112 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.syncrepl;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * A {@link CookieStore} keeping the cookie in a file. The cookie is written in a temporary
+ * file, which is synced on disk before replacing the previous file, so that the stored
+ * cookie is never partially written.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class FileCookieStore implements CookieStore
+{
+    /** The cookie file */
+    private final Path file;
+
+
+    /**
+     * Creates a new FileCookieStore
+     *
+     * @param file The file storing the cookie
+     */
+    public FileCookieStore( Path file )
+    {
+        this.file = file;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] load() throws IOException
+    {
+        if ( !Files.exists( file ) )
+        {
+            return null;
+        }
+
+        byte[] cookie = Files.readAllBytes( file );
+
+        return cookie.length == 0 ? null : cookie;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void save( byte[] cookie ) throws IOException
+    {
+        if ( cookie == null )
+        {
+            Files.deleteIfExists( file );
+
+            return;
+        }
+
+        Path tmp = file.resolveSibling( file.getFileName() + ".tmp" );
+
+        try ( FileChannel channel = FileChannel.open( tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING ) )
+        {
+            ByteBuffer buffer = ByteBuffer.wrap( cookie );
+
+            while ( buffer.hasRemaining() )
+            {
+                channel.write( buffer );
+            }
+
+            channel.force( true );
+        }
+
+        Files.move( tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+    }
+
+
+    /**
+     * @return The file storing the cookie
+     */
+    public Path getFile()
+    {
+        return file;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.syncrepl;
+
+
+import org.apache.directory.api.ldap.extras.controls.syncrepl.syncState.SyncStateTypeEnum;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.util.Strings;
+
+
+/**
+ * A change received by a {@link SyncReplConsumer}, to be applied by a {@link SyncReplSink}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class SyncReplChange
+{
+    /** The change type */
+    private final SyncStateTypeEnum type;
+
+    /** The entryUUID of the modified entry */
+    private final byte[] entryUUID;
+
+    /** The entry, which only contains its Dn for a deletion */
+    private final Entry entry;
+
+
+    /**
+     * Creates a new SyncReplChange
+     *
+     * @param type The change type
+     * @param entryUUID The entryUUID of the modified entry
+     * @param entry The entry
+     */
+    public SyncReplChange( SyncStateTypeEnum type, byte[] entryUUID, Entry entry )
+    {
+        this.type = type;
+        this.entryUUID = entryUUID;
+        this.entry = entry;
+    }
+
+
+    /**
+     * @return The change type : ADD, MODIFY, DELETE, or MODDN
+     */
+    public SyncStateTypeEnum getType()
+    {
+        return type;
+    }
+
+
+    /**
+     * @return The entryUUID of the modified entry
+     */
+    public byte[] getEntryUUID()
+    {
+        return entryUUID;
+    }
+
+
+    /**
+     * @return The entry. For a deletion, it only contains the entry Dn.
+     */
+    public Entry getEntry()
+    {
+        return entry;
+    }
+
+
+    /**
+     * @see Object#toString()
+     */
+    @Override
+    public String toString()
+    {
+        return type + " " + Strings.dumpBytes( entryUUID ) + " " + ( entry == null ? "" : entry.getDn() );
+    }
+}
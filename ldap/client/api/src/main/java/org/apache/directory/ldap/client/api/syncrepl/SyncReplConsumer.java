@@ -0,0 +1,703 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.syncrepl;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.extras.controls.SynchronizationModeEnum;
+import org.apache.directory.api.ldap.extras.controls.syncrepl.syncDone.SyncDoneValue;
+import org.apache.directory.api.ldap.extras.controls.syncrepl.syncRequest.SyncRequestValue;
+import org.apache.directory.api.ldap.extras.controls.syncrepl.syncRequest.SyncRequestValueImpl;
+import org.apache.directory.api.ldap.extras.controls.syncrepl.syncState.SyncStateTypeEnum;
+import org.apache.directory.api.ldap.extras.controls.syncrepl.syncState.SyncStateValue;
+import org.apache.directory.api.ldap.extras.intermediate.syncrepl.SyncInfoValue;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.message.Response;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.util.Strings;
+import org.apache.directory.ldap.client.api.LdapAsyncConnection;
+import org.apache.directory.ldap.client.api.LdapConnection;
+import org.apache.directory.ldap.client.api.LdapConnectionFactory;
+import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A RFC 4533 (Content Synchronization Operation) consumer. It runs syncrepl sessions against
+ * a server, and gives the received changes to a {@link SyncReplSink}.
+ * <p>
+ * The changes are given to the sink in batches, and the last received cookie is stored in a
+ * {@link CookieStore} once the batch has been applied, so that the next session restarts from
+ * there. The cookies are only stored once the refresh phase is complete, as the deletions are
+ * only known at the end of this phase. When nothing is received for a while, the pending
+ * changes are applied without waiting for the batch to be full.
+ * <p>
+ * In refreshAndPersist mode, or in refreshOnly mode with a refresh interval, the consumer runs
+ * until it is stopped. When a session fails, a new connection is created after a delay, which
+ * doubles after each failure, up to a maximum.
+ * <pre>
+ * SyncReplConsumer consumer = new SyncReplConsumer( connectionFactory, config, sink,
+ *     new FileCookieStore( Paths.get( "cookie" ) ) );
+ * Thread thread = new Thread( consumer );
+ * thread.start();
+ * ...
+ * consumer.stop();
+ * </pre>
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class SyncReplConsumer implements Runnable
+{
+    /** The logger for this class */
+    private static final Logger LOG = LoggerFactory.getLogger( SyncReplConsumer.class );
+
+    /** The way a session has ended */
+    private enum SessionEnd
+    {
+        /** The refresh is done */
+        REFRESHED,
+
+        /** The session must be restarted immediately */
+        RESTART,
+
+        /** The consumer has been stopped */
+        STOPPED
+    }
+
+    /** The factory creating the connections */
+    private final LdapConnectionFactory connectionFactory;
+
+    /** The consumer configuration */
+    private final SyncReplConsumerConfig config;
+
+    /** The sink receiving the changes */
+    private final SyncReplSink sink;
+
+    /** The cookie storage */
+    private final CookieStore cookieStore;
+
+    /** Tells if the consumer has been stopped */
+    private volatile boolean stopped;
+
+    /** The current connection */
+    private volatile LdapAsyncConnection connection;
+
+    /** The future of the current session */
+    private volatile SearchFuture future;
+
+    /** The last stored cookie */
+    private byte[] cookie;
+
+    /** Tells if the cookie has been loaded */
+    private boolean cookieLoaded;
+
+    /** The last received cookie, not yet stored */
+    private byte[] pendingCookie;
+
+    /** Tells if the refresh phase of the current session is done */
+    private boolean refreshDone;
+
+    /** The changes not yet applied */
+    private List<SyncReplChange> changes = new ArrayList<>();
+
+    /** The present entries not yet given to the sink */
+    private List<byte[]> presentEntries = new ArrayList<>();
+
+
+    /**
+     * Creates a new SyncReplConsumer
+     *
+     * @param connectionFactory The factory creating the bound connections
+     * @param config The consumer configuration
+     * @param sink The sink receiving the changes
+     * @param cookieStore The cookie storage
+     */
+    public SyncReplConsumer( LdapConnectionFactory connectionFactory, SyncReplConsumerConfig config,
+        SyncReplSink sink, CookieStore cookieStore )
+    {
+        this.connectionFactory = connectionFactory;
+        this.config = config;
+        this.sink = sink;
+        this.cookieStore = cookieStore;
+    }
+
+
+    /**
+     * Run the syncrepl sessions until the consumer is stopped. In refreshOnly mode without any
+     * refresh interval, returns after the first successful refresh.
+     */
+    @Override
+    public void run()
+    {
+        long delay = config.getReconnectDelay();
+
+        while ( !stopped )
+        {
+            long wait;
+
+            try
+            {
+                SessionEnd end = runSession();
+
+                if ( end == SessionEnd.STOPPED )
+                {
+                    return;
+                }
+
+                delay = config.getReconnectDelay();
+
+                if ( end == SessionEnd.RESTART )
+                {
+                    continue;
+                }
+
+                if ( config.getMode() != SynchronizationModeEnum.REFRESH_ONLY )
+                {
+                    // The server has ended the persist phase
+                    wait = delay;
+                }
+                else if ( config.getRefreshInterval() > 0L )
+                {
+                    wait = config.getRefreshInterval();
+                }
+                else
+                {
+                    return;
+                }
+            }
+            catch ( LdapException | IOException e )
+            {
+                if ( stopped )
+                {
+                    return;
+                }
+
+                LOG.warn( I18n.err( I18n.ERR_04185_SYNCREPL_SESSION_FAILED, e.getMessage() ), e );
+
+                wait = delay;
+                delay = Math.min( delay * 2, config.getMaxReconnectDelay() );
+            }
+            finally
+            {
+                closeConnection();
+            }
+
+            if ( LOG.isDebugEnabled() )
+            {
+                LOG.debug( I18n.msg( I18n.MSG_04180_SYNCREPL_RECONNECT, wait ) );
+            }
+
+            if ( !pause( wait ) )
+            {
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * Run a single refresh, without retrying if it fails. The refreshOnly mode is used,
+     * whatever the configured mode.
+     *
+     * @throws LdapException If the refresh failed
+     * @throws IOException If the cookie can't be stored
+     */
+    public void refresh() throws LdapException, IOException
+    {
+        try
+        {
+            while ( runSession( SynchronizationModeEnum.REFRESH_ONLY ) == SessionEnd.RESTART )
+            {
+                closeConnection();
+            }
+        }
+        finally
+        {
+            closeConnection();
+        }
+    }
+
+
+    /**
+     * Stop the consumer. The current session is abandoned, the changes which have not been
+     * applied will be received again by the next session.
+     */
+    public void stop()
+    {
+        stopped = true;
+
+        SearchFuture currentFuture = future;
+
+        if ( currentFuture != null )
+        {
+            currentFuture.cancel( true );
+        }
+    }
+
+
+    /**
+     * @return <code>true</code> if the consumer has been stopped
+     */
+    public boolean isStopped()
+    {
+        return stopped;
+    }
+
+
+    /**
+     * @return The last stored cookie
+     */
+    public byte[] getCookie()
+    {
+        return cookie;
+    }
+
+
+    /**
+     * Wait before the next session
+     *
+     * @param wait The time to wait, in ms
+     * @return <code>false</code> if the consumer has been stopped meanwhile
+     */
+    private boolean pause( long wait )
+    {
+        long end = System.currentTimeMillis() + wait;
+
+        try
+        {
+            while ( !stopped )
+            {
+                long remaining = end - System.currentTimeMillis();
+
+                if ( remaining <= 0L )
+                {
+                    return true;
+                }
+
+                // Check the stop flag regularly
+                Thread.sleep( Math.min( remaining, 100L ) );
+            }
+        }
+        catch ( InterruptedException ie )
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Run a session using the configured mode
+     */
+    private SessionEnd runSession() throws LdapException, IOException
+    {
+        return runSession( config.getMode() );
+    }
+
+
+    /**
+     * Run a syncrepl session, until the refresh is done in refreshOnly mode, or until the
+     * server ends the session.
+     *
+     * @param mode The synchronization mode
+     * @return The way the session has ended
+     * @throws LdapException If the session failed
+     * @throws IOException If the cookie can't be stored
+     */
+    private SessionEnd runSession( SynchronizationModeEnum mode ) throws LdapException, IOException
+    {
+        if ( !cookieLoaded )
+        {
+            cookie = cookieStore.load();
+            cookieLoaded = true;
+        }
+
+        pendingCookie = null;
+        refreshDone = false;
+        changes.clear();
+        presentEntries.clear();
+
+        LdapConnection newConnection = connectionFactory.newLdapConnection();
+
+        if ( !( newConnection instanceof LdapAsyncConnection ) )
+        {
+            newConnection.close();
+
+            throw new LdapException( I18n.err( I18n.ERR_04184_NOT_AN_ASYNC_CONNECTION, newConnection ) );
+        }
+
+        connection = ( LdapAsyncConnection ) newConnection;
+
+        if ( stopped )
+        {
+            return SessionEnd.STOPPED;
+        }
+
+        sink.beginRefresh( cookie == null );
+        future = connection.searchAsync( createRequest( mode ) );
+
+        while ( !stopped )
+        {
+            Response response;
+
+            try
+            {
+                response = future.get( config.getFlushInterval(), TimeUnit.MILLISECONDS );
+            }
+            catch ( InterruptedException ie )
+            {
+                Thread.currentThread().interrupt();
+                stop();
+
+                break;
+            }
+
+            if ( response == null )
+            {
+                if ( future.isCancelled() || !connection.isConnected() )
+                {
+                    if ( stopped )
+                    {
+                        break;
+                    }
+
+                    throw new LdapException( I18n.err( I18n.ERR_04160_SESSION_HAS_BEEN_CLOSED ) );
+                }
+
+                // Nothing received for a while, apply what we have
+                flush();
+
+                continue;
+            }
+
+            if ( response instanceof SearchResultEntry )
+            {
+                processEntry( ( SearchResultEntry ) response );
+            }
+            else if ( response instanceof SyncInfoValue )
+            {
+                processSyncInfo( ( SyncInfoValue ) response );
+            }
+            else if ( response instanceof SearchResultDone )
+            {
+                return processDone( ( SearchResultDone ) response );
+            }
+        }
+
+        return SessionEnd.STOPPED;
+    }
+
+
+    /**
+     * Create the syncrepl search request
+     *
+     * @param mode The synchronization mode
+     * @return The search request
+     * @throws LdapException If the filter is invalid
+     */
+    private SearchRequest createRequest( SynchronizationModeEnum mode ) throws LdapException
+    {
+        SearchRequest searchRequest = new SearchRequestImpl();
+        searchRequest.setBase( config.getBaseDn() );
+        searchRequest.setFilter( config.getFilter() );
+        searchRequest.setScope( config.getSearchScope() );
+        searchRequest.setDerefAliases( config.getAliasDerefMode() );
+        searchRequest.addAttributes( config.getAttributes() );
+
+        SyncRequestValue syncRequest = new SyncRequestValueImpl( true );
+        syncRequest.setMode( mode );
+        syncRequest.setReloadHint( config.isReloadHint() );
+        syncRequest.setCookie( cookie );
+        searchRequest.addControl( syncRequest );
+
+        return searchRequest;
+    }
+
+
+    /**
+     * Process an entry, with its SyncState control
+     *
+     * @param entry The received entry
+     * @throws LdapException If the sink failed
+     * @throws IOException If the cookie can't be stored
+     */
+    private void processEntry( SearchResultEntry entry ) throws LdapException, IOException
+    {
+        SyncStateValue syncState = ( SyncStateValue ) entry.getControl( SyncStateValue.OID );
+
+        if ( syncState == null )
+        {
+            // Not a syncrepl response, consider it as an added entry
+            changes.add( new SyncReplChange( SyncStateTypeEnum.ADD, null, entry.getEntry() ) );
+        }
+        else
+        {
+            receivedCookie( syncState.getCookie() );
+
+            if ( syncState.getSyncStateType() == SyncStateTypeEnum.PRESENT )
+            {
+                presentEntries.add( syncState.getEntryUUID() );
+
+                if ( presentEntries.size() >= config.getBatchSize() )
+                {
+                    flushPresentEntries();
+                }
+
+                return;
+            }
+
+            changes.add( new SyncReplChange( syncState.getSyncStateType(), syncState.getEntryUUID(),
+                entry.getEntry() ) );
+        }
+
+        if ( changes.size() >= config.getBatchSize() )
+        {
+            flush();
+        }
+    }
+
+
+    /**
+     * Process a SyncInfo intermediate response
+     *
+     * @param syncInfo The received SyncInfo
+     * @throws LdapException If the sink failed
+     * @throws IOException If the cookie can't be stored
+     */
+    private void processSyncInfo( SyncInfoValue syncInfo ) throws LdapException, IOException
+    {
+        receivedCookie( syncInfo.getCookie() );
+
+        switch ( syncInfo.getSyncInfoValueType() )
+        {
+            case REFRESH_DELETE:
+                // The end of the delete phase
+                flushChanges();
+                refreshDone |= syncInfo.isRefreshDone();
+                break;
+
+            case REFRESH_PRESENT:
+                // The end of the present phase
+                flushChanges();
+                flushPresentEntries();
+                sink.endPresentPhase();
+                refreshDone |= syncInfo.isRefreshDone();
+                break;
+
+            case SYNC_ID_SET:
+                // The changes received before must be applied first
+                flushChanges();
+
+                if ( syncInfo.isRefreshDeletes() )
+                {
+                    sink.deleteEntries( syncInfo.getSyncUUIDs() );
+                }
+                else
+                {
+                    flushPresentEntries();
+                    sink.markPresent( syncInfo.getSyncUUIDs() );
+                }
+
+                break;
+
+            default:
+                // A new cookie
+                break;
+        }
+
+        flush();
+    }
+
+
+    /**
+     * Process the end of the session
+     *
+     * @param done The SearchResultDone
+     * @return The way the session has ended
+     * @throws LdapException If the session has failed
+     * @throws IOException If the cookie can't be stored
+     */
+    private SessionEnd processDone( SearchResultDone done ) throws LdapException, IOException
+    {
+        ResultCodeEnum resultCode = done.getLdapResult().getResultCode();
+
+        if ( resultCode == ResultCodeEnum.E_SYNC_REFRESH_REQUIRED )
+        {
+            if ( LOG.isInfoEnabled() )
+            {
+                LOG.info( I18n.msg( I18n.MSG_04181_SYNCREPL_REFRESH_REQUIRED ) );
+            }
+
+            changes.clear();
+            presentEntries.clear();
+            pendingCookie = null;
+            sink.refreshRequired();
+            cookieStore.save( null );
+            cookie = null;
+
+            return SessionEnd.RESTART;
+        }
+
+        if ( resultCode != ResultCodeEnum.SUCCESS )
+        {
+            throw new LdapException( I18n.err( I18n.ERR_04185_SYNCREPL_SESSION_FAILED,
+                done.getLdapResult().getDiagnosticMessage() ) );
+        }
+
+        SyncDoneValue syncDone = ( SyncDoneValue ) done.getControl( SyncDoneValue.OID );
+        flushChanges();
+
+        if ( syncDone != null )
+        {
+            receivedCookie( syncDone.getCookie() );
+
+            if ( !syncDone.isRefreshDeletes() )
+            {
+                // The present phase ends with the refresh
+                flushPresentEntries();
+                sink.endPresentPhase();
+            }
+        }
+
+        refreshDone = true;
+        flush();
+
+        return SessionEnd.REFRESHED;
+    }
+
+
+    /**
+     * Keep a received cookie, to store it once the preceding changes have been applied
+     *
+     * @param receivedCookie The received cookie, may be null
+     */
+    private void receivedCookie( byte[] receivedCookie )
+    {
+        if ( receivedCookie != null )
+        {
+            pendingCookie = receivedCookie;
+        }
+    }
+
+
+    /**
+     * Give the pending changes to the sink
+     *
+     * @throws LdapException If the sink failed
+     */
+    private void flushChanges() throws LdapException
+    {
+        if ( !changes.isEmpty() )
+        {
+            sink.applyChanges( changes );
+            changes = new ArrayList<>();
+        }
+    }
+
+
+    /**
+     * Give the pending present entries to the sink
+     *
+     * @throws LdapException If the sink failed
+     */
+    private void flushPresentEntries() throws LdapException
+    {
+        if ( !presentEntries.isEmpty() )
+        {
+            sink.markPresent( presentEntries );
+            presentEntries = new ArrayList<>();
+        }
+    }
+
+
+    /**
+     * Give all the pending changes to the sink, and store the last received cookie once
+     * the refresh is done.
+     *
+     * @throws LdapException If the sink failed
+     * @throws IOException If the cookie can't be stored
+     */
+    private void flush() throws LdapException, IOException
+    {
+        flushChanges();
+        flushPresentEntries();
+
+        if ( !refreshDone || ( pendingCookie == null ) )
+        {
+            return;
+        }
+
+        if ( !Arrays.equals( pendingCookie, cookie ) )
+        {
+            cookieStore.save( pendingCookie );
+            cookie = pendingCookie;
+
+            if ( LOG.isDebugEnabled() )
+            {
+                LOG.debug( I18n.msg( I18n.MSG_04182_SYNCREPL_COOKIE_SAVED, Strings.utf8ToString( cookie ) ) );
+            }
+        }
+
+        pendingCookie = null;
+    }
+
+
+    /**
+     * Close the current connection
+     */
+    private void closeConnection()
+    {
+        SearchFuture currentFuture = future;
+        future = null;
+
+        if ( ( currentFuture != null ) && !currentFuture.isCancelled() && ( connection != null )
+            && connection.isConnected() )
+        {
+            // Abandon the search if it's still running
+            currentFuture.cancel( true );
+        }
+
+        if ( connection != null )
+        {
+            try
+            {
+                connection.close();
+            }
+            catch ( IOException ioe )
+            {
+                LOG.warn( ioe.getMessage(), ioe );
+            }
+
+            connection = null;
+        }
+    }
+}
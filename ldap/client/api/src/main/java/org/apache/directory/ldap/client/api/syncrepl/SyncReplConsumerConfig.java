@@ -0,0 +1,301 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.syncrepl;
+
+
+import org.apache.directory.api.ldap.extras.controls.SynchronizationModeEnum;
+import org.apache.directory.api.ldap.model.message.AliasDerefMode;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.name.Dn;
+
+
+/**
+ * The configuration of a {@link SyncReplConsumer}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class SyncReplConsumerConfig
+{
+    /** The default number of changes applied at once */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /** The default time after which the pending changes are applied if nothing is received, in ms */
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000L;
+
+    /** The default delay before the first reconnection, in ms */
+    public static final long DEFAULT_RECONNECT_DELAY = 1000L;
+
+    /** The default maximum delay between two reconnections, in ms */
+    public static final long DEFAULT_MAX_RECONNECT_DELAY = 60000L;
+
+    /** The replicated base */
+    private Dn baseDn;
+
+    /** The filter selecting the replicated entries */
+    private String filter = "(objectClass=*)";
+
+    /** The search scope */
+    private SearchScope searchScope = SearchScope.SUBTREE;
+
+    /** The alias dereferencing mode */
+    private AliasDerefMode aliasDerefMode = AliasDerefMode.NEVER_DEREF_ALIASES;
+
+    /** The replicated attributes, all the user attributes if empty */
+    private String[] attributes = new String[0];
+
+    /** The synchronization mode */
+    private SynchronizationModeEnum mode = SynchronizationModeEnum.REFRESH_AND_PERSIST;
+
+    /** The reloadHint flag of the sync request */
+    private boolean reloadHint;
+
+    /** The number of changes applied at once */
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /** The time after which the pending changes are applied if nothing is received */
+    private long flushInterval = DEFAULT_FLUSH_INTERVAL;
+
+    /** The delay between two refreshes, in refreshOnly mode. 0 to refresh only once */
+    private long refreshInterval;
+
+    /** The delay before the first reconnection */
+    private long reconnectDelay = DEFAULT_RECONNECT_DELAY;
+
+    /** The maximum delay between two reconnections */
+    private long maxReconnectDelay = DEFAULT_MAX_RECONNECT_DELAY;
+
+
+    /**
+     * @return The replicated base
+     */
+    public Dn getBaseDn()
+    {
+        return baseDn;
+    }
+
+
+    /**
+     * @param baseDn The replicated base
+     */
+    public void setBaseDn( Dn baseDn )
+    {
+        this.baseDn = baseDn;
+    }
+
+
+    /**
+     * @return The filter selecting the replicated entries
+     */
+    public String getFilter()
+    {
+        return filter;
+    }
+
+
+    /**
+     * @param filter The filter selecting the replicated entries
+     */
+    public void setFilter( String filter )
+    {
+        this.filter = filter;
+    }
+
+
+    /**
+     * @return The search scope
+     */
+    public SearchScope getSearchScope()
+    {
+        return searchScope;
+    }
+
+
+    /**
+     * @param searchScope The search scope
+     */
+    public void setSearchScope( SearchScope searchScope )
+    {
+        this.searchScope = searchScope;
+    }
+
+
+    /**
+     * @return The alias dereferencing mode
+     */
+    public AliasDerefMode getAliasDerefMode()
+    {
+        return aliasDerefMode;
+    }
+
+
+    /**
+     * @param aliasDerefMode The alias dereferencing mode
+     */
+    public void setAliasDerefMode( AliasDerefMode aliasDerefMode )
+    {
+        this.aliasDerefMode = aliasDerefMode;
+    }
+
+
+    /**
+     * @return The replicated attributes
+     */
+    public String[] getAttributes()
+    {
+        return attributes;
+    }
+
+
+    /**
+     * @param attributes The replicated attributes, all the user attributes if none is given
+     */
+    public void setAttributes( String... attributes )
+    {
+        this.attributes = attributes;
+    }
+
+
+    /**
+     * @return The synchronization mode
+     */
+    public SynchronizationModeEnum getMode()
+    {
+        return mode;
+    }
+
+
+    /**
+     * @param mode The synchronization mode, REFRESH_ONLY or REFRESH_AND_PERSIST
+     */
+    public void setMode( SynchronizationModeEnum mode )
+    {
+        this.mode = mode;
+    }
+
+
+    /**
+     * @return The reloadHint flag sent to the server
+     */
+    public boolean isReloadHint()
+    {
+        return reloadHint;
+    }
+
+
+    /**
+     * @param reloadHint The reloadHint flag sent to the server
+     */
+    public void setReloadHint( boolean reloadHint )
+    {
+        this.reloadHint = reloadHint;
+    }
+
+
+    /**
+     * @return The number of changes applied at once
+     */
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+
+
+    /**
+     * @param batchSize The number of changes applied at once
+     */
+    public void setBatchSize( int batchSize )
+    {
+        this.batchSize = batchSize;
+    }
+
+
+    /**
+     * @return The time after which the pending changes are applied if nothing is received, in ms
+     */
+    public long getFlushInterval()
+    {
+        return flushInterval;
+    }
+
+
+    /**
+     * @param flushInterval The time after which the pending changes are applied if nothing is received, in ms
+     */
+    public void setFlushInterval( long flushInterval )
+    {
+        this.flushInterval = flushInterval;
+    }
+
+
+    /**
+     * @return The delay between two refreshes in refreshOnly mode, in ms
+     */
+    public long getRefreshInterval()
+    {
+        return refreshInterval;
+    }
+
+
+    /**
+     * @param refreshInterval The delay between two refreshes in refreshOnly mode, in ms. With 0, the
+     * consumer stops after the first refresh.
+     */
+    public void setRefreshInterval( long refreshInterval )
+    {
+        this.refreshInterval = refreshInterval;
+    }
+
+
+    /**
+     * @return The delay before the first reconnection, in ms
+     */
+    public long getReconnectDelay()
+    {
+        return reconnectDelay;
+    }
+
+
+    /**
+     * @param reconnectDelay The delay before the first reconnection, in ms. It is doubled after
+     * each failed attempt.
+     */
+    public void setReconnectDelay( long reconnectDelay )
+    {
+        this.reconnectDelay = reconnectDelay;
+    }
+
+
+    /**
+     * @return The maximum delay between two reconnections, in ms
+     */
+    public long getMaxReconnectDelay()
+    {
+        return maxReconnectDelay;
+    }
+
+
+    /**
+     * @param maxReconnectDelay The maximum delay between two reconnections, in ms
+     */
+    public void setMaxReconnectDelay( long maxReconnectDelay )
+    {
+        this.maxReconnectDelay = maxReconnectDelay;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.syncrepl;
+
+
+import java.util.List;
+
+import org.apache.directory.api.ldap.model.exception.LdapException;
+
+
+/**
+ * The receiver of the changes read by a {@link SyncReplConsumer}. The changes are given in
+ * batches, and the cookie is stored once a batch has been applied : after a failure, the
+ * changes applied since the last stored cookie are sent again, so the sink must accept
+ * a change it has already applied.
+ * <p>
+ * A refresh starts with each syncrepl session. During the refresh, the server may either
+ * send the entries which have been deleted, or all the entries which are still present. In
+ * the second case, {@link #endPresentPhase()} is called at the end of the present phase, and
+ * the sink must delete all the entries which have neither been marked as present nor been
+ * added or modified since the beginning of the refresh.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public interface SyncReplSink
+{
+    /**
+     * Called when a syncrepl session starts its refresh
+     *
+     * @param fullRefresh <code>true</code> if no cookie was sent, and all the entries will be received
+     * @throws LdapException If the sink can't be prepared
+     */
+    default void beginRefresh( boolean fullRefresh ) throws LdapException
+    {
+        // Nothing to do by default
+    }
+
+
+    /**
+     * Apply a batch of changes, in the order they have been received
+     *
+     * @param changes The changes to apply
+     * @throws LdapException If the changes can't be applied
+     */
+    void applyChanges( List<SyncReplChange> changes ) throws LdapException;
+
+
+    /**
+     * Delete some entries, given their entryUUID
+     *
+     * @param entryUUIDs The entryUUID of the deleted entries
+     * @throws LdapException If the entries can't be deleted
+     */
+    void deleteEntries( List<byte[]> entryUUIDs ) throws LdapException;
+
+
+    /**
+     * Mark some unchanged entries as present, during the present phase of a refresh.
+     *
+     * @param entryUUIDs The entryUUID of the present entries
+     * @throws LdapException If the entries can't be marked
+     */
+    void markPresent( List<byte[]> entryUUIDs ) throws LdapException;
+
+
+    /**
+     * Called at the end of the present phase of a refresh : the entries which have not been
+     * marked as present, added or modified since the beginning of the refresh must be deleted.
+     *
+     * @throws LdapException If the entries can't be deleted
+     */
+    void endPresentPhase() throws LdapException;
+
+
+    /**
+     * Called when the server can't use the stored cookie anymore. The sink content must be
+     * discarded, as a full refresh is going to be done.
+     *
+     * @throws LdapException If the sink can't be cleared
+     */
+    void refreshRequired() throws LdapException;
+}
@@ -21,28 +21,39 @@ package org.apache.directory.ldap.client.template;
 
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.directory.api.i18n.I18n;
 import org.apache.directory.api.ldap.extras.controls.ppolicy.PasswordPolicyResponse;
 import org.apache.directory.api.ldap.extras.controls.ppolicy.PasswordPolicyResponseImpl;
 import org.apache.directory.api.ldap.model.entry.Attribute;
 import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.entry.Modification;
 import org.apache.directory.api.ldap.model.entry.Value;
 import org.apache.directory.api.ldap.model.exception.LdapException;
 import org.apache.directory.api.ldap.model.message.AddRequest;
+import org.apache.directory.api.ldap.model.message.AddRequestImpl;
 import org.apache.directory.api.ldap.model.message.AddResponse;
 import org.apache.directory.api.ldap.model.message.BindRequest;
 import org.apache.directory.api.ldap.model.message.BindRequestImpl;
+import org.apache.directory.api.ldap.model.message.Control;
 import org.apache.directory.api.ldap.model.message.DeleteRequest;
+import org.apache.directory.api.ldap.model.message.DeleteRequestImpl;
 import org.apache.directory.api.ldap.model.message.DeleteResponse;
 import org.apache.directory.api.ldap.model.message.ModifyRequest;
 import org.apache.directory.api.ldap.model.message.ModifyRequestImpl;
 import org.apache.directory.api.ldap.model.message.ModifyResponse;
+import org.apache.directory.api.ldap.model.message.Request;
 import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
 import org.apache.directory.api.ldap.model.message.ResultResponse;
 import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
 import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.message.controls.ProxiedAuthz;
+import org.apache.directory.api.ldap.model.message.controls.ProxiedAuthzImpl;
 import org.apache.directory.api.ldap.model.name.Dn;
 import org.apache.directory.ldap.client.api.EntryCursorImpl;
 import org.apache.directory.ldap.client.api.LdapConnection;
@@ -66,6 +77,10 @@ import org.slf4j.LoggerFactory;
 public class LdapConnectionTemplate implements LdapConnectionOperations, ModelFactory
 {
     private static final Logger LOG = LoggerFactory.getLogger( LdapConnectionTemplate.class );
+
+    /** The default number of templates returned by proxiedAs() kept in the cache */
+    public static final int DEFAULT_PROXIED_TEMPLATES_CACHE_SIZE = 1024;
+
     private static final EntryMapper<Dn> DN_ENTRY_MAPPER = new EntryMapper<Dn>()
     {
         @Override
@@ -75,10 +90,25 @@ public class LdapConnectionTemplate implements LdapConnectionOperations, ModelFa
         }
     };
 
+    private static final EntryMapper<Entry> ENTRY_MAPPER = new EntryMapper<Entry>()
+    {
+        @Override
+        public Entry map( Entry entry ) throws LdapException
+        {
+            return entry;
+        }
+    };
+
     private LdapConnectionPool connectionPool;
+    private LdapConnectionPool authenticationPool;
+    private UserDnCache userDnCache;
+    private SearchCoalescer searchCoalescer;
     private final PasswordPolicyResponse passwordPolicyRequestControl;
     private PasswordPolicyResponder passwordPolicyResponder;
     private ModelFactory modelFactory;
+    private final LdapConnectionTemplate root;
+    private final ProxiedAuthz proxiedAuthz;
+    private Map<String, LdapConnectionTemplate> proxiedTemplates;
 
 
     /**
@@ -94,10 +124,278 @@ public class LdapConnectionTemplate implements LdapConnectionOperations, ModelFa
         }
         
         this.connectionPool = connectionPool;
+        this.authenticationPool = connectionPool;
         this.passwordPolicyRequestControl = new PasswordPolicyResponseImpl();
         this.passwordPolicyResponder = new PasswordPolicyResponderImpl(
             connectionPool.getLdapApiService() );
         this.modelFactory = new ModelFactoryImpl();
+        this.root = this;
+        this.proxiedAuthz = null;
+        setProxiedTemplatesCacheSize( DEFAULT_PROXIED_TEMPLATES_CACHE_SIZE );
+    }
+
+
+    /**
+     * Creates a template sending its operations on behalf of another identity.
+     *
+     * @param root The template this one is derived from
+     * @param proxiedAuthz The control attached to the requests
+     */
+    private LdapConnectionTemplate( LdapConnectionTemplate root, ProxiedAuthz proxiedAuthz )
+    {
+        this.connectionPool = root.connectionPool;
+        this.authenticationPool = root.authenticationPool;
+        this.userDnCache = root.userDnCache;
+        this.searchCoalescer = root.searchCoalescer;
+        this.passwordPolicyRequestControl = root.passwordPolicyRequestControl;
+        this.passwordPolicyResponder = root.passwordPolicyResponder;
+        this.modelFactory = root.modelFactory;
+        this.root = root;
+        this.proxiedAuthz = proxiedAuthz;
+    }
+
+
+    /**
+     * Returns a template running the add, delete, modify, lookup and search
+     * operations on behalf of the given identity, by attaching a ProxiedAuthz
+     * control (RFC 4370) to every request. The requests are sent over the
+     * connections of this template, which are bound once with an identity
+     * allowed to act as a proxy : many end users are served by a small set of
+     * connections, without any bind per user.
+     * <br>
+     * The templates are kept in a bounded cache, and share the configuration
+     * this template had when they were created. The <code>authenticate</code>,
+     * <code>modifyPassword</code> and <code>execute</code> operations are not
+     * proxied. Reads coalesced by a {@link SearchCoalescer} are only shared
+     * between the requests of the same identity.
+     *
+     * @param authzId The authorization identity, a Dn prefixed by 'dn:', or a
+     * user name prefixed by 'u:'
+     * @return A template acting on behalf of the identity
+     */
+    public LdapConnectionTemplate proxiedAs( String authzId )
+    {
+        Map<String, LdapConnectionTemplate> cache = root.proxiedTemplates;
+
+        synchronized ( cache )
+        {
+            LdapConnectionTemplate template = cache.get( authzId );
+
+            if ( template == null )
+            {
+                ProxiedAuthz control = new ProxiedAuthzImpl();
+                control.setAuthzId( authzId );
+                control.setCritical( true );
+
+                template = new LdapConnectionTemplate( root, control );
+                cache.put( authzId, template );
+            }
+
+            return template;
+        }
+    }
+
+
+    /**
+     * Returns a template running the operations on behalf of the given user.
+     *
+     * @param userDn The user Dn
+     * @return A template acting on behalf of the user
+     * @see #proxiedAs(String)
+     */
+    public LdapConnectionTemplate proxiedAs( Dn userDn )
+    {
+        return proxiedAs( "dn:" + userDn.getName() );
+    }
+
+
+    /**
+     * @return The identity this template acts on behalf of, or null if the
+     * operations are run with the connections identity
+     */
+    public String getProxiedAuthzId()
+    {
+        return proxiedAuthz == null ? null : proxiedAuthz.getAuthzId();
+    }
+
+
+    /**
+     * Sets the maximum number of templates returned by {@link #proxiedAs(String)}
+     * kept in the cache. The least recently used ones are removed first. The
+     * cache is emptied.
+     *
+     * @param cacheSize The maximum number of proxied templates kept in the cache
+     */
+    public void setProxiedTemplatesCacheSize( final int cacheSize )
+    {
+        root.proxiedTemplates = new LinkedHashMap<String, LdapConnectionTemplate>( 16, 0.75f, true )
+        {
+            private static final long serialVersionUID = 1L;
+
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, LdapConnectionTemplate> eldest )
+            {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+
+    /**
+     * Attaches the ProxiedAuthz control to a copy of an add request, if this
+     * template acts on behalf of another identity. The caller's request is never
+     * modified, so that it can be sent again by any template.
+     */
+    private AddRequest proxied( AddRequest addRequest )
+    {
+        if ( proxiedAuthz == null )
+        {
+            return addRequest;
+        }
+
+        AddRequest copy = new AddRequestImpl();
+        copy.setEntry( addRequest.getEntry() );
+
+        return withControls( addRequest, copy );
+    }
+
+
+    /**
+     * Attaches the ProxiedAuthz control to a copy of a delete request, if this
+     * template acts on behalf of another identity.
+     */
+    private DeleteRequest proxied( DeleteRequest deleteRequest )
+    {
+        if ( proxiedAuthz == null )
+        {
+            return deleteRequest;
+        }
+
+        DeleteRequest copy = new DeleteRequestImpl();
+        copy.setName( deleteRequest.getName() );
+
+        return withControls( deleteRequest, copy );
+    }
+
+
+    /**
+     * Attaches the ProxiedAuthz control to a copy of a modify request, if this
+     * template acts on behalf of another identity.
+     */
+    private ModifyRequest proxied( ModifyRequest modifyRequest )
+    {
+        if ( proxiedAuthz == null )
+        {
+            return modifyRequest;
+        }
+
+        ModifyRequest copy = new ModifyRequestImpl();
+        copy.setName( modifyRequest.getName() );
+
+        for ( Modification modification : modifyRequest.getModifications() )
+        {
+            copy.addModification( modification );
+        }
+
+        return withControls( modifyRequest, copy );
+    }
+
+
+    /**
+     * Attaches the ProxiedAuthz control to a copy of a search request, if this
+     * template acts on behalf of another identity.
+     */
+    private SearchRequest proxied( SearchRequest searchRequest )
+    {
+        if ( proxiedAuthz == null )
+        {
+            return searchRequest;
+        }
+
+        return withControls( searchRequest, copy( searchRequest ) );
+    }
+
+
+    /**
+     * Copy a search request, without its controls
+     */
+    private static SearchRequest copy( SearchRequest searchRequest )
+    {
+        SearchRequest copy = new SearchRequestImpl();
+
+        copy.setBase( searchRequest.getBase() );
+        copy.setScope( searchRequest.getScope() );
+        copy.setDerefAliases( searchRequest.getDerefAliases() );
+        copy.setSizeLimit( searchRequest.getSizeLimit() );
+        copy.setTimeLimit( searchRequest.getTimeLimit() );
+        copy.setTypesOnly( searchRequest.getTypesOnly() );
+        copy.setFilter( searchRequest.getFilter() );
+        copy.addAttributes( searchRequest.getAttributes().toArray( new String[0] ) );
+
+        return copy;
+    }
+
+
+    /**
+     * Add the controls of a request to its copy, and the ProxiedAuthz control
+     */
+    private <R extends Request> R withControls( Request request, R copy )
+    {
+        copy.addAllControls( request.getControls().values().toArray( new Control[0] ) );
+        copy.addControl( proxiedAuthz );
+
+        return copy;
+    }
+
+
+    /**
+     * Sets the pool used to send the BindRequests of the <code>authenticate</code>
+     * methods. By default, they are sent over connections borrowed from the general
+     * pool, which then have to be re-bound before being used for anything else. A
+     * dedicated pool, typically built with an
+     * {@link org.apache.directory.ldap.client.api.AuthenticationPoolableLdapConnectionFactory},
+     * avoids those re-binds and keeps the authentications from starving the other
+     * operations. The searches of a search-then-bind authentication still use the
+     * general pool.
+     * <br>
+     * A connection can't have any other operation outstanding while a bind is in
+     * progress, so the number of concurrent authentications is bounded by the size
+     * of this pool.
+     *
+     * @param authenticationPool The pool used to authenticate users, or null to use the
+     * general pool
+     */
+    public void setAuthenticationPool( LdapConnectionPool authenticationPool )
+    {
+        this.authenticationPool = authenticationPool == null ? connectionPool : authenticationPool;
+    }
+
+
+    /**
+     * Sets the cache used to keep the user Dns found by the search step of the
+     * <code>authenticate</code> methods taking a filter, so that a returning user
+     * is authenticated with a single bind. A cached Dn which fails to bind with
+     * INVALID_CREDENTIALS is searched again, in case the user has been renamed.
+     *
+     * @param userDnCache The user Dn cache, or null to search the Dn every time
+     */
+    public void setUserDnCache( UserDnCache userDnCache )
+    {
+        this.userDnCache = userDnCache;
+    }
+
+
+    /**
+     * Sets the coalescer used to share the result of a lookup or a search with the
+     * identical reads requested while it is in progress. This avoids sending the same
+     * request many times when lots of threads read the same entries at once.
+     *
+     * @param searchCoalescer The search coalescer, or null to send every read to the server
+     */
+    public void setSearchCoalescer( SearchCoalescer searchCoalescer )
+    {
+        this.searchCoalescer = searchCoalescer;
     }
 
 
@@ -148,7 +446,7 @@ public class LdapConnectionTemplate implements LdapConnectionOperations, ModelFa
         try
         {
             connection = connectionPool.getConnection();
-            return connection.add( addRequest );
+            return connection.add( proxied( addRequest ) );
         }
         catch ( LdapException e )
         {
@@ -189,13 +487,80 @@ public class LdapConnectionTemplate implements LdapConnectionOperations, ModelFa
     @Override
     public PasswordWarning authenticate( SearchRequest searchRequest, char[] password ) throws PasswordException
     {
-        Dn userDn = searchFirst( searchRequest, DN_ENTRY_MAPPER );
-        if ( userDn == null )
+        if ( userDnCache == null )
+        {
+            return authenticate( findUserDn( searchRequest ), password );
+        }
+
+        String cacheKey = UserDnCache.keyOf( searchRequest );
+        Dn cachedDn = userDnCache.get( cacheKey );
+
+        if ( cachedDn == null )
+        {
+            Dn userDn = findUserDn( searchRequest );
+            userDnCache.put( cacheKey, userDn );
+
+            return authenticate( userDn, password );
+        }
+
+        try
+        {
+            return authenticate( cachedDn, password );
+        }
+        catch ( PasswordException pe )
+        {
+            if ( ( pe.getResultCode() != ResultCodeEnum.INVALID_CREDENTIALS )
+                || ( pe.getPasswordPolicyError() != null ) )
+            {
+                throw pe;
+            }
+
+            // The user may have been renamed or deleted since its Dn was cached
+            Dn userDn;
+
+            try
+            {
+                userDn = findUserDn( searchRequest );
+            }
+            catch ( PasswordException notFound )
+            {
+                userDnCache.remove( cacheKey );
+
+                throw pe;
+            }
+
+            if ( userDn.equals( cachedDn ) )
+            {
+                throw pe;
+            }
+
+            if ( LOG.isDebugEnabled() )
+            {
+                LOG.debug( I18n.msg( I18n.MSG_04188_USER_DN_CACHE_STALE, cachedDn, cacheKey, userDn ) );
+            }
+
+            userDnCache.put( cacheKey, userDn );
+
+            return authenticate( userDn, password );
+        }
+    }
+
+
+    private Dn findUserDn( SearchRequest searchRequest ) throws PasswordException
+    {
+        // The user Dn lookup is never proxied
+        SearchRequest userSearch = copy( searchRequest );
+        userSearch.addAllControls( searchRequest.getControls().values().toArray( new Control[0] ) );
+        userSearch.setSizeLimit( 1 );
+
+        List<Dn> userDns = searchAs( userSearch, DN_ENTRY_MAPPER );
+
+        if ( userDns.isEmpty() )
         {
             throw new PasswordException().setResultCode( ResultCodeEnum.INVALID_CREDENTIALS );
         }
 
-        return authenticate( userDn, password );
+        return userDns.get( 0 );
     }
 
 
@@ -208,7 +573,7 @@ public class LdapConnectionTemplate implements LdapConnectionOperations, ModelFa
         LdapConnection connection = null;
         try
         {
-            connection = connectionPool.getConnection();
+            connection = authenticationPool.getConnection();
             return authenticateConnection( connection, userDn, password );
         }
         catch ( LdapException e )
@@ -217,7 +582,7 @@ public class LdapConnectionTemplate implements LdapConnectionOperations, ModelFa
         }
         finally
         {
-            returnLdapConnection( connection );
+            returnLdapConnection( authenticationPool, connection );
         }
     }
 
@@ -292,7 +657,7 @@ public class LdapConnectionTemplate implements LdapConnectionOperations, ModelFa
         try
         {
             connection = connectionPool.getConnection();
-            return connection.delete( deleteRequest );
+            return connection.delete( proxied( deleteRequest ) );
         }
         catch ( LdapException e )
         {
@@ -342,21 +707,73 @@ public class LdapConnectionTemplate implements LdapConnectionOperations, ModelFa
      * {@inheritDoc}
      */
     @Override
-    public <T> T lookup( Dn dn, String[] attributes, EntryMapper<T> entryMapper )
+    public <T> T lookup( final Dn dn, final String[] attributes, EntryMapper<T> entryMapper )
     {
-        LdapConnection connection = null;
+        if ( searchCoalescer != null )
+        {
+            try
+            {
+                String key = SearchCoalescer.keyOf( dn, attributes );
+
+                if ( proxiedAuthz != null )
+                {
+                    key = key + '|' + proxiedAuthz.getAuthzId();
+                }
+
+                List<Entry> entries = searchCoalescer.execute( key,
+                    new SearchCoalescer.Search()
+                    {
+                        @Override
+                        public List<Entry> execute() throws LdapException
+                        {
+                            Entry entry = lookupEntry( dn, attributes );
+
+                            return entry == null
+                                ? Collections.<Entry>emptyList()
+                                : Collections.singletonList( entry );
+                        }
+                    } );
+
+                return entries.isEmpty() ? null : entryMapper.map( entries.get( 0 ) );
+            }
+            catch ( LdapException e )
+            {
+                throw new LdapRuntimeException( e );
+            }
+        }
+
         try
         {
-            connection = connectionPool.getConnection();
-            Entry entry = attributes == null
-                ? connection.lookup( dn )
-                : connection.lookup( dn, attributes );
+            Entry entry = lookupEntry( dn, attributes );
             return entry == null ? null : entryMapper.map( entry );
         }
         catch ( LdapException e )
         {
             throw new LdapRuntimeException( e );
         }
+    }
+
+
+    private Entry lookupEntry( Dn dn, String[] attributes ) throws LdapException
+    {
+        LdapConnection connection = null;
+        try
+        {
+            connection = connectionPool.getConnection();
+
+            if ( proxiedAuthz != null )
+            {
+                Control[] controls = new Control[] { proxiedAuthz };
+
+                return attributes == null
+                    ? connection.lookup( dn, controls )
+                    : connection.lookup( dn, controls, attributes );
+            }
+
+            return attributes == null
+                ? connection.lookup( dn )
+                : connection.lookup( dn, attributes );
+        }
         finally
         {
             returnLdapConnection( connection );
@@ -476,7 +893,7 @@ public class LdapConnectionTemplate implements LdapConnectionOperations, ModelFa
         try
         {
             connection = connectionPool.getConnection();
-            return connection.modify( modifyRequest );
+            return connection.modify( proxied( modifyRequest ) );
         }
         catch ( LdapException e )
         {
@@ -693,12 +1110,18 @@ public class LdapConnectionTemplate implements LdapConnectionOperations, ModelFa
 
 
     private void returnLdapConnection( LdapConnection connection )
+    {
+        returnLdapConnection( connectionPool, connection );
+    }
+
+
+    private void returnLdapConnection( LdapConnectionPool pool, LdapConnection connection )
     {
         if ( connection != null )
         {
             try
             {
-                connectionPool.releaseConnection( connection );
+                pool.releaseConnection( connection );
             }
             catch ( LdapException e )
             {
@@ -819,8 +1242,59 @@ public class LdapConnectionTemplate implements LdapConnectionOperations, ModelFa
     public <T> List<T> search( SearchRequest searchRequest,
         EntryMapper<T> entryMapper )
     {
-        List<T> entries = new ArrayList<>();
+        // The control is part of the coalescing key
+        return searchAs( proxied( searchRequest ), entryMapper );
+    }
+
 
+    /**
+     * Search without attaching the ProxiedAuthz control, coalescing the identical searches
+     */
+    private <T> List<T> searchAs( final SearchRequest searchRequest, EntryMapper<T> entryMapper )
+    {
+        if ( searchCoalescer != null )
+        {
+            try
+            {
+                List<T> entries = new ArrayList<>();
+                List<Entry> results = searchCoalescer.execute(
+                    SearchCoalescer.keyOf( connectionPool.getLdapApiService(), searchRequest ),
+                    new SearchCoalescer.Search()
+                    {
+                        @Override
+                        public List<Entry> execute() throws LdapException
+                        {
+                            return doSearch( searchRequest, ENTRY_MAPPER );
+                        }
+                    } );
+
+                for ( Entry entry : results )
+                {
+                    entries.add( entryMapper.map( entry ) );
+                }
+
+                return entries;
+            }
+            catch ( LdapException e )
+            {
+                throw new LdapRuntimeException( e );
+            }
+        }
+
+        try
+        {
+            return doSearch( searchRequest, entryMapper );
+        }
+        catch ( LdapException e )
+        {
+            throw new LdapRuntimeException( e );
+        }
+    }
+
+
+    private <T> List<T> doSearch( SearchRequest searchRequest, EntryMapper<T> entryMapper ) throws LdapException
+    {
+        List<T> entries = new ArrayList<>();
         LdapConnection connection = null;
         try
         {
@@ -831,10 +1305,6 @@ public class LdapConnectionTemplate implements LdapConnectionOperations, ModelFa
                 entries.add( entryMapper.map( entry ) );
             }
         }
-        catch ( LdapException e )
-        {
-            throw new LdapRuntimeException( e );
-        }
         finally
         {
             returnLdapConnection( connection );
@@ -0,0 +1,375 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.template;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.directory.api.asn1.util.Asn1Buffer;
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.codec.api.ControlFactory;
+import org.apache.directory.api.ldap.codec.api.LdapApiService;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.message.Control;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.controls.OpaqueControl;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.util.Strings;
+
+
+/**
+ * Coalesces the identical reads done concurrently by a {@link LdapConnectionTemplate} : when a
+ * read is requested while an identical one is in progress, it waits for the result of the
+ * running read instead of sending a new request to the server. Two searches are identical if
+ * they have the same base, scope, filter, attributes, limits and controls. The controls are
+ * compared using their OID, their criticality and their BER encoded value. A search with a
+ * control which can't be encoded is never coalesced.
+ * <p>
+ * Each waiting thread gets its own copy of the read entries, so that the entries can be
+ * modified by the mappers. A failure is given to all the waiting threads.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class SearchCoalescer
+{
+    /** The reads in progress */
+    private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+
+    /** The number of reads which have not been sent to the server */
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * A read done on behalf of some callers
+     */
+    public interface Search
+    {
+        /**
+         * Read the entries from the server
+         *
+         * @return The read entries
+         * @throws LdapException If the read failed
+         */
+        List<Entry> execute() throws LdapException;
+    }
+
+    /**
+     * A read in progress, and the callers waiting for it
+     */
+    private static final class Flight
+    {
+        /** The read result */
+        private final CompletableFuture<List<Entry>> result = new CompletableFuture<>();
+
+        /** The number of waiting callers */
+        private int followers;
+
+        /** Tells if the read is done, and can't be joined anymore */
+        private boolean landed;
+
+
+        private synchronized boolean join()
+        {
+            if ( landed )
+            {
+                return false;
+            }
+
+            followers++;
+
+            return true;
+        }
+
+
+        /**
+         * @return <code>true</code> if some callers are waiting for the result
+         */
+        private synchronized boolean land()
+        {
+            landed = true;
+
+            return followers > 0;
+        }
+    }
+
+
+    /**
+     * Builds the key of a SearchRequest. The controls values are encoded using the control
+     * factories of the LDAP codec service.
+     *
+     * @param codec The LDAP codec service
+     * @param searchRequest The SearchRequest
+     * @return The key identifying this request, or <code>null</code> if one of its controls
+     * can't be encoded, in which case the request must not be coalesced
+     */
+    public static String keyOf( LdapApiService codec, SearchRequest searchRequest )
+    {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append( "search|" ).append( searchRequest.getBase().getNormName() );
+        sb.append( '|' ).append( searchRequest.getScope() );
+        sb.append( '|' ).append( searchRequest.getDerefAliases() );
+        sb.append( '|' ).append( searchRequest.getSizeLimit() );
+        sb.append( '|' ).append( searchRequest.getTimeLimit() );
+        sb.append( '|' ).append( searchRequest.getTypesOnly() );
+        sb.append( '|' ).append( searchRequest.getFilter() );
+        sb.append( '|' );
+
+        for ( String attribute : searchRequest.getAttributes() )
+        {
+            sb.append( Strings.toLowerCaseAscii( attribute ) ).append( ',' );
+        }
+
+        // The controls are sorted, for their order to be irrelevant
+        for ( Control control : new TreeMap<>( searchRequest.getControls() ).values() )
+        {
+            byte[] value = encodeValue( codec, control );
+
+            if ( value == null )
+            {
+                return null;
+            }
+
+            sb.append( '|' ).append( control.getOid() ).append( ':' ).append( control.isCritical() );
+            sb.append( ':' ).append( Strings.toHexString( value ) );
+        }
+
+        return sb.toString();
+    }
+
+
+    /**
+     * Encode the value of a control
+     *
+     * @param codec The LDAP codec service
+     * @param control The control to encode
+     * @return The encoded value, empty if the control has no value, or <code>null</code> if
+     * the value can't be encoded
+     */
+    private static byte[] encodeValue( LdapApiService codec, Control control )
+    {
+        if ( control instanceof OpaqueControl )
+        {
+            byte[] value = ( ( OpaqueControl ) control ).getEncodedValue();
+
+            return value == null ? Strings.EMPTY_BYTES : value;
+        }
+
+        ControlFactory<?> factory = codec.getRequestControlFactories().get( control.getOid() );
+
+        if ( factory == null )
+        {
+            return null;
+        }
+
+        try
+        {
+            Asn1Buffer buffer = new Asn1Buffer();
+            factory.encodeValue( buffer, control );
+
+            return buffer.getBytes().array();
+        }
+        catch ( RuntimeException re )
+        {
+            return null;
+        }
+    }
+
+
+    /**
+     * Builds the key of a lookup
+     *
+     * @param dn The entry Dn
+     * @param attributes The requested attributes, or null
+     * @return The key identifying this lookup
+     */
+    public static String keyOf( Dn dn, String[] attributes )
+    {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append( "lookup|" ).append( dn.getNormName() );
+
+        if ( attributes != null )
+        {
+            sb.append( '|' );
+
+            for ( String attribute : attributes )
+            {
+                sb.append( Strings.toLowerCaseAscii( attribute ) ).append( ',' );
+            }
+        }
+
+        return sb.toString();
+    }
+
+
+    /**
+     * Execute a read, unless an identical read is in progress, in which case its result is
+     * waited for.
+     *
+     * @param key The key identifying the read, or <code>null</code> if the read must not be coalesced
+     * @param search The read to execute
+     * @return The read entries
+     * @throws LdapException If the read failed
+     */
+    public List<Entry> execute( String key, Search search ) throws LdapException
+    {
+        if ( key == null )
+        {
+            return search.execute();
+        }
+
+        while ( true )
+        {
+            Flight flight = new Flight();
+            Flight running = flights.putIfAbsent( key, flight );
+
+            if ( running == null )
+            {
+                return lead( key, flight, search );
+            }
+
+            if ( running.join() )
+            {
+                coalesced.incrementAndGet();
+
+                return copy( follow( running ) );
+            }
+
+            // The running read has just completed, try again
+        }
+    }
+
+
+    /**
+     * Execute the read, and give its result to the callers who have joined meanwhile
+     */
+    private List<Entry> lead( String key, Flight flight, Search search ) throws LdapException
+    {
+        List<Entry> entries = null;
+        Throwable failure = null;
+        boolean shared;
+
+        try
+        {
+            entries = search.execute();
+        }
+        catch ( Throwable t )
+        {
+            failure = t;
+
+            throw t;
+        }
+        finally
+        {
+            // Whatever happened, the followers must not wait forever
+            shared = flight.land();
+            flights.remove( key, flight );
+
+            if ( failure == null )
+            {
+                flight.result.complete( entries );
+            }
+            else
+            {
+                flight.result.completeExceptionally( failure );
+            }
+        }
+
+        // The followers copy the entries : they must not be modified by the leader
+        return shared ? copy( entries ) : entries;
+    }
+
+
+    /**
+     * Wait for the result of a running read
+     */
+    private List<Entry> follow( Flight flight ) throws LdapException
+    {
+        try
+        {
+            return flight.result.get();
+        }
+        catch ( InterruptedException ie )
+        {
+            Thread.currentThread().interrupt();
+
+            throw new LdapException( I18n.err( I18n.ERR_04195_COALESCED_SEARCH_INTERRUPTED ), ie );
+        }
+        catch ( ExecutionException ee )
+        {
+            Throwable cause = ee.getCause();
+
+            if ( cause instanceof LdapException )
+            {
+                throw ( LdapException ) cause;
+            }
+
+            if ( cause instanceof Error )
+            {
+                throw ( Error ) cause;
+            }
+
+            throw ( RuntimeException ) cause;
+        }
+    }
+
+
+    /**
+     * Copy some entries
+     */
+    private static List<Entry> copy( List<Entry> entries )
+    {
+        List<Entry> copies = new ArrayList<>( entries.size() );
+
+        for ( Entry entry : entries )
+        {
+            copies.add( entry.clone() );
+        }
+
+        return copies;
+    }
+
+
+    /**
+     * @return The number of reads which have waited for an identical read instead of being
+     * sent to the server
+     */
+    public long getCoalesced()
+    {
+        return coalesced.get();
+    }
+
+
+    /**
+     * @return The number of reads in progress
+     */
+    public int getInFlight()
+    {
+        return flights.size();
+    }
+}
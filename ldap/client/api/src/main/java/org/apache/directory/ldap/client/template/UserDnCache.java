@@ -0,0 +1,225 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.template;
+
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.name.Dn;
+
+
+/**
+ * A bounded LRU cache of the user Dns found by the search step of a search-then-bind
+ * authentication. The key is built from the base, scope and filter of the SearchRequest,
+ * and each Dn expires after a configurable time to live. The Dns are not secrets : the
+ * passwords are never cached.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class UserDnCache
+{
+    /** The cached Dns, in access order */
+    private final Map<String, CachedDn> cache;
+
+    /** The time a Dn is kept in the cache, in milliseconds */
+    private final long timeToLive;
+
+    /** The number of Dns found in the cache */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** The number of Dns not found in the cache */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * A cached Dn, with its expiration date
+     */
+    private static final class CachedDn
+    {
+        /** The user Dn */
+        private final Dn dn;
+
+        /** The date after which the Dn must be searched again */
+        private final long expiration;
+
+
+        private CachedDn( Dn dn, long expiration )
+        {
+            this.dn = dn;
+            this.expiration = expiration;
+        }
+    }
+
+
+    /**
+     * Creates a new instance of UserDnCache.
+     *
+     * @param cacheSize The maximum number of Dns kept in the cache
+     * @param timeToLive The time a Dn is kept in the cache, in milliseconds. A value
+     * of 0 or below means the Dns never expire
+     */
+    public UserDnCache( final int cacheSize, long timeToLive )
+    {
+        this.timeToLive = timeToLive;
+        this.cache = new LinkedHashMap<String, CachedDn>( 16, 0.75f, true )
+        {
+            private static final long serialVersionUID = 1L;
+
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, CachedDn> eldest )
+            {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+
+    /**
+     * Builds the key used to store the Dn found by a SearchRequest.
+     *
+     * @param searchRequest The SearchRequest used to find the user
+     * @return The cache key
+     */
+    public static String keyOf( SearchRequest searchRequest )
+    {
+        return new StringBuilder()
+            .append( searchRequest.getBase().getNormName() )
+            .append( '|' )
+            .append( searchRequest.getScope() )
+            .append( '|' )
+            .append( searchRequest.getFilter() )
+            .toString();
+    }
+
+
+    /**
+     * Gets the Dn stored for a key, if it has not expired.
+     *
+     * @param key The cache key
+     * @return The cached Dn, or null
+     */
+    public Dn get( String key )
+    {
+        CachedDn cachedDn;
+
+        // The map reorders its entries on a get, it has to be protected
+        synchronized ( cache )
+        {
+            cachedDn = cache.get( key );
+
+            if ( ( cachedDn != null ) && ( timeToLive > 0L )
+                && ( cachedDn.expiration < System.currentTimeMillis() ) )
+            {
+                cache.remove( key );
+                cachedDn = null;
+            }
+        }
+
+        if ( cachedDn == null )
+        {
+            misses.incrementAndGet();
+
+            return null;
+        }
+
+        hits.incrementAndGet();
+
+        return cachedDn.dn;
+    }
+
+
+    /**
+     * Stores a Dn in the cache.
+     *
+     * @param key The cache key
+     * @param dn The user Dn
+     */
+    public void put( String key, Dn dn )
+    {
+        CachedDn cachedDn = new CachedDn( dn, System.currentTimeMillis() + timeToLive );
+
+        synchronized ( cache )
+        {
+            cache.put( key, cachedDn );
+        }
+    }
+
+
+    /**
+     * Removes a Dn from the cache.
+     *
+     * @param key The cache key
+     */
+    public void remove( String key )
+    {
+        synchronized ( cache )
+        {
+            cache.remove( key );
+        }
+    }
+
+
+    /**
+     * @return The number of Dns found in the cache
+     */
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+
+    /**
+     * @return The number of Dns that were not found in the cache
+     */
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+
+    /**
+     * @return The number of Dns currently stored in the cache
+     */
+    public int getSize()
+    {
+        synchronized ( cache )
+        {
+            return cache.size();
+        }
+    }
+
+
+    /**
+     * Remove all the Dns from the cache, and reset the counters
+     */
+    public void clear()
+    {
+        synchronized ( cache )
+        {
+            cache.clear();
+        }
+
+        hits.set( 0L );
+        misses.set( 0L );
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.apache.commons.pool2.PooledObject;
+import org.apache.directory.api.ldap.model.message.BindRequest;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the AuthenticationPoolableLdapConnectionFactory : the connections must never
+ * be bound by the pool.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class AuthenticationPoolableLdapConnectionFactoryTest
+{
+    @Test
+    public void testConnectionsAreNotBound() throws Exception
+    {
+        LdapConnection connection = mock( LdapConnection.class );
+        LdapConnectionConfig config = new LdapConnectionConfig();
+        config.setName( "uid=admin,ou=system" );
+        config.setCredentials( "secret" );
+
+        AuthenticationPoolableLdapConnectionFactory factory = new AuthenticationPoolableLdapConnectionFactory(
+            new MockLdapConnectionFactory( config ).addConnection( connection ) );
+
+        PooledObject<LdapConnection> pooledObject = factory.makeObject();
+        verify( connection, times( 1 ) ).connect();
+
+        // The connection is not authenticated, but it is connected : no rebind
+        when( connection.isConnected() ).thenReturn( true );
+        when( connection.isAuthenticated() ).thenReturn( false );
+        factory.activateObject( pooledObject );
+        factory.passivateObject( pooledObject );
+        assertTrue( factory.validateObject( pooledObject ) );
+        verify( connection, times( 1 ) ).connect();
+
+        // A dropped connection is reconnected, but still not bound
+        when( connection.isConnected() ).thenReturn( false );
+        assertFalse( factory.validateObject( pooledObject ) );
+        factory.activateObject( pooledObject );
+        verify( connection, times( 2 ) ).connect();
+
+        verify( connection, never() ).bind();
+        verify( connection, never() ).bind( any( BindRequest.class ) );
+        verify( connection, never() ).bind( any( String.class ), any( String.class ) );
+    }
+}
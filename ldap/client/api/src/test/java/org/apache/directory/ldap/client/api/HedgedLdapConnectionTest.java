@@ -0,0 +1,246 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.message.Response;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchResultEntryImpl;
+import org.apache.directory.ldap.client.api.exception.LdapConnectionTimeOutException;
+import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the HedgedLdapConnection, using mocked connections.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class HedgedLdapConnectionTest
+{
+    private LdapAsyncConnection primary;
+    private LdapAsyncConnection replica;
+    private SearchFuture primaryFuture;
+    private SearchFuture replicaFuture;
+    private HedgingPolicy policy;
+
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        primary = mock( LdapAsyncConnection.class );
+        replica = mock( LdapAsyncConnection.class );
+        primaryFuture = new SearchFuture( primary, 1 );
+        replicaFuture = new SearchFuture( replica, 1 );
+
+        LdapConnectionConfig config = new LdapConnectionConfig();
+        config.setTimeout( 2000L );
+
+        when( primary.getConfig() ).thenReturn( config );
+        when( replica.getConfig() ).thenReturn( config );
+        when( primary.searchAsync( any( SearchRequest.class ) ) ).thenReturn( primaryFuture );
+        when( replica.searchAsync( any( SearchRequest.class ) ) ).thenReturn( replicaFuture );
+
+        policy = new HedgingPolicy();
+        policy.setInitialDelay( 20L, TimeUnit.MILLISECONDS );
+    }
+
+
+    private static void answer( SearchFuture future, String dn ) throws Exception
+    {
+        SearchResultEntry entry = new SearchResultEntryImpl( 1 );
+        entry.setEntry( new DefaultEntry( dn, "cn: test" ) );
+        future.set( entry );
+
+        SearchResultDone done = new SearchResultDoneImpl( 1 );
+        done.getLdapResult().setResultCode( ResultCodeEnum.SUCCESS );
+        future.set( done );
+    }
+
+
+    @Test
+    public void testPrimaryAnswersFirst() throws Exception
+    {
+        answer( primaryFuture, "cn=primary" );
+
+        HedgedLdapConnection connection = new HedgedLdapConnection( primary, replica, policy );
+        Entry entry = connection.lookup( "cn=test" );
+
+        assertEquals( "cn=primary", entry.getDn().getName() );
+        verify( replica, never() ).searchAsync( any( SearchRequest.class ) );
+        assertEquals( 1L, policy.getReads() );
+        assertEquals( 0L, policy.getHedged() );
+    }
+
+
+    @Test
+    public void testReplicaAnswersFirst() throws Exception
+    {
+        answer( replicaFuture, "cn=replica" );
+
+        HedgedLdapConnection connection = new HedgedLdapConnection( primary, replica, policy );
+        Entry entry = connection.lookup( "cn=test" );
+
+        assertEquals( "cn=replica", entry.getDn().getName() );
+        assertTrue( primaryFuture.isCancelled() );
+        verify( primary ).abandon( 1 );
+        assertEquals( 1L, policy.getHedged() );
+        assertEquals( 1L, policy.getHedgeWins() );
+    }
+
+
+    @Test
+    public void testSlowPrimaryWinsAfterHedge() throws Exception
+    {
+        HedgedLdapConnection connection = new HedgedLdapConnection( primary, replica, policy );
+
+        Thread server = new Thread( () ->
+        {
+            try
+            {
+                Thread.sleep( 100L );
+                answer( primaryFuture, "cn=primary" );
+            }
+            catch ( Exception e )
+            {
+                // Nothing to do
+            }
+        } );
+
+        server.start();
+        Entry entry = connection.lookup( "cn=test" );
+        server.join();
+
+        assertEquals( "cn=primary", entry.getDn().getName() );
+        verify( replica ).searchAsync( any( SearchRequest.class ) );
+        assertTrue( replicaFuture.isCancelled() );
+        assertEquals( 0L, policy.getHedgeWins() );
+    }
+
+
+    @Test
+    public void testBudgetExhausted() throws Exception
+    {
+        policy.setBudget( 0d, 0 );
+        answer( replicaFuture, "cn=replica" );
+
+        HedgedLdapConnection connection = new HedgedLdapConnection( primary, replica, policy );
+        connection.setTimeOut( 200L );
+
+        // The replica is never asked
+        assertThrows( LdapConnectionTimeOutException.class, () -> connection.lookup( "cn=test" ) );
+        verify( replica, never() ).searchAsync( any( SearchRequest.class ) );
+        assertEquals( 1L, policy.getRejected() );
+    }
+
+
+    @Test
+    public void testNoHedgeWaitsForPrimary() throws Exception
+    {
+        AtomicInteger polls = new AtomicInteger();
+        SearchFuture slowFuture = new SearchFuture( primary, 1 )
+        {
+            @Override
+            public Response get( long timeout, TimeUnit unit ) throws InterruptedException
+            {
+                polls.incrementAndGet();
+
+                return super.get( timeout, unit );
+            }
+        };
+
+        when( primary.searchAsync( any( SearchRequest.class ) ) ).thenReturn( slowFuture );
+        policy.setBudget( 0d, 0 );
+
+        HedgedLdapConnection connection = new HedgedLdapConnection( primary, replica, policy );
+
+        Thread server = new Thread( () ->
+        {
+            try
+            {
+                Thread.sleep( 100L );
+                answer( slowFuture, "cn=primary" );
+            }
+            catch ( Exception e )
+            {
+                // Nothing to do
+            }
+        } );
+
+        server.start();
+        Entry entry = connection.lookup( "cn=test" );
+        server.join();
+
+        // Once the hedge is refused, the primary server is not polled anymore : the future
+        // is only read during the delay, until the entry comes, and by the cursor for the done
+        assertEquals( "cn=primary", entry.getDn().getName() );
+        verify( replica, never() ).searchAsync( any( SearchRequest.class ) );
+        assertEquals( 3, polls.get() );
+    }
+
+
+    @Test
+    public void testAdaptiveDelay()
+    {
+        policy.setWindow( 100 );
+        policy.setMinDelay( 0L, TimeUnit.NANOSECONDS );
+
+        assertEquals( TimeUnit.MILLISECONDS.toNanos( 20L ), policy.getDelay() );
+
+        for ( int i = 1; i <= 100; i++ )
+        {
+            policy.readCompleted( i * 1000L );
+        }
+
+        // The 95th percentile, with a 1/32 precision
+        long delay = policy.getDelay();
+
+        assertTrue( Math.abs( delay - 95_000L ) <= 95_000L / 32 );
+    }
+
+
+    @Test
+    public void testNotAsync()
+    {
+        assertThrows( IllegalArgumentException.class,
+            () -> new HedgedLdapConnection( mock( LdapConnection.class ), replica, policy ) );
+        assertNotNull( new HedgedLdapConnection( primary, replica, policy ).getReplica() );
+    }
+}
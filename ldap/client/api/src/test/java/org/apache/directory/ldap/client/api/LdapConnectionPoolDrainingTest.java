@@ -0,0 +1,239 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.directory.api.ldap.extras.extended.gracefulDisconnect.GracefulDisconnectResponse;
+import org.apache.directory.api.ldap.extras.extended.gracefulDisconnect.GracefulDisconnectResponseImpl;
+import org.apache.directory.api.ldap.model.message.ExtendedResponse;
+import org.apache.mina.core.session.IoSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the reaction of the LdapConnectionPool to the disconnection notices, using
+ * connections which are not connected.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LdapConnectionPoolDrainingTest
+{
+    private LdapConnectionConfig config;
+    private DefaultLdapConnectionFactory connectionFactory;
+    private LdapConnectionPool pool;
+
+
+    @BeforeEach
+    public void setup()
+    {
+        config = new LdapConnectionConfig();
+        config.setLdapHost( "primary" );
+        config.setLdapPort( 10389 );
+
+        // The connections are neither connected nor bound
+        connectionFactory = new DefaultLdapConnectionFactory( config )
+        {
+            @Override
+            public LdapConnection bindConnection( LdapConnection connection )
+            {
+                return connection;
+            }
+
+
+            @Override
+            public LdapConnection newLdapConnection()
+            {
+                return newUnboundLdapConnection();
+            }
+        };
+
+        pool = new LdapConnectionPool( new DefaultPoolableLdapConnectionFactory( connectionFactory ) );
+    }
+
+
+    @AfterEach
+    public void tearDown()
+    {
+        pool.close();
+    }
+
+
+    private static void gracefulDisconnect( LdapConnection connection, String... alternates ) throws Exception
+    {
+        GracefulDisconnectResponse notice = new GracefulDisconnectResponseImpl( 5, 0 );
+
+        for ( String alternate : alternates )
+        {
+            notice.addReplicatedContexts( alternate );
+        }
+
+        ( ( LdapNetworkConnection ) connection ).messageReceived( mock( IoSession.class ), notice );
+    }
+
+
+    @Test
+    public void testConnectionNotified() throws Exception
+    {
+        List<ExtendedResponse> notices = new ArrayList<>();
+        LdapNetworkConnection connection = new LdapNetworkConnection( config );
+        connection.addDisconnectNoticeListener( ( notified, notice ) -> notices.add( notice ) );
+
+        assertFalse( connection.isDraining() );
+
+        gracefulDisconnect( connection );
+
+        assertTrue( connection.isDraining() );
+        assertEquals( 1, notices.size() );
+        assertEquals( GracefulDisconnectResponse.EXTENSION_OID, notices.get( 0 ).getResponseName() );
+        connection.close();
+    }
+
+
+    @Test
+    public void testDrainingConnectionNotHandedOut() throws Exception
+    {
+        pool.setPreOpenReplacements( false );
+
+        LdapConnection idle = pool.getConnection();
+        pool.releaseConnection( idle );
+        assertSame( idle, pool.getConnection() );
+        pool.releaseConnection( idle );
+
+        // An idle connection is destroyed when it would have been borrowed
+        gracefulDisconnect( idle );
+        LdapConnection active = pool.getConnection();
+
+        assertNotSame( idle, active );
+        assertEquals( 1L, pool.getDestroyedCount() );
+
+        // A borrowed connection is destroyed when it is released
+        gracefulDisconnect( active );
+        pool.releaseConnection( active );
+
+        assertEquals( 2L, pool.getDestroyedCount() );
+        assertEquals( 0, pool.getNumIdle() );
+    }
+
+
+    @Test
+    public void testReplacementPreOpened() throws Exception
+    {
+        pool.setReconnectJitter( 20L );
+
+        LdapConnection connection = pool.getConnection();
+        gracefulDisconnect( connection );
+
+        long deadline = System.currentTimeMillis() + 5000L;
+
+        while ( ( pool.getNumIdle() == 0 ) && ( System.currentTimeMillis() < deadline ) )
+        {
+            Thread.sleep( 10L );
+        }
+
+        assertEquals( 1, pool.getNumIdle() );
+        assertEquals( 2L, pool.getCreatedCount() );
+
+        pool.releaseConnection( connection );
+
+        assertEquals( 1L, pool.getDestroyedCount() );
+        assertNotSame( connection, pool.getConnection() );
+    }
+
+
+    @Test
+    public void testListenerRegisteredOnCreation() throws Exception
+    {
+        pool.setReconnectJitter( 0L );
+
+        // A notice received by an idle connection is seen by the pool
+        pool.addObject();
+        LdapConnection idle = pool.getConnection();
+        pool.releaseConnection( idle );
+        gracefulDisconnect( idle );
+
+        long deadline = System.currentTimeMillis() + 5000L;
+
+        while ( ( pool.getCreatedCount() < 2L ) && ( System.currentTimeMillis() < deadline ) )
+        {
+            Thread.sleep( 10L );
+        }
+
+        assertEquals( 2L, pool.getCreatedCount() );
+
+        // The pool is not notified anymore once the connection is destroyed
+        LdapConnection connection = pool.getConnection();
+        pool.invalidateObject( connection );
+        long created = pool.getCreatedCount();
+        gracefulDisconnect( connection );
+        Thread.sleep( 50L );
+
+        assertEquals( created, pool.getCreatedCount() );
+    }
+
+
+    @Test
+    public void testFollowAlternateServers() throws Exception
+    {
+        LdapConnectionPool rotatingPool = new LdapConnectionPool(
+            new ValidatingPoolableLdapConnectionFactory( connectionFactory ) );
+        rotatingPool.setPreOpenReplacements( false );
+
+        LdapNetworkConnection connection = new LdapNetworkConnection( config );
+        connection.addDisconnectNoticeListener( rotatingPool );
+
+        // Disabled by default
+        gracefulDisconnect( connection, "ldap://replica1:10390" );
+        assertSame( config, connectionFactory.getConfig() );
+
+        rotatingPool.setFollowAlternateServers( true );
+        gracefulDisconnect( connection, "ldap://replica1:10390", "ldap://replica2:10391" );
+
+        LdapConnectionConfig alternateConfig = connectionFactory.getConfig();
+
+        assertEquals( "replica1", alternateConfig.getLdapHost() );
+        assertEquals( 10390, alternateConfig.getLdapPort() );
+        assertEquals( config.getTimeout(), alternateConfig.getTimeout() );
+
+        // The configuration shared with the existing connections is not modified
+        assertNotSame( config, alternateConfig );
+        assertEquals( "primary", config.getLdapHost() );
+        assertEquals( 10389, config.getLdapPort() );
+
+        // The other connections to the same server do not switch again
+        gracefulDisconnect( connection, "ldap://replica2:10391", "ldap://replica1:10390" );
+
+        assertSame( alternateConfig, connectionFactory.getConfig() );
+
+        rotatingPool.close();
+        connection.close();
+    }
+}
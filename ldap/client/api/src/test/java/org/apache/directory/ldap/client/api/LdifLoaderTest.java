@@ -0,0 +1,212 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.directory.api.ldap.model.ldif.LdifEntry;
+import org.apache.directory.api.ldap.model.ldif.LdifReader;
+import org.apache.directory.api.ldap.model.message.AddRequest;
+import org.apache.directory.api.ldap.model.message.AddResponse;
+import org.apache.directory.api.ldap.model.message.AddResponseImpl;
+import org.apache.directory.api.ldap.model.message.DeleteRequest;
+import org.apache.directory.api.ldap.model.message.DeleteResponse;
+import org.apache.directory.api.ldap.model.message.DeleteResponseImpl;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.ldap.client.api.future.AddFuture;
+import org.apache.directory.ldap.client.api.future.DeleteFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the LdifLoader, using mocked connections.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LdifLoaderTest
+{
+    private static final String LDIF =
+        "dn: ou=parent,dc=example,dc=com\n" +
+        "objectClass: organizationalUnit\n" +
+        "ou: parent\n" +
+        "\n" +
+        "dn: cn=child,ou=parent,dc=example,dc=com\n" +
+        "objectClass: person\n" +
+        "cn: child\n" +
+        "sn: child\n" +
+        "\n" +
+        "dn: cn=other,dc=example,dc=com\n" +
+        "objectClass: person\n" +
+        "cn: other\n" +
+        "sn: other\n";
+
+    private LdapAsyncConnection connection;
+    private LdapConnectionPool pool;
+
+    /** The result codes to return, per Dn, in order */
+    private Map<String, ResultCodeEnum[]> results;
+
+    /** The number of requests received per Dn */
+    private Map<String, AtomicInteger> received;
+
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        connection = mock( LdapAsyncConnection.class );
+        pool = mock( LdapConnectionPool.class );
+        results = new ConcurrentHashMap<>();
+        received = new ConcurrentHashMap<>();
+
+        when( pool.getConnection() ).thenReturn( connection );
+
+        when( connection.addAsync( any( AddRequest.class ) ) ).thenAnswer( invocation ->
+        {
+            AddRequest request = ( AddRequest ) invocation.getArguments()[0];
+            AddFuture future = new AddFuture( connection, 1 );
+            AddResponse response = new AddResponseImpl( 1 );
+            response.getLdapResult().setResultCode( resultCode( request.getEntryDn().getName() ) );
+            future.set( response );
+
+            return future;
+        } );
+
+        when( connection.deleteAsync( any( DeleteRequest.class ) ) ).thenAnswer( invocation ->
+        {
+            DeleteRequest request = ( DeleteRequest ) invocation.getArguments()[0];
+            DeleteFuture future = new DeleteFuture( connection, 1 );
+            DeleteResponse response = new DeleteResponseImpl( 1 );
+            response.getLdapResult().setResultCode( resultCode( request.getName().getName() ) );
+            future.set( response );
+
+            return future;
+        } );
+    }
+
+
+    private ResultCodeEnum resultCode( String dn )
+    {
+        int count = received.computeIfAbsent( dn, k -> new AtomicInteger() ).getAndIncrement();
+        ResultCodeEnum[] codes = results.get( dn );
+
+        if ( codes == null )
+        {
+            return ResultCodeEnum.SUCCESS;
+        }
+
+        return codes[Math.min( count, codes.length - 1 )];
+    }
+
+
+    private static List<LdifEntry> parse( String ldif ) throws Exception
+    {
+        try ( LdifReader reader = new LdifReader() )
+        {
+            return reader.parseLdif( ldif );
+        }
+    }
+
+
+    @Test
+    public void testLoad() throws Exception
+    {
+        LdifLoader loader = new LdifLoader( pool );
+        loader.setParallelism( 2 );
+        loader.setWindow( 2 );
+        loader.load( parse(
+            "dn: ou=parent,dc=example,dc=com\n" +
+            "changetype: add\n" +
+            "objectClass: organizationalUnit\n" +
+            "ou: parent\n" +
+            "\n" +
+            "dn: cn=child,ou=parent,dc=example,dc=com\n" +
+            "changetype: add\n" +
+            "objectClass: person\n" +
+            "cn: child\n" +
+            "sn: child\n" +
+            "\n" +
+            "dn: cn=child,ou=parent,dc=example,dc=com\n" +
+            "changetype: delete\n" +
+            "\n" +
+            "dn: ou=parent,dc=example,dc=com\n" +
+            "changetype: delete\n" ) );
+
+        assertEquals( 4L, loader.getLoaded() );
+        assertEquals( 0L, loader.getRejected() );
+        assertEquals( 0L, loader.getRetried() );
+        assertEquals( 2, received.get( "cn=child,ou=parent,dc=example,dc=com" ).get() );
+        assertEquals( 2, received.get( "ou=parent,dc=example,dc=com" ).get() );
+        assertTrue( loader.getThroughput() > 0.0d );
+    }
+
+
+    @Test
+    public void testRetryBusy() throws Exception
+    {
+        results.put( "cn=other,dc=example,dc=com",
+            new ResultCodeEnum[] { ResultCodeEnum.BUSY, ResultCodeEnum.UNAVAILABLE, ResultCodeEnum.SUCCESS } );
+
+        LdifLoader loader = new LdifLoader( pool );
+        loader.setRetryDelay( 1L );
+        loader.load( parse( LDIF ) );
+
+        assertEquals( 3L, loader.getLoaded() );
+        assertEquals( 0L, loader.getRejected() );
+        assertEquals( 2L, loader.getRetried() );
+        assertEquals( 3, received.get( "cn=other,dc=example,dc=com" ).get() );
+    }
+
+
+    @Test
+    public void testRejects() throws Exception
+    {
+        results.put( "cn=child,ou=parent,dc=example,dc=com", new ResultCodeEnum[] { ResultCodeEnum.NO_SUCH_OBJECT } );
+        results.put( "cn=other,dc=example,dc=com", new ResultCodeEnum[] { ResultCodeEnum.BUSY } );
+
+        StringWriter rejects = new StringWriter();
+        LdifLoader loader = new LdifLoader( pool );
+        loader.setRetryDelay( 1L );
+        loader.setMaxRetries( 2 );
+        loader.setRejectWriter( rejects );
+        loader.load( parse( LDIF ) );
+
+        assertEquals( 1L, loader.getLoaded() );
+        assertEquals( 2L, loader.getRejected() );
+        assertEquals( 3, received.get( "cn=other,dc=example,dc=com" ).get() );
+
+        List<LdifEntry> rejected = parse( rejects.toString() );
+
+        assertEquals( 2, rejected.size() );
+        assertTrue( rejects.toString().contains( "# NO_SUCH_OBJECT" ) );
+        assertTrue( rejects.toString().contains( "# BUSY" ) );
+    }
+}
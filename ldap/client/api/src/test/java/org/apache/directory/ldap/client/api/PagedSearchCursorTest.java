@@ -0,0 +1,284 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ * 
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ * 
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.ldap.model.cursor.SearchCursor;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchResultEntryImpl;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.message.controls.PagedResults;
+import org.apache.directory.api.ldap.model.message.controls.PagedResultsImpl;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.util.Strings;
+import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the PagedSearchCursor, with a mocked connection returning the pages
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class PagedSearchCursorTest
+{
+    /**
+     * A fake server, returning a search result split in pages
+     */
+    private static class PagingServer
+    {
+        /** The number of entries to return */
+        private int nbEntries;
+
+        /** The received PagedResults controls */
+        private List<PagedResults> requests = new ArrayList<>();
+
+        /** The connection */
+        private LdapAsyncConnection connection = mock( LdapAsyncConnection.class );
+
+
+        private PagingServer( int nbEntries ) throws Exception
+        {
+            this.nbEntries = nbEntries;
+
+            when( connection.searchAsync( any( SearchRequest.class ) ) ).thenAnswer( invocation ->
+            {
+                SearchRequest searchRequest = ( SearchRequest ) invocation.getArguments()[0];
+                PagedResults pagedResults = ( PagedResults ) searchRequest.getControl( PagedResults.OID );
+                requests.add( pagedResults );
+
+                return page( requests.size(), pagedResults );
+            } );
+        }
+
+
+        /**
+         * Return a page. The cookie is the position of the first entry of the next page.
+         */
+        private SearchFuture page( int messageId, PagedResults request ) throws Exception
+        {
+            int start = Strings.isEmpty( request.getCookie() ) ? 0 : Integer.parseInt( Strings.utf8ToString( request.getCookie() ) );
+            int end = Math.min( nbEntries, start + request.getSize() );
+            SearchFuture future = new SearchFuture( connection, messageId );
+
+            for ( int i = start; i < end; i++ )
+            {
+                SearchResultEntry entry = new SearchResultEntryImpl( messageId );
+                entry.setObjectName( new Dn( "cn=entry" + i + ",ou=test" ) );
+                future.set( entry );
+            }
+
+            SearchResultDone done = new SearchResultDoneImpl( messageId );
+            done.getLdapResult().setResultCode( ResultCodeEnum.SUCCESS );
+            PagedResults response = new PagedResultsImpl();
+            response.setCookie( end < nbEntries ? Strings.getBytesUtf8( Integer.toString( end ) ) : Strings.EMPTY_BYTES );
+            done.addControl( response );
+            future.set( done );
+
+            return future;
+        }
+    }
+
+
+    private SearchRequest createRequest( long sizeLimit ) throws Exception
+    {
+        SearchRequest searchRequest = new SearchRequestImpl();
+        searchRequest.setBase( new Dn( "ou=test" ) );
+        searchRequest.setFilter( "(objectClass=*)" );
+        searchRequest.setScope( SearchScope.ONELEVEL );
+        searchRequest.setSizeLimit( sizeLimit );
+
+        return searchRequest;
+    }
+
+
+    @Test
+    public void testAllPages() throws Exception
+    {
+        PagingServer server = new PagingServer( 25 );
+
+        try ( PagedSearchCursor cursor = new PagedSearchCursor( server.connection, createRequest( 0L ), 10, 1L,
+            TimeUnit.SECONDS ) )
+        {
+            // The first page has been requested
+            assertEquals( 1, server.requests.size() );
+
+            assertTrue( cursor.next() );
+            assertEquals( "cn=entry0,ou=test", cursor.getEntry().getDn().getName() );
+
+            // The second page has been requested before the first one has been read
+            assertEquals( 2, server.requests.size() );
+            assertArrayEquals( Strings.getBytesUtf8( "10" ), server.requests.get( 1 ).getCookie() );
+
+            int count = 1;
+
+            while ( cursor.next() )
+            {
+                assertEquals( "cn=entry" + count + ",ou=test", cursor.getEntry().getDn().getName() );
+                count++;
+            }
+
+            assertEquals( 25, count );
+            assertEquals( 25L, cursor.getEntryCount() );
+            assertEquals( 3, server.requests.size() );
+            assertTrue( cursor.isDone() );
+            assertEquals( ResultCodeEnum.SUCCESS, cursor.getSearchResultDone().getLdapResult().getResultCode() );
+        }
+    }
+
+
+    @Test
+    public void testSizeLimit() throws Exception
+    {
+        PagingServer server = new PagingServer( 100 );
+
+        try ( PagedSearchCursor cursor = new PagedSearchCursor( server.connection, createRequest( 15L ), 10, 1L,
+            TimeUnit.SECONDS ) )
+        {
+            int count = 0;
+
+            while ( cursor.next() )
+            {
+                count++;
+            }
+
+            assertEquals( 15, count );
+
+            // The second page only requests the missing entries
+            assertEquals( 5, server.requests.get( 1 ).getSize() );
+            assertEquals( ResultCodeEnum.SIZE_LIMIT_EXCEEDED,
+                cursor.getSearchResultDone().getLdapResult().getResultCode() );
+
+            // The server has more entries : the paged result set is released
+            assertEquals( 3, server.requests.size() );
+            assertEquals( 0, server.requests.get( 2 ).getSize() );
+            assertArrayEquals( Strings.getBytesUtf8( "15" ), server.requests.get( 2 ).getCookie() );
+        }
+
+        // Nothing more is sent when the cursor is closed
+        assertEquals( 3, server.requests.size() );
+    }
+
+
+    @Test
+    public void testCloseReleasesResultSet() throws Exception
+    {
+        PagingServer server = new PagingServer( 25 );
+
+        try ( PagedSearchCursor cursor = new PagedSearchCursor( server.connection, createRequest( 0L ), 10, 1L,
+            TimeUnit.SECONDS ) )
+        {
+            assertTrue( cursor.next() );
+            assertEquals( 2, server.requests.size() );
+        }
+
+        // The prefetched page is abandoned, and the paged result set is released
+        assertEquals( 3, server.requests.size() );
+        assertEquals( 0, server.requests.get( 2 ).getSize() );
+        assertArrayEquals( Strings.getBytesUtf8( "10" ), server.requests.get( 2 ).getCookie() );
+    }
+
+
+    @Test
+    public void testCloseAfterLastPage() throws Exception
+    {
+        PagingServer server = new PagingServer( 25 );
+
+        try ( PagedSearchCursor cursor = new PagedSearchCursor( server.connection, createRequest( 0L ), 10, 1L,
+            TimeUnit.SECONDS ) )
+        {
+            while ( cursor.next() )
+            {
+                // Read all the entries
+            }
+        }
+
+        // The server has released the paged result set by itself
+        assertEquals( 3, server.requests.size() );
+    }
+
+
+    @Test
+    public void testEmptyResult() throws Exception
+    {
+        PagingServer server = new PagingServer( 0 );
+
+        try ( PagedSearchCursor cursor = new PagedSearchCursor( server.connection, createRequest( 0L ), 10, 1L,
+            TimeUnit.SECONDS ) )
+        {
+            assertFalse( cursor.next() );
+            assertEquals( 1, server.requests.size() );
+        }
+    }
+
+
+    @Test
+    public void testRequestNotModified() throws Exception
+    {
+        PagingServer server = new PagingServer( 25 );
+        SearchRequest searchRequest = createRequest( 0L );
+        int messageId = searchRequest.getMessageId();
+
+        try ( SearchCursor cursor = PagedSearchCursor.search( server.connection, searchRequest, 10 ) )
+        {
+            int count = 0;
+
+            while ( cursor.next() )
+            {
+                count++;
+            }
+
+            assertEquals( 25, count );
+            assertEquals( 3, server.requests.size() );
+        }
+
+        assertNull( searchRequest.getControl( PagedResults.OID ) );
+        assertEquals( messageId, searchRequest.getMessageId() );
+    }
+
+
+    @Test
+    public void testInvalidPageSize() throws Exception
+    {
+        PagingServer server = new PagingServer( 0 );
+
+        assertThrows( IllegalArgumentException.class,
+            () -> new PagedSearchCursor( server.connection, createRequest( 0L ), 0, 1L, TimeUnit.SECONDS ) );
+    }
+}
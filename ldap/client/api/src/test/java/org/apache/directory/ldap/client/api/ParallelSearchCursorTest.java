@@ -0,0 +1,238 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ * 
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ * 
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchResultEntryImpl;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the ParallelSearchCursor, with mocked connections searching a small tree
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class ParallelSearchCursorTest
+{
+    /** The tree : ou=test, with 10 children, each one having 1 to 10 children */
+    private static final int NB_CHILDREN = 10;
+
+    /** The total number of entries */
+    private static final int NB_ENTRIES = 1 + NB_CHILDREN + ( NB_CHILDREN * ( NB_CHILDREN + 1 ) ) / 2;
+
+    /** The connection pool */
+    private LdapConnectionPool pool;
+
+    /** The Dn of the searched bases */
+    private Set<String> searchedBases = new HashSet<>();
+
+
+    /**
+     * Add an entry to the future
+     */
+    private static void addEntry( SearchFuture future, int messageId, String dn ) throws Exception
+    {
+        SearchResultEntry entry = new SearchResultEntryImpl( messageId );
+        entry.setObjectName( new Dn( dn ) );
+        future.set( entry );
+    }
+
+
+    /**
+     * Search the tree
+     */
+    private SearchCursorImpl search( LdapConnection connection, SearchRequest searchRequest ) throws Exception
+    {
+        SearchFuture future = new SearchFuture( connection, 1 );
+        String base = searchRequest.getBase().getName();
+        SearchScope scope = searchRequest.getScope();
+
+        synchronized ( searchedBases )
+        {
+            searchedBases.add( base + "/" + scope );
+        }
+
+        if ( "ou=test".equals( base ) )
+        {
+            if ( scope != SearchScope.ONELEVEL )
+            {
+                addEntry( future, 1, base );
+            }
+
+            if ( scope != SearchScope.OBJECT )
+            {
+                for ( int i = 1; i <= NB_CHILDREN; i++ )
+                {
+                    addEntry( future, 1, "ou=child" + i + "," + base );
+
+                    for ( int j = 1; ( scope == SearchScope.SUBTREE ) && ( j <= i ); j++ )
+                    {
+                        addEntry( future, 1, "cn=entry" + j + ",ou=child" + i + "," + base );
+                    }
+                }
+            }
+        }
+        else
+        {
+            int child = Integer.parseInt( searchRequest.getBase().getRdn().getValue().substring( 5 ) );
+
+            addEntry( future, 1, base );
+
+            for ( int j = 1; j <= child; j++ )
+            {
+                addEntry( future, 1, "cn=entry" + j + "," + base );
+            }
+        }
+
+        SearchResultDone done = new SearchResultDoneImpl( 1 );
+        done.getLdapResult().setResultCode( ResultCodeEnum.SUCCESS );
+        future.set( done );
+
+        return new SearchCursorImpl( future, 1L, TimeUnit.SECONDS );
+    }
+
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        LdapConnectionFactory factory = mock( LdapConnectionFactory.class );
+
+        when( factory.newLdapConnection() ).thenAnswer( invocation ->
+        {
+            LdapConnection connection = mock( LdapConnection.class );
+            when( connection.isConnected() ).thenReturn( true );
+            when( connection.isAuthenticated() ).thenReturn( true );
+            when( connection.search( any( SearchRequest.class ) ) ).thenAnswer(
+                searchInvocation -> search( connection, ( SearchRequest ) searchInvocation.getArguments()[0] ) );
+
+            return connection;
+        } );
+
+        pool = new LdapConnectionPool( new DefaultPoolableLdapConnectionFactory( factory ) );
+    }
+
+
+    private SearchRequest createRequest( String base, long sizeLimit ) throws Exception
+    {
+        SearchRequest searchRequest = new SearchRequestImpl();
+        searchRequest.setBase( new Dn( base ) );
+        searchRequest.setFilter( "(objectClass=*)" );
+        searchRequest.setScope( SearchScope.SUBTREE );
+        searchRequest.setSizeLimit( sizeLimit );
+
+        return searchRequest;
+    }
+
+
+    private Set<String> readAll( ParallelSearchCursor cursor ) throws Exception
+    {
+        Set<String> dns = new HashSet<>();
+
+        while ( cursor.next() )
+        {
+            assertTrue( dns.add( cursor.getEntry().getDn().getName() ) );
+        }
+
+        return dns;
+    }
+
+
+    @Test
+    public void testSplitSubtreeSearch() throws Exception
+    {
+        try ( ParallelSearchCursor cursor = new ParallelSearchCursor( pool, createRequest( "ou=test", 0L ), 4 ) )
+        {
+            Set<String> dns = readAll( cursor );
+
+            assertEquals( NB_ENTRIES, dns.size() );
+            assertTrue( dns.contains( "ou=test" ) );
+            assertTrue( dns.contains( "cn=entry10,ou=child10,ou=test" ) );
+            assertEquals( ResultCodeEnum.SUCCESS, cursor.getSearchResultDone().getLdapResult().getResultCode() );
+        }
+
+        // The base, the children enumeration, and each child subtree
+        assertEquals( 2 + NB_CHILDREN, searchedBases.size() );
+        assertTrue( searchedBases.contains( "ou=test/" + SearchScope.OBJECT ) );
+        assertTrue( searchedBases.contains( "ou=child5,ou=test/" + SearchScope.SUBTREE ) );
+        assertFalse( searchedBases.contains( "ou=test/" + SearchScope.SUBTREE ) );
+        assertEquals( 0, pool.getNumActive() );
+    }
+
+
+    @Test
+    public void testDeduplicate() throws Exception
+    {
+        List<Dn> partitions = Arrays.asList( new Dn( "ou=child3,ou=test" ), new Dn( "ou=test" ) );
+
+        try ( ParallelSearchCursor cursor = new ParallelSearchCursor( pool, createRequest( "ou=test", 0L ),
+            partitions, 2 ) )
+        {
+            cursor.setDeduplicate( true );
+
+            assertEquals( NB_ENTRIES, readAll( cursor ).size() );
+        }
+    }
+
+
+    @Test
+    public void testSizeLimit() throws Exception
+    {
+        try ( ParallelSearchCursor cursor = new ParallelSearchCursor( pool, createRequest( "ou=test", 20L ), 3 ) )
+        {
+            cursor.setQueueSize( 4 );
+
+            assertEquals( 20, readAll( cursor ).size() );
+            assertEquals( ResultCodeEnum.SIZE_LIMIT_EXCEEDED,
+                cursor.getSearchResultDone().getLdapResult().getResultCode() );
+        }
+    }
+
+
+    @Test
+    public void testInvalidParallelism() throws Exception
+    {
+        assertThrows( IllegalArgumentException.class,
+            () -> new ParallelSearchCursor( pool, createRequest( "ou=test", 0L ), 0 ) );
+    }
+}
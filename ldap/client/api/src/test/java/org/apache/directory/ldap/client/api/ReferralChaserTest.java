@@ -0,0 +1,138 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.directory.api.ldap.model.url.LdapUrl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the configuration of the connections to the referred servers.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class ReferralChaserTest
+{
+    /** The configurations of the created pools, per host */
+    private Map<String, LdapConnectionConfig> configs = new HashMap<>();
+
+    /** The created pools, per host */
+    private Map<String, LdapConnectionPool> pools = new HashMap<>();
+
+    private LdapConnectionConfig config;
+
+
+    @BeforeEach
+    public void setup()
+    {
+        config = new LdapConnectionConfig();
+        config.setLdapHost( "ldap.example.com" );
+        config.setName( "cn=admin,dc=example,dc=com" );
+        config.setCredentials( "secret" );
+    }
+
+
+    private ReferralChaser newChaser()
+    {
+        return new ReferralChaser( config )
+        {
+            @Override
+            protected LdapConnectionPool createPool( LdapConnectionConfig urlConfig )
+            {
+                LdapConnectionPool pool = mock( LdapConnectionPool.class );
+                configs.put( urlConfig.getLdapHost(), urlConfig );
+                pools.put( urlConfig.getLdapHost(), pool );
+
+                return pool;
+            }
+        };
+    }
+
+
+    @Test
+    public void testCredentialsOnlySentToTrustedHosts() throws Exception
+    {
+        ReferralChaser chaser = newChaser();
+        chaser.addTrustedHost( "Replica.Example.com" );
+
+        chaser.getPool( new LdapUrl( "ldap://LDAP.example.com/dc=example,dc=com" ) );
+        chaser.getPool( new LdapUrl( "ldap://replica.example.com/dc=example,dc=com" ) );
+        chaser.getPool( new LdapUrl( "ldap://evil.example.org/dc=example,dc=com" ) );
+
+        assertEquals( "cn=admin,dc=example,dc=com", configs.get( "LDAP.example.com" ).getName() );
+        assertEquals( "secret", configs.get( "replica.example.com" ).getCredentials() );
+
+        // An unknown host is chased anonymously
+        assertNull( configs.get( "evil.example.org" ).getName() );
+        assertNull( configs.get( "evil.example.org" ).getCredentials() );
+    }
+
+
+    @Test
+    public void testTlsKept() throws Exception
+    {
+        config.setUseSsl( true );
+        ReferralChaser chaser = newChaser();
+
+        chaser.getPool( new LdapUrl( "ldap://ldap.example.com/dc=example,dc=com" ) );
+        chaser.getPool( new LdapUrl( "ldaps://replica.example.com/dc=example,dc=com" ) );
+
+        // The referral to a ldap:// URL uses StartTLS, as the original connection used SSL
+        assertTrue( configs.get( "ldap.example.com" ).isUseTls() );
+        assertFalse( configs.get( "ldap.example.com" ).isUseSsl() );
+        assertTrue( configs.get( "replica.example.com" ).isUseSsl() );
+        assertFalse( configs.get( "replica.example.com" ).isUseTls() );
+    }
+
+
+    @Test
+    public void testMaxPools() throws Exception
+    {
+        ReferralChaser chaser = newChaser();
+        chaser.setMaxPools( 2 );
+
+        LdapConnectionPool a = chaser.getPool( new LdapUrl( "ldap://a.example.com/dc=example,dc=com" ) );
+        chaser.getPool( new LdapUrl( "ldap://b.example.com/dc=example,dc=com" ) );
+        assertSame( a, chaser.getPool( new LdapUrl( "ldap://a.example.com/ou=people,dc=example,dc=com" ) ) );
+
+        // b is the least recently used pool
+        chaser.getPool( new LdapUrl( "ldap://c.example.com/dc=example,dc=com" ) );
+        verify( pools.get( "b.example.com" ) ).close();
+        verify( a, never() ).close();
+
+        // b is reopened, and a is now the least recently used pool
+        chaser.getPool( new LdapUrl( "ldap://b.example.com/dc=example,dc=com" ) );
+        verify( a ).close();
+    }
+}
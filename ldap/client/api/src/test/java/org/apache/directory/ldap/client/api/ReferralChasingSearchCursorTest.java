@@ -0,0 +1,327 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.directory.api.ldap.model.cursor.SearchCursor;
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.message.Referral;
+import org.apache.directory.api.ldap.model.message.ReferralImpl;
+import org.apache.directory.api.ldap.model.message.Response;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchResultEntryImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultReference;
+import org.apache.directory.api.ldap.model.message.SearchResultReferenceImpl;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.url.LdapUrl;
+import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the ReferralChasingSearchCursor, using mocked servers.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class ReferralChasingSearchCursorTest
+{
+    /** The responses of the referred servers, per host */
+    private Map<String, List<Response>> servers = new HashMap<>();
+
+    /** The requests received by the referred servers */
+    private List<SearchRequest> received = new ArrayList<>();
+
+    private ReferralChaser chaser;
+    private SearchRequest searchRequest;
+
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        chaser = new ReferralChaser( new LdapConnectionConfig() )
+        {
+            @Override
+            protected LdapConnectionPool createPool( LdapConnectionConfig urlConfig )
+            {
+                return new LdapConnectionPool( new BasePooledObjectFactory<LdapConnection>()
+                {
+                    @Override
+                    public LdapConnection create() throws Exception
+                    {
+                        return server( urlConfig.getLdapHost() );
+                    }
+
+
+                    @Override
+                    public PooledObject<LdapConnection> wrap( LdapConnection connection )
+                    {
+                        return new DefaultPooledObject<>( connection );
+                    }
+                } );
+            }
+        };
+
+        searchRequest = new SearchRequestImpl();
+        searchRequest.setBase( new Dn( "dc=example,dc=com" ) );
+        searchRequest.setScope( SearchScope.SUBTREE );
+        searchRequest.setFilter( "(cn=*)" );
+        searchRequest.followReferrals();
+    }
+
+
+    @AfterEach
+    public void tearDown()
+    {
+        chaser.close();
+    }
+
+
+    private LdapConnection server( String host ) throws Exception
+    {
+        if ( !servers.containsKey( host ) )
+        {
+            throw new LdapException( "Unknown host " + host );
+        }
+
+        LdapConnection connection = mock( LdapConnection.class );
+
+        when( connection.search( any( SearchRequest.class ) ) ).thenAnswer( invocation ->
+        {
+            synchronized ( received )
+            {
+                received.add( ( SearchRequest ) invocation.getArguments()[0] );
+            }
+
+            return cursor( connection, servers.get( host ) );
+        } );
+
+        return connection;
+    }
+
+
+    private static SearchCursor cursor( LdapConnection connection, List<Response> responses ) throws Exception
+    {
+        SearchFuture future = new SearchFuture( connection, 1 );
+
+        for ( Response response : responses )
+        {
+            future.set( response );
+        }
+
+        return new SearchCursorImpl( future, 1000L, TimeUnit.MILLISECONDS );
+    }
+
+
+    private static Response entry( String dn ) throws Exception
+    {
+        SearchResultEntry entry = new SearchResultEntryImpl( 1 );
+        entry.setEntry( new DefaultEntry( dn ) );
+
+        return entry;
+    }
+
+
+    private static Referral referral( String... urls )
+    {
+        Referral referral = new ReferralImpl();
+
+        for ( String url : urls )
+        {
+            referral.addLdapUrl( url );
+        }
+
+        return referral;
+    }
+
+
+    private static Response reference( String... urls )
+    {
+        SearchResultReference reference = new SearchResultReferenceImpl( 1 );
+        reference.setReferral( referral( urls ) );
+
+        return reference;
+    }
+
+
+    private static Response done( ResultCodeEnum resultCode, String... urls )
+    {
+        SearchResultDone done = new SearchResultDoneImpl( 1 );
+        done.getLdapResult().setResultCode( resultCode );
+
+        if ( urls.length > 0 )
+        {
+            done.getLdapResult().setReferral( referral( urls ) );
+        }
+
+        return done;
+    }
+
+
+    private ReferralChasingSearchCursor search( Response... originResponses ) throws Exception
+    {
+        ReferralChasingSearchCursor cursor = new ReferralChasingSearchCursor(
+            cursor( mock( LdapConnection.class ), Arrays.asList( originResponses ) ), searchRequest, chaser );
+
+        LdapUrl origin = new LdapUrl();
+        origin.setHost( "host1" );
+        cursor.setOrigin( origin );
+
+        return cursor;
+    }
+
+
+    /**
+     * Read all the responses, the entries as their Dn, the references as "ref:" and their URLs
+     */
+    private static TreeSet<String> readAll( SearchCursor cursor ) throws Exception
+    {
+        TreeSet<String> results = new TreeSet<>();
+
+        while ( cursor.next() )
+        {
+            if ( cursor.isEntry() )
+            {
+                results.add( cursor.getEntry().getDn().getName() );
+            }
+            else if ( cursor.isReferral() )
+            {
+                results.add( "ref:" + cursor.getReferral().getLdapUrls() );
+            }
+        }
+
+        return results;
+    }
+
+
+    @Test
+    public void testContinuationReference() throws Exception
+    {
+        servers.put( "host2", Arrays.asList(
+            entry( "cn=b,ou=b,dc=example,dc=com" ),
+            done( ResultCodeEnum.SUCCESS ) ) );
+
+        try ( ReferralChasingSearchCursor cursor = search(
+            entry( "cn=a,dc=example,dc=com" ),
+            reference( "ldap://host2/ou=b,dc=example,dc=com" ),
+            done( ResultCodeEnum.SUCCESS ) ) )
+        {
+            assertEquals( new TreeSet<>( Arrays.asList( "cn=a,dc=example,dc=com", "cn=b,ou=b,dc=example,dc=com" ) ),
+                readAll( cursor ) );
+            assertEquals( ResultCodeEnum.SUCCESS, cursor.getSearchResultDone().getLdapResult().getResultCode() );
+            assertEquals( 1, cursor.getChasedReferrals() );
+        }
+
+        // The referred server is searched with the URL base, and the original scope and filter
+        assertEquals( 1, received.size() );
+        assertEquals( "ou=b,dc=example,dc=com", received.get( 0 ).getBase().getName() );
+        assertEquals( SearchScope.SUBTREE, received.get( 0 ).getScope() );
+        assertEquals( "(cn=*)", received.get( 0 ).getFilter().toString() );
+    }
+
+
+    @Test
+    public void testLoopAndHopLimit() throws Exception
+    {
+        chaser.setHopLimit( 2 );
+
+        // host2 refers back to the original search, and to host3, which refers to host4
+        servers.put( "host2", Arrays.asList(
+            reference( "ldap://host1/dc=example,dc=com" ),
+            reference( "ldap://host3/ou=c,dc=example,dc=com" ),
+            done( ResultCodeEnum.SUCCESS ) ) );
+        servers.put( "host3", Arrays.asList(
+            entry( "cn=c,ou=c,dc=example,dc=com" ),
+            reference( "ldap://host4/ou=d,dc=example,dc=com" ),
+            done( ResultCodeEnum.SUCCESS ) ) );
+        servers.put( "host4", Arrays.asList( done( ResultCodeEnum.SUCCESS ) ) );
+
+        try ( ReferralChasingSearchCursor cursor = search(
+            reference( "ldap://host2/ou=b,dc=example,dc=com" ),
+            done( ResultCodeEnum.SUCCESS ) ) )
+        {
+            // The loop is ignored, the third hop is returned to the application
+            assertEquals( new TreeSet<>( Arrays.asList( "cn=c,ou=c,dc=example,dc=com",
+                "ref:[ldap://host4/ou=d,dc=example,dc=com]" ) ), readAll( cursor ) );
+            assertEquals( 2, cursor.getChasedReferrals() );
+        }
+    }
+
+
+    @Test
+    public void testReferralResultWithAlternatives() throws Exception
+    {
+        servers.put( "host2", Arrays.asList(
+            entry( "cn=b,dc=example,dc=com" ),
+            done( ResultCodeEnum.SUCCESS ) ) );
+
+        // The search base is held by another server, the first alternative is unreachable
+        try ( ReferralChasingSearchCursor cursor = search(
+            done( ResultCodeEnum.REFERRAL, "ldap://unknown/dc=example,dc=com??one", "ldap://host2/dc=example,dc=com??one" ) ) )
+        {
+            assertEquals( new TreeSet<>( Arrays.asList( "cn=b,dc=example,dc=com" ) ), readAll( cursor ) );
+            assertEquals( ResultCodeEnum.SUCCESS, cursor.getSearchResultDone().getLdapResult().getResultCode() );
+        }
+
+        // The scope is the URL one
+        assertEquals( SearchScope.ONELEVEL, received.get( 0 ).getScope() );
+    }
+
+
+    @Test
+    public void testUnreachableReferral() throws Exception
+    {
+        try ( ReferralChasingSearchCursor cursor = search(
+            entry( "cn=a,dc=example,dc=com" ),
+            reference( "ldap://unknown/ou=b,dc=example,dc=com" ),
+            done( ResultCodeEnum.SUCCESS ) ) )
+        {
+            TreeSet<String> results = readAll( cursor );
+
+            assertTrue( results.contains( "ref:[ldap://unknown/ou=b,dc=example,dc=com]" ) );
+            assertEquals( 2, results.size() );
+        }
+    }
+}
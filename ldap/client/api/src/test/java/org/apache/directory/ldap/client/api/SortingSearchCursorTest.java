@@ -0,0 +1,283 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.apache.directory.api.ldap.model.cursor.SearchCursor;
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchResultEntryImpl;
+import org.apache.directory.api.ldap.model.message.controls.OpaqueControl;
+import org.apache.directory.api.ldap.model.message.controls.SortKey;
+import org.apache.directory.api.ldap.model.schema.SchemaManager;
+import org.apache.directory.api.ldap.schema.manager.impl.DefaultSchemaManager;
+import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+/**
+ * Test the SortingSearchCursor
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class SortingSearchCursorTest
+{
+    private static SchemaManager schemaManager;
+
+
+    @BeforeAll
+    public static void init() throws Exception
+    {
+        schemaManager = new DefaultSchemaManager();
+
+        // For uidNumber
+        schemaManager.enable( "nis" );
+    }
+
+
+    /**
+     * Create a cursor returning the given entries
+     */
+    private static SearchCursor createCursor( List<Entry> entries ) throws Exception
+    {
+        SearchFuture future = new SearchFuture( mock( LdapConnection.class ), 1 );
+
+        for ( Entry entry : entries )
+        {
+            SearchResultEntry resultEntry = new SearchResultEntryImpl( 1 );
+            resultEntry.setEntry( entry );
+            future.set( resultEntry );
+        }
+
+        SearchResultDone done = new SearchResultDoneImpl( 1 );
+        done.getLdapResult().setResultCode( ResultCodeEnum.SUCCESS );
+        future.set( done );
+
+        return new SearchCursorImpl( future, 1L, TimeUnit.SECONDS );
+    }
+
+
+    private static List<String> read( SearchCursor cursor, String attribute ) throws Exception
+    {
+        List<String> values = new ArrayList<>();
+
+        while ( cursor.next() )
+        {
+            Entry entry = cursor.getEntry();
+            values.add( entry.containsAttribute( attribute ) ? entry.get( attribute ).getString()
+                : entry.getDn().getName() );
+        }
+
+        return values;
+    }
+
+
+    @Test
+    public void testSortInMemory() throws Exception
+    {
+        List<Entry> entries = new ArrayList<>();
+        entries.add( new DefaultEntry( schemaManager, "cn=Bob,ou=test", "cn: Bob" ) );
+        entries.add( new DefaultEntry( schemaManager, "ou=people,ou=test", "ou: people" ) );
+        entries.add( new DefaultEntry( schemaManager, "cn=alice,ou=test", "cn: alice" ) );
+        entries.add( new DefaultEntry( schemaManager, "cn=Carol,ou=test", "cn: Carol", "cn: Aaron" ) );
+
+        try ( SortingSearchCursor cursor = new SortingSearchCursor( createCursor( entries ), schemaManager,
+            new SortKey( "cn" ) ) )
+        {
+            List<String> dns = new ArrayList<>();
+
+            while ( cursor.next() )
+            {
+                dns.add( cursor.getEntry().getDn().getName() );
+            }
+
+            // Carol is sorted using her first value, the entry without cn is last
+            assertEquals( "cn=Carol,ou=test", dns.get( 0 ) );
+            assertEquals( "cn=alice,ou=test", dns.get( 1 ) );
+            assertEquals( "cn=Bob,ou=test", dns.get( 2 ) );
+            assertEquals( "ou=people,ou=test", dns.get( 3 ) );
+            assertEquals( 0, cursor.getRunCount() );
+            assertEquals( ResultCodeEnum.SUCCESS, cursor.getSearchResultDone().getLdapResult().getResultCode() );
+        }
+    }
+
+
+    @Test
+    public void testExternalMergeSort( @TempDir Path tempDir ) throws Exception
+    {
+        List<Integer> numbers = new ArrayList<>();
+
+        for ( int i = 1; i <= 100; i++ )
+        {
+            numbers.add( i );
+        }
+
+        Collections.shuffle( numbers, new Random( 42L ) );
+        List<Entry> entries = new ArrayList<>();
+
+        for ( int number : numbers )
+        {
+            entries.add( new DefaultEntry( schemaManager, "uid=user" + number + ",ou=test",
+                "uid: user" + number,
+                "uidNumber: " + number ) );
+        }
+
+        SortingSearchCursor cursor = new SortingSearchCursor( createCursor( entries ), schemaManager,
+            new SortKey( "uidNumber" ) );
+        cursor.setMaxEntriesInMemory( 7 );
+        cursor.setTempDirectory( tempDir );
+
+        // The integer ordering is used : 9 is before 10
+        List<String> values = read( cursor, "uidNumber" );
+        assertEquals( 100, values.size() );
+
+        for ( int i = 0; i < 100; i++ )
+        {
+            assertEquals( Integer.toString( i + 1 ), values.get( i ) );
+        }
+
+        assertEquals( 14, cursor.getRunCount() );
+        cursor.close();
+
+        // The temporary files have been removed
+        try ( Stream<Path> files = Files.list( tempDir ) )
+        {
+            assertEquals( 0L, files.count() );
+        }
+    }
+
+
+    @Test
+    public void testEntryControlsDropped( @TempDir Path tempDir ) throws Exception
+    {
+        SearchFuture future = new SearchFuture( mock( LdapConnection.class ), 1 );
+
+        for ( int i = 5; i > 0; i-- )
+        {
+            SearchResultEntry resultEntry = new SearchResultEntryImpl( 1 );
+            resultEntry.setEntry( new DefaultEntry( schemaManager, "uid=user" + i + ",ou=test",
+                "uid: user" + i ) );
+            resultEntry.addControl( new OpaqueControl( "1.2.3.4" ) );
+            future.set( resultEntry );
+        }
+
+        SearchResultDone done = new SearchResultDoneImpl( 1 );
+        done.getLdapResult().setResultCode( ResultCodeEnum.SUCCESS );
+        future.set( done );
+
+        // Some entries are written in a file, the others are kept in memory
+        try ( SortingSearchCursor cursor = new SortingSearchCursor( new SearchCursorImpl( future, 1L,
+            TimeUnit.SECONDS ), schemaManager, new SortKey( "uid" ) ) )
+        {
+            cursor.setMaxEntriesInMemory( 2 );
+            cursor.setTempDirectory( tempDir );
+            int count = 0;
+
+            while ( cursor.next() )
+            {
+                count++;
+                SearchResultEntry resultEntry = ( SearchResultEntry ) cursor.get();
+
+                assertEquals( "uid=user" + count + ",ou=test", resultEntry.getObjectName().getName() );
+                assertEquals( 1, resultEntry.getMessageId() );
+                assertTrue( resultEntry.getControls().isEmpty() );
+            }
+
+            assertEquals( 5, count );
+            assertEquals( 2, cursor.getRunCount() );
+        }
+    }
+
+
+    @Test
+    public void testSeveralKeys( @TempDir Path tempDir ) throws Exception
+    {
+        List<Entry> entries = new ArrayList<>();
+        entries.add( new DefaultEntry( schemaManager, "cn=1,ou=test", "sn: Smith", "givenName: Anna" ) );
+        entries.add( new DefaultEntry( schemaManager, "cn=2,ou=test", "sn: Jones", "givenName: Bill" ) );
+        entries.add( new DefaultEntry( schemaManager, "cn=3,ou=test", "sn: smith", "givenName: Zoe" ) );
+        entries.add( new DefaultEntry( schemaManager, "cn=4,ou=test", "sn: Jones", "givenName: Carl" ) );
+        entries.add( new DefaultEntry( schemaManager, "cn=5,ou=test", "sn: Brown" ) );
+
+        SortingSearchCursor cursor = new SortingSearchCursor( createCursor( entries ), schemaManager,
+            new SortKey( "sn" ), new SortKey( "givenName", null, true ) );
+        cursor.setMaxEntriesInMemory( 2 );
+        cursor.setTempDirectory( tempDir );
+
+        List<String> dns = new ArrayList<>();
+
+        while ( cursor.next() )
+        {
+            dns.add( cursor.getEntry().getDn().getName() );
+        }
+
+        cursor.close();
+
+        List<String> expected = new ArrayList<>();
+        expected.add( "cn=5,ou=test" );
+        expected.add( "cn=4,ou=test" );
+        expected.add( "cn=2,ou=test" );
+        expected.add( "cn=3,ou=test" );
+        expected.add( "cn=1,ou=test" );
+        assertEquals( expected, dns );
+    }
+
+
+    @Test
+    public void testNoSchemaManager() throws Exception
+    {
+        List<Entry> entries = new ArrayList<>();
+        entries.add( new DefaultEntry( "cn=b,ou=test", "cn: b" ) );
+        entries.add( new DefaultEntry( "cn=a,ou=test", "cn: a" ) );
+
+        try ( SortingSearchCursor cursor = new SortingSearchCursor( createCursor( entries ), null,
+            new SortKey( "cn" ) ) )
+        {
+            assertTrue( cursor.next() );
+            assertEquals( "cn=a,ou=test", cursor.getEntry().getDn().getName() );
+            assertTrue( cursor.next() );
+            assertFalse( cursor.next() );
+        }
+
+        assertThrows( IllegalArgumentException.class, () -> new SortingSearchCursor(
+            createCursor( entries ), null ) );
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.ldap.extras.controls.ad.TreeDelete;
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.message.DeleteRequest;
+import org.apache.directory.api.ldap.model.message.DeleteResponse;
+import org.apache.directory.api.ldap.model.message.DeleteResponseImpl;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchResultEntryImpl;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.ldap.client.api.future.DeleteFuture;
+import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the SubtreeDeleter, using mocked connections.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class SubtreeDeleterTest
+{
+    private static final String[] SUBTREE =
+        {
+            "ou=tenant,dc=example,dc=com",
+            "ou=a,ou=tenant,dc=example,dc=com",
+            "cn=1,ou=a,ou=tenant,dc=example,dc=com",
+            "cn=2,ou=a,ou=tenant,dc=example,dc=com",
+            "ou=b,ou=tenant,dc=example,dc=com"
+        };
+
+    private LdapAsyncConnection connection;
+    private LdapConnectionPool pool;
+
+    /** The result codes to return, per Dn */
+    private Map<String, ResultCodeEnum> results;
+
+    /** The deleted Dns, in order */
+    private List<String> received;
+
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        connection = mock( LdapAsyncConnection.class );
+        pool = mock( LdapConnectionPool.class );
+        results = new ConcurrentHashMap<>();
+        received = Collections.synchronizedList( new ArrayList<>() );
+
+        when( pool.getConnection() ).thenReturn( connection );
+
+        when( connection.search( any( SearchRequest.class ) ) ).thenAnswer( invocation ->
+        {
+            SearchFuture future = new SearchFuture( connection, 1 );
+
+            for ( String dn : SUBTREE )
+            {
+                SearchResultEntry entry = new SearchResultEntryImpl( 1 );
+                entry.setEntry( new DefaultEntry( dn ) );
+                future.set( entry );
+            }
+
+            SearchResultDone done = new SearchResultDoneImpl( 1 );
+            done.getLdapResult().setResultCode( ResultCodeEnum.SUCCESS );
+            future.set( done );
+
+            return new SearchCursorImpl( future, 1000L, TimeUnit.MILLISECONDS );
+        } );
+
+        when( connection.deleteAsync( any( DeleteRequest.class ) ) ).thenAnswer( invocation ->
+        {
+            String dn = ( ( DeleteRequest ) invocation.getArguments()[0] ).getName().getName();
+            received.add( dn );
+
+            DeleteFuture future = new DeleteFuture( connection, 1 );
+            DeleteResponse response = new DeleteResponseImpl( 1 );
+            response.getLdapResult().setResultCode( results.getOrDefault( dn, ResultCodeEnum.SUCCESS ) );
+            future.set( response );
+
+            return future;
+        } );
+    }
+
+
+    @Test
+    public void testTreeDelete() throws Exception
+    {
+        DeleteResponse response = new DeleteResponseImpl( 1 );
+        response.getLdapResult().setResultCode( ResultCodeEnum.SUCCESS );
+
+        when( connection.isControlSupported( TreeDelete.OID ) ).thenReturn( true );
+        when( connection.delete( any( DeleteRequest.class ) ) ).thenAnswer( invocation ->
+        {
+            DeleteRequest request = ( DeleteRequest ) invocation.getArguments()[0];
+            assertTrue( request.hasControl( TreeDelete.OID ) );
+
+            return response;
+        } );
+
+        SubtreeDeleter deleter = new SubtreeDeleter( pool );
+
+        assertEquals( -1L, deleter.delete( SUBTREE[0] ) );
+        verify( connection, never() ).search( any( SearchRequest.class ) );
+        verify( connection, never() ).deleteAsync( any( DeleteRequest.class ) );
+
+        // The control can be ignored
+        deleter.setUseTreeDelete( false );
+
+        assertEquals( 5L, deleter.delete( SUBTREE[0] ) );
+    }
+
+
+    @Test
+    public void testLeafFirst() throws Exception
+    {
+        List<Integer> levels = new ArrayList<>();
+        List<Long> progress = Collections.synchronizedList( new ArrayList<>() );
+
+        SubtreeDeleter deleter = new SubtreeDeleter( pool );
+        deleter.setParallelism( 2 );
+        deleter.setWindow( 1 );
+        deleter.setPageSize( 0 );
+        deleter.setListener( new SubtreeDeleteListener()
+        {
+            @Override
+            public void levelStarted( int depth, int entries )
+            {
+                levels.add( depth );
+            }
+
+
+            @Override
+            public void entryDeleted( Dn dn, long deleted, long total )
+            {
+                progress.add( deleted );
+            }
+        } );
+
+        assertEquals( 5L, deleter.delete( SUBTREE[0] ) );
+        assertEquals( 5L, deleter.getTotal() );
+        assertEquals( 0L, deleter.getFailed() );
+        assertEquals( 5, progress.size() );
+
+        // From the deepest level up to the root
+        assertEquals( 2, levels.get( 0 ).intValue() );
+        assertEquals( 1, levels.get( 1 ).intValue() );
+        assertEquals( 0, levels.get( 2 ).intValue() );
+
+        assertTrue( received.indexOf( SUBTREE[2] ) < received.indexOf( SUBTREE[1] ) );
+        assertTrue( received.indexOf( SUBTREE[3] ) < received.indexOf( SUBTREE[1] ) );
+        assertEquals( SUBTREE[0], received.get( 4 ) );
+    }
+
+
+    @Test
+    public void testFailedChild() throws Exception
+    {
+        results.put( SUBTREE[2], ResultCodeEnum.INSUFFICIENT_ACCESS_RIGHTS );
+
+        SubtreeDeleter deleter = new SubtreeDeleter( pool );
+
+        assertThrows( LdapException.class, () -> deleter.delete( SUBTREE[0] ) );
+
+        // The parent and the root are not deleted
+        assertEquals( 2L, deleter.getDeleted() );
+        assertEquals( 3L, deleter.getFailed() );
+        assertFalse( received.contains( SUBTREE[1] ) );
+        assertFalse( received.contains( SUBTREE[0] ) );
+        assertTrue( received.contains( SUBTREE[4] ) );
+    }
+
+
+    @Test
+    public void testListenerFailure() throws Exception
+    {
+        results.put( SUBTREE[2], ResultCodeEnum.INSUFFICIENT_ACCESS_RIGHTS );
+
+        SubtreeDeleter deleter = new SubtreeDeleter( pool );
+        deleter.setWindow( 1 );
+        deleter.setListener( new SubtreeDeleteListener()
+        {
+            @Override
+            public void entryDeleted( Dn dn, long deleted, long total )
+            {
+                if ( dn.getName().equals( SUBTREE[4] ) )
+                {
+                    throw new IllegalStateException( "listener failure" );
+                }
+            }
+
+
+            @Override
+            public void entryFailed( Dn dn, ResultCodeEnum resultCode )
+            {
+                if ( dn.getName().equals( SUBTREE[2] ) )
+                {
+                    throw new IllegalStateException( "listener failure" );
+                }
+            }
+        } );
+
+        // The listener fails while the responses are read : the other deletes are still completed
+        assertTimeoutPreemptively( Duration.ofSeconds( 10L ),
+            () -> assertThrows( LdapException.class, () -> deleter.delete( SUBTREE[0] ) ) );
+
+        assertEquals( 2L, deleter.getDeleted() );
+        assertEquals( 3L, deleter.getFailed() );
+        assertTrue( received.contains( SUBTREE[3] ) );
+        assertFalse( received.contains( SUBTREE[0] ) );
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.ldap.extras.controls.vlv.VirtualListViewRequest;
+import org.apache.directory.api.ldap.extras.controls.vlv.VirtualListViewResponse;
+import org.apache.directory.api.ldap.extras.controls.vlv.VirtualListViewResponseImpl;
+import org.apache.directory.api.ldap.extras.controls.vlv.VirtualListViewResultCode;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchResultEntryImpl;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.message.controls.SortKey;
+import org.apache.directory.api.ldap.model.message.controls.SortRequest;
+import org.apache.directory.api.ldap.model.message.controls.SortRequestImpl;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.util.Strings;
+import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the VirtualListCursor, with a mocked connection returning the requested windows
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class VirtualListCursorTest
+{
+    /**
+     * A fake server, returning a sorted list of entries named e001, e002...
+     */
+    private static class VlvServer
+    {
+        /** The number of entries in the list */
+        private int nbEntries;
+
+        /** The received VirtualListViewRequest controls */
+        private List<VirtualListViewRequest> requests = new ArrayList<>();
+
+        /** The connection */
+        private LdapAsyncConnection connection = mock( LdapAsyncConnection.class );
+
+
+        private VlvServer( int nbEntries ) throws Exception
+        {
+            this.nbEntries = nbEntries;
+
+            when( connection.isConnected() ).thenReturn( true );
+            when( connection.searchAsync( any( SearchRequest.class ) ) ).thenAnswer( invocation ->
+            {
+                SearchRequest searchRequest = ( SearchRequest ) invocation.getArguments()[0];
+                VirtualListViewRequest vlvRequest = ( VirtualListViewRequest ) searchRequest.getControl(
+                    VirtualListViewRequest.OID );
+                requests.add( vlvRequest );
+
+                return window( requests.size(), vlvRequest );
+            } );
+        }
+
+
+        private static String name( int position )
+        {
+            return String.format( Locale.ROOT, "e%03d", position );
+        }
+
+
+        private SearchFuture window( int messageId, VirtualListViewRequest request ) throws Exception
+        {
+            int target;
+
+            if ( request.hasAssertionValue() )
+            {
+                String value = Strings.utf8ToString( request.getAssertionValue() );
+                target = nbEntries + 1;
+
+                for ( int i = 1; i <= nbEntries; i++ )
+                {
+                    if ( name( i ).compareTo( value ) >= 0 )
+                    {
+                        target = i;
+                        break;
+                    }
+                }
+            }
+            else
+            {
+                target = Math.min( request.getOffset(), nbEntries );
+            }
+
+            SearchFuture future = new SearchFuture( connection, messageId );
+            int start = Math.max( 1, target - request.getBeforeCount() );
+            int end = Math.min( nbEntries, target + request.getAfterCount() );
+
+            for ( int i = start; i <= end; i++ )
+            {
+                SearchResultEntry entry = new SearchResultEntryImpl( messageId );
+                entry.setObjectName( new Dn( "cn=" + name( i ) + ",ou=test" ) );
+                future.set( entry );
+            }
+
+            SearchResultDone done = new SearchResultDoneImpl( messageId );
+            done.getLdapResult().setResultCode( ResultCodeEnum.SUCCESS );
+            VirtualListViewResponse response = new VirtualListViewResponseImpl();
+            response.setTargetPosition( target );
+            response.setContentCount( nbEntries );
+            response.setVirtualListViewResult( VirtualListViewResultCode.SUCCESS );
+            response.setContextId( Strings.getBytesUtf8( "ctx" ) );
+            done.addControl( response );
+            future.set( done );
+
+            return future;
+        }
+    }
+
+
+    private SearchRequest createRequest() throws Exception
+    {
+        SearchRequest searchRequest = new SearchRequestImpl();
+        searchRequest.setBase( new Dn( "ou=test" ) );
+        searchRequest.setFilter( "(objectClass=*)" );
+        searchRequest.setScope( SearchScope.ONELEVEL );
+        SortRequest sortRequest = new SortRequestImpl();
+        sortRequest.addSortKey( new SortKey( "cn" ) );
+        searchRequest.addControl( sortRequest );
+
+        return searchRequest;
+    }
+
+
+    private static String name( VirtualListCursor cursor ) throws Exception
+    {
+        return cursor.get().getDn().getRdn().getValue();
+    }
+
+
+    @Test
+    public void testForwardScrolling() throws Exception
+    {
+        VlvServer server = new VlvServer( 100 );
+
+        try ( VirtualListCursor cursor = new VirtualListCursor( server.connection, createRequest(), 10, 1L,
+            TimeUnit.SECONDS ) )
+        {
+            int count = 0;
+
+            while ( cursor.next() )
+            {
+                count++;
+                assertEquals( VlvServer.name( count ), name( cursor ) );
+                assertEquals( count, cursor.getPosition() );
+            }
+
+            assertEquals( 100, count );
+            assertEquals( 100, cursor.getContentCount() );
+            assertTrue( cursor.isAfterLast() );
+
+            // The prefetch window grows while scrolling : 1, 1, 2, 4, then the 2 last pages
+            int[] offsets = { 1, 11, 21, 41, 81 };
+            int[] afterCounts = { 9, 9, 19, 39, 19 };
+            assertEquals( offsets.length, server.requests.size() );
+
+            for ( int i = 0; i < offsets.length; i++ )
+            {
+                assertEquals( offsets[i], server.requests.get( i ).getOffset() );
+                assertEquals( afterCounts[i], server.requests.get( i ).getAfterCount() );
+            }
+
+            // The context ID is sent back
+            assertEquals( "ctx", Strings.utf8ToString( server.requests.get( 1 ).getContextId() ) );
+        }
+    }
+
+
+    @Test
+    public void testBackwardScrolling() throws Exception
+    {
+        VlvServer server = new VlvServer( 100 );
+
+        try ( VirtualListCursor cursor = new VirtualListCursor( server.connection, createRequest(), 10, 1L,
+            TimeUnit.SECONDS ) )
+        {
+            assertTrue( cursor.last() );
+            assertEquals( "e100", name( cursor ) );
+            assertTrue( cursor.isLast() );
+
+            int count = 1;
+
+            while ( cursor.previous() )
+            {
+                count++;
+                assertEquals( VlvServer.name( 101 - count ), name( cursor ) );
+            }
+
+            assertEquals( 100, count );
+            assertTrue( cursor.isBeforeFirst() );
+
+            // Going forward again uses the cached pages
+            int requests = server.requests.size();
+            assertTrue( cursor.next() );
+            assertEquals( "e001", name( cursor ) );
+            assertEquals( requests, server.requests.size() );
+        }
+    }
+
+
+    @Test
+    public void testSeek() throws Exception
+    {
+        VlvServer server = new VlvServer( 1000 );
+
+        try ( VirtualListCursor cursor = new VirtualListCursor( server.connection, createRequest(), 10, 1L,
+            TimeUnit.SECONDS ) )
+        {
+            cursor.seek( 501 );
+            assertTrue( cursor.next() );
+            assertEquals( "e501", name( cursor ) );
+            assertEquals( 501, server.requests.get( 0 ).getOffset() );
+
+            cursor.seek( "e725" );
+            assertTrue( server.requests.get( server.requests.size() - 1 ).hasAssertionValue() );
+            assertTrue( cursor.next() );
+            assertEquals( "e725", name( cursor ) );
+            assertEquals( 725, cursor.getPosition() );
+
+            assertTrue( cursor.previous() );
+            assertEquals( "e724", name( cursor ) );
+
+            // No entry after the assertion value
+            cursor.seek( "f" );
+            assertFalse( cursor.next() );
+            assertTrue( cursor.isAfterLast() );
+        }
+    }
+
+
+    @Test
+    public void testCacheEviction() throws Exception
+    {
+        VlvServer server = new VlvServer( 100 );
+
+        try ( VirtualListCursor cursor = new VirtualListCursor( server.connection, createRequest(), 10, 1L,
+            TimeUnit.SECONDS ) )
+        {
+            cursor.setCacheSize( 2 );
+            cursor.setMaxPrefetchPages( 1 );
+
+            while ( cursor.next() )
+            {
+                // Read all the entries
+            }
+
+            int requests = server.requests.size();
+
+            // The first page has been evicted
+            assertTrue( cursor.first() );
+            assertEquals( "e001", name( cursor ) );
+            assertEquals( 1, server.requests.get( requests ).getOffset() );
+        }
+    }
+
+
+    @Test
+    public void testRequestNotModified() throws Exception
+    {
+        VlvServer server = new VlvServer( 25 );
+        SearchRequest searchRequest = createRequest();
+        int messageId = searchRequest.getMessageId();
+
+        try ( VirtualListCursor cursor = new VirtualListCursor( server.connection, searchRequest, 10, 1L,
+            TimeUnit.SECONDS ) )
+        {
+            while ( cursor.next() )
+            {
+                // Read all the entries
+            }
+        }
+
+        assertTrue( server.requests.size() > 1 );
+        assertNull( searchRequest.getControl( VirtualListViewRequest.OID ) );
+        assertNotNull( searchRequest.getControl( SortRequest.OID ) );
+        assertEquals( messageId, searchRequest.getMessageId() );
+    }
+
+
+    @Test
+    public void testSortControlRequired() throws Exception
+    {
+        VlvServer server = new VlvServer( 10 );
+        SearchRequest searchRequest = createRequest();
+        searchRequest.removeControl( searchRequest.getControl( SortRequest.OID ) );
+
+        assertThrows( IllegalArgumentException.class, () -> new VirtualListCursor( server.connection,
+            searchRequest, 10, 1L, TimeUnit.SECONDS ) );
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.cache;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.entry.Modification;
+import org.apache.directory.api.ldap.model.message.Control;
+import org.apache.directory.api.ldap.model.message.controls.ManageDsaITImpl;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.name.Rdn;
+import org.apache.directory.ldap.client.api.LdapConnection;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the CachingLdapConnection and its EntryCache.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class CachingLdapConnectionTest
+{
+    private static final String USER = "uid=jdoe,ou=people,dc=example,dc=com";
+    private static final String MISSING = "uid=nobody,ou=people,dc=example,dc=com";
+
+    private LdapConnection wrapped;
+    private EntryCache cache;
+    private CachingLdapConnection connection;
+
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        wrapped = mock( LdapConnection.class );
+        when( wrapped.lookup( any( Dn.class ), anyVararg() ) ).thenAnswer( invocation ->
+        {
+            Dn dn = ( Dn ) invocation.getArguments()[0];
+
+            if ( dn.getName().startsWith( "uid=jdoe" ) )
+            {
+                return new DefaultEntry( dn, "objectClass: person", "cn: John Doe", "sn: Doe" );
+            }
+
+            return null;
+        } );
+        when( wrapped.exists( any( Dn.class ) ) ).thenAnswer(
+            invocation -> ( ( Dn ) invocation.getArguments()[0] ).getName().startsWith( "uid=jdoe" ) );
+
+        cache = new EntryCache( 16, 0L );
+        connection = new CachingLdapConnection( wrapped, cache );
+    }
+
+
+    @Test
+    public void testLookup() throws Exception
+    {
+        Entry entry = connection.lookup( USER );
+        assertEquals( "John Doe", entry.get( "cn" ).getString() );
+
+        // Served from the cache, whatever the way the Dn is given
+        Entry cached = connection.lookup( new Dn( USER ) );
+        assertEquals( entry, cached );
+        assertNotSame( entry, cached );
+        connection.lookup( USER, "*" );
+        verify( wrapped, times( 1 ) ).lookup( any( Dn.class ), anyVararg() );
+
+        // Another set of attributes is read again
+        connection.lookup( USER, "cn", "sn" );
+        connection.lookup( USER, "CN", "sn" );
+        verify( wrapped, times( 2 ) ).lookup( any( Dn.class ), anyVararg() );
+
+        // The returned entries are copies
+        cached.removeAttributes( "cn" );
+        assertTrue( connection.lookup( USER ).containsAttribute( "cn" ) );
+
+        assertEquals( 4L, cache.getHits() );
+        assertEquals( 2L, cache.getMisses() );
+        assertEquals( 1, cache.getSize() );
+    }
+
+
+    @Test
+    public void testMissingEntry() throws Exception
+    {
+        assertNull( connection.lookup( MISSING ) );
+        assertNull( connection.lookup( MISSING ) );
+        verify( wrapped, times( 1 ) ).lookup( any( Dn.class ), anyVararg() );
+
+        // The lookup tells the entry does not exist
+        assertFalse( connection.exists( MISSING ) );
+        verify( wrapped, times( 0 ) ).exists( any( Dn.class ) );
+
+        // Once added, it exists
+        connection.add( new DefaultEntry( MISSING, "objectClass: person", "cn: nobody", "sn: nobody" ) );
+        connection.lookup( MISSING );
+        verify( wrapped, times( 2 ) ).lookup( any( Dn.class ), anyVararg() );
+    }
+
+
+    @Test
+    public void testExists() throws Exception
+    {
+        assertTrue( connection.exists( USER ) );
+        assertTrue( connection.exists( USER ) );
+        assertFalse( connection.exists( new Dn( MISSING ) ) );
+        assertFalse( connection.exists( MISSING ) );
+
+        verify( wrapped, times( 2 ) ).exists( any( Dn.class ) );
+    }
+
+
+    @Test
+    public void testLookupWithControls() throws Exception
+    {
+        Control[] controls = new Control[]
+            { new ManageDsaITImpl() };
+
+        connection.lookup( USER, controls, "cn" );
+        connection.lookup( USER, controls, "cn" );
+        verify( wrapped, times( 2 ) ).lookup( any( Dn.class ), any( Control[].class ), anyVararg() );
+
+        // No control : cached
+        connection.lookup( USER, new Control[0], "cn" );
+        connection.lookup( USER, "cn" );
+        verify( wrapped, times( 1 ) ).lookup( any( Dn.class ), anyVararg() );
+    }
+
+
+    @Test
+    public void testWritesInvalidate() throws Exception
+    {
+        connection.lookup( USER );
+        connection.modify( USER, new Modification[0] );
+        connection.lookup( USER );
+        verify( wrapped, times( 2 ) ).lookup( any( Dn.class ), anyVararg() );
+
+        connection.delete( new Dn( USER ) );
+        connection.lookup( USER );
+        verify( wrapped, times( 3 ) ).lookup( any( Dn.class ), anyVararg() );
+    }
+
+
+    @Test
+    public void testRenameInvalidatesSubtree() throws Exception
+    {
+        String child = "cn=mailbox," + USER;
+        String renamed = "uid=jsmith,ou=people,dc=example,dc=com";
+
+        connection.lookup( USER );
+        connection.lookup( child );
+        connection.lookup( renamed );
+        assertEquals( 3, cache.getSize() );
+
+        connection.rename( new Dn( USER ), new Rdn( "uid=jsmith" ) );
+
+        // The old subtree and the new Dn are gone
+        assertEquals( 0, cache.getSize() );
+
+        connection.lookup( child );
+        connection.move( child, "ou=people,dc=example,dc=com" );
+        assertEquals( 0, cache.getSize() );
+    }
+
+
+    @Test
+    public void testConcurrentInvalidation() throws Exception
+    {
+        // The entry is changed while it's being read
+        when( wrapped.lookup( any( Dn.class ), anyVararg() ) ).thenAnswer( invocation ->
+        {
+            cache.invalidate( new Dn( USER ) );
+
+            return new DefaultEntry( USER, "objectClass: person", "cn: John Doe", "sn: Doe" );
+        } );
+
+        connection.lookup( USER );
+        assertEquals( 0, cache.getSize() );
+    }
+
+
+    @Test
+    public void testNotCoherent() throws Exception
+    {
+        connection.lookup( USER );
+        cache.setCoherent( false );
+        assertEquals( 0, cache.getSize() );
+
+        connection.lookup( USER );
+        connection.lookup( USER );
+        verify( wrapped, times( 3 ) ).lookup( any( Dn.class ), anyVararg() );
+        assertEquals( 0, cache.getSize() );
+
+        cache.setCoherent( true );
+        connection.lookup( USER );
+        connection.lookup( USER );
+        verify( wrapped, times( 4 ) ).lookup( any( Dn.class ), anyVararg() );
+    }
+
+
+    @Test
+    public void testExpiration() throws Exception
+    {
+        cache = new EntryCache( 16, 1L );
+        connection = new CachingLdapConnection( wrapped, cache );
+
+        connection.lookup( USER );
+        Thread.sleep( 10L );
+        connection.lookup( USER );
+        verify( wrapped, times( 2 ) ).lookup( any( Dn.class ), anyVararg() );
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.cache;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchResultEntryImpl;
+import org.apache.directory.api.ldap.model.message.controls.ChangeType;
+import org.apache.directory.api.ldap.model.message.controls.EntryChange;
+import org.apache.directory.api.ldap.model.message.controls.EntryChangeImpl;
+import org.apache.directory.api.ldap.model.message.controls.PersistentSearch;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.ldap.client.api.LdapAsyncConnection;
+import org.apache.directory.ldap.client.api.LdapConnectionFactory;
+import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the EntryCacheInvalidator, using a mocked persistent search.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class EntryCacheInvalidatorTest
+{
+    private EntryCache cache;
+    private EntryCacheInvalidator invalidator;
+    private Thread thread;
+
+    /** The futures of the persistent searches */
+    private List<SearchFuture> futures = new CopyOnWriteArrayList<>();
+
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        LdapConnectionFactory factory = mock( LdapConnectionFactory.class );
+
+        when( factory.newLdapConnection() ).thenAnswer( invocation ->
+        {
+            LdapAsyncConnection connection = mock( LdapAsyncConnection.class );
+            when( connection.isConnected() ).thenReturn( true );
+            when( connection.searchAsync( any( SearchRequest.class ) ) ).thenAnswer( searchInvocation ->
+            {
+                SearchRequest searchRequest = ( SearchRequest ) searchInvocation.getArguments()[0];
+                PersistentSearch persistentSearch = ( PersistentSearch ) searchRequest.getControl( PersistentSearch.OID );
+                assertTrue( persistentSearch.isChangesOnly() );
+                assertTrue( persistentSearch.isReturnECs() );
+
+                SearchFuture future = new SearchFuture( connection, 1 );
+                futures.add( future );
+
+                return future;
+            } );
+
+            return connection;
+        } );
+
+        cache = new EntryCache( 16, 0L );
+        invalidator = new EntryCacheInvalidator( factory, cache, new Dn( "dc=example,dc=com" ) );
+        invalidator.setReconnectDelay( 10L );
+        thread = new Thread( invalidator );
+    }
+
+
+    @AfterEach
+    public void stop() throws Exception
+    {
+        invalidator.stop();
+        thread.join( 10000L );
+    }
+
+
+    private static void waitFor( BooleanSupplier condition ) throws Exception
+    {
+        long end = System.currentTimeMillis() + 10000L;
+
+        while ( !condition.getAsBoolean() && ( System.currentTimeMillis() < end ) )
+        {
+            Thread.sleep( 10L );
+        }
+
+        assertTrue( condition.getAsBoolean() );
+    }
+
+
+    private void fill( String... dns ) throws Exception
+    {
+        long generation = cache.getGeneration();
+
+        for ( String dn : dns )
+        {
+            cache.putEntry( new Dn( dn ), "*", new DefaultEntry( dn ), generation );
+        }
+    }
+
+
+    private static void change( SearchFuture future, String dn, ChangeType changeType, String previousDn )
+        throws Exception
+    {
+        SearchResultEntry entry = new SearchResultEntryImpl( 1 );
+        entry.setObjectName( new Dn( dn ) );
+
+        if ( changeType != null )
+        {
+            EntryChange entryChange = new EntryChangeImpl();
+            entryChange.setChangeType( changeType );
+
+            if ( previousDn != null )
+            {
+                entryChange.setPreviousDn( new Dn( previousDn ) );
+            }
+
+            entry.addControl( entryChange );
+        }
+
+        future.set( entry );
+    }
+
+
+    @Test
+    public void testInvalidation() throws Exception
+    {
+        thread.start();
+
+        // The cache is not used until the persistent search is running
+        waitFor( () -> !futures.isEmpty() );
+        waitFor( () -> cache.isCoherent() );
+
+        fill( "uid=a,ou=people,dc=example,dc=com", "uid=b,ou=people,dc=example,dc=com",
+            "cn=x,uid=b,ou=people,dc=example,dc=com", "uid=c,ou=people,dc=example,dc=com",
+            "uid=d,ou=people,dc=example,dc=com" );
+        assertEquals( 5, cache.getSize() );
+
+        SearchFuture future = futures.get( 0 );
+        change( future, "uid=a,ou=people,dc=example,dc=com", ChangeType.MODIFY, null );
+        waitFor( () -> cache.getSize() == 4 );
+
+        // A rename invalidates the old subtree
+        change( future, "uid=e,ou=people,dc=example,dc=com", ChangeType.MODDN, "uid=b,ou=people,dc=example,dc=com" );
+        waitFor( () -> cache.getSize() == 2 );
+
+        // No EntryChange control
+        change( future, "uid=c,ou=people,dc=example,dc=com", null, null );
+        waitFor( () -> cache.getSize() == 1 );
+    }
+
+
+    @Test
+    public void testMixedCaseInvalidation() throws Exception
+    {
+        thread.start();
+        waitFor( () -> !futures.isEmpty() );
+        waitFor( () -> cache.isCoherent() );
+
+        fill( "uid=A,ou=People,dc=example,dc=com", "uid=b,ou=people,dc=example,dc=com",
+            "cn=X,uid=B,ou=People,dc=Example,dc=com" );
+        assertEquals( 3, cache.getSize() );
+
+        // The other spellings of a Dn are found in the cache
+        assertNotNull( cache.getEntry( new Dn( "UID=a, OU=PEOPLE, DC=EXAMPLE, DC=COM" ), "*" ) );
+
+        // The server spells the Dns differently
+        SearchFuture future = futures.get( 0 );
+        change( future, "UID=a,OU=people,DC=Example,DC=COM", ChangeType.MODIFY, null );
+        waitFor( () -> cache.getSize() == 2 );
+
+        change( future, "uid=e,ou=people,dc=example,dc=com", ChangeType.MODDN, "UID=B,OU=PEOPLE,DC=EXAMPLE,DC=COM" );
+        waitFor( () -> cache.getSize() == 0 );
+    }
+
+
+    @Test
+    public void testPersistentSearchEnded() throws Exception
+    {
+        thread.start();
+        waitFor( () -> !futures.isEmpty() );
+        waitFor( () -> cache.isCoherent() );
+        fill( "uid=a,ou=people,dc=example,dc=com" );
+
+        // The server ends the search : the cache is disabled until a new search is running
+        SearchResultDone done = new SearchResultDoneImpl( 1 );
+        done.getLdapResult().setResultCode( ResultCodeEnum.UNWILLING_TO_PERFORM );
+        futures.get( 0 ).set( done );
+
+        waitFor( () -> futures.size() == 2 );
+        assertEquals( 0, cache.getSize() );
+        waitFor( () -> cache.isCoherent() );
+
+        invalidator.stop();
+        thread.join( 10000L );
+        assertTrue( invalidator.isStopped() );
+        assertFalse( cache.isCoherent() );
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.dirsync;
+
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.ldap.extras.controls.ad.AdDirSyncRequest;
+import org.apache.directory.api.ldap.extras.controls.ad.AdDirSyncResponse;
+import org.apache.directory.api.ldap.extras.controls.ad.AdDirSyncResponseFlag;
+import org.apache.directory.api.ldap.extras.controls.ad.AdDirSyncResponseImpl;
+import org.apache.directory.api.ldap.model.entry.Attribute;
+import org.apache.directory.api.ldap.model.entry.DefaultAttribute;
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.message.Response;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchResultEntryImpl;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.util.Strings;
+import org.apache.directory.ldap.client.api.LdapConnection;
+import org.apache.directory.ldap.client.api.LdapConnectionFactory;
+import org.apache.directory.ldap.client.api.SearchCursorImpl;
+import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.apache.directory.ldap.client.api.syncrepl.CookieStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the DirSyncEngine, with mocked connections replaying DirSync responses
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class DirSyncEngineTest
+{
+    /** The responses to replay, one list per DirSync request */
+    private Queue<List<Response>> pages = new ConcurrentLinkedQueue<>();
+
+    /** The DirSync controls sent by the engine */
+    private List<AdDirSyncRequest> sentControls = new ArrayList<>();
+
+    /** The connection factory */
+    private LdapConnectionFactory factory;
+
+    /** The stored cookie */
+    private MemoryCookieStore cookieStore = new MemoryCookieStore();
+
+    /** The sink */
+    private RecordingSink sink = new RecordingSink();
+
+
+    /**
+     * A CookieStore keeping the cookie in memory
+     */
+    private static class MemoryCookieStore implements CookieStore
+    {
+        private volatile byte[] cookie;
+
+
+        @Override
+        public byte[] load()
+        {
+            return cookie;
+        }
+
+
+        @Override
+        public void save( byte[] cookie )
+        {
+            this.cookie = cookie;
+        }
+    }
+
+
+    /**
+     * A sink recording the received calls
+     */
+    private static class RecordingSink implements DirSyncSink
+    {
+        private List<String> calls = new ArrayList<>();
+
+        private List<DirSyncChange> changes = new ArrayList<>();
+
+
+        @Override
+        public void beginSync( boolean fullSync )
+        {
+            calls.add( "begin " + fullSync );
+        }
+
+
+        @Override
+        public void applyChanges( List<DirSyncChange> batch )
+        {
+            calls.add( "apply " + batch.size() );
+            changes.addAll( batch );
+        }
+
+
+        @Override
+        public void endSync()
+        {
+            calls.add( "end" );
+        }
+    }
+
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        factory = mock( LdapConnectionFactory.class );
+
+        when( factory.newLdapConnection() ).thenAnswer( invocation ->
+        {
+            LdapConnection connection = mock( LdapConnection.class );
+            when( connection.isConnected() ).thenReturn( true );
+            when( connection.search( any( SearchRequest.class ) ) ).thenAnswer( searchInvocation ->
+            {
+                SearchRequest searchRequest = ( SearchRequest ) searchInvocation.getArguments()[0];
+                sentControls.add( ( AdDirSyncRequest ) searchRequest.getControl( AdDirSyncRequest.OID ) );
+
+                SearchFuture future = new SearchFuture( connection, 1 );
+
+                for ( Response response : pages.poll() )
+                {
+                    future.set( response );
+                }
+
+                return new SearchCursorImpl( future, 1L, TimeUnit.SECONDS );
+            } );
+
+            return connection;
+        } );
+    }
+
+
+    private DirSyncConfig createConfig() throws Exception
+    {
+        DirSyncConfig config = new DirSyncConfig();
+        config.setBaseDn( new Dn( "dc=example,dc=com" ) );
+        config.setBatchSize( 2 );
+        config.setReconnectDelay( 10L );
+
+        return config;
+    }
+
+
+    private static SearchResultEntry entry( String dn, String... ldif ) throws Exception
+    {
+        SearchResultEntry resultEntry = new SearchResultEntryImpl( 1 );
+        Entry entry = new DefaultEntry( dn, ldif );
+        entry.add( new DefaultAttribute( "objectGUID", Strings.getBytesUtf8( dn ) ) );
+        resultEntry.setEntry( entry );
+
+        return resultEntry;
+    }
+
+
+    private static SearchResultDone done( ResultCodeEnum resultCode, String cookie, boolean moreResults )
+    {
+        SearchResultDone done = new SearchResultDoneImpl( 1 );
+        done.getLdapResult().setResultCode( resultCode );
+
+        if ( cookie != null )
+        {
+            AdDirSyncResponse dirSyncResponse = new AdDirSyncResponseImpl();
+            dirSyncResponse.setCookie( Strings.getBytesUtf8( cookie ) );
+            dirSyncResponse.setMoreResults( moreResults );
+            done.addControl( dirSyncResponse );
+        }
+
+        return done;
+    }
+
+
+    private static String cookie( AdDirSyncRequest control )
+    {
+        return Strings.isEmpty( control.getCookie() ) ? null : Strings.utf8ToString( control.getCookie() );
+    }
+
+
+    @Test
+    public void testSynchronizeUntilNoMoreResults() throws Exception
+    {
+        pages.add( Arrays.asList(
+            entry( "cn=a,dc=example,dc=com", "cn: a" ),
+            entry( "cn=b,dc=example,dc=com", "cn: b" ),
+            entry( "cn=c,dc=example,dc=com", "cn: c" ),
+            done( ResultCodeEnum.SUCCESS, "c1", true ) ) );
+        pages.add( Arrays.asList(
+            entry( "cn=group,dc=example,dc=com",
+                "member;range=1-1: cn=a,dc=example,dc=com",
+                "member;range=1-1: cn=b,dc=example,dc=com",
+                "member;range=0-0: cn=c,dc=example,dc=com" ),
+            entry( "cn=d\\0ADEL:1234,cn=Deleted Objects,dc=example,dc=com", "isDeleted: TRUE" ),
+            done( ResultCodeEnum.SUCCESS, "c2", false ) ) );
+
+        DirSyncEngine engine = new DirSyncEngine( factory, createConfig(), sink, cookieStore );
+        engine.synchronize();
+
+        assertEquals( Arrays.asList( "begin true", "apply 2", "apply 1", "apply 2", "end" ), sink.calls );
+        assertEquals( 2, sentControls.size() );
+        assertNull( cookie( sentControls.get( 0 ) ) );
+        assertEquals( "c1", cookie( sentControls.get( 1 ) ) );
+        assertEquals( AdDirSyncResponseFlag.LDAP_DIRSYNC_INCREMENTAL_VALUES.getValue(),
+            sentControls.get( 0 ).getParentsFirst() );
+        assertEquals( "c2", Strings.utf8ToString( cookieStore.cookie ) );
+        assertEquals( "c2", Strings.utf8ToString( engine.getCookie() ) );
+
+        DirSyncChange change = sink.changes.get( 0 );
+        assertArrayEquals( Strings.getBytesUtf8( "cn=a,dc=example,dc=com" ), change.getObjectGuid() );
+        assertEquals( "a", change.getEntry().get( "cn" ).getString() );
+
+        // The incremental values are given apart
+        DirSyncChange group = sink.changes.get( 3 );
+        assertEquals( 1, group.getAddedValues().size() );
+        Attribute added = group.getAddedValues().get( 0 );
+        assertEquals( "member", added.getUpId() );
+        assertEquals( 2, added.size() );
+        assertEquals( "cn=c,dc=example,dc=com", group.getRemovedValues().get( 0 ).getString() );
+        assertNull( group.getEntry().get( "member" ) );
+        assertEquals( false, group.isDeleted() );
+
+        assertEquals( true, sink.changes.get( 4 ).isDeleted() );
+    }
+
+
+    @Test
+    public void testFailureKeepsLastCookie() throws Exception
+    {
+        pages.add( Arrays.asList(
+            entry( "cn=a,dc=example,dc=com", "cn: a" ),
+            done( ResultCodeEnum.SUCCESS, "c1", true ) ) );
+        pages.add( Arrays.asList(
+            entry( "cn=b,dc=example,dc=com", "cn: b" ),
+            done( ResultCodeEnum.UNWILLING_TO_PERFORM, null, false ) ) );
+
+        DirSyncEngine engine = new DirSyncEngine( factory, createConfig(), sink, cookieStore );
+
+        assertThrows( LdapException.class, () -> engine.synchronize() );
+        assertEquals( "c1", Strings.utf8ToString( cookieStore.cookie ) );
+
+        // The next synchronization restarts from the stored cookie
+        pages.add( Arrays.asList(
+            entry( "cn=b,dc=example,dc=com", "cn: b" ),
+            done( ResultCodeEnum.SUCCESS, "c2", false ) ) );
+
+        DirSyncEngine engine2 = new DirSyncEngine( factory, createConfig(), sink, cookieStore );
+        engine2.synchronize();
+
+        assertEquals( "c1", cookie( sentControls.get( 2 ) ) );
+        assertEquals( "c2", Strings.utf8ToString( cookieStore.cookie ) );
+        assertEquals( Arrays.asList( "begin true", "apply 1", "begin false", "apply 1", "end" ), sink.calls );
+    }
+
+
+    @Test
+    public void testMissingResponseControl() throws Exception
+    {
+        pages.add( Arrays.asList( done( ResultCodeEnum.SUCCESS, null, false ) ) );
+
+        DirSyncEngine engine = new DirSyncEngine( factory, createConfig(), sink, cookieStore );
+
+        assertThrows( LdapException.class, () -> engine.synchronize() );
+        assertNull( cookieStore.cookie );
+    }
+
+
+    @Test
+    public void testRequestFlags() throws Exception
+    {
+        pages.add( Arrays.asList( done( ResultCodeEnum.SUCCESS, "c1", false ) ) );
+
+        DirSyncConfig config = createConfig();
+        config.setObjectSecurity( true );
+        config.setAncestorsFirst( true );
+        config.setIncrementalValues( false );
+        config.setMaxReturnLength( 1048576 );
+
+        new DirSyncEngine( factory, config, sink, cookieStore ).synchronize();
+
+        AdDirSyncRequest control = sentControls.get( 0 );
+        assertEquals( AdDirSyncResponseFlag.LDAP_DIRSYNC_OBJECT_SECURITY.getValue()
+            | AdDirSyncResponseFlag.LDAP_DIRSYNC_ANCESTORS_FIRST_ORDER.getValue(), control.getParentsFirst() );
+        assertEquals( 1048576, control.getMaxAttributeCount() );
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.metrics;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.directory.api.ldap.model.message.MessageTypeEnum;
+import org.apache.directory.ldap.client.api.LdapConnection;
+import org.apache.directory.ldap.client.api.LdapConnectionPool;
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.filter.codec.ProtocolCodecFactory;
+import org.apache.mina.filter.codec.ProtocolDecoder;
+import org.apache.mina.filter.codec.ProtocolDecoderAdapter;
+import org.apache.mina.filter.codec.ProtocolDecoderOutput;
+import org.apache.mina.filter.codec.ProtocolEncoder;
+import org.apache.mina.filter.codec.ProtocolEncoderAdapter;
+import org.apache.mina.filter.codec.ProtocolEncoderOutput;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the DefaultLdapClientMetrics class, and the way it is updated by the pool and the codec
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class DefaultLdapClientMetricsTest
+{
+    @Test
+    public void testOperations()
+    {
+        DefaultLdapClientMetrics metrics = new DefaultLdapClientMetrics();
+
+        metrics.requestSent( MessageTypeEnum.SEARCH_REQUEST );
+        metrics.requestSent( MessageTypeEnum.SEARCH_REQUEST );
+        metrics.requestSent( MessageTypeEnum.MODIFY_REQUEST );
+        metrics.operationCompleted( MessageTypeEnum.SEARCH_REQUEST, 2_000L );
+        metrics.operationAborted( MessageTypeEnum.SEARCH_REQUEST );
+        metrics.responseQueued( 3 );
+        metrics.responseQueued( 1 );
+
+        assertEquals( 3L, metrics.getRequestsSent() );
+        assertEquals( 1L, metrics.getRequestsCompleted() );
+        assertEquals( 1L, metrics.getRequestsAborted() );
+        assertEquals( 1L, metrics.getRequestsInFlight() );
+        assertEquals( 1L, metrics.getLatency( MessageTypeEnum.SEARCH_REQUEST ).getCount() );
+        assertEquals( 2_000L, metrics.getLatency( MessageTypeEnum.SEARCH_REQUEST ).getMax() );
+        assertEquals( 0L, metrics.getLatency( MessageTypeEnum.MODIFY_REQUEST ).getCount() );
+        assertEquals( 3L, metrics.getMaxQueueDepth() );
+
+        metrics.reset();
+
+        assertEquals( 0L, metrics.getRequestsSent() );
+        assertEquals( 0L, metrics.getRequestsInFlight() );
+        assertEquals( 0L, metrics.getMaxQueueDepth() );
+    }
+
+
+    @Test
+    public void testPoolBorrow() throws Exception
+    {
+        LdapConnectionPool pool = new LdapConnectionPool( new BasePooledObjectFactory<LdapConnection>()
+        {
+            @Override
+            public LdapConnection create()
+            {
+                return mock( LdapConnection.class );
+            }
+
+
+            @Override
+            public PooledObject<LdapConnection> wrap( LdapConnection connection )
+            {
+                return new DefaultPooledObject<>( connection );
+            }
+        } );
+
+        DefaultLdapClientMetrics metrics = new DefaultLdapClientMetrics();
+        pool.setMetrics( metrics );
+
+        LdapConnection first = pool.getConnection();
+        pool.getConnection();
+
+        assertEquals( 2L, metrics.getBorrowWaitTimes().getCount() );
+        assertEquals( 2, metrics.getPoolActive() );
+        assertEquals( 0, metrics.getPoolIdle() );
+
+        pool.releaseConnection( first );
+        pool.getConnection();
+
+        assertEquals( 3L, metrics.getBorrowWaitTimes().getCount() );
+        assertEquals( 2, metrics.getPoolActive() );
+
+        // No more measures once disabled
+        pool.setMetrics( null );
+        pool.getConnection();
+
+        assertEquals( 3L, metrics.getBorrowWaitTimes().getCount() );
+        pool.close();
+    }
+
+
+    @Test
+    public void testCodec() throws Exception
+    {
+        ProtocolCodecFactory codec = new ProtocolCodecFactory()
+        {
+            @Override
+            public ProtocolEncoder getEncoder( IoSession session )
+            {
+                return new ProtocolEncoderAdapter()
+                {
+                    @Override
+                    public void encode( IoSession session, Object message, ProtocolEncoderOutput out )
+                    {
+                        out.write( IoBuffer.wrap( new byte[10] ) );
+                    }
+                };
+            }
+
+
+            @Override
+            public ProtocolDecoder getDecoder( IoSession session )
+            {
+                return new ProtocolDecoderAdapter()
+                {
+                    @Override
+                    public void decode( IoSession session, IoBuffer in, ProtocolDecoderOutput out )
+                    {
+                        in.position( in.limit() );
+                    }
+                };
+            }
+        };
+
+        DefaultLdapClientMetrics metrics = new DefaultLdapClientMetrics();
+        MeteredProtocolCodecFactory metered = new MeteredProtocolCodecFactory( codec, metrics );
+        IoSession session = mock( IoSession.class );
+
+        metered.getEncoder( session ).encode( session, "request", mock( ProtocolEncoderOutput.class ) );
+        metered.getDecoder( session ).decode( session, IoBuffer.wrap( new byte[25] ),
+            mock( ProtocolDecoderOutput.class ) );
+
+        assertEquals( 10L, metrics.getBytesSent() );
+        assertEquals( 25L, metrics.getBytesReceived() );
+        assertEquals( 1L, metrics.getEncodingTimes().getCount() );
+        assertEquals( 1L, metrics.getDecodingTimes().getCount() );
+        assertTrue( metrics.getDecodingTimes().getMax() >= 0L );
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.metrics;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the LatencyHistogram class
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LatencyHistogramTest
+{
+    @Test
+    public void testBuckets()
+    {
+        // Every value falls in a bucket whose bounds contain it
+        long[] values = { 0L, 1L, 63L, 64L, 65L, 127L, 128L, 1_000L, 1_000_000L, 123_456_789_012L,
+            Long.MAX_VALUE };
+
+        for ( long value : values )
+        {
+            int index = LatencyHistogram.bucketIndex( value );
+
+            assertTrue( LatencyHistogram.highestValue( index ) >= value );
+
+            if ( index > 0 )
+            {
+                assertTrue( LatencyHistogram.highestValue( index - 1 ) < value );
+            }
+        }
+
+        // The buckets are contiguous
+        for ( int index = 1; index < LatencyHistogram.bucketIndex( Long.MAX_VALUE ); index++ )
+        {
+            long lowest = LatencyHistogram.highestValue( index - 1 ) + 1;
+
+            assertEquals( index, LatencyHistogram.bucketIndex( lowest ) );
+        }
+    }
+
+
+    @Test
+    public void testPercentiles()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        for ( long value = 1L; value <= 10_000L; value++ )
+        {
+            histogram.record( value * 1_000L );
+        }
+
+        assertEquals( 10_000L, histogram.getCount() );
+        assertEquals( 10_000_000L, histogram.getMax() );
+        assertEquals( 5_000_500d, histogram.getMean(), 0.1d );
+
+        // The relative error is below 1/32
+        long p50 = histogram.getValueAtPercentile( 50d );
+        long p99 = histogram.getValueAtPercentile( 99d );
+
+        assertTrue( Math.abs( p50 - 5_000_000L ) <= 5_000_000L / 32 );
+        assertTrue( Math.abs( p99 - 9_900_000L ) <= 9_900_000L / 32 );
+        assertEquals( 10_000_000L, histogram.getValueAtPercentile( 100d ) );
+
+        histogram.reset();
+
+        assertEquals( 0L, histogram.getCount() );
+        assertEquals( 0L, histogram.getValueAtPercentile( 99d ) );
+    }
+
+
+    @Test
+    public void testConcurrentRecords() throws Exception
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+
+        for ( int i = 0; i < 4; i++ )
+        {
+            Thread thread = new Thread( () ->
+            {
+                for ( int j = 0; j < 10_000; j++ )
+                {
+                    histogram.record( j );
+                }
+            } );
+
+            threads.add( thread );
+            thread.start();
+        }
+
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+
+        assertEquals( 40_000L, histogram.getCount() );
+        assertEquals( 9_999L, histogram.getMax() );
+    }
+}
@@ -0,0 +1,417 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ * 
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ * 
+ */
+package org.apache.directory.ldap.client.api.syncrepl;
+
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+import org.apache.directory.api.ldap.extras.controls.SynchronizationModeEnum;
+import org.apache.directory.api.ldap.extras.controls.syncrepl.syncDone.SyncDoneValue;
+import org.apache.directory.api.ldap.extras.controls.syncrepl.syncDone.SyncDoneValueImpl;
+import org.apache.directory.api.ldap.extras.controls.syncrepl.syncRequest.SyncRequestValue;
+import org.apache.directory.api.ldap.extras.controls.syncrepl.syncState.SyncStateTypeEnum;
+import org.apache.directory.api.ldap.extras.controls.syncrepl.syncState.SyncStateValue;
+import org.apache.directory.api.ldap.extras.controls.syncrepl.syncState.SyncStateValueImpl;
+import org.apache.directory.api.ldap.extras.intermediate.syncrepl.SyncInfoValue;
+import org.apache.directory.api.ldap.extras.intermediate.syncrepl.SyncInfoValueImpl;
+import org.apache.directory.api.ldap.extras.intermediate.syncrepl.SynchronizationInfoEnum;
+import org.apache.directory.api.ldap.model.message.Response;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchResultEntryImpl;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.util.Strings;
+import org.apache.directory.ldap.client.api.LdapAsyncConnection;
+import org.apache.directory.ldap.client.api.LdapConnectionFactory;
+import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+/**
+ * Test the SyncReplConsumer, with mocked connections replaying syncrepl sessions
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class SyncReplConsumerTest
+{
+    /** The sessions to replay, one per connection */
+    private Queue<Consumer<SearchFuture>> sessions = new ConcurrentLinkedQueue<>();
+
+    /** The cookies sent by the consumer */
+    private List<byte[]> sentCookies = new ArrayList<>();
+
+    /** The connection factory */
+    private LdapConnectionFactory factory;
+
+    /** The stored cookie */
+    private MemoryCookieStore cookieStore = new MemoryCookieStore();
+
+    /** The sink */
+    private RecordingSink sink = new RecordingSink();
+
+
+    /**
+     * A CookieStore keeping the cookie in memory
+     */
+    private static class MemoryCookieStore implements CookieStore
+    {
+        private volatile byte[] cookie;
+
+
+        @Override
+        public byte[] load()
+        {
+            return cookie;
+        }
+
+
+        @Override
+        public void save( byte[] cookie )
+        {
+            this.cookie = cookie;
+        }
+    }
+
+
+    /**
+     * A sink recording the received calls
+     */
+    private static class RecordingSink implements SyncReplSink
+    {
+        private List<String> calls = new ArrayList<>();
+
+
+        @Override
+        public synchronized void beginRefresh( boolean fullRefresh )
+        {
+            calls.add( "begin " + fullRefresh );
+        }
+
+
+        @Override
+        public synchronized void applyChanges( List<SyncReplChange> changes )
+        {
+            for ( SyncReplChange change : changes )
+            {
+                calls.add( change.getType() + " " + change.getEntry().getDn() );
+            }
+        }
+
+
+        @Override
+        public synchronized void deleteEntries( List<byte[]> entryUUIDs )
+        {
+            calls.add( "delete " + entryUUIDs.size() );
+        }
+
+
+        @Override
+        public synchronized void markPresent( List<byte[]> entryUUIDs )
+        {
+            calls.add( "present " + entryUUIDs.size() );
+        }
+
+
+        @Override
+        public synchronized void endPresentPhase()
+        {
+            calls.add( "endPresent" );
+        }
+
+
+        @Override
+        public synchronized void refreshRequired()
+        {
+            calls.add( "refreshRequired" );
+        }
+
+
+        private synchronized List<String> getCalls()
+        {
+            return new ArrayList<>( calls );
+        }
+    }
+
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        factory = mock( LdapConnectionFactory.class );
+
+        when( factory.newLdapConnection() ).thenAnswer( invocation ->
+        {
+            LdapAsyncConnection connection = mock( LdapAsyncConnection.class );
+            when( connection.isConnected() ).thenReturn( true );
+            when( connection.searchAsync( any( SearchRequest.class ) ) ).thenAnswer( searchInvocation ->
+            {
+                SearchRequest searchRequest = ( SearchRequest ) searchInvocation.getArguments()[0];
+                SyncRequestValue syncRequest = ( SyncRequestValue ) searchRequest.getControl( SyncRequestValue.OID );
+                sentCookies.add( syncRequest.getCookie() );
+
+                SearchFuture future = new SearchFuture( connection, 1 );
+                Consumer<SearchFuture> session = sessions.poll();
+
+                if ( session != null )
+                {
+                    session.accept( future );
+                }
+
+                return future;
+            } );
+
+            return connection;
+        } );
+    }
+
+
+    private SyncReplConsumerConfig createConfig( SynchronizationModeEnum mode ) throws Exception
+    {
+        SyncReplConsumerConfig config = new SyncReplConsumerConfig();
+        config.setBaseDn( new Dn( "ou=test" ) );
+        config.setMode( mode );
+        config.setBatchSize( 2 );
+        config.setFlushInterval( 50L );
+        config.setReconnectDelay( 10L );
+
+        return config;
+    }
+
+
+    private static void addEntry( SearchFuture future, String dn, SyncStateTypeEnum type, String cookie )
+    {
+        try
+        {
+            SearchResultEntry entry = new SearchResultEntryImpl( 1 );
+            entry.setObjectName( new Dn( dn ) );
+            SyncStateValue syncState = new SyncStateValueImpl();
+            syncState.setSyncStateType( type );
+            syncState.setEntryUUID( Strings.getBytesUtf8( dn ) );
+
+            if ( cookie != null )
+            {
+                syncState.setCookie( Strings.getBytesUtf8( cookie ) );
+            }
+
+            entry.addControl( syncState );
+            future.set( entry );
+        }
+        catch ( Exception e )
+        {
+            throw new IllegalStateException( e );
+        }
+    }
+
+
+    private static void addDone( SearchFuture future, ResultCodeEnum resultCode, String cookie, boolean refreshDeletes )
+    {
+        SearchResultDone done = new SearchResultDoneImpl( 1 );
+        done.getLdapResult().setResultCode( resultCode );
+
+        if ( cookie != null )
+        {
+            SyncDoneValue syncDone = new SyncDoneValueImpl();
+            syncDone.setCookie( Strings.getBytesUtf8( cookie ) );
+            syncDone.setRefreshDeletes( refreshDeletes );
+            done.addControl( syncDone );
+        }
+
+        set( future, done );
+    }
+
+
+    private static void addSyncInfo( SearchFuture future, SynchronizationInfoEnum type, String cookie,
+        boolean refreshDeletes, int nbUUIDs )
+    {
+        SyncInfoValue syncInfo = new SyncInfoValueImpl();
+        syncInfo.setSyncInfoValueType( type );
+        syncInfo.setCookie( Strings.getBytesUtf8( cookie ) );
+        syncInfo.setRefreshDone( true );
+        syncInfo.setRefreshDeletes( refreshDeletes );
+
+        for ( int i = 0; i < nbUUIDs; i++ )
+        {
+            syncInfo.addSyncUUID( new byte[16] );
+        }
+
+        set( future, syncInfo );
+    }
+
+
+    private static void set( SearchFuture future, Response response )
+    {
+        try
+        {
+            future.set( response );
+        }
+        catch ( InterruptedException ie )
+        {
+            throw new IllegalStateException( ie );
+        }
+    }
+
+
+    @Test
+    public void testRefreshOnly() throws Exception
+    {
+        sessions.add( future ->
+        {
+            addEntry( future, "cn=a,ou=test", SyncStateTypeEnum.ADD, null );
+            addEntry( future, "cn=b,ou=test", SyncStateTypeEnum.ADD, null );
+            addEntry( future, "cn=c,ou=test", SyncStateTypeEnum.ADD, null );
+            addDone( future, ResultCodeEnum.SUCCESS, "c1", false );
+        } );
+
+        SyncReplConsumer consumer = new SyncReplConsumer( factory, createConfig( SynchronizationModeEnum.REFRESH_ONLY ),
+            sink, cookieStore );
+        consumer.run();
+
+        assertNull( sentCookies.get( 0 ) );
+        assertEquals( "[begin true, ADD cn=a,ou=test, ADD cn=b,ou=test, ADD cn=c,ou=test, endPresent]",
+            sink.getCalls().toString() );
+        assertArrayEquals( Strings.getBytesUtf8( "c1" ), cookieStore.load() );
+
+        // The next refresh uses the cookie, and the server sends the deleted entries
+        sessions.add( future ->
+        {
+            addEntry( future, "cn=d,ou=test", SyncStateTypeEnum.ADD, null );
+            addSyncInfo( future, SynchronizationInfoEnum.SYNC_ID_SET, "c2", true, 2 );
+            addDone( future, ResultCodeEnum.SUCCESS, "c2", true );
+        } );
+
+        consumer.refresh();
+
+        assertArrayEquals( Strings.getBytesUtf8( "c1" ), sentCookies.get( 1 ) );
+        assertEquals( "[begin true, ADD cn=a,ou=test, ADD cn=b,ou=test, ADD cn=c,ou=test, endPresent, "
+            + "begin false, ADD cn=d,ou=test, delete 2]", sink.getCalls().toString() );
+        assertArrayEquals( Strings.getBytesUtf8( "c2" ), cookieStore.load() );
+    }
+
+
+    @Test
+    public void testRefreshRequired() throws Exception
+    {
+        cookieStore.save( Strings.getBytesUtf8( "old" ) );
+
+        sessions.add( future -> addDone( future, ResultCodeEnum.E_SYNC_REFRESH_REQUIRED, null, false ) );
+        sessions.add( future ->
+        {
+            addEntry( future, "cn=a,ou=test", SyncStateTypeEnum.ADD, null );
+            addDone( future, ResultCodeEnum.SUCCESS, "new", false );
+        } );
+
+        SyncReplConsumer consumer = new SyncReplConsumer( factory, createConfig( SynchronizationModeEnum.REFRESH_ONLY ),
+            sink, cookieStore );
+        consumer.run();
+
+        assertEquals( 2, sentCookies.size() );
+        assertArrayEquals( Strings.getBytesUtf8( "old" ), sentCookies.get( 0 ) );
+        assertNull( sentCookies.get( 1 ) );
+        assertEquals( "[begin false, refreshRequired, begin true, ADD cn=a,ou=test, endPresent]",
+            sink.getCalls().toString() );
+        assertArrayEquals( Strings.getBytesUtf8( "new" ), cookieStore.load() );
+    }
+
+
+    @Test
+    public void testRefreshAndPersist() throws Exception
+    {
+        // The first session fails during the persist phase
+        sessions.add( future ->
+        {
+            addEntry( future, "cn=a,ou=test", SyncStateTypeEnum.PRESENT, null );
+            addEntry( future, "cn=b,ou=test", SyncStateTypeEnum.PRESENT, null );
+            addEntry( future, "cn=c,ou=test", SyncStateTypeEnum.MODIFY, null );
+            addSyncInfo( future, SynchronizationInfoEnum.REFRESH_PRESENT, "c1", false, 0 );
+            addEntry( future, "cn=d,ou=test", SyncStateTypeEnum.ADD, "c2" );
+            addDone( future, ResultCodeEnum.OTHER, null, false );
+        } );
+
+        // The second one is not interrupted
+        sessions.add( future ->
+        {
+            addSyncInfo( future, SynchronizationInfoEnum.REFRESH_DELETE, "c2", true, 0 );
+            addEntry( future, "cn=a,ou=test", SyncStateTypeEnum.DELETE, "c3" );
+        } );
+
+        SyncReplConsumer consumer = new SyncReplConsumer( factory,
+            createConfig( SynchronizationModeEnum.REFRESH_AND_PERSIST ), sink, cookieStore );
+        Thread thread = new Thread( consumer );
+        thread.start();
+
+        long end = System.currentTimeMillis() + 10000L;
+
+        while ( ( cookieStore.load() == null || !"c3".equals( Strings.utf8ToString( cookieStore.load() ) ) )
+            && ( System.currentTimeMillis() < end ) )
+        {
+            Thread.sleep( 10L );
+        }
+
+        consumer.stop();
+        thread.join( 10000L );
+
+        assertTrue( consumer.isStopped() );
+        assertEquals( "c3", Strings.utf8ToString( cookieStore.load() ) );
+        assertNull( sentCookies.get( 0 ) );
+
+        // The change received after the last stored cookie has not been applied, it will be received again
+        assertEquals( "c1", Strings.utf8ToString( sentCookies.get( 1 ) ) );
+        assertEquals( "[begin true, present 2, MODIFY cn=c,ou=test, endPresent, "
+            + "begin false, DELETE cn=a,ou=test]", sink.getCalls().toString() );
+    }
+
+
+    @Test
+    public void testFileCookieStore( @TempDir Path tempDir ) throws IOException
+    {
+        FileCookieStore store = new FileCookieStore( tempDir.resolve( "cookie" ) );
+
+        assertNull( store.load() );
+
+        store.save( Strings.getBytesUtf8( "rid=001,csn=20240101000000.000000Z#000000#000#000000" ) );
+        assertEquals( "rid=001,csn=20240101000000.000000Z#000000#000#000000", Strings.utf8ToString( store.load() ) );
+
+        store.save( Strings.getBytesUtf8( "rid=001" ) );
+        assertEquals( "rid=001", Strings.utf8ToString( store.load() ) );
+        assertTrue( Files.exists( store.getFile() ) );
+
+        store.save( null );
+        assertNull( store.load() );
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.template;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.message.BindRequest;
+import org.apache.directory.api.ldap.model.message.BindResponse;
+import org.apache.directory.api.ldap.model.message.BindResponseImpl;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchResultEntryImpl;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.ldap.client.api.LdapConnection;
+import org.apache.directory.ldap.client.api.LdapConnectionPool;
+import org.apache.directory.ldap.client.api.SearchCursorImpl;
+import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.apache.directory.ldap.client.template.exception.PasswordException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the authentication methods of the LdapConnectionTemplate, using a dedicated
+ * authentication pool and a user Dn cache.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LdapConnectionTemplateAuthenticationTest
+{
+    private static final String PASSWORD = "secret";
+
+    private LdapConnection searchConnection;
+    private LdapConnection bindConnection;
+    private LdapConnectionPool connectionPool;
+    private LdapConnectionPool authenticationPool;
+    private LdapConnectionTemplate template;
+
+    /** The Dn returned by the next searches */
+    private String userDn;
+
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        searchConnection = mock( LdapConnection.class );
+        bindConnection = mock( LdapConnection.class );
+        connectionPool = mock( LdapConnectionPool.class );
+        authenticationPool = mock( LdapConnectionPool.class );
+
+        when( connectionPool.getConnection() ).thenReturn( searchConnection );
+        when( authenticationPool.getConnection() ).thenReturn( bindConnection );
+        when( searchConnection.search( any( SearchRequest.class ) ) ).thenAnswer( invocation -> searchResult() );
+        when( bindConnection.bind( any( BindRequest.class ) ) )
+            .thenAnswer( invocation -> bindResponse( ( BindRequest ) invocation.getArguments()[0] ) );
+
+        userDn = "uid=jdoe,ou=people,dc=example,dc=com";
+        template = new LdapConnectionTemplate( connectionPool );
+        template.setAuthenticationPool( authenticationPool );
+    }
+
+
+    private SearchCursorImpl searchResult() throws Exception
+    {
+        SearchFuture future = new SearchFuture( searchConnection, 1 );
+        SearchResultEntry entry = new SearchResultEntryImpl( 1 );
+        entry.setEntry( new DefaultEntry( userDn ) );
+        future.set( entry );
+
+        SearchResultDone done = new SearchResultDoneImpl( 1 );
+        done.getLdapResult().setResultCode( ResultCodeEnum.SUCCESS );
+        future.set( done );
+
+        return new SearchCursorImpl( future, 1L, TimeUnit.SECONDS );
+    }
+
+
+    private BindResponse bindResponse( BindRequest bindRequest )
+    {
+        BindResponse response = new BindResponseImpl( 1 );
+
+        // Only the current Dn of the user can bind
+        if ( bindRequest.getDn().getName().equals( userDn )
+            && PASSWORD.equals( new String( bindRequest.getCredentials(), StandardCharsets.UTF_8 ) ) )
+        {
+            response.getLdapResult().setResultCode( ResultCodeEnum.SUCCESS );
+        }
+        else
+        {
+            response.getLdapResult().setResultCode( ResultCodeEnum.INVALID_CREDENTIALS );
+        }
+
+        return response;
+    }
+
+
+    private static BindRequest bindAs( final String dn )
+    {
+        return argThat( ( BindRequest request ) -> request.getDn().getName().equals( dn ) );
+    }
+
+
+    @Test
+    public void testAuthenticateUsesAuthenticationPool() throws Exception
+    {
+        assertNull( template.authenticate( new Dn( userDn ), PASSWORD.toCharArray() ) );
+
+        verify( bindConnection, times( 1 ) ).bind( any( BindRequest.class ) );
+        verify( searchConnection, never() ).bind( any( BindRequest.class ) );
+        verify( authenticationPool, times( 1 ) ).releaseConnection( bindConnection );
+        verify( connectionPool, never() ).getConnection();
+    }
+
+
+    @Test
+    public void testSearchThenBindWithoutCache() throws Exception
+    {
+        for ( int i = 0; i < 3; i++ )
+        {
+            template.authenticate( "ou=people,dc=example,dc=com", "(uid=jdoe)", SearchScope.SUBTREE,
+                PASSWORD.toCharArray() );
+        }
+
+        // The searches use the general pool, the binds the authentication pool
+        verify( searchConnection, times( 3 ) ).search( any( SearchRequest.class ) );
+        verify( bindConnection, times( 3 ) ).bind( any( BindRequest.class ) );
+    }
+
+
+    @Test
+    public void testUserDnCache() throws Exception
+    {
+        UserDnCache cache = new UserDnCache( 16, 0L );
+        template.setUserDnCache( cache );
+
+        for ( int i = 0; i < 3; i++ )
+        {
+            template.authenticate( "ou=people,dc=example,dc=com", "(uid=jdoe)", SearchScope.SUBTREE,
+                PASSWORD.toCharArray() );
+        }
+
+        // Only the first authentication has to search the user
+        verify( searchConnection, times( 1 ) ).search( any( SearchRequest.class ) );
+        verify( bindConnection, times( 3 ) ).bind( any( BindRequest.class ) );
+        assertEquals( 2L, cache.getHits() );
+        assertEquals( 1L, cache.getMisses() );
+
+        // A wrong password does not evict the Dn, as the user has not been renamed
+        PasswordException pe = assertThrows( PasswordException.class,
+            () -> template.authenticate( "ou=people,dc=example,dc=com", "(uid=jdoe)", SearchScope.SUBTREE,
+                "wrong".toCharArray() ) );
+
+        assertEquals( ResultCodeEnum.INVALID_CREDENTIALS, pe.getResultCode() );
+        verify( searchConnection, times( 2 ) ).search( any( SearchRequest.class ) );
+        assertEquals( 1, cache.getSize() );
+    }
+
+
+    @Test
+    public void testStaleUserDn() throws Exception
+    {
+        UserDnCache cache = new UserDnCache( 16, 0L );
+        template.setUserDnCache( cache );
+
+        template.authenticate( "ou=people,dc=example,dc=com", "(uid=jdoe)", SearchScope.SUBTREE,
+            PASSWORD.toCharArray() );
+
+        // The user is moved : the cached Dn can't bind anymore
+        String oldDn = userDn;
+        userDn = "uid=jdoe,ou=former,dc=example,dc=com";
+
+        assertNull( template.authenticate( "ou=people,dc=example,dc=com", "(uid=jdoe)", SearchScope.SUBTREE,
+            PASSWORD.toCharArray() ) );
+
+        verify( bindConnection, times( 2 ) ).bind( bindAs( oldDn ) );
+        verify( bindConnection, times( 1 ) ).bind( bindAs( userDn ) );
+        verify( searchConnection, times( 2 ) ).search( any( SearchRequest.class ) );
+
+        // The new Dn is now cached
+        template.authenticate( "ou=people,dc=example,dc=com", "(uid=jdoe)", SearchScope.SUBTREE,
+            PASSWORD.toCharArray() );
+        verify( bindConnection, times( 2 ) ).bind( bindAs( userDn ) );
+        verify( searchConnection, times( 2 ) ).search( any( SearchRequest.class ) );
+    }
+
+
+    @Test
+    public void testUserDnCacheExpiration() throws Exception
+    {
+        UserDnCache cache = new UserDnCache( 1, 60000L );
+        SearchRequest request = new LdapConnectionTemplate( connectionPool ).newSearchRequest(
+            "ou=people,dc=example,dc=com", "(uid=jdoe)", SearchScope.SUBTREE );
+        String key = UserDnCache.keyOf( request );
+
+        cache.put( key, new Dn( userDn ) );
+        assertEquals( new Dn( userDn ), cache.get( key ) );
+
+        // The cache is bounded
+        cache.put( "other", new Dn( userDn ) );
+        assertNull( cache.get( key ) );
+        assertEquals( 1, cache.getSize() );
+
+        // An expired Dn is removed
+        UserDnCache expiring = new UserDnCache( 16, 1L );
+        expiring.put( key, new Dn( userDn ) );
+        Thread.sleep( 10L );
+        assertNull( expiring.get( key ) );
+        assertEquals( 0, expiring.getSize() );
+
+        cache.clear();
+        assertEquals( 0, cache.getSize() );
+        assertEquals( 0L, cache.getHits() );
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.template;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.message.AddRequest;
+import org.apache.directory.api.ldap.model.message.AddResponseImpl;
+import org.apache.directory.api.ldap.model.message.BindRequest;
+import org.apache.directory.api.ldap.model.message.BindResponse;
+import org.apache.directory.api.ldap.model.message.BindResponseImpl;
+import org.apache.directory.api.ldap.model.message.Control;
+import org.apache.directory.api.ldap.model.message.DeleteRequest;
+import org.apache.directory.api.ldap.model.message.DeleteResponseImpl;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchResultEntryImpl;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.message.controls.ProxiedAuthz;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.ldap.client.api.LdapConnection;
+import org.apache.directory.ldap.client.api.LdapConnectionPool;
+import org.apache.directory.ldap.client.api.SearchCursorImpl;
+import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+
+/**
+ * Test the operations run by a LdapConnectionTemplate on behalf of other identities.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class ProxiedAuthzTemplateTest
+{
+    private static final String ENTRY = "cn=staff,ou=groups,dc=example,dc=com";
+    private static final String JDOE = "dn:uid=jdoe,ou=people,dc=example,dc=com";
+
+    private LdapConnection connection;
+    private LdapConnectionTemplate template;
+
+    /** The ProxiedAuthz authzId of the requests received, or null */
+    private List<String> received;
+
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        connection = mock( LdapConnection.class );
+        LdapConnectionPool connectionPool = mock( LdapConnectionPool.class );
+        when( connectionPool.getConnection() ).thenReturn( connection );
+        received = Collections.synchronizedList( new ArrayList<>() );
+
+        when( connection.add( any( AddRequest.class ) ) ).thenAnswer( invocation ->
+        {
+            AddRequest request = ( AddRequest ) invocation.getArguments()[0];
+            received.add( authzId( request.getControl( ProxiedAuthz.OID ) ) );
+
+            return new AddResponseImpl( 1 );
+        } );
+        when( connection.delete( any( DeleteRequest.class ) ) ).thenAnswer( invocation ->
+        {
+            DeleteRequest request = ( DeleteRequest ) invocation.getArguments()[0];
+            received.add( authzId( request.getControl( ProxiedAuthz.OID ) ) );
+
+            return new DeleteResponseImpl( 1 );
+        } );
+        when( connection.search( any( SearchRequest.class ) ) ).thenAnswer( invocation ->
+        {
+            SearchRequest request = ( SearchRequest ) invocation.getArguments()[0];
+            received.add( authzId( request.getControl( ProxiedAuthz.OID ) ) );
+
+            SearchFuture future = new SearchFuture( connection, 1 );
+            SearchResultEntry entry = new SearchResultEntryImpl( 1 );
+            entry.setEntry( new DefaultEntry( ENTRY, "cn: staff" ) );
+            future.set( entry );
+
+            SearchResultDone done = new SearchResultDoneImpl( 1 );
+            done.getLdapResult().setResultCode( ResultCodeEnum.SUCCESS );
+            future.set( done );
+
+            return new SearchCursorImpl( future, 1L, TimeUnit.SECONDS );
+        } );
+        when( connection.lookup( any( Dn.class ), any( Control[].class ) ) ).thenAnswer( invocation ->
+        {
+            Control[] controls = ( Control[] ) invocation.getArguments()[1];
+            received.add( authzId( controls[0] ) );
+
+            return new DefaultEntry( ENTRY, "cn: staff" );
+        } );
+
+        template = new LdapConnectionTemplate( connectionPool );
+    }
+
+
+    private static String authzId( Control control )
+    {
+        return control == null ? null : ( ( ProxiedAuthz ) control ).getAuthzId();
+    }
+
+
+    @Test
+    public void testProxiedTemplatesCache()
+    {
+        LdapConnectionTemplate jdoe = template.proxiedAs( JDOE );
+
+        assertNull( template.getProxiedAuthzId() );
+        assertEquals( JDOE, jdoe.getProxiedAuthzId() );
+        assertSame( jdoe, template.proxiedAs( JDOE ) );
+        assertSame( jdoe, jdoe.proxiedAs( JDOE ) );
+        assertNotSame( jdoe, template.proxiedAs( "u:jsmith" ) );
+
+        // The least recently used template is evicted
+        template.setProxiedTemplatesCacheSize( 1 );
+        jdoe = template.proxiedAs( JDOE );
+        template.proxiedAs( "u:jsmith" );
+
+        assertNotSame( jdoe, template.proxiedAs( JDOE ) );
+    }
+
+
+    @Test
+    public void testProxiedOperations() throws Exception
+    {
+        Dn dn = new Dn( ENTRY );
+        LdapConnectionTemplate jdoe = template.proxiedAs( JDOE );
+
+        jdoe.add( dn );
+        jdoe.delete( dn );
+        jdoe.search( ENTRY, "(cn=*)", SearchScope.OBJECT, entry -> entry );
+        jdoe.lookup( dn, entry -> entry );
+
+        assertEquals( 4, received.size() );
+
+        for ( String authzId : received )
+        {
+            assertEquals( JDOE, authzId );
+        }
+
+        // The same connections are used without the control by the template
+        received.clear();
+        template.add( dn );
+        template.delete( dn );
+        template.search( ENTRY, "(cn=*)", SearchScope.OBJECT, entry -> entry );
+
+        assertEquals( 3, received.size() );
+
+        for ( String authzId : received )
+        {
+            assertNull( authzId );
+        }
+    }
+
+
+    @Test
+    public void testProxiedAuthzControl() throws Exception
+    {
+        template.proxiedAs( new Dn() ).add( new Dn() );
+
+        assertEquals( "dn:", received.get( 0 ) );
+
+        AddRequest request = template.newAddRequest( new DefaultEntry() );
+        template.proxiedAs( "u:jsmith" ).add( request );
+
+        ArgumentCaptor<AddRequest> sent = ArgumentCaptor.forClass( AddRequest.class );
+        verify( connection, times( 2 ) ).add( sent.capture() );
+
+        // The control is attached to a copy of the request
+        assertTrue( sent.getValue().getControl( ProxiedAuthz.OID ).isCritical() );
+        assertNotSame( request, sent.getValue() );
+        assertFalse( request.hasControl( ProxiedAuthz.OID ) );
+    }
+
+
+    @Test
+    public void testRequestReused() throws Exception
+    {
+        SearchRequest request = template.newSearchRequest( ENTRY, "(cn=*)", SearchScope.OBJECT );
+
+        template.proxiedAs( JDOE ).search( request, entry -> entry );
+        template.proxiedAs( "u:jsmith" ).search( request, entry -> entry );
+        template.search( request, entry -> entry );
+
+        assertEquals( Arrays.asList( JDOE, "u:jsmith", null ), received );
+        assertFalse( request.hasControl( ProxiedAuthz.OID ) );
+    }
+
+
+    @Test
+    public void testAuthenticateNotProxied() throws Exception
+    {
+        when( connection.bind( any( BindRequest.class ) ) ).thenAnswer( invocation ->
+        {
+            BindResponse response = new BindResponseImpl( 1 );
+            response.getLdapResult().setResultCode( ResultCodeEnum.SUCCESS );
+
+            return response;
+        } );
+
+        template.proxiedAs( JDOE ).authenticate( ENTRY, "(cn=staff)", SearchScope.OBJECT, "secret".toCharArray() );
+
+        // The user Dn has been searched without the control
+        assertEquals( 1, received.size() );
+        assertNull( received.get( 0 ) );
+    }
+}
@@ -0,0 +1,363 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.template;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.ldap.codec.api.LdapApiService;
+import org.apache.directory.api.ldap.codec.api.LdapApiServiceFactory;
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchResultEntryImpl;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.message.controls.AbstractControl;
+import org.apache.directory.api.ldap.model.message.controls.ManageDsaITImpl;
+import org.apache.directory.api.ldap.model.message.controls.OpaqueControl;
+import org.apache.directory.api.ldap.model.message.controls.ProxiedAuthz;
+import org.apache.directory.api.ldap.model.message.controls.ProxiedAuthzImpl;
+import org.apache.directory.api.ldap.model.message.controls.SubentriesImpl;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.util.Strings;
+import org.apache.directory.ldap.client.api.LdapConnection;
+import org.apache.directory.ldap.client.api.LdapConnectionPool;
+import org.apache.directory.ldap.client.api.SearchCursorImpl;
+import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.apache.directory.ldap.client.template.exception.LdapRuntimeException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the coalescing of the identical reads done by a LdapConnectionTemplate.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class SearchCoalescerTest
+{
+    private static final int THREADS = 16;
+    private static final String GROUP = "cn=staff,ou=groups,dc=example,dc=com";
+
+    private LdapConnection connection;
+    private LdapConnectionTemplate template;
+    private SearchCoalescer coalescer;
+    private ExecutorService executor;
+
+    /** Released to let the server answer */
+    private CountDownLatch answer;
+
+    /** Tells the server to fail */
+    private volatile boolean fail;
+
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        connection = mock( LdapConnection.class );
+        LdapConnectionPool connectionPool = mock( LdapConnectionPool.class );
+        when( connectionPool.getConnection() ).thenReturn( connection );
+        when( connectionPool.getLdapApiService() ).thenReturn( LdapApiServiceFactory.getSingleton() );
+
+        when( connection.search( any( SearchRequest.class ) ) ).thenAnswer( invocation ->
+        {
+            answer.await( 10L, TimeUnit.SECONDS );
+
+            if ( fail )
+            {
+                throw new LdapException( "server failure" );
+            }
+
+            SearchFuture future = new SearchFuture( connection, 1 );
+            SearchResultEntry entry = new SearchResultEntryImpl( 1 );
+            entry.setEntry( new DefaultEntry( GROUP, "objectClass: groupOfNames", "cn: staff",
+                "member: uid=jdoe,ou=people,dc=example,dc=com" ) );
+            future.set( entry );
+
+            SearchResultDone done = new SearchResultDoneImpl( 1 );
+            done.getLdapResult().setResultCode( ResultCodeEnum.SUCCESS );
+            future.set( done );
+
+            return new SearchCursorImpl( future, 1L, TimeUnit.SECONDS );
+        } );
+        when( connection.lookup( any( Dn.class ) ) ).thenAnswer( invocation ->
+        {
+            answer.await( 10L, TimeUnit.SECONDS );
+
+            return new DefaultEntry( GROUP, "objectClass: groupOfNames", "cn: staff" );
+        } );
+
+        answer = new CountDownLatch( 1 );
+        coalescer = new SearchCoalescer();
+        template = new LdapConnectionTemplate( connectionPool );
+        template.setSearchCoalescer( coalescer );
+        executor = Executors.newFixedThreadPool( THREADS );
+    }
+
+
+    @AfterEach
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+
+    /**
+     * Wait until all the threads but the one doing the read are waiting for it
+     */
+    private void waitForFollowers() throws Exception
+    {
+        long end = System.currentTimeMillis() + 10000L;
+
+        while ( ( coalescer.getCoalesced() < THREADS - 1 ) && ( System.currentTimeMillis() < end ) )
+        {
+            Thread.sleep( 10L );
+        }
+
+        answer.countDown();
+    }
+
+
+    @Test
+    public void testConcurrentSearches() throws Exception
+    {
+        List<Future<List<Entry>>> results = new ArrayList<>();
+
+        for ( int i = 0; i < THREADS; i++ )
+        {
+            results.add( executor.submit( () -> template.search( "ou=groups,dc=example,dc=com", "(cn=staff)",
+                SearchScope.SUBTREE, entry -> entry ) ) );
+        }
+
+        waitForFollowers();
+
+        Entry first = null;
+
+        for ( Future<List<Entry>> result : results )
+        {
+            List<Entry> entries = result.get( 10L, TimeUnit.SECONDS );
+            assertEquals( 1, entries.size() );
+            assertEquals( GROUP, entries.get( 0 ).getDn().getName() );
+
+            // Each thread has its own copy
+            if ( first != null )
+            {
+                assertNotSame( first, entries.get( 0 ) );
+            }
+
+            first = entries.get( 0 );
+        }
+
+        verify( connection, times( 1 ) ).search( any( SearchRequest.class ) );
+        assertEquals( THREADS - 1, coalescer.getCoalesced() );
+        assertEquals( 0, coalescer.getInFlight() );
+
+        // Once done, the next search is sent to the server
+        template.search( "ou=groups,dc=example,dc=com", "(cn=staff)", SearchScope.SUBTREE, entry -> entry );
+        verify( connection, times( 2 ) ).search( any( SearchRequest.class ) );
+    }
+
+
+    @Test
+    public void testConcurrentLookups() throws Exception
+    {
+        List<Future<Entry>> results = new ArrayList<>();
+
+        for ( int i = 0; i < THREADS; i++ )
+        {
+            results.add( executor.submit( () -> template.lookup( new Dn( GROUP ), entry -> entry ) ) );
+        }
+
+        waitForFollowers();
+
+        for ( Future<Entry> result : results )
+        {
+            assertEquals( "staff", result.get( 10L, TimeUnit.SECONDS ).get( "cn" ).getString() );
+        }
+
+        verify( connection, times( 1 ) ).lookup( any( Dn.class ) );
+    }
+
+
+    @Test
+    public void testFailureIsShared() throws Exception
+    {
+        fail = true;
+        List<Future<List<Entry>>> results = new ArrayList<>();
+
+        for ( int i = 0; i < THREADS; i++ )
+        {
+            results.add( executor.submit( () -> template.search( "ou=groups,dc=example,dc=com", "(cn=staff)",
+                SearchScope.SUBTREE, entry -> entry ) ) );
+        }
+
+        waitForFollowers();
+
+        for ( Future<List<Entry>> result : results )
+        {
+            try
+            {
+                result.get( 10L, TimeUnit.SECONDS );
+            }
+            catch ( Exception e )
+            {
+                assertTrue( e.getCause() instanceof LdapRuntimeException );
+            }
+        }
+
+        verify( connection, times( 1 ) ).search( any( SearchRequest.class ) );
+        assertEquals( 0, coalescer.getInFlight() );
+    }
+
+
+    @Test
+    public void testErrorIsShared() throws Exception
+    {
+        SearchCoalescer.Search search = () ->
+        {
+            try
+            {
+                answer.await( 10L, TimeUnit.SECONDS );
+            }
+            catch ( InterruptedException ie )
+            {
+                Thread.currentThread().interrupt();
+            }
+
+            throw new StackOverflowError();
+        };
+
+        List<Future<List<Entry>>> results = new ArrayList<>();
+
+        for ( int i = 0; i < THREADS; i++ )
+        {
+            results.add( executor.submit( () -> coalescer.execute( "key", search ) ) );
+        }
+
+        waitForFollowers();
+
+        // The leader and all the followers see the Error
+        for ( Future<List<Entry>> result : results )
+        {
+            try
+            {
+                result.get( 10L, TimeUnit.SECONDS );
+            }
+            catch ( Exception e )
+            {
+                assertTrue( e.getCause() instanceof StackOverflowError );
+            }
+        }
+
+        assertEquals( 0, coalescer.getInFlight() );
+    }
+
+
+    @Test
+    public void testKeys() throws Exception
+    {
+        LdapApiService codec = LdapApiServiceFactory.getSingleton();
+        SearchRequest request = template.newSearchRequest( "ou=groups,dc=example,dc=com", "(cn=staff)",
+            SearchScope.SUBTREE, "cn", "member" );
+        String key = SearchCoalescer.keyOf( codec, request );
+
+        assertEquals( key, SearchCoalescer.keyOf( codec, template.newSearchRequest( "ou=groups,dc=example,dc=com",
+            "(cn=staff)", SearchScope.SUBTREE, "CN", "member" ) ) );
+        assertNotEquals( key, SearchCoalescer.keyOf( codec, template.newSearchRequest( "ou=groups,dc=example,dc=com",
+            "(cn=staff)", SearchScope.ONELEVEL, "cn", "member" ) ) );
+        assertNotEquals( key, SearchCoalescer.keyOf( codec, template.newSearchRequest( "ou=groups,dc=example,dc=com",
+            "(cn=staff)", SearchScope.SUBTREE, "cn" ) ) );
+
+        // The controls and their values are part of the key
+        request.addControl( new ManageDsaITImpl() );
+        String withControl = SearchCoalescer.keyOf( codec, request );
+        assertNotEquals( key, withControl );
+
+        SubentriesImpl subentries = new SubentriesImpl();
+        subentries.setVisibility( true );
+        request.addControl( subentries );
+        String visible = SearchCoalescer.keyOf( codec, request );
+        subentries.setVisibility( false );
+        assertNotEquals( visible, SearchCoalescer.keyOf( codec, request ) );
+
+        assertNotEquals( SearchCoalescer.keyOf( new Dn( GROUP ), null ),
+            SearchCoalescer.keyOf( new Dn( GROUP ), new String[] { "cn" } ) );
+    }
+
+
+    @Test
+    public void testControlValuesInKeys() throws Exception
+    {
+        LdapApiService codec = LdapApiServiceFactory.getSingleton();
+
+        // Controls whose toString() does not show the value
+        SearchRequest first = template.newSearchRequest( GROUP, "(cn=staff)", SearchScope.OBJECT );
+        OpaqueControl firstControl = new OpaqueControl( "1.2.3.4" );
+        firstControl.setEncodedValue( Strings.getBytesUtf8( "first" ) );
+        first.addControl( firstControl );
+        SearchRequest second = template.newSearchRequest( GROUP, "(cn=staff)", SearchScope.OBJECT );
+        OpaqueControl secondControl = new OpaqueControl( "1.2.3.4" );
+        secondControl.setEncodedValue( Strings.getBytesUtf8( "second" ) );
+        second.addControl( secondControl );
+
+        assertNotEquals( SearchCoalescer.keyOf( codec, first ), SearchCoalescer.keyOf( codec, second ) );
+
+        ProxiedAuthz jdoe = new ProxiedAuthzImpl();
+        jdoe.setAuthzId( "dn:uid=jdoe,ou=people,dc=example,dc=com" );
+        ProxiedAuthz admin = new ProxiedAuthzImpl();
+        admin.setAuthzId( "dn:uid=admin,ou=people,dc=example,dc=com" );
+        first = template.newSearchRequest( GROUP, "(cn=staff)", SearchScope.OBJECT );
+        first.addControl( jdoe );
+        second = template.newSearchRequest( GROUP, "(cn=staff)", SearchScope.OBJECT );
+        second.addControl( admin );
+
+        assertNotEquals( SearchCoalescer.keyOf( codec, first ), SearchCoalescer.keyOf( codec, second ) );
+
+        // A control the codec can't encode prevents the coalescing
+        first.addControl( new AbstractControl( "1.2.3.5" )
+        {
+        } );
+
+        assertNull( SearchCoalescer.keyOf( codec, first ) );
+    }
+}
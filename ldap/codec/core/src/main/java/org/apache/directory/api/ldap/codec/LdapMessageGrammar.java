@@ -31,7 +31,6 @@ import org.apache.directory.api.asn1.actions.CheckNotNullLength;
 import org.apache.directory.api.asn1.ber.grammar.AbstractGrammar;
 import org.apache.directory.api.asn1.ber.grammar.Grammar;
 import org.apache.directory.api.asn1.ber.grammar.GrammarTransition;
-import org.apache.directory.api.ldap.codec.actions.AllowGrammarEnd;
 import org.apache.directory.api.ldap.codec.actions.CheckLengthNotNull;
 import org.apache.directory.api.ldap.codec.actions.controls.StoreControlName;
 import org.apache.directory.api.ldap.codec.actions.controls.InitControls;
@@ -120,8 +119,10 @@ import org.apache.directory.api.ldap.codec.actions.response.modify.InitModifyRes
 import org.apache.directory.api.ldap.codec.actions.response.modifydn.InitModifyDnResponse;
 import org.apache.directory.api.ldap.codec.actions.response.search.done.InitSearchResultDone;
 import org.apache.directory.api.ldap.codec.actions.response.search.entry.AddAttributeType;
+import org.apache.directory.api.ldap.codec.actions.response.search.entry.InitSearchResultAttributeValues;
 import org.apache.directory.api.ldap.codec.actions.response.search.entry.InitSearchResultEntry;
 import org.apache.directory.api.ldap.codec.actions.response.search.entry.StoreSearchResultAttributeValue;
+import org.apache.directory.api.ldap.codec.actions.response.search.entry.StoreSearchResultEntryAttributes;
 import org.apache.directory.api.ldap.codec.actions.response.search.entry.StoreSearchResultEntryObjectName;
 import org.apache.directory.api.ldap.codec.actions.response.search.reference.InitSearchResultReference;
 import org.apache.directory.api.ldap.codec.actions.response.search.reference.StoreReference;
@@ -790,13 +791,14 @@ public final class LdapMessageGrammar extends
         // PartialAttributeList ::= *SEQUENCE* OF SEQUENCE {
         // ...
         //
-        // We may have no attributes. Just allows the grammar to end
+        // We may have no attributes. Just allows the grammar to end, or store the
+        // gathered attributes if the entries are decoded lazily
         super.transitions[LdapStatesEnum.OBJECT_NAME_STATE.ordinal()][SEQUENCE.getValue()] =
             new GrammarTransition(
                 LdapStatesEnum.OBJECT_NAME_STATE,
                 LdapStatesEnum.ATTRIBUTES_SR_STATE,
                 SEQUENCE,
-                new AllowGrammarEnd() );
+                new StoreSearchResultEntryAttributes() );
 
         // --------------------------------------------------------------------------------------------
         // Transition from AttributesSR to PartialAttributesList
@@ -861,13 +863,14 @@ public final class LdapMessageGrammar extends
         //     ...
         //     vals SET OF AttributeValue }
         //
-        // We may have no value. Just allows the grammar to end
+        // We may have no value. Just allows the grammar to end, and drop the values
+        // if the attribute has been skipped
         super.transitions[LdapStatesEnum.TYPE_SR_STATE.ordinal()][SET.getValue()] =
             new GrammarTransition(
                 LdapStatesEnum.TYPE_SR_STATE,
                 LdapStatesEnum.VALS_SR_STATE,
                 SET,
-                new AllowGrammarEnd() );
+                new InitSearchResultAttributeValues() );
 
         // --------------------------------------------------------------------------------------------
         // Transition from ValsSR to AttributeValueSR
@@ -61,6 +61,9 @@ public class InitSearchResultDone extends GrammarAction<LdapMessageContainer<Sea
         SearchResultDone searchResultDone = new SearchResultDoneImpl( container.getMessageId() );
         container.setMessage( searchResultDone );
 
+        // The search is done, its AttributeProjection is not needed anymore
+        container.removeAttributeProjection( container.getMessageId() );
+
         if ( LOG.isDebugEnabled() )
         {
             LOG.debug( I18n.msg( I18n.MSG_05178_SEARCH_RESULT_DONE ) );
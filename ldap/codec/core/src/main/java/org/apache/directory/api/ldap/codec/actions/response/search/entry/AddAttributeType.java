@@ -24,6 +24,7 @@ import org.apache.directory.api.asn1.DecoderException;
 import org.apache.directory.api.asn1.ber.grammar.GrammarAction;
 import org.apache.directory.api.asn1.ber.tlv.TLV;
 import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.codec.api.AttributeProjection;
 import org.apache.directory.api.ldap.codec.api.LdapMessageContainer;
 import org.apache.directory.api.ldap.model.entry.Attribute;
 import org.apache.directory.api.ldap.model.entry.DefaultAttribute;
@@ -80,6 +81,23 @@ public class AddAttributeType extends GrammarAction<LdapMessageContainer<SearchR
         }
         else
         {
+            AttributeProjection projection = container.getCurrentAttributeProjection();
+
+            if ( ( projection != null ) && !projection.isAccepted( Strings.utf8ToString( tlv.getValue().getData() ) ) )
+            {
+                // This attribute is not wanted : its values will be skipped without being read
+                container.setCurrentAttribute( null );
+                container.setSkipping( true );
+
+                if ( LOG.isDebugEnabled() )
+                {
+                    LOG.debug( I18n.msg( I18n.MSG_05186_SKIPPED_ATTRIBUTE_TYPE, 
+                        Strings.utf8ToString( tlv.getValue().getData() ) ) );
+                }
+
+                return;
+            }
+
             try
             {
                 Attribute attribute = new DefaultAttribute( tlv.getValue().getData() );
@@ -0,0 +1,64 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.codec.actions.response.search.entry;
+
+
+import org.apache.directory.api.asn1.ber.grammar.GrammarAction;
+import org.apache.directory.api.ldap.codec.api.LdapMessageContainer;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+
+
+/**
+ * The action used when the values of an attribute are found. If the attribute has
+ * been rejected by the search AttributeProjection, the values have been skipped by
+ * the decoder, without being read.
+ * <pre>
+ * PartialAttributeList ::= SEQUENCE OF SEQUENCE {
+ *     ...
+ *     vals SET OF AttributeValue }
+ * </pre>
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class InitSearchResultAttributeValues extends GrammarAction<LdapMessageContainer<SearchResultEntry>>
+{
+    /**
+     * Instantiates a new action.
+     */
+    public InitSearchResultAttributeValues()
+    {
+        super( "Init the attribute values" );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void action( LdapMessageContainer<SearchResultEntry> container )
+    {
+        if ( container.isSkipping() )
+        {
+            // The attribute has been rejected, its values have been skipped
+            container.setSkipping( false );
+        }
+
+        // We may have no value. Just allows the grammar to end
+        container.setGrammarEndAllowed( true );
+    }
+}
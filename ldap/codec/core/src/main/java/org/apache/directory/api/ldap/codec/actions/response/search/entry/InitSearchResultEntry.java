@@ -53,5 +53,8 @@ public class InitSearchResultEntry extends GrammarAction<LdapMessageContainer<Se
         // Now, we can allocate the SearchResultEntry Object
         SearchResultEntry searchResultEntry = new SearchResultEntryImpl( container.getMessageId() );
         container.setMessage( searchResultEntry );
+
+        // The attributes to decode, if the search has an AttributeProjection
+        container.setCurrentAttributeProjection( container.getAttributeProjection( container.getMessageId() ) );
     }
 }
@@ -95,5 +95,11 @@ public class StoreSearchResultEntryObjectName extends GrammarAction<LdapMessageC
         {
             LOG.debug( I18n.msg( I18n.MSG_05182_SEARCH_RESULT_ENTRY_DN, searchResultEntry.getObjectName() ) );
         }
+
+        // When the entries are decoded lazily, the attributes are gathered as a whole
+        if ( container.isLazyEntries() )
+        {
+            container.setGathering( true );
+        }
     }
 }
@@ -0,0 +1,186 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.codec.api;
+
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.util.Strings;
+
+
+/**
+ * A list of attributes to keep, or to drop, when decoding the SearchResultEntries
+ * of a search. The attributes that are not accepted are skipped by the decoder,
+ * their values are never decoded.
+ * <p>
+ * The attributes are compared using their lower cased ID, without their options : an
+ * AttributeProjection accepting <em>cn</em> also accepts <em>cn;lang-fr</em>. The
+ * names and the OIDs are not resolved, so the IDs must be the ones returned by the
+ * server.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class AttributeProjection
+{
+    /** The attribute IDs */
+    private final Set<String> ids;
+
+    /** Tells if the IDs are the accepted ones, or the rejected ones */
+    private final boolean allowList;
+
+
+    /**
+     * Creates a new AttributeProjection
+     *
+     * @param allowList <code>true</code> if the IDs are the accepted ones
+     * @param ids The attribute IDs
+     */
+    private AttributeProjection( boolean allowList, String... ids )
+    {
+        this.allowList = allowList;
+        Set<String> normalized = new HashSet<>();
+
+        if ( ids != null )
+        {
+            for ( String id : ids )
+            {
+                if ( !Strings.isEmpty( id ) )
+                {
+                    normalized.add( getBaseId( id ) );
+                }
+            }
+        }
+
+        this.ids = Collections.unmodifiableSet( normalized );
+    }
+
+
+    /**
+     * Creates an AttributeProjection which only accepts the given attributes
+     *
+     * @param ids The accepted attribute IDs
+     * @return A new AttributeProjection
+     */
+    public static AttributeProjection allow( String... ids )
+    {
+        return new AttributeProjection( true, ids );
+    }
+
+
+    /**
+     * Creates an AttributeProjection which accepts all the attributes but the given ones
+     *
+     * @param ids The rejected attribute IDs
+     * @return A new AttributeProjection
+     */
+    public static AttributeProjection deny( String... ids )
+    {
+        return new AttributeProjection( false, ids );
+    }
+
+
+    /**
+     * Creates an AttributeProjection accepting the attributes requested by a search. When
+     * all the user or all the operational attributes are requested, nothing can be dropped,
+     * and no AttributeProjection is created.
+     *
+     * @param attributes The requested attributes
+     * @return A new AttributeProjection, or <code>null</code> if all the attributes are accepted
+     */
+    public static AttributeProjection fromRequestedAttributes( String... attributes )
+    {
+        if ( ( attributes == null ) || ( attributes.length == 0 ) )
+        {
+            return null;
+        }
+
+        for ( String attribute : attributes )
+        {
+            if ( SchemaConstants.ALL_USER_ATTRIBUTES.equals( attribute )
+                || SchemaConstants.ALL_OPERATIONAL_ATTRIBUTES.equals( attribute ) )
+            {
+                return null;
+            }
+        }
+
+        return new AttributeProjection( true, attributes );
+    }
+
+
+    /**
+     * Get the lower cased attribute ID, without its options
+     */
+    private static String getBaseId( String id )
+    {
+        String lowerId = Strings.trim( Strings.toLowerCaseAscii( id ) );
+        int pos = lowerId.indexOf( ';' );
+
+        return pos < 0 ? lowerId : lowerId.substring( 0, pos );
+    }
+
+
+    /**
+     * Tells if an attribute has to be decoded
+     *
+     * @param id The attribute ID, as returned by the server
+     * @return <code>true</code> if the attribute is accepted
+     */
+    public boolean isAccepted( String id )
+    {
+        if ( id == null )
+        {
+            return !allowList;
+        }
+
+        return ids.contains( getBaseId( id ) ) == allowList;
+    }
+
+
+    /**
+     * @return <code>true</code> if the IDs are the accepted ones, <code>false</code> if they
+     * are the rejected ones
+     */
+    public boolean isAllowList()
+    {
+        return allowList;
+    }
+
+
+    /**
+     * @return The normalized attribute IDs
+     */
+    public Set<String> getIds()
+    {
+        return ids;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return ( allowList ? "Allow " : "Deny " ) + ids;
+    }
+}
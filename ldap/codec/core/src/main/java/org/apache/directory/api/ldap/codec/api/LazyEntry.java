@@ -0,0 +1,1243 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.codec.api;
+
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.directory.api.asn1.DecoderException;
+import org.apache.directory.api.asn1.ber.tlv.UniversalTag;
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.entry.Attribute;
+import org.apache.directory.api.ldap.model.entry.DefaultAttribute;
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.entry.Value;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.schema.AttributeType;
+import org.apache.directory.api.util.Strings;
+
+
+/**
+ * An Entry decoded from a SearchResultEntry, which keeps the encoded PartialAttributeList
+ * and only decodes an attribute the first time it is accessed. When the entry is created,
+ * the BER structure is checked and an index of the attributes is built, but no value is
+ * decoded.
+ * <p>
+ * The methods using an attribute ID only decode the requested attribute. The methods
+ * using an AttributeType, and the methods working on the whole entry (iterator, clone,
+ * equals, serialization...) decode all the remaining attributes.
+ * <p>
+ * As long as no attribute has been decoded and the entry has not been modified, the
+ * encoded attributes can be reused as is by the encoder, so that an entry can be
+ * forwarded without being decoded. This class is not thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LazyEntry implements Entry
+{
+    /** The SEQUENCE tag */
+    private static final byte SEQUENCE_TAG = UniversalTag.SEQUENCE.getValue();
+
+    /** The SET tag */
+    private static final byte SET_TAG = UniversalTag.SET.getValue();
+
+    /** The OCTET STRING tag */
+    private static final byte OCTET_STRING_TAG = UniversalTag.OCTET_STRING.getValue();
+
+    /** The decoded part of the entry */
+    private DefaultEntry entry;
+
+    /** The encoded PartialAttributeList, without its SEQUENCE header */
+    private byte[] rawAttributes;
+
+    /** The attributes not yet decoded, indexed by their normalized ID */
+    private final Map<String, PendingAttribute> pendingAttributes = new LinkedHashMap<>();
+
+    /** The detector used to know if a value is binary */
+    private BinaryAttributeDetector binaryAttributeDetector;
+
+    /** Tells if the encoded attributes still represent the entry content */
+    private boolean unchanged;
+
+    /**
+     * An attribute which has not been decoded yet
+     */
+    private static final class PendingAttribute
+    {
+        /** The user provided attribute ID */
+        private final String upId;
+
+        /** The position of the first value in the encoded attributes */
+        private final int valuesStart;
+
+        /** The position following the last value in the encoded attributes */
+        private final int valuesEnd;
+
+
+        /**
+         * Creates a new PendingAttribute
+         *
+         * @param upId The user provided attribute ID
+         * @param valuesStart The position of the first value
+         * @param valuesEnd The position following the last value
+         */
+        private PendingAttribute( String upId, int valuesStart, int valuesEnd )
+        {
+            this.upId = upId;
+            this.valuesStart = valuesStart;
+            this.valuesEnd = valuesEnd;
+        }
+    }
+
+    /**
+     * A minimal BER reader, used to walk the encoded attributes
+     */
+    private static final class BerReader
+    {
+        /** The encoded bytes */
+        private final byte[] bytes;
+
+        /** The current position */
+        private int pos;
+
+
+        /**
+         * Creates a new BerReader
+         *
+         * @param bytes The bytes to read
+         * @param pos The starting position
+         */
+        private BerReader( byte[] bytes, int pos )
+        {
+            this.bytes = bytes;
+            this.pos = pos;
+        }
+
+
+        /**
+         * Reads the tag and the length of a TLV, and moves the position to the
+         * beginning of its value.
+         *
+         * @param tag The expected tag
+         * @param limit The position that can't be exceeded by the TLV
+         * @return The position following the TLV value
+         * @throws DecoderException If the TLV is not valid
+         */
+        private int readTlv( byte tag, int limit ) throws DecoderException
+        {
+            if ( ( pos >= limit ) || ( bytes[pos] != tag ) )
+            {
+                throw new DecoderException( I18n.err( I18n.ERR_05160_INVALID_PARTIAL_ATTRIBUTE_LIST, pos ) );
+            }
+
+            pos++;
+
+            if ( pos >= limit )
+            {
+                throw new DecoderException( I18n.err( I18n.ERR_05160_INVALID_PARTIAL_ATTRIBUTE_LIST, pos ) );
+            }
+
+            int length = bytes[pos++] & 0x00FF;
+
+            if ( length > 0x7F )
+            {
+                int nbBytes = length & 0x7F;
+
+                if ( ( nbBytes == 0 ) || ( nbBytes > 4 ) || ( pos + nbBytes > limit ) )
+                {
+                    throw new DecoderException( I18n.err( I18n.ERR_05160_INVALID_PARTIAL_ATTRIBUTE_LIST, pos ) );
+                }
+
+                length = 0;
+
+                for ( int i = 0; i < nbBytes; i++ )
+                {
+                    length = ( length << 8 ) | ( bytes[pos++] & 0x00FF );
+                }
+            }
+
+            if ( ( length < 0 ) || ( length > limit - pos ) )
+            {
+                throw new DecoderException( I18n.err( I18n.ERR_05160_INVALID_PARTIAL_ATTRIBUTE_LIST, pos ) );
+            }
+
+            return pos + length;
+        }
+    }
+
+
+    /**
+     * Creates a new, empty, LazyEntry. This constructor is used by the deserialization.
+     */
+    public LazyEntry()
+    {
+        entry = new DefaultEntry();
+    }
+
+
+    /**
+     * Creates a new LazyEntry.
+     *
+     * @param dn The entry Dn
+     * @param rawAttributes The encoded PartialAttributeList, without its SEQUENCE header.
+     * May be null if the entry has no attribute.
+     * @param binaryAttributeDetector The detector used to know if an attribute is binary
+     * @throws DecoderException If the encoded attributes are not valid
+     */
+    public LazyEntry( Dn dn, byte[] rawAttributes, BinaryAttributeDetector binaryAttributeDetector )
+        throws DecoderException
+    {
+        this( dn, rawAttributes, binaryAttributeDetector, null );
+    }
+
+
+    /**
+     * Creates a new LazyEntry, keeping only the attributes accepted by an AttributeProjection.
+     * If some attributes are dropped, the encoded attributes can't be reused by the encoder.
+     *
+     * @param dn The entry Dn
+     * @param rawAttributes The encoded PartialAttributeList, without its SEQUENCE header.
+     * May be null if the entry has no attribute.
+     * @param binaryAttributeDetector The detector used to know if an attribute is binary
+     * @param projection The AttributeProjection to apply, if any
+     * @throws DecoderException If the encoded attributes are not valid
+     */
+    public LazyEntry( Dn dn, byte[] rawAttributes, BinaryAttributeDetector binaryAttributeDetector,
+        AttributeProjection projection ) throws DecoderException
+    {
+        entry = new DefaultEntry( dn );
+        this.rawAttributes = rawAttributes == null ? Strings.EMPTY_BYTES : rawAttributes;
+
+        if ( binaryAttributeDetector == null )
+        {
+            this.binaryAttributeDetector = new DefaultConfigurableBinaryAttributeDetector();
+        }
+        else
+        {
+            this.binaryAttributeDetector = binaryAttributeDetector;
+        }
+
+        unchanged = index( projection );
+    }
+
+
+    /**
+     * Check the encoded attributes, and store the position of each attribute values.
+     * <pre>
+     * PartialAttributeList ::= SEQUENCE OF partialAttribute PartialAttribute
+     *
+     * PartialAttribute ::= SEQUENCE {
+     *     type  AttributeDescription,
+     *     vals  SET OF value AttributeValue }
+     * </pre>
+     *
+     * @return <code>true</code> if all the attributes have been kept
+     */
+    private boolean index( AttributeProjection projection ) throws DecoderException
+    {
+        BerReader reader = new BerReader( rawAttributes, 0 );
+        int end = rawAttributes.length;
+        boolean complete = true;
+
+        while ( reader.pos < end )
+        {
+            int attributeEnd = reader.readTlv( SEQUENCE_TAG, end );
+
+            // The type, which can't be empty
+            int typeEnd = reader.readTlv( OCTET_STRING_TAG, attributeEnd );
+            int typeStart = reader.pos;
+
+            if ( typeEnd == typeStart )
+            {
+                throw new DecoderException( I18n.err( I18n.ERR_05147_NULL_ATTRIBUTE_TYPE ) );
+            }
+
+            String upId = Strings.utf8ToString( rawAttributes, typeStart, typeEnd - typeStart );
+            reader.pos = typeEnd;
+
+            // The values
+            int valuesEnd = reader.readTlv( SET_TAG, attributeEnd );
+            int valuesStart = reader.pos;
+
+            if ( valuesEnd != attributeEnd )
+            {
+                throw new DecoderException( I18n.err( I18n.ERR_05160_INVALID_PARTIAL_ATTRIBUTE_LIST, valuesEnd ) );
+            }
+
+            while ( reader.pos < valuesEnd )
+            {
+                reader.pos = reader.readTlv( OCTET_STRING_TAG, valuesEnd );
+            }
+
+            if ( ( projection != null ) && !projection.isAccepted( upId ) )
+            {
+                complete = false;
+            }
+            else
+            {
+                // As for the decoder, an attribute present twice replaces the first one
+                pendingAttributes.put( getId( upId ), new PendingAttribute( upId, valuesStart, valuesEnd ) );
+            }
+        }
+
+        return complete;
+    }
+
+
+    /**
+     * Normalize an attribute ID the way the DefaultEntry does
+     */
+    private static String getId( String upId )
+    {
+        return Strings.trim( Strings.toLowerCaseAscii( upId ) );
+    }
+
+
+    /**
+     * Decode a pending attribute, and store it into the entry
+     */
+    private void decode( PendingAttribute pendingAttribute )
+    {
+        Attribute attribute = new DefaultAttribute( pendingAttribute.upId );
+        boolean isBinary = binaryAttributeDetector.isBinary( attribute.getId() );
+        BerReader reader = new BerReader( rawAttributes, pendingAttribute.valuesStart );
+
+        try
+        {
+            while ( reader.pos < pendingAttribute.valuesEnd )
+            {
+                int valueEnd = reader.readTlv( OCTET_STRING_TAG, pendingAttribute.valuesEnd );
+
+                if ( valueEnd == reader.pos )
+                {
+                    attribute.add( "" );
+                }
+                else if ( isBinary )
+                {
+                    attribute.add( Arrays.copyOfRange( rawAttributes, reader.pos, valueEnd ) );
+                }
+                else
+                {
+                    attribute.add( Strings.utf8ToString( rawAttributes, reader.pos, valueEnd - reader.pos ) );
+                }
+
+                reader.pos = valueEnd;
+            }
+
+            entry.put( attribute );
+        }
+        catch ( DecoderException | LdapException e )
+        {
+            // Just swallow the exception, it can't occur here : the values have
+            // been checked when the entry was created, and the entry is not schema aware
+        }
+    }
+
+
+    /**
+     * Decode the attribute with the given ID, if it has not already been decoded
+     *
+     * @param upId The attribute ID
+     */
+    private void decode( String upId )
+    {
+        if ( ( upId == null ) || pendingAttributes.isEmpty() )
+        {
+            return;
+        }
+
+        PendingAttribute pendingAttribute = pendingAttributes.remove( getId( upId ) );
+
+        if ( pendingAttribute != null )
+        {
+            unchanged = false;
+            decode( pendingAttribute );
+        }
+    }
+
+
+    /**
+     * Decode the attributes of the given IDs
+     *
+     * @param upIds The attribute IDs
+     */
+    private void decode( String... upIds )
+    {
+        if ( upIds != null )
+        {
+            for ( String upId : upIds )
+            {
+                decode( upId );
+            }
+        }
+    }
+
+
+    /**
+     * Decode the given attributes, if they have not already been decoded
+     *
+     * @param attributes The attributes
+     */
+    private void decode( Attribute... attributes )
+    {
+        if ( attributes != null )
+        {
+            for ( Attribute attribute : attributes )
+            {
+                if ( attribute != null )
+                {
+                    decode( attribute.getUpId() );
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Decode all the remaining attributes
+     */
+    private void decodeAll()
+    {
+        if ( pendingAttributes.isEmpty() )
+        {
+            return;
+        }
+
+        unchanged = false;
+
+        for ( PendingAttribute pendingAttribute : pendingAttributes.values() )
+        {
+            decode( pendingAttribute );
+        }
+
+        pendingAttributes.clear();
+    }
+
+
+    /**
+     * Drop the attributes that will be replaced, and invalidate the encoded attributes
+     *
+     * @param upIds The replaced attribute IDs
+     */
+    private void replace( String... upIds )
+    {
+        unchanged = false;
+
+        if ( upIds != null )
+        {
+            for ( String upId : upIds )
+            {
+                if ( upId != null )
+                {
+                    pendingAttributes.remove( getId( upId ) );
+                }
+            }
+        }
+    }
+
+
+    /**
+     * @return The number of attributes that have not been decoded yet
+     */
+    public int getPendingAttributesCount()
+    {
+        return pendingAttributes.size();
+    }
+
+
+    /**
+     * Tells if the encoded attributes can be reused to encode this entry. This is the
+     * case when no attribute has been decoded, and the entry has not been modified.
+     *
+     * @return <code>true</code> if the entry can be encoded using its raw attributes
+     */
+    public boolean isUnchanged()
+    {
+        return unchanged;
+    }
+
+
+    /**
+     * @return The encoded PartialAttributeList, without its SEQUENCE header, or
+     * <code>null</code> if the entry has been decoded or modified
+     */
+    public byte[] getRawAttributes()
+    {
+        return unchanged ? rawAttributes : null;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear()
+    {
+        unchanged = false;
+        pendingAttributes.clear();
+        entry.clear();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     *
+     * The clone is a fully decoded {@link DefaultEntry}.
+     */
+    @Override
+    public Entry clone()
+    {
+        decodeAll();
+
+        return entry.clone();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     *
+     * The clone is a fully decoded {@link DefaultEntry}.
+     */
+    @Override
+    public Entry shallowClone()
+    {
+        decodeAll();
+
+        return entry.shallowClone();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Dn getDn()
+    {
+        return entry.getDn();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasObjectClass( String... objectClasses )
+    {
+        decode( SchemaConstants.OBJECT_CLASS_AT );
+
+        return entry.hasObjectClass( objectClasses );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasObjectClass( Attribute... objectClasses )
+    {
+        decode( SchemaConstants.OBJECT_CLASS_AT );
+
+        return entry.hasObjectClass( objectClasses );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Attribute get( String alias )
+    {
+        decode( alias );
+
+        return entry.get( alias );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Attribute get( AttributeType attributeType )
+    {
+        decodeAll();
+
+        return entry.get( attributeType );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<Attribute> getAttributes()
+    {
+        decodeAll();
+
+        return entry.getAttributes();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDn( Dn dn )
+    {
+        entry.setDn( dn );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDn( String dn ) throws LdapInvalidDnException
+    {
+        entry.setDn( dn );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<Attribute> iterator()
+    {
+        decodeAll();
+
+        return entry.iterator();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry add( Attribute... attributes ) throws LdapException
+    {
+        decode( attributes );
+        unchanged = false;
+        entry.add( attributes );
+
+        return this;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry add( AttributeType attributeType, byte[]... values ) throws LdapException
+    {
+        decodeAll();
+        unchanged = false;
+        entry.add( attributeType, values );
+
+        return this;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry add( AttributeType attributeType, String... values ) throws LdapException
+    {
+        decodeAll();
+        unchanged = false;
+        entry.add( attributeType, values );
+
+        return this;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry add( AttributeType attributeType, Value... values ) throws LdapException
+    {
+        decodeAll();
+        unchanged = false;
+        entry.add( attributeType, values );
+
+        return this;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry add( String upId, AttributeType attributeType, byte[]... values ) throws LdapException
+    {
+        decodeAll();
+        unchanged = false;
+        entry.add( upId, attributeType, values );
+
+        return this;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry add( String upId, AttributeType attributeType, String... values ) throws LdapException
+    {
+        decodeAll();
+        unchanged = false;
+        entry.add( upId, attributeType, values );
+
+        return this;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry add( String upId, AttributeType attributeType, Value... values ) throws LdapException
+    {
+        decodeAll();
+        unchanged = false;
+        entry.add( upId, attributeType, values );
+
+        return this;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry add( String upId, String... values ) throws LdapException
+    {
+        decode( upId );
+        unchanged = false;
+        entry.add( upId, values );
+
+        return this;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry add( String upId, byte[]... values ) throws LdapException
+    {
+        decode( upId );
+        unchanged = false;
+        entry.add( upId, values );
+
+        return this;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry add( String upId, Value... values ) throws LdapException
+    {
+        decode( upId );
+        unchanged = false;
+        entry.add( upId, values );
+
+        return this;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Attribute> put( Attribute... attributes ) throws LdapException
+    {
+        decode( attributes );
+        unchanged = false;
+
+        return entry.put( attributes );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Attribute put( AttributeType attributeType, byte[]... values ) throws LdapException
+    {
+        decodeAll();
+        unchanged = false;
+
+        return entry.put( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Attribute put( AttributeType attributeType, String... values ) throws LdapException
+    {
+        decodeAll();
+        unchanged = false;
+
+        return entry.put( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Attribute put( AttributeType attributeType, Value... values ) throws LdapException
+    {
+        decodeAll();
+        unchanged = false;
+
+        return entry.put( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Attribute put( String upId, AttributeType attributeType, byte[]... values ) throws LdapException
+    {
+        decodeAll();
+        unchanged = false;
+
+        return entry.put( upId, attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Attribute put( String upId, AttributeType attributeType, String... values ) throws LdapException
+    {
+        decodeAll();
+        unchanged = false;
+
+        return entry.put( upId, attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Attribute put( String upId, AttributeType attributeType, Value... values ) throws LdapException
+    {
+        decodeAll();
+        unchanged = false;
+
+        return entry.put( upId, attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Attribute put( String upId, byte[]... values )
+    {
+        decode( upId );
+        unchanged = false;
+
+        return entry.put( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Attribute put( String upId, String... values )
+    {
+        decode( upId );
+        unchanged = false;
+
+        return entry.put( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Attribute put( String upId, Value... values )
+    {
+        decode( upId );
+        unchanged = false;
+
+        return entry.put( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove( AttributeType attributeType, byte[]... values ) throws LdapException
+    {
+        decodeAll();
+        unchanged = false;
+
+        return entry.remove( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove( AttributeType attributeType, String... values ) throws LdapException
+    {
+        decodeAll();
+        unchanged = false;
+
+        return entry.remove( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove( AttributeType attributeType, Value... values ) throws LdapException
+    {
+        decodeAll();
+        unchanged = false;
+
+        return entry.remove( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Attribute> remove( Attribute... attributes ) throws LdapException
+    {
+        decode( attributes );
+        unchanged = false;
+
+        return entry.remove( attributes );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeAttributes( AttributeType... attributes )
+    {
+        decodeAll();
+        unchanged = false;
+        entry.removeAttributes( attributes );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove( String upId, byte[]... values ) throws LdapException
+    {
+        decode( upId );
+        unchanged = false;
+
+        return entry.remove( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove( String upId, String... values ) throws LdapException
+    {
+        decode( upId );
+        unchanged = false;
+
+        return entry.remove( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove( String upId, Value... values ) throws LdapException
+    {
+        decode( upId );
+        unchanged = false;
+
+        return entry.remove( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeAttributes( String... attributes )
+    {
+        // No need to decode the removed attributes
+        replace( attributes );
+        entry.removeAttributes( attributes );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains( AttributeType attributeType, byte[]... values )
+    {
+        decodeAll();
+
+        return entry.contains( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains( AttributeType attributeType, String... values )
+    {
+        decodeAll();
+
+        return entry.contains( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains( AttributeType attributeType, Value... values )
+    {
+        decodeAll();
+
+        return entry.contains( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsAttribute( AttributeType attributeType )
+    {
+        decodeAll();
+
+        return entry.containsAttribute( attributeType );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains( Attribute... attributes )
+    {
+        decode( attributes );
+
+        return entry.contains( attributes );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains( String upId, byte[]... values )
+    {
+        decode( upId );
+
+        return entry.contains( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains( String upId, String... values )
+    {
+        decode( upId );
+
+        return entry.contains( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains( String upId, Value... values )
+    {
+        decode( upId );
+
+        return entry.contains( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsAttribute( String... attributes )
+    {
+        if ( attributes == null )
+        {
+            return entry.containsAttribute( attributes );
+        }
+
+        // No need to decode the attributes, the index is enough
+        for ( String attribute : attributes )
+        {
+            if ( ( attribute == null ) || !pendingAttributes.containsKey( getId( attribute ) ) )
+            {
+                if ( !entry.containsAttribute( attribute ) )
+                {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size()
+    {
+        return entry.size() + pendingAttributes.size();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isSchemaAware()
+    {
+        return false;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeExternal( ObjectOutput out ) throws IOException
+    {
+        decodeAll();
+        entry.writeExternal( out );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void readExternal( ObjectInput in ) throws IOException, ClassNotFoundException
+    {
+        pendingAttributes.clear();
+        rawAttributes = null;
+        unchanged = false;
+        entry = new DefaultEntry();
+        entry.readExternal( in );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode()
+    {
+        decodeAll();
+
+        return entry.hashCode();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals( Object o )
+    {
+        if ( this == o )
+        {
+            return true;
+        }
+
+        decodeAll();
+
+        return entry.equals( o );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return toString( "" );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString( String tabs )
+    {
+        decodeAll();
+
+        return entry.toString( tabs );
+    }
+}
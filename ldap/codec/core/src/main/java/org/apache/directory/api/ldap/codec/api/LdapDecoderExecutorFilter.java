@@ -0,0 +1,538 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.codec.api;
+
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.directory.api.asn1.DecoderException;
+import org.apache.directory.api.asn1.ber.Asn1Decoder;
+import org.apache.directory.api.asn1.ber.tlv.TLVStateEnum;
+import org.apache.directory.api.asn1.ber.tlv.UniversalTag;
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.model.constants.Loggers;
+import org.apache.directory.api.ldap.model.message.Message;
+import org.apache.directory.api.util.Strings;
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.filterchain.IoFilterAdapter;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.filter.codec.ProtocolDecoderException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * An {@link IoFilterAdapter} that moves the decoding of the LDAP messages out of the
+ * IoProcessor thread. It must be added just before the LDAP codec filter.
+ * <p>
+ * On the IoProcessor thread, the received bytes are only split into PDUs, using the
+ * length of the LDAPMessage SEQUENCE. Each complete PDU is then decoded by the given
+ * Executor, and the decoded message is sent to the next filter, which lets it go
+ * through as it is not an IoBuffer. The PDUs having the same messageId are decoded
+ * and delivered in the order they have been received, the PDUs having different
+ * messageIds may be decoded in parallel. The handler must accept messages coming from
+ * many threads.
+ * <p>
+ * The decoders use the configuration of the LdapMessageContainer stored in the session,
+ * if any.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LdapDecoderExecutorFilter extends IoFilterAdapter
+{
+    /** The logger */
+    private static final Logger CODEC_LOG = LoggerFactory.getLogger( Loggers.CODEC_LOG.getName() );
+
+    /** The session attribute holding the decoding state */
+    private static final String DECODING_STATE_ATTR = LdapDecoderExecutorFilter.class.getName() + ".State";
+
+    /** The LDAP service */
+    private final LdapApiService codec;
+
+    /** The Executor used to decode the PDUs */
+    private final Executor executor;
+
+    /**
+     * The decoding state of a session : the PDU being received, and the PDUs waiting to
+     * be decoded, per messageId.
+     */
+    private final class DecodingState
+    {
+        /** The session */
+        private final IoSession session;
+
+        /** The filter following this one */
+        private final NextFilter nextFilter;
+
+        /** The PDU header : the SEQUENCE tag and the length */
+        private final byte[] header = new byte[6];
+
+        /** The number of header bytes received */
+        private int headerPos;
+
+        /** The PDU being received */
+        private byte[] pdu;
+
+        /** The number of PDU bytes received */
+        private int pduPos;
+
+        /** The PDUs waiting to be decoded, per messageId */
+        private final Map<Integer, MessageIdLane> lanes = new HashMap<>();
+
+
+        /**
+         * Creates a new DecodingState
+         *
+         * @param session The session
+         * @param nextFilter The filter following this one
+         */
+        private DecodingState( IoSession session, NextFilter nextFilter )
+        {
+            this.session = session;
+            this.nextFilter = nextFilter;
+        }
+
+
+        /**
+         * Read the PDU header, byte per byte.
+         *
+         * @param buffer The received bytes
+         * @return <code>true</code> if the header is complete
+         * @throws DecoderException If the header is invalid
+         */
+        private boolean readHeader( IoBuffer buffer ) throws DecoderException
+        {
+            while ( buffer.hasRemaining() )
+            {
+                byte b = buffer.get();
+                header[headerPos++] = b;
+
+                if ( headerPos == 1 )
+                {
+                    if ( b != UniversalTag.SEQUENCE.getValue() )
+                    {
+                        throw new DecoderException( I18n.err( I18n.ERR_05161_INVALID_PDU_HEADER,
+                            Strings.dumpBytes( header ) ) );
+                    }
+
+                    continue;
+                }
+
+                int lengthByte = header[1] & 0x00FF;
+
+                if ( lengthByte < 0x80 )
+                {
+                    startPdu( lengthByte );
+
+                    return true;
+                }
+
+                int nbBytes = lengthByte & 0x7F;
+
+                if ( ( nbBytes == 0 ) || ( nbBytes > 4 ) )
+                {
+                    throw new DecoderException( I18n.err( I18n.ERR_05161_INVALID_PDU_HEADER,
+                        Strings.dumpBytes( header ) ) );
+                }
+
+                if ( headerPos == nbBytes + 2 )
+                {
+                    int length = 0;
+
+                    for ( int i = 2; i < headerPos; i++ )
+                    {
+                        length = ( length << 8 ) | ( header[i] & 0x00FF );
+                    }
+
+                    if ( length < 0 )
+                    {
+                        throw new DecoderException( I18n.err( I18n.ERR_05161_INVALID_PDU_HEADER,
+                            Strings.dumpBytes( header ) ) );
+                    }
+
+                    startPdu( length );
+
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+
+        /**
+         * Allocate the PDU once its length is known
+         *
+         * @param length The PDU value length
+         * @throws DecoderException If the PDU is too big
+         */
+        private void startPdu( int length ) throws DecoderException
+        {
+            int pduSize = headerPos + length;
+            int maxPduSize = getMaxPduSize( session );
+
+            if ( ( pduSize > maxPduSize ) || ( pduSize < 0 ) )
+            {
+                throw new DecoderException( I18n.err( I18n.ERR_01007_PDU_SIZE_TOO_LONG, pduSize, maxPduSize ) );
+            }
+
+            pdu = new byte[pduSize];
+            System.arraycopy( header, 0, pdu, 0, headerPos );
+            pduPos = headerPos;
+            headerPos = 0;
+        }
+
+
+        /**
+         * Split the received bytes into PDUs, and dispatch the complete PDUs
+         *
+         * @param buffer The received bytes
+         * @throws DecoderException If a PDU header is invalid
+         */
+        private void frame( IoBuffer buffer ) throws DecoderException
+        {
+            while ( buffer.hasRemaining() )
+            {
+                if ( ( pdu == null ) && !readHeader( buffer ) )
+                {
+                    return;
+                }
+
+                int length = Math.min( buffer.remaining(), pdu.length - pduPos );
+                buffer.get( pdu, pduPos, length );
+                pduPos += length;
+
+                if ( pduPos == pdu.length )
+                {
+                    byte[] complete = pdu;
+                    pdu = null;
+                    pduPos = 0;
+                    dispatch( getMessageId( complete ), complete );
+                }
+            }
+        }
+
+
+        /**
+         * Queue a PDU in the lane of its messageId, and schedule the lane if it's not
+         * already running
+         *
+         * @param messageId The PDU messageId
+         * @param bytes The PDU
+         */
+        private void dispatch( int messageId, byte[] bytes )
+        {
+            MessageIdLane lane;
+
+            synchronized ( this )
+            {
+                lane = lanes.get( messageId );
+
+                if ( lane != null )
+                {
+                    // The lane is running, it will decode the PDU
+                    lane.pdus.add( bytes );
+
+                    return;
+                }
+
+                lane = new MessageIdLane( this, messageId );
+                lane.pdus.add( bytes );
+                lanes.put( messageId, lane );
+            }
+
+            try
+            {
+                executor.execute( lane );
+            }
+            catch ( RejectedExecutionException ree )
+            {
+                // Decode the PDU in the current thread
+                lane.run();
+            }
+        }
+    }
+
+    /**
+     * The PDUs received for a messageId, decoded one after the other
+     */
+    private final class MessageIdLane implements Runnable
+    {
+        /** The session decoding state */
+        private final DecodingState state;
+
+        /** The messageId */
+        private final int messageId;
+
+        /** The PDUs to decode, protected by the DecodingState lock */
+        private final Queue<byte[]> pdus = new ArrayDeque<>();
+
+
+        /**
+         * Creates a new MessageIdLane
+         *
+         * @param state The session decoding state
+         * @param messageId The messageId
+         */
+        private MessageIdLane( DecodingState state, int messageId )
+        {
+            this.state = state;
+            this.messageId = messageId;
+        }
+
+
+        /**
+         * Decode the queued PDUs, until there are no more
+         */
+        @Override
+        public void run()
+        {
+            LdapMessageContainer<Message> container = createContainer( state.session );
+
+            while ( true )
+            {
+                byte[] bytes;
+
+                synchronized ( state )
+                {
+                    bytes = pdus.poll();
+
+                    if ( bytes == null )
+                    {
+                        state.lanes.remove( messageId );
+
+                        return;
+                    }
+                }
+
+                try
+                {
+                    Message message = decode( bytes, container );
+                    state.nextFilter.messageReceived( state.session, message );
+                }
+                catch ( DecoderException de )
+                {
+                    container.clean();
+                    state.nextFilter.exceptionCaught( state.session, new ProtocolDecoderException( de ) );
+                }
+                catch ( RuntimeException re )
+                {
+                    container.clean();
+                    state.nextFilter.exceptionCaught( state.session, re );
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Creates a new instance of LdapDecoderExecutorFilter.
+     *
+     * @param codec The LDAP service, used when the session does not contain a LdapMessageContainer
+     * @param executor The Executor used to decode the PDUs
+     */
+    public LdapDecoderExecutorFilter( LdapApiService codec, Executor executor )
+    {
+        if ( ( codec == null ) || ( executor == null ) )
+        {
+            throw new IllegalArgumentException( I18n.err( I18n.ERR_05203_CODEC_ARGS_CANNOT_BE_NULL ) );
+        }
+
+        this.codec = codec;
+        this.executor = executor;
+    }
+
+
+    /**
+     * @return The Executor used to decode the PDUs
+     */
+    public Executor getExecutor()
+    {
+        return executor;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void messageReceived( NextFilter nextFilter, IoSession session, Object message ) throws Exception
+    {
+        if ( !( message instanceof IoBuffer ) )
+        {
+            nextFilter.messageReceived( session, message );
+
+            return;
+        }
+
+        DecodingState state = ( DecodingState ) session.getAttribute( DECODING_STATE_ATTR );
+
+        if ( state == null )
+        {
+            state = new DecodingState( session, nextFilter );
+            session.setAttribute( DECODING_STATE_ATTR, state );
+        }
+
+        try
+        {
+            state.frame( ( IoBuffer ) message );
+        }
+        catch ( DecoderException de )
+        {
+            // We can't find the next PDU start anymore
+            session.removeAttribute( DECODING_STATE_ATTR );
+
+            throw new ProtocolDecoderException( de );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void sessionClosed( NextFilter nextFilter, IoSession session ) throws Exception
+    {
+        session.removeAttribute( DECODING_STATE_ATTR );
+
+        nextFilter.sessionClosed( session );
+    }
+
+
+    /**
+     * Get the maximum PDU size allowed on the session
+     */
+    private static int getMaxPduSize( IoSession session )
+    {
+        Object maxPduSize = session.getAttribute( LdapDecoder.MAX_PDU_SIZE_ATTR );
+
+        if ( maxPduSize instanceof Integer )
+        {
+            int size = ( Integer ) maxPduSize;
+
+            if ( size > 0 )
+            {
+                return size;
+            }
+        }
+
+        return Integer.MAX_VALUE;
+    }
+
+
+    /**
+     * Read the messageId of a PDU. A malformed messageId will be reported by the decoder,
+     * -1 is returned in this case.
+     *
+     * @param pdu The PDU
+     * @return The PDU messageId
+     */
+    private static int getMessageId( byte[] pdu )
+    {
+        // Skip the SEQUENCE header
+        int pos = 1;
+
+        if ( ( pdu[pos] & 0x80 ) != 0 )
+        {
+            pos += pdu[pos] & 0x7F;
+        }
+
+        pos++;
+
+        if ( ( pos + 2 > pdu.length ) || ( pdu[pos] != UniversalTag.INTEGER.getValue() ) )
+        {
+            return -1;
+        }
+
+        int length = pdu[pos + 1];
+
+        if ( ( length < 1 ) || ( length > 4 ) || ( pos + 2 + length > pdu.length ) )
+        {
+            return -1;
+        }
+
+        int messageId = 0;
+
+        for ( int i = 0; i < length; i++ )
+        {
+            messageId = ( messageId << 8 ) | ( pdu[pos + 2 + i] & 0x00FF );
+        }
+
+        return messageId;
+    }
+
+
+    /**
+     * Create a container using the configuration of the session's container, if any
+     *
+     * @param session The session
+     * @return A new LdapMessageContainer
+     */
+    private LdapMessageContainer<Message> createContainer( IoSession session )
+    {
+        LdapMessageContainer<?> sessionContainer =
+            ( LdapMessageContainer<?> ) session.getAttribute( LdapDecoder.MESSAGE_CONTAINER_ATTR );
+
+        if ( sessionContainer == null )
+        {
+            return new LdapMessageContainer<>( codec );
+        }
+
+        return new LdapMessageContainer<>( sessionContainer );
+    }
+
+
+    /**
+     * Decode a complete PDU
+     *
+     * @param bytes The PDU
+     * @param container The container to use
+     * @return The decoded message
+     * @throws DecoderException If the PDU can't be decoded
+     */
+    private static Message decode( byte[] bytes, LdapMessageContainer<Message> container ) throws DecoderException
+    {
+        Asn1Decoder.decode( ByteBuffer.wrap( bytes ), container );
+
+        if ( container.getState() != TLVStateEnum.PDU_DECODED )
+        {
+            container.clean();
+
+            throw new DecoderException( I18n.err( I18n.ERR_05205_PDU_DOES_NOT_CONTAIN_ENOUGH_DATA ) );
+        }
+
+        Message message = container.getMessage();
+
+        if ( CODEC_LOG.isDebugEnabled() )
+        {
+            CODEC_LOG.debug( I18n.msg( I18n.MSG_14002_DECODED_LDAP_MESSAGE, message ) );
+        }
+
+        container.clean();
+
+        return message;
+    }
+}
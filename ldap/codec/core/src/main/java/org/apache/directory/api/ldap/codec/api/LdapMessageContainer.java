@@ -20,6 +20,9 @@
 package org.apache.directory.api.ldap.codec.api;
 
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.apache.directory.api.asn1.DecoderException;
 import org.apache.directory.api.asn1.ber.AbstractContainer;
 import org.apache.directory.api.asn1.ber.tlv.TLV;
@@ -93,6 +96,15 @@ public class LdapMessageContainer<E extends Message> extends AbstractContainer
     /** The global filter. This is used while decoding a PDU */
     private Filter topFilter;
 
+    /** Tells if the SearchResultEntry attributes are decoded lazily */
+    private boolean lazyEntries;
+
+    /** The AttributeProjections to apply to the searches' entries, per messageId */
+    private final Map<Integer, AttributeProjection> attributeProjections;
+
+    /** The AttributeProjection to apply to the entry being decoded */
+    private AttributeProjection currentAttributeProjection;
+
 
     /**
      * Creates a new LdapMessageContainer object. We will store ten grammars,
@@ -118,6 +130,28 @@ public class LdapMessageContainer<E extends Message> extends AbstractContainer
         this.codec = codec;
         setGrammar( LdapMessageGrammar.getInstance() );
         this.binaryAttributeDetector = binaryAttributeDetector;
+        attributeProjections = new ConcurrentHashMap<>();
+        setTransition( LdapStatesEnum.START_STATE );
+    }
+
+
+    /**
+     * Creates a new LdapMessageContainer object, using the same configuration as another
+     * container : the LDAP service, the BinaryAttributeDetector, the lazy entries flag and
+     * the maximum PDU size are copied, and the AttributeProjections are shared. This is
+     * used to decode many PDUs received on the same session in parallel.
+     *
+     * @param container The container to copy the configuration from
+     */
+    public LdapMessageContainer( LdapMessageContainer<?> container )
+    {
+        super();
+        this.codec = container.codec;
+        setGrammar( LdapMessageGrammar.getInstance() );
+        this.binaryAttributeDetector = container.binaryAttributeDetector;
+        this.lazyEntries = container.lazyEntries;
+        attributeProjections = container.attributeProjections;
+        setMaxPDUSize( container.getMaxPDUSize() );
         setTransition( LdapStatesEnum.START_STATE );
     }
 
@@ -171,6 +205,7 @@ public class LdapMessageContainer<E extends Message> extends AbstractContainer
         currentFilter = null;
         terminalFilter = null;
         topFilter = null;
+        currentAttributeProjection = null;
         controlFactory = null;
         intermediateFactory = null;
         extendedFactory = null;
@@ -246,6 +281,118 @@ public class LdapMessageContainer<E extends Message> extends AbstractContainer
     }
 
 
+    /**
+     * @return <code>true</code> if the SearchResultEntry attributes are kept as raw
+     * BER bytes, and only decoded when accessed
+     */
+    public boolean isLazyEntries()
+    {
+        return lazyEntries;
+    }
+
+
+    /**
+     * Tells the decoder to keep the SearchResultEntry attributes as raw BER bytes. The
+     * decoded entries will be {@link LazyEntry} instances, which decode an attribute
+     * the first time it is accessed.
+     *
+     * @param lazyEntries <code>true</code> to decode the entries lazily
+     */
+    public void setLazyEntries( boolean lazyEntries )
+    {
+        this.lazyEntries = lazyEntries;
+    }
+
+
+    /**
+     * Set the AttributeProjection to apply to the SearchResultEntries of a search. The
+     * attributes which are not accepted will be skipped without being decoded. The
+     * AttributeProjection is removed when the SearchResultDone is decoded.
+     *
+     * @param messageId The search request messageId
+     * @param attributeProjection The AttributeProjection to apply, or <code>null</code>
+     * to decode all the attributes
+     */
+    public void setAttributeProjection( int messageId, AttributeProjection attributeProjection )
+    {
+        if ( attributeProjection == null )
+        {
+            attributeProjections.remove( messageId );
+        }
+        else
+        {
+            attributeProjections.put( messageId, attributeProjection );
+        }
+    }
+
+
+    /**
+     * @param messageId The search request messageId
+     * @return The AttributeProjection associated with a search, if any
+     */
+    public AttributeProjection getAttributeProjection( int messageId )
+    {
+        if ( attributeProjections.isEmpty() )
+        {
+            return null;
+        }
+
+        return attributeProjections.get( messageId );
+    }
+
+
+    /**
+     * Remove the AttributeProjection associated with a search
+     *
+     * @param messageId The search request messageId
+     */
+    public void removeAttributeProjection( int messageId )
+    {
+        attributeProjections.remove( messageId );
+    }
+
+
+    /**
+     * Copy all the AttributeProjections registered on another container, so that the
+     * searches in progress keep their projection when the container is replaced.
+     *
+     * @param container The container to copy the AttributeProjections from
+     */
+    public void copyAttributeProjections( LdapMessageContainer<?> container )
+    {
+        attributeProjections.putAll( container.attributeProjections );
+    }
+
+
+    /**
+     * Remove all the AttributeProjections
+     */
+    public void clearAttributeProjections()
+    {
+        attributeProjections.clear();
+    }
+
+
+    /**
+     * @return The AttributeProjection to apply to the entry being decoded, if any
+     */
+    public AttributeProjection getCurrentAttributeProjection()
+    {
+        return currentAttributeProjection;
+    }
+
+
+    /**
+     * Set the AttributeProjection to apply to the entry being decoded
+     *
+     * @param currentAttributeProjection The AttributeProjection to apply
+     */
+    public void setCurrentAttributeProjection( AttributeProjection currentAttributeProjection )
+    {
+        this.currentAttributeProjection = currentAttributeProjection;
+    }
+
+
     /**
      * @return the ldapResult
      */
@@ -23,6 +23,7 @@ import java.util.Iterator;
 
 import org.apache.directory.api.asn1.ber.tlv.BerValue;
 import org.apache.directory.api.asn1.util.Asn1Buffer;
+import org.apache.directory.api.ldap.codec.api.LazyEntry;
 import org.apache.directory.api.ldap.codec.api.LdapApiService;
 import org.apache.directory.api.ldap.codec.api.LdapCodecConstants;
 import org.apache.directory.api.ldap.model.entry.Attribute;
@@ -158,8 +159,13 @@ public final class SearchResultEntryFactory extends ResponseFactory
         // The partial attribute list
         Entry entry = searchResultEntry.getEntry();
 
-        // The attributes, if we have any
-        if ( ( entry != null ) && ( entry.size() != 0 ) )
+        // The attributes, if we have any. An unchanged LazyEntry is encoded
+        // using its raw attributes
+        if ( ( entry instanceof LazyEntry ) && ( ( LazyEntry ) entry ).isUnchanged() )
+        {
+            buffer.put( ( ( LazyEntry ) entry ).getRawAttributes() );
+        }
+        else if ( ( entry != null ) && ( entry.size() != 0 ) )
         {
             encodeAttributes( buffer, entry.iterator() );
         }
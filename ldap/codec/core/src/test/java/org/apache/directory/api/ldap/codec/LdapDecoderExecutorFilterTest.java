@@ -0,0 +1,249 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.codec;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.asn1.util.Asn1Buffer;
+import org.apache.directory.api.ldap.codec.api.LdapDecoder;
+import org.apache.directory.api.ldap.codec.api.LdapDecoderExecutorFilter;
+import org.apache.directory.api.ldap.codec.api.LdapEncoder;
+import org.apache.directory.api.ldap.codec.osgi.AbstractCodecServiceTest;
+import org.apache.directory.api.ldap.model.message.Message;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchResultEntryImpl;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.filterchain.IoFilter.NextFilter;
+import org.apache.mina.core.session.DummySession;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.filter.codec.ProtocolDecoderException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+
+/**
+ * Test the LdapDecoderExecutorFilter
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution(ExecutionMode.CONCURRENT)
+public class LdapDecoderExecutorFilterTest extends AbstractCodecServiceTest
+{
+    /** The number of searches in the stream */
+    private static final int NB_SEARCHES = 8;
+
+    /** The number of entries per search */
+    private static final int NB_ENTRIES = 20;
+
+
+    /**
+     * Create a NextFilter storing the received messages and exceptions in a queue
+     */
+    private NextFilter createNextFilter( BlockingQueue<Object> received )
+    {
+        return ( NextFilter ) Proxy.newProxyInstance( NextFilter.class.getClassLoader(),
+            new Class<?>[] { NextFilter.class },
+            ( proxy, method, args ) ->
+            {
+                if ( "messageReceived".equals( method.getName() ) || "exceptionCaught".equals( method.getName() ) )
+                {
+                    received.add( args[1] );
+                }
+
+                return null;
+            } );
+    }
+
+
+    /**
+     * Encode some interleaved searches : the entries of each search, followed by a SearchResultDone
+     */
+    private byte[] encodeSearches() throws Exception
+    {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+        for ( int i = 0; i < NB_ENTRIES; i++ )
+        {
+            for ( int messageId = 1; messageId <= NB_SEARCHES; messageId++ )
+            {
+                SearchResultEntry entry = new SearchResultEntryImpl( messageId );
+                entry.setObjectName( new Dn( "cn=entry" + i + ",ou=search" + messageId ) );
+                entry.getEntry().add( "objectClass", "top", "person" );
+                entry.getEntry().add( "cn", "entry" + i );
+                entry.getEntry().add( "description", new String( new char[i * 20] ).replace( '\0', 'x' ) );
+
+                write( stream, entry );
+            }
+        }
+
+        for ( int messageId = 1; messageId <= NB_SEARCHES; messageId++ )
+        {
+            SearchResultDone done = new SearchResultDoneImpl( messageId );
+            done.getLdapResult().setResultCode( ResultCodeEnum.SUCCESS );
+
+            write( stream, done );
+        }
+
+        return stream.toByteArray();
+    }
+
+
+    private void write( ByteArrayOutputStream stream, Message message ) throws Exception
+    {
+        ByteBuffer buffer = LdapEncoder.encodeMessage( new Asn1Buffer(), codec, message );
+        stream.write( buffer.array(), buffer.position(), buffer.remaining() );
+    }
+
+
+    /**
+     * Send the bytes to the filter, in chunks of the given size
+     */
+    private void feed( LdapDecoderExecutorFilter filter, NextFilter nextFilter, IoSession session, byte[] bytes,
+        int chunkSize ) throws Exception
+    {
+        for ( int pos = 0; pos < bytes.length; pos += chunkSize )
+        {
+            int length = Math.min( chunkSize, bytes.length - pos );
+            filter.messageReceived( nextFilter, session, IoBuffer.wrap( bytes, pos, length ) );
+        }
+    }
+
+
+    /**
+     * Check that all the messages have been received, in order for each messageId
+     */
+    private void check( BlockingQueue<Object> received ) throws Exception
+    {
+        Map<Integer, List<Message>> messages = new HashMap<>();
+
+        for ( int i = 0; i < NB_SEARCHES * ( NB_ENTRIES + 1 ); i++ )
+        {
+            Object object = received.poll( 10, TimeUnit.SECONDS );
+
+            assertTrue( object instanceof Message, String.valueOf( object ) );
+
+            Message message = ( Message ) object;
+            messages.computeIfAbsent( message.getMessageId(), id -> new ArrayList<>() ).add( message );
+        }
+
+        assertEquals( NB_SEARCHES, messages.size() );
+
+        for ( Map.Entry<Integer, List<Message>> search : messages.entrySet() )
+        {
+            List<Message> responses = search.getValue();
+
+            assertEquals( NB_ENTRIES + 1, responses.size() );
+
+            for ( int i = 0; i < NB_ENTRIES; i++ )
+            {
+                SearchResultEntry entry = ( SearchResultEntry ) responses.get( i );
+
+                assertEquals( "cn=entry" + i + ",ou=search" + search.getKey(), entry.getObjectName().getName() );
+                assertEquals( i * 20, entry.getEntry().get( "description" ).getString().length() );
+            }
+
+            assertTrue( responses.get( NB_ENTRIES ) instanceof SearchResultDone );
+        }
+    }
+
+
+    /**
+     * Test the decoding of interleaved searches with a thread pool
+     */
+    @Test
+    public void testDecodeWithThreadPool() throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+
+        try
+        {
+            LdapDecoderExecutorFilter filter = new LdapDecoderExecutorFilter( codec, executor );
+            BlockingQueue<Object> received = new LinkedBlockingQueue<>();
+            byte[] bytes = encodeSearches();
+
+            feed( filter, createNextFilter( received ), new DummySession(), bytes, 37 );
+
+            check( received );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Test the decoding of interleaved searches in the calling thread, one byte at a time
+     */
+    @Test
+    public void testDecodeWithDirectExecutor() throws Exception
+    {
+        LdapDecoderExecutorFilter filter = new LdapDecoderExecutorFilter( codec, Runnable::run );
+        BlockingQueue<Object> received = new LinkedBlockingQueue<>();
+        byte[] bytes = encodeSearches();
+
+        feed( filter, createNextFilter( received ), new DummySession(), bytes, 1 );
+
+        check( received );
+    }
+
+
+    /**
+     * Test that an invalid PDU header or a too big PDU is rejected
+     */
+    @Test
+    public void testInvalidPdu() throws Exception
+    {
+        LdapDecoderExecutorFilter filter = new LdapDecoderExecutorFilter( codec, Runnable::run );
+        NextFilter nextFilter = createNextFilter( new LinkedBlockingQueue<>() );
+
+        assertThrows( ProtocolDecoderException.class,
+            () -> filter.messageReceived( nextFilter, new DummySession(),
+                IoBuffer.wrap( new byte[] { 0x04, 0x01, 0x00 } ) ) );
+
+        IoSession session = new DummySession();
+        session.setAttribute( LdapDecoder.MAX_PDU_SIZE_ATTR, 16 );
+
+        assertThrows( ProtocolDecoderException.class,
+            () -> filter.messageReceived( nextFilter, session,
+                IoBuffer.wrap( new byte[] { 0x30, ( byte ) 0x81, ( byte ) 0x80 } ) ) );
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.codec.search;
+
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.apache.directory.api.asn1.DecoderException;
+import org.apache.directory.api.asn1.EncoderException;
+import org.apache.directory.api.asn1.ber.Asn1Decoder;
+import org.apache.directory.api.asn1.util.Asn1Buffer;
+import org.apache.directory.api.ldap.codec.api.LazyEntry;
+import org.apache.directory.api.ldap.codec.api.LdapEncoder;
+import org.apache.directory.api.ldap.codec.api.LdapMessageContainer;
+import org.apache.directory.api.ldap.codec.osgi.AbstractCodecServiceTest;
+import org.apache.directory.api.ldap.model.entry.Attribute;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.controls.EntryChange;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+/**
+ * Test the lazy decoding of a SearchResultEntry
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution( ExecutionMode.CONCURRENT)
+public class LazySearchResultEntryTest extends AbstractCodecServiceTest
+{
+    /** A SearchResultEntry with two attributes and a control */
+    private static final byte[] PDU = new byte[]
+        {
+            0x30, 0x63,                     // LDAPMessage ::=SEQUENCE {
+              0x02, 0x01, 0x01,             // messageID MessageID
+              0x64, 0x3A,                   // CHOICE { ..., searchResEntry SearchResultEntry,
+                                            // SearchResultEntry ::= [APPLICATION 4] SEQUENCE {
+                                            // objectName LDAPDN,
+                0x04, 0x1b,
+                  'o', 'u', '=', 'c', 'o', 'n', 't', 'a', 'c', 't', 's', ',',
+                  'd', 'c', '=', 'i', 'k', 't', 'e', 'k', ',', 'd', 'c', '=', 'c', 'o', 'm',
+                                            // attributes PartialAttributeList }
+                0x30, 0x1B,
+                  0x30, 0x11,
+                    0x04, 0x0b,             // type AttributeDescription,
+                      'o', 'b', 'j', 'e', 'c', 't', 'C', 'l', 'a', 's', 's',
+                    0x31, 0x02,             // vals SET OF AttributeValue }
+                      0x04, 0x00,           // AttributeValue ::= OCTET STRING
+                  0x30, 0x06,
+                    0x04, 0x02,             // type AttributeDescription,
+                      'o', 'u',
+                    0x31, 0x00,             // No value
+              ( byte ) 0xA0, 0x22,          // A control
+                0x30, 0x20,
+                  0x04, 0x17,               // EntryChange response control
+                    '2', '.', '1', '6', '.', '8', '4', '0', '.', '1', '.',
+                    '1', '1', '3', '7', '3', '0', '.', '3', '.', '4', '.', '7',
+                  0x04, 0x05,               // Control value
+                    0x30, 0x03,             // EntryChangeNotification ::= SEQUENCE {
+                      0x0A, 0x01, 0x01      //     changeType ENUMERATED { add (1),
+        };
+
+
+    private SearchResultEntry decode( ByteBuffer... buffers ) throws DecoderException
+    {
+        LdapMessageContainer<SearchResultEntry> ldapMessageContainer = new LdapMessageContainer<>( codec );
+        ldapMessageContainer.setLazyEntries( true );
+
+        for ( ByteBuffer buffer : buffers )
+        {
+            Asn1Decoder.decode( buffer, ldapMessageContainer );
+        }
+
+        return ldapMessageContainer.getMessage();
+    }
+
+
+    /**
+     * Test the lazy decoding of a SearchResultEntry followed by a control
+     */
+    @Test
+    public void testDecodeLazy() throws DecoderException
+    {
+        SearchResultEntry searchResultEntry = decode( ByteBuffer.wrap( PDU ) );
+
+        assertEquals( 1, searchResultEntry.getMessageId() );
+        assertEquals( "ou=contacts,dc=iktek,dc=com", searchResultEntry.getObjectName().toString() );
+        assertTrue( searchResultEntry.getControls().get( "2.16.840.1.113730.3.4.7" ) instanceof EntryChange );
+
+        Entry entry = searchResultEntry.getEntry();
+
+        assertTrue( entry instanceof LazyEntry );
+
+        LazyEntry lazyEntry = ( LazyEntry ) entry;
+
+        assertEquals( 2, lazyEntry.getPendingAttributesCount() );
+        assertEquals( 2, entry.size() );
+        assertTrue( entry.containsAttribute( "OU", "objectclass" ) );
+        assertEquals( 2, lazyEntry.getPendingAttributesCount() );
+
+        // Only the requested attribute is decoded
+        Attribute attribute = entry.get( "objectclass" );
+
+        assertEquals( "objectClass", attribute.getUpId() );
+        assertTrue( attribute.contains( "" ) );
+        assertEquals( 1, lazyEntry.getPendingAttributesCount() );
+        assertEquals( 2, entry.size() );
+        assertFalse( lazyEntry.isUnchanged() );
+
+        // The remaining attributes are decoded when iterating
+        int count = 0;
+
+        for ( Attribute decoded : entry )
+        {
+            assertTrue( entry.contains( decoded ) );
+            count++;
+        }
+
+        assertEquals( 2, count );
+        assertEquals( 0, lazyEntry.getPendingAttributesCount() );
+        assertEquals( 0, entry.get( "ou" ).size() );
+    }
+
+
+    /**
+     * Test the lazy decoding of a SearchResultEntry received in many buffers
+     */
+    @Test
+    public void testDecodeLazySplit() throws DecoderException
+    {
+        ByteBuffer[] buffers = new ByteBuffer[PDU.length];
+
+        for ( int i = 0; i < PDU.length; i++ )
+        {
+            buffers[i] = ByteBuffer.wrap( PDU, i, 1 );
+        }
+
+        SearchResultEntry searchResultEntry = decode( buffers );
+
+        assertEquals( 2, searchResultEntry.getEntry().size() );
+        assertEquals( 1, searchResultEntry.getControls().size() );
+        assertTrue( searchResultEntry.getEntry().get( "objectClass" ).contains( "" ) );
+    }
+
+
+    /**
+     * Test that an entry which has not been accessed is encoded back as is, and
+     * that a modified entry is encoded from its attributes
+     */
+    @Test
+    public void testEncodeLazy() throws DecoderException, EncoderException
+    {
+        SearchResultEntry searchResultEntry = decode( ByteBuffer.wrap( PDU ) );
+        LazyEntry entry = ( LazyEntry ) searchResultEntry.getEntry();
+
+        assertTrue( entry.isUnchanged() );
+
+        ByteBuffer result = LdapEncoder.encodeMessage( new Asn1Buffer(), codec, searchResultEntry );
+
+        assertArrayEquals( PDU, result.array() );
+        assertEquals( 2, entry.getPendingAttributesCount() );
+
+        // Now, remove an attribute, without decoding it
+        entry.removeAttributes( "ou" );
+
+        assertFalse( entry.isUnchanged() );
+        assertNull( entry.getRawAttributes() );
+        assertEquals( 1, entry.size() );
+
+        result = LdapEncoder.encodeMessage( new Asn1Buffer(), codec, searchResultEntry );
+        SearchResultEntry decoded = decode( result );
+
+        assertEquals( 1, decoded.getEntry().size() );
+        assertTrue( decoded.getEntry().containsAttribute( "objectClass" ) );
+        assertFalse( decoded.getEntry().containsAttribute( "ou" ) );
+        assertEquals( entry, decoded.getEntry() );
+    }
+
+
+    /**
+     * Test that an invalid PartialAttributeList is rejected
+     */
+    @Test
+    public void testInvalidAttributes()
+    {
+        Dn dn = Dn.EMPTY_DN;
+
+        // The values SET length exceeds the attribute
+        assertThrows( DecoderException.class, () -> new LazyEntry( dn, new byte[]
+            {
+                0x30, 0x06,
+                  0x04, 0x02, 'o', 'u',
+                  0x31, 0x01
+            }, null ) );
+
+        // Empty type
+        assertThrows( DecoderException.class, () -> new LazyEntry( dn, new byte[]
+            {
+                0x30, 0x04,
+                  0x04, 0x00,
+                  0x31, 0x00
+            }, null ) );
+
+        // A value which is not an OCTET STRING
+        assertThrows( DecoderException.class, () -> new LazyEntry( dn, new byte[]
+            {
+                0x30, 0x09,
+                  0x04, 0x02, 'o', 'u',
+                  0x31, 0x03,
+                    0x02, 0x01, 0x01
+            }, null ) );
+    }
+}
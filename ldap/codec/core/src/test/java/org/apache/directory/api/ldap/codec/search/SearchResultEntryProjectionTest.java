@@ -0,0 +1,313 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.codec.search;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.directory.api.asn1.DecoderException;
+import org.apache.directory.api.asn1.ber.Asn1Decoder;
+import org.apache.directory.api.asn1.ber.tlv.TLV;
+import org.apache.directory.api.asn1.ber.tlv.TLVStateEnum;
+import org.apache.directory.api.ldap.codec.api.AttributeProjection;
+import org.apache.directory.api.ldap.codec.api.LazyEntry;
+import org.apache.directory.api.ldap.codec.api.LdapMessageContainer;
+import org.apache.directory.api.ldap.codec.osgi.AbstractCodecServiceTest;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.message.Message;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.controls.EntryChange;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+/**
+ * Test the decoding of a SearchResultEntry with an AttributeProjection
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution( ExecutionMode.CONCURRENT)
+public class SearchResultEntryProjectionTest extends AbstractCodecServiceTest
+{
+    /** A SearchResultEntry with three attributes and a control */
+    private static final byte[] ENTRY_PDU = new byte[]
+        {
+            0x30, 0x72,                     // LDAPMessage ::=SEQUENCE {
+              0x02, 0x01, 0x01,             // messageID MessageID
+              0x64, 0x49,                   // CHOICE { ..., searchResEntry SearchResultEntry,
+                                            // SearchResultEntry ::= [APPLICATION 4] SEQUENCE {
+                                            // objectName LDAPDN,
+                0x04, 0x1b,
+                  'o', 'u', '=', 'c', 'o', 'n', 't', 'a', 'c', 't', 's', ',',
+                  'd', 'c', '=', 'i', 'k', 't', 'e', 'k', ',', 'd', 'c', '=', 'c', 'o', 'm',
+                                            // attributes PartialAttributeList }
+                0x30, 0x2A,
+                  0x30, 0x16,
+                    0x04, 0x0b,             // type AttributeDescription,
+                      'o', 'b', 'j', 'e', 'c', 't', 'C', 'l', 'a', 's', 's',
+                    0x31, 0x07,             // vals SET OF AttributeValue }
+                      0x04, 0x05,           // AttributeValue ::= OCTET STRING
+                        'o', 'r', 'g', 'U', 'n',
+                  0x30, 0x06,
+                    0x04, 0x02,             // type AttributeDescription,
+                      'o', 'u',
+                    0x31, 0x00,             // No value
+                  0x30, 0x08,
+                    0x04, 0x02,             // type AttributeDescription,
+                      'c', 'n',
+                    0x31, 0x02,
+                      0x04, 0x00,           // An empty value
+              ( byte ) 0xA0, 0x22,          // A control
+                0x30, 0x20,
+                  0x04, 0x17,               // EntryChange response control
+                    '2', '.', '1', '6', '.', '8', '4', '0', '.', '1', '.',
+                    '1', '1', '3', '7', '3', '0', '.', '3', '.', '4', '.', '7',
+                  0x04, 0x05,               // Control value
+                    0x30, 0x03,             // EntryChangeNotification ::= SEQUENCE {
+                      0x0A, 0x01, 0x01      //     changeType ENUMERATED { add (1),
+        };
+
+    /** A SearchResultDone */
+    private static final byte[] DONE_PDU = new byte[]
+        {
+            0x30, 0x0C,                     // LDAPMessage ::=SEQUENCE {
+              0x02, 0x01, 0x01,             // messageID MessageID
+              0x65, 0x07,                   // CHOICE { ..., searchResDone SearchResultDone, ...
+                0x0A, 0x01, 0x00,           // resultCode success
+                0x04, 0x00,                 // matchedDN LDAPDN,
+                0x04, 0x00                  // errorMessage LDAPString,
+        };
+
+
+    private Entry decode( LdapMessageContainer<Message> container, ByteBuffer... buffers ) throws DecoderException
+    {
+        for ( ByteBuffer buffer : buffers )
+        {
+            Asn1Decoder.decode( buffer, container );
+        }
+
+        SearchResultEntry searchResultEntry = ( SearchResultEntry ) container.getMessage();
+
+        assertEquals( "ou=contacts,dc=iktek,dc=com", searchResultEntry.getObjectName().toString() );
+        assertTrue( searchResultEntry.getControls().get( "2.16.840.1.113730.3.4.7" ) instanceof EntryChange );
+        container.clean();
+
+        return searchResultEntry.getEntry();
+    }
+
+
+    @Test
+    public void testAllowList() throws DecoderException
+    {
+        LdapMessageContainer<Message> container = new LdapMessageContainer<>( codec );
+        container.setAttributeProjection( 1, AttributeProjection.allow( "OU", "cn" ) );
+
+        Entry entry = decode( container, ByteBuffer.wrap( ENTRY_PDU ) );
+
+        assertEquals( 2, entry.size() );
+        assertFalse( entry.containsAttribute( "objectClass" ) );
+        assertEquals( 0, entry.get( "ou" ).size() );
+        assertTrue( entry.contains( "cn", "" ) );
+    }
+
+
+    @Test
+    public void testDenyList() throws DecoderException
+    {
+        LdapMessageContainer<Message> container = new LdapMessageContainer<>( codec );
+        container.setAttributeProjection( 1, AttributeProjection.deny( "objectclass", "cn" ) );
+
+        // Decode the PDU one byte at a time
+        ByteBuffer[] buffers = new ByteBuffer[ENTRY_PDU.length];
+
+        for ( int i = 0; i < ENTRY_PDU.length; i++ )
+        {
+            buffers[i] = ByteBuffer.wrap( ENTRY_PDU, i, 1 );
+        }
+
+        Entry entry = decode( container, buffers );
+
+        assertEquals( 1, entry.size() );
+        assertTrue( entry.containsAttribute( "ou" ) );
+    }
+
+
+    /**
+     * A container keeping the created TLVs
+     */
+    private LdapMessageContainer<Message> newRecordingContainer( List<TLV> tlvs )
+    {
+        return new LdapMessageContainer<Message>( codec )
+        {
+            @Override
+            public TLV getNewTlv( byte tag )
+            {
+                TLV tlv = super.getNewTlv( tag );
+                tlvs.add( tlv );
+
+                return tlv;
+            }
+        };
+    }
+
+
+    @Test
+    public void testRejectedValuesNotRead() throws DecoderException
+    {
+        List<TLV> allTlvs = new ArrayList<>();
+        decode( newRecordingContainer( allTlvs ), ByteBuffer.wrap( ENTRY_PDU ) );
+
+        List<TLV> tlvs = new ArrayList<>();
+        LdapMessageContainer<Message> container = newRecordingContainer( tlvs );
+        container.setAttributeProjection( 1, AttributeProjection.deny( "objectClass" ) );
+
+        // Decode the PDU in two parts, the first one ending in the middle of the rejected values
+        Entry entry = decode( container, ByteBuffer.wrap( ENTRY_PDU, 0, 58 ),
+            ByteBuffer.wrap( ENTRY_PDU, 58, ENTRY_PDU.length - 58 ) );
+
+        assertEquals( 2, entry.size() );
+        assertFalse( entry.containsAttribute( "objectClass" ) );
+
+        // The rejected values SET has no value buffer
+        TLV valuesTlv = tlvs.get( 7 );
+
+        assertEquals( 0x31, valuesTlv.getTag() );
+        assertEquals( 7, valuesTlv.getLength() );
+        assertFalse( valuesTlv.hasValue() );
+
+        // and its AttributeValue has not been decoded
+        assertEquals( allTlvs.size() - 1, tlvs.size() );
+    }
+
+
+    @Test
+    public void testLastAttributeRejected() throws DecoderException
+    {
+        // The same entry, without control
+        byte[] pdu = Arrays.copyOf( ENTRY_PDU, ENTRY_PDU.length - 0x24 );
+        pdu[1] = 0x4E;
+
+        LdapMessageContainer<Message> container = new LdapMessageContainer<>( codec );
+        container.setAttributeProjection( 1, AttributeProjection.deny( "cn" ) );
+
+        Asn1Decoder.decode( ByteBuffer.wrap( pdu ), container );
+
+        assertEquals( TLVStateEnum.PDU_DECODED, container.getState() );
+        assertFalse( container.isSkipping() );
+
+        Entry entry = ( ( SearchResultEntry ) container.getMessage() ).getEntry();
+
+        assertEquals( 2, entry.size() );
+        assertFalse( entry.containsAttribute( "cn" ) );
+    }
+
+
+    @Test
+    public void testOtherMessageId() throws DecoderException
+    {
+        LdapMessageContainer<Message> container = new LdapMessageContainer<>( codec );
+        container.setAttributeProjection( 2, AttributeProjection.allow( "cn" ) );
+
+        assertEquals( 3, decode( container, ByteBuffer.wrap( ENTRY_PDU ) ).size() );
+    }
+
+
+    @Test
+    public void testProjectionRemovedOnDone() throws DecoderException
+    {
+        LdapMessageContainer<Message> container = new LdapMessageContainer<>( codec );
+        container.setAttributeProjection( 1, AttributeProjection.allow( "cn" ) );
+
+        assertEquals( 1, decode( container, ByteBuffer.wrap( ENTRY_PDU ) ).size() );
+
+        Asn1Decoder.decode( ByteBuffer.wrap( DONE_PDU ), container );
+        container.clean();
+
+        assertNull( container.getAttributeProjection( 1 ) );
+        assertEquals( 3, decode( container, ByteBuffer.wrap( ENTRY_PDU ) ).size() );
+    }
+
+
+    @Test
+    public void testProjectionCopiedToNewContainer() throws DecoderException
+    {
+        LdapMessageContainer<Message> container = new LdapMessageContainer<>( codec );
+        container.setAttributeProjection( 1, AttributeProjection.allow( "cn" ) );
+
+        LdapMessageContainer<Message> newContainer = new LdapMessageContainer<>( codec );
+        newContainer.copyAttributeProjections( container );
+
+        assertEquals( 1, decode( newContainer, ByteBuffer.wrap( ENTRY_PDU ) ).size() );
+
+        newContainer.clearAttributeProjections();
+
+        assertNull( newContainer.getAttributeProjection( 1 ) );
+        assertEquals( 3, decode( newContainer, ByteBuffer.wrap( ENTRY_PDU ) ).size() );
+    }
+
+
+    @Test
+    public void testLazyProjection() throws DecoderException
+    {
+        LdapMessageContainer<Message> container = new LdapMessageContainer<>( codec );
+        container.setLazyEntries( true );
+        container.setAttributeProjection( 1, AttributeProjection.deny( "ou" ) );
+
+        Entry entry = decode( container, ByteBuffer.wrap( ENTRY_PDU ) );
+
+        assertTrue( entry instanceof LazyEntry );
+        assertEquals( 2, entry.size() );
+        assertFalse( entry.containsAttribute( "ou" ) );
+
+        // Some attributes have been dropped, the raw attributes can't be reused
+        assertFalse( ( ( LazyEntry ) entry ).isUnchanged() );
+    }
+
+
+    @Test
+    public void testAttributeProjection()
+    {
+        AttributeProjection projection = AttributeProjection.allow( "cn", " Mail " );
+
+        assertTrue( projection.isAllowList() );
+        assertTrue( projection.isAccepted( "CN" ) );
+        assertTrue( projection.isAccepted( "cn;lang-fr" ) );
+        assertTrue( projection.isAccepted( "mail" ) );
+        assertFalse( projection.isAccepted( "sn" ) );
+
+        projection = AttributeProjection.deny( "jpegPhoto" );
+
+        assertTrue( projection.isAccepted( "cn" ) );
+        assertFalse( projection.isAccepted( "jpegphoto;binary" ) );
+
+        assertNull( AttributeProjection.fromRequestedAttributes() );
+        assertNull( AttributeProjection.fromRequestedAttributes( "cn", "*" ) );
+        assertNull( AttributeProjection.fromRequestedAttributes( "+", "cn" ) );
+        assertTrue( AttributeProjection.fromRequestedAttributes( "cn", "sn" ).isAccepted( "sn" ) );
+    }
+}
@@ -54,6 +54,9 @@ public interface AdDirSyncResponse extends Control
     /** This control OID */
     String OID = "1.2.840.113556.1.4.841";
 
+    /** The flag value used to tell there are more results when no known flag is set */
+    int MORE_RESULTS_FLAG_VALUE = 0x0002;
+
 
     /**
      * @return The maximum length of attributes to be returned
@@ -108,4 +111,61 @@ public interface AdDirSyncResponse extends Control
      * @param flag The flag to be removed from the current collection of flags.
      */
     void removeFlag( AdDirSyncResponseFlag flag );
+
+
+    /**
+     * @return The raw flag value, including the bits which don't map to a known
+     * {@link AdDirSyncResponseFlag}
+     */
+    default int getFlagValue()
+    {
+        return AdDirSyncResponseFlag.getBitmask( getFlags() );
+    }
+
+
+    /**
+     * Sets the raw flag value. The default implementation only keeps the bits which map
+     * to a known {@link AdDirSyncResponseFlag}.
+     *
+     * @param flagValue The raw flag value
+     */
+    default void setFlagValue( int flagValue )
+    {
+        setFlags( AdDirSyncResponseFlag.getFlags( flagValue ) );
+    }
+
+
+    /**
+     * Tells if the server has more data to return. Active Directory uses the flag field of
+     * the response to signal this : any non zero value, even one that does not map to a known
+     * {@link AdDirSyncResponseFlag}, means the client has to send another DirSync request
+     * with the returned cookie.
+     *
+     * @return <code>true</code> if the server has more changes to send
+     */
+    default boolean isMoreResults()
+    {
+        return getFlagValue() != 0;
+    }
+
+
+    /**
+     * Tells if the server has more data to return. As the flag value is used to signal it,
+     * no more results means no flag at all. When there are more results and no flag is set,
+     * the flag value is set to {@link #MORE_RESULTS_FLAG_VALUE}, which does not map to any
+     * known flag.
+     *
+     * @param moreResults Set to <code>true</code> if the server has more changes to send
+     */
+    default void setMoreResults( boolean moreResults )
+    {
+        if ( !moreResults )
+        {
+            setFlagValue( 0 );
+        }
+        else if ( getFlagValue() == 0 )
+        {
+            setFlagValue( MORE_RESULTS_FLAG_VALUE );
+        }
+    }
 }
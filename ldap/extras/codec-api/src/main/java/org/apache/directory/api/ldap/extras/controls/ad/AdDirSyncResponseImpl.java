@@ -44,6 +44,9 @@ public class AdDirSyncResponseImpl extends AbstractControl implements AdDirSyncR
     /** The DirSync cookie */
     private byte[] cookie;
 
+    /** The bits of the flag value which don't map to a known flag */
+    private int otherFlagBits;
+
     /**
      * Creates an instance of the DirSync control
      */
@@ -70,6 +73,7 @@ public class AdDirSyncResponseImpl extends AbstractControl implements AdDirSyncR
     public void setFlags( Set<AdDirSyncResponseFlag> flags )
     {
         this.flags = flags;
+        otherFlagBits = 0;
     }
 
 
@@ -93,6 +97,27 @@ public class AdDirSyncResponseImpl extends AbstractControl implements AdDirSyncR
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getFlagValue()
+    {
+        return AdDirSyncResponseFlag.getBitmask( flags ) | otherFlagBits;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setFlagValue( int flagValue )
+    {
+        flags = AdDirSyncResponseFlag.getFlags( flagValue );
+        otherFlagBits = flagValue & ~AdDirSyncResponseFlag.getBitmask( flags );
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -149,7 +174,7 @@ public class AdDirSyncResponseImpl extends AbstractControl implements AdDirSyncR
     {
         int h = super.hashCode();
 
-        h = h * 17 + AdDirSyncResponseFlag.getBitmask( flags );
+        h = h * 17 + getFlagValue();
         h = h * 17 + maxReturnLength;
 
         if ( cookie != null )
@@ -184,7 +209,7 @@ public class AdDirSyncResponseImpl extends AbstractControl implements AdDirSyncR
 
         return super.equals( other )
             && ( maxReturnLength == otherControl.getMaxReturnLength() )
-            && ( flags.equals( otherControl.getFlags() ) )
+            && ( getFlagValue() == otherControl.getFlagValue() )
             && ( Arrays.equals( cookie, otherControl.getCookie() ) )
             && ( isCritical() == otherControl.isCritical() );
     }
@@ -201,8 +226,9 @@ public class AdDirSyncResponseImpl extends AbstractControl implements AdDirSyncR
         sb.append( "    DirSync control :\n" );
         sb.append( "        oid : " ).append( getOid() ).append( '\n' );
         sb.append( "        critical : " ).append( isCritical() ).append( '\n' );
-        sb.append( "        flags : 0x" ).append( Integer.toHexString( AdDirSyncResponseFlag.getBitmask( flags ) ) )
+        sb.append( "        flags : 0x" ).append( Integer.toHexString( getFlagValue() ) )
                         .append( ' ' ).append( flags.toString() ).append( "\n" );
+        sb.append( "        moreResults : " ).append( isMoreResults() ).append( '\n' );
         sb.append( "        maxReturnLength : '" ).append( getMaxReturnLength() ).append( "'\n" );
         sb.append( "        cookie            : '" ).append( Strings.dumpBytes( getCookie() ) ).append( "'\n" );
 
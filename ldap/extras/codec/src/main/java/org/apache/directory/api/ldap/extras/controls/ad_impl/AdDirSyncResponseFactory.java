@@ -26,7 +26,6 @@ import org.apache.directory.api.ldap.codec.api.AbstractControlFactory;
 import org.apache.directory.api.ldap.codec.api.ControlFactory;
 import org.apache.directory.api.ldap.codec.api.LdapApiService;
 import org.apache.directory.api.ldap.extras.controls.ad.AdDirSyncResponse;
-import org.apache.directory.api.ldap.extras.controls.ad.AdDirSyncResponseFlag;
 import org.apache.directory.api.ldap.extras.controls.ad.AdDirSyncResponseImpl;
 import org.apache.directory.api.ldap.model.message.Control;
 
@@ -75,8 +74,8 @@ public class AdDirSyncResponseFactory extends AbstractControlFactory<AdDirSyncRe
         // Encode the MaxReturnLength/
         BerValue.encodeInteger( buffer, adDirSync.getMaxReturnLength() );
 
-        // Encode the flags
-        BerValue.encodeInteger( buffer, AdDirSyncResponseFlag.getBitmask( adDirSync.getFlags() ) );
+        // Encode the raw flags, a non zero value telling the client there are more results
+        BerValue.encodeInteger( buffer, adDirSync.getFlagValue() );
 
         // Encode the SEQ
         BerValue.encodeSequence( buffer, start );
@@ -132,7 +132,7 @@ public final class AdDirSyncResponseGrammar extends AbstractGrammar<AdDirSyncRes
                                 LOG.debug( I18n.msg( I18n.MSG_08101_FLAGS, flags.toString() ) );
                             }
 
-                            container.getAdDirSyncResponseControl().setFlags( flags );
+                            container.getAdDirSyncResponseControl().setFlagValue( flagValue );
                         }
                         catch ( IntegerDecoderException ide )
                         {
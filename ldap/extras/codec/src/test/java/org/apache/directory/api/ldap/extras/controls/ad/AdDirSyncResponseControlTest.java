@@ -22,7 +22,9 @@ package org.apache.directory.api.ldap.extras.controls.ad;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.nio.ByteBuffer;
 import java.util.EnumSet;
@@ -95,6 +97,84 @@ public class AdDirSyncResponseControlTest
     }
 
 
+    @Test
+    public void testAdDirSyncControlMoreResults() throws DecoderException, EncoderException
+    {
+        AdDirSyncResponseFactory factory = ( AdDirSyncResponseFactory ) codec.getResponseControlFactories().
+            get( AdDirSyncResponse.OID );
+
+        // A value which does not map to any known flag still means there are more results
+        AdDirSyncResponse adDirSyncResponse = factory.newControl();
+        factory.decodeValue( adDirSyncResponse, new byte[]
+            {
+                0x30, 0x08,
+                  0x02, 0x01, 0x02,  // flag (more results)
+                  0x02, 0x01, 0x00,  // maxReturnLength (no limit)
+                  0x04, 0x00         // the cookie
+            } );
+
+        assertTrue( adDirSyncResponse.getFlags().isEmpty() );
+        assertTrue( adDirSyncResponse.isMoreResults() );
+
+        // No more results
+        adDirSyncResponse = factory.newControl();
+        factory.decodeValue( adDirSyncResponse, new byte[]
+            {
+                0x30, 0x08,
+                  0x02, 0x01, 0x00,  // flag (no more results)
+                  0x02, 0x01, 0x00,  // maxReturnLength (no limit)
+                  0x04, 0x00         // the cookie
+            } );
+
+        assertFalse( adDirSyncResponse.isMoreResults() );
+
+        // Check that the more results flag is kept when encoding, without adding a known flag
+        AdDirSyncResponse encoded = factory.newControl();
+        encoded.setMoreResults( true );
+        encoded.setCookie( null );
+
+        assertTrue( encoded.getFlags().isEmpty() );
+        assertEquals( AdDirSyncResponse.MORE_RESULTS_FLAG_VALUE, encoded.getFlagValue() );
+
+        Asn1Buffer asn1Buffer = new Asn1Buffer();
+        factory.encodeValue( asn1Buffer, encoded );
+
+        AdDirSyncResponse decoded = factory.newControl();
+        factory.decodeValue( decoded, asn1Buffer.getBytes().array() );
+
+        assertTrue( decoded.isMoreResults() );
+        assertTrue( decoded.getFlags().isEmpty() );
+        assertEquals( encoded, decoded );
+
+        // A known flag is kept, and tells there are more results
+        encoded.setFlags( EnumSet.of( AdDirSyncResponseFlag.LDAP_DIRSYNC_ANCESTORS_FIRST_ORDER ) );
+        encoded.setMoreResults( true );
+
+        assertEquals( 0x0800, encoded.getFlagValue() );
+
+        asn1Buffer = new Asn1Buffer();
+        factory.encodeValue( asn1Buffer, encoded );
+        decoded = factory.newControl();
+        factory.decodeValue( decoded, asn1Buffer.getBytes().array() );
+
+        assertEquals( EnumSet.of( AdDirSyncResponseFlag.LDAP_DIRSYNC_ANCESTORS_FIRST_ORDER ), decoded.getFlags() );
+        assertTrue( decoded.isMoreResults() );
+
+        // No more results means no flag at all
+        encoded.setMoreResults( false );
+
+        assertTrue( encoded.getFlags().isEmpty() );
+
+        asn1Buffer = new Asn1Buffer();
+        factory.encodeValue( asn1Buffer, encoded );
+        decoded = factory.newControl();
+        factory.decodeValue( decoded, asn1Buffer.getBytes().array() );
+
+        assertFalse( decoded.isMoreResults() );
+        assertEquals( 0, decoded.getFlagValue() );
+    }
+
+
     @Test
     public void testAdDirSyncControlNoCookie() throws DecoderException, EncoderException
     {
@@ -116,6 +196,7 @@ public class AdDirSyncResponseControlTest
         factory.decodeValue( adDirSyncResponse, bb.array() );
 
         assertEquals( EnumSet.of( AdDirSyncResponseFlag.LDAP_DIRSYNC_OBJECT_SECURITY ), adDirSyncResponse.getFlags() );
+        assertTrue( adDirSyncResponse.isMoreResults() );
         assertEquals( 0, adDirSyncResponse.getMaxReturnLength() );
         assertEquals( "", Strings.utf8ToString( adDirSyncResponse.getCookie() ) );
 
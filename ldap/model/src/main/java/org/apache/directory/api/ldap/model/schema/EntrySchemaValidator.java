@@ -0,0 +1,509 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.model.schema;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.entry.Attribute;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.entry.Value;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.exception.LdapInvalidAttributeValueException;
+import org.apache.directory.api.ldap.model.exception.LdapSchemaViolationException;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.schema.registries.DitContentRuleRegistry;
+import org.apache.directory.api.util.Strings;
+
+
+/**
+ * Validates entries against the schema : the entry must have exactly one structural
+ * ObjectClass chain, its auxiliary ObjectClasses must be allowed by the DIT content
+ * rule associated with its structural ObjectClass (if any), all the MUST attributes
+ * of its ObjectClasses must be present, all its user attributes must be allowed by
+ * one of its ObjectClasses, and single valued attributes must have at most one value.
+ * <br>
+ * For each distinct set of ObjectClasses, the superior chains and the DIT content rule
+ * are walked once, and the result is cached as two bitsets of AttributeTypes : the MUST
+ * and the MAY attributes. Validating an entry is then a matter of building the bitset of
+ * its attributes and comparing it with the cached ones.
+ * <br>
+ * This class is thread safe. The caches are built against the SchemaManager content : if
+ * the schema is modified, {@link #clear()} must be called.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class EntrySchemaValidator
+{
+    /** The SchemaManager */
+    private final SchemaManager schemaManager;
+
+    /** The objectClass AttributeType */
+    private final AttributeType objectClassAT;
+
+    /** The index associated with each AttributeType OID */
+    private final Map<String, Integer> attributeTypeIndexes = new ConcurrentHashMap<>();
+
+    /** The AttributeType associated with each index */
+    private final Map<Integer, AttributeType> indexedAttributeTypes = new ConcurrentHashMap<>();
+
+    /** The next AttributeType index */
+    private final AtomicInteger nextIndex = new AtomicInteger();
+
+    /** The cached closures, per set of ObjectClasses */
+    private final Map<String, ObjectClassClosure> closures = new ConcurrentHashMap<>();
+
+
+    /**
+     * The flattened content of a set of ObjectClasses
+     */
+    private static final class ObjectClassClosure
+    {
+        /** The mandatory AttributeTypes */
+        private final BitSet must;
+
+        /** The allowed AttributeTypes, including the mandatory ones */
+        private final BitSet may;
+
+        /** Tells if the closure contains the extensibleObject ObjectClass */
+        private final boolean isExtensible;
+
+        /** The error found when computing the closure, if any */
+        private final String error;
+
+
+        private ObjectClassClosure( BitSet must, BitSet may, boolean isExtensible )
+        {
+            this.must = must;
+            this.may = may;
+            this.isExtensible = isExtensible;
+            this.error = null;
+        }
+
+
+        private ObjectClassClosure( String error )
+        {
+            this.must = null;
+            this.may = null;
+            this.isExtensible = false;
+            this.error = error;
+        }
+    }
+
+
+    /**
+     * Creates a new instance of EntrySchemaValidator.
+     *
+     * @param schemaManager The SchemaManager used to validate the entries
+     * @throws LdapException If the SchemaManager does not contain the objectClass AttributeType
+     */
+    public EntrySchemaValidator( SchemaManager schemaManager ) throws LdapException
+    {
+        this.schemaManager = schemaManager;
+        objectClassAT = schemaManager.lookupAttributeTypeRegistry( SchemaConstants.OBJECT_CLASS_AT_OID );
+    }
+
+
+    /**
+     * Validates an entry. The entry does not have to be schema aware.
+     *
+     * @param entry The entry to validate
+     * @throws LdapSchemaViolationException If the entry does not respect the schema
+     * @throws LdapInvalidAttributeValueException If a single valued attribute has more than one value
+     * @throws LdapException If the entry contains an unknown AttributeType or ObjectClass
+     */
+    public void validate( Entry entry ) throws LdapException
+    {
+        Attribute objectClass = getObjectClass( entry );
+
+        if ( ( objectClass == null ) || ( objectClass.size() == 0 ) )
+        {
+            throw new LdapSchemaViolationException( ResultCodeEnum.OBJECT_CLASS_VIOLATION,
+                I18n.err( I18n.ERR_13872_NO_OBJECT_CLASS, entry.getDn() ) );
+        }
+
+        ObjectClassClosure closure = getClosure( objectClass );
+
+        if ( closure.error != null )
+        {
+            throw new LdapSchemaViolationException( ResultCodeEnum.OBJECT_CLASS_VIOLATION,
+                I18n.err( I18n.ERR_13873_INVALID_OBJECT_CLASSES, entry.getDn(), closure.error ) );
+        }
+
+        // Build the set of user attributes present in the entry
+        BitSet present = new BitSet( nextIndex.get() );
+
+        for ( Attribute attribute : entry )
+        {
+            AttributeType attributeType = getAttributeType( attribute );
+
+            if ( attributeType.isSingleValued() && ( attribute.size() > 1 ) )
+            {
+                throw new LdapInvalidAttributeValueException( ResultCodeEnum.CONSTRAINT_VIOLATION,
+                    I18n.err( I18n.ERR_13874_SINGLE_VALUED_ATTRIBUTE_WITH_VALUES, entry.getDn(),
+                        attribute.getUpId() ) );
+            }
+
+            if ( attributeType.getUsage() == UsageEnum.USER_APPLICATIONS )
+            {
+                present.set( getIndex( attributeType ) );
+            }
+        }
+
+        // All the MUST attributes must be present
+        if ( !containsAll( present, closure.must ) )
+        {
+            BitSet missing = ( BitSet ) closure.must.clone();
+            missing.andNot( present );
+
+            throw new LdapSchemaViolationException( ResultCodeEnum.OBJECT_CLASS_VIOLATION,
+                I18n.err( I18n.ERR_13875_MISSING_MUST_ATTRIBUTES, entry.getDn(), getNames( missing ) ) );
+        }
+
+        // And all the present attributes must be allowed
+        if ( !closure.isExtensible && !containsAll( closure.may, present ) )
+        {
+            BitSet notAllowed = ( BitSet ) present.clone();
+            notAllowed.andNot( closure.may );
+
+            throw new LdapSchemaViolationException( ResultCodeEnum.OBJECT_CLASS_VIOLATION,
+                I18n.err( I18n.ERR_13876_ATTRIBUTES_NOT_ALLOWED, entry.getDn(), getNames( notAllowed ) ) );
+        }
+    }
+
+
+    /**
+     * Tells if an entry is valid.
+     *
+     * @param entry The entry to check
+     * @return <tt>true</tt> if the entry respects the schema
+     * @see #validate(Entry)
+     */
+    public boolean isValid( Entry entry )
+    {
+        try
+        {
+            validate( entry );
+
+            return true;
+        }
+        catch ( LdapException le )
+        {
+            return false;
+        }
+    }
+
+
+    /**
+     * Clears the caches. This method must be called when the schema has been modified.
+     */
+    public void clear()
+    {
+        closures.clear();
+    }
+
+
+    /**
+     * @return The number of ObjectClasses combinations currently cached
+     */
+    public int getCacheSize()
+    {
+        return closures.size();
+    }
+
+
+    /**
+     * Tells if all the bits set in the second bitset are set in the first one
+     */
+    private static boolean containsAll( BitSet container, BitSet contained )
+    {
+        for ( int i = contained.nextSetBit( 0 ); i >= 0; i = contained.nextSetBit( i + 1 ) )
+        {
+            if ( !container.get( i ) )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Gets the objectClass attribute, even if the entry is not schema aware
+     */
+    private Attribute getObjectClass( Entry entry )
+    {
+        Attribute objectClass = entry.get( objectClassAT );
+
+        if ( objectClass == null )
+        {
+            objectClass = entry.get( SchemaConstants.OBJECT_CLASS_AT );
+        }
+
+        return objectClass;
+    }
+
+
+    /**
+     * Gets the AttributeType of an attribute, even if the attribute is not schema aware
+     */
+    private AttributeType getAttributeType( Attribute attribute ) throws LdapException
+    {
+        AttributeType attributeType = attribute.getAttributeType();
+
+        if ( attributeType != null )
+        {
+            return attributeType;
+        }
+
+        String id = attribute.getId();
+        int optionsPos = id.indexOf( ';' );
+
+        if ( optionsPos != -1 )
+        {
+            id = id.substring( 0, optionsPos );
+        }
+
+        return schemaManager.lookupAttributeTypeRegistry( id );
+    }
+
+
+    /**
+     * Gets the index associated with an AttributeType, creating it if needed
+     */
+    private int getIndex( AttributeType attributeType )
+    {
+        return attributeTypeIndexes.computeIfAbsent( attributeType.getOid(), oid ->
+        {
+            int index = nextIndex.getAndIncrement();
+            indexedAttributeTypes.put( index, attributeType );
+
+            return index;
+        } );
+    }
+
+
+    /**
+     * Gets the names of the AttributeTypes set in the given bitset
+     */
+    private String getNames( BitSet attributeTypes )
+    {
+        List<String> names = new ArrayList<>();
+
+        for ( int i = attributeTypes.nextSetBit( 0 ); i >= 0; i = attributeTypes.nextSetBit( i + 1 ) )
+        {
+            names.add( indexedAttributeTypes.get( i ).getName() );
+        }
+
+        return names.toString();
+    }
+
+
+    /**
+     * Gets the closure associated with a set of ObjectClasses, computing it if needed
+     */
+    private ObjectClassClosure getClosure( Attribute objectClass ) throws LdapException
+    {
+        // The key is the sorted list of the lower cased ObjectClasses
+        String[] values = new String[objectClass.size()];
+        int pos = 0;
+
+        for ( Value value : objectClass )
+        {
+            values[pos++] = Strings.toLowerCaseAscii( Strings.trim( value.getString() ) );
+        }
+
+        Arrays.sort( values );
+        String key = String.join( "$", values );
+
+        ObjectClassClosure closure = closures.get( key );
+
+        if ( closure == null )
+        {
+            closure = computeClosure( values );
+            closures.put( key, closure );
+        }
+
+        return closure;
+    }
+
+
+    /**
+     * Walks the superiors of the given ObjectClasses and the DIT content rule to compute
+     * the MUST and MAY AttributeTypes.
+     */
+    private ObjectClassClosure computeClosure( String[] objectClassNames ) throws LdapException
+    {
+        // Resolve the ObjectClasses and their superiors
+        Set<ObjectClass> objectClasses = new HashSet<>();
+
+        for ( String objectClassName : objectClassNames )
+        {
+            addWithSuperiors( objectClasses, schemaManager.lookupObjectClassRegistry( objectClassName ) );
+        }
+
+        // Find the structural ObjectClass, which must be unique : all the other
+        // structural ObjectClasses must be its superiors
+        ObjectClass structural = null;
+
+        for ( ObjectClass candidate : objectClasses )
+        {
+            if ( !candidate.isStructural() )
+            {
+                continue;
+            }
+
+            Set<ObjectClass> superiors = new HashSet<>();
+            addWithSuperiors( superiors, candidate );
+            boolean isMostSpecific = true;
+
+            for ( ObjectClass other : objectClasses )
+            {
+                if ( other.isStructural() && !superiors.contains( other ) )
+                {
+                    isMostSpecific = false;
+                    break;
+                }
+            }
+
+            if ( isMostSpecific )
+            {
+                structural = candidate;
+                break;
+            }
+        }
+
+        if ( structural == null )
+        {
+            return new ObjectClassClosure( I18n.err( I18n.ERR_13877_NO_UNIQUE_STRUCTURAL_OBJECT_CLASS,
+                Arrays.toString( objectClassNames ) ) );
+        }
+
+        BitSet must = new BitSet();
+        BitSet may = new BitSet();
+
+        for ( ObjectClass oc : objectClasses )
+        {
+            for ( AttributeType attributeType : oc.getMustAttributeTypes() )
+            {
+                must.set( getIndex( attributeType ) );
+            }
+
+            for ( AttributeType attributeType : oc.getMayAttributeTypes() )
+            {
+                may.set( getIndex( attributeType ) );
+            }
+        }
+
+        // Apply the DIT content rule, if any
+        DitContentRuleRegistry ditContentRuleRegistry = schemaManager.getDITContentRuleRegistry();
+
+        if ( ( ditContentRuleRegistry != null ) && ditContentRuleRegistry.contains( structural.getOid() ) )
+        {
+            DitContentRule ditContentRule = ditContentRuleRegistry.lookup( structural.getOid() );
+            String error = applyDitContentRule( ditContentRule, objectClasses, must, may );
+
+            if ( error != null )
+            {
+                return new ObjectClassClosure( error );
+            }
+        }
+
+        may.or( must );
+
+        return new ObjectClassClosure( must, may, objectClasses.contains(
+            schemaManager.lookupObjectClassRegistry( SchemaConstants.EXTENSIBLE_OBJECT_OC_OID ) ) );
+    }
+
+
+    /**
+     * Checks the auxiliary ObjectClasses against a DIT content rule, and updates the MUST
+     * and MAY AttributeTypes.
+     *
+     * @return An error message, or null if the ObjectClasses are allowed by the rule
+     */
+    private String applyDitContentRule( DitContentRule ditContentRule, Set<ObjectClass> objectClasses,
+        BitSet must, BitSet may ) throws LdapException
+    {
+        Set<ObjectClass> allowedAuxiliaries = new HashSet<>();
+
+        for ( String auxOid : ditContentRule.getAuxObjectClassOids() )
+        {
+            allowedAuxiliaries.add( schemaManager.lookupObjectClassRegistry( auxOid ) );
+        }
+
+        for ( ObjectClass oc : objectClasses )
+        {
+            if ( oc.isAuxiliary() && !allowedAuxiliaries.contains( oc ) )
+            {
+                return I18n.err( I18n.ERR_13878_AUXILIARY_OBJECT_CLASS_NOT_ALLOWED, oc.getName(),
+                    ditContentRule.getOid() );
+            }
+        }
+
+        for ( String mustOid : ditContentRule.getMustAttributeTypeOids() )
+        {
+            must.set( getIndex( schemaManager.lookupAttributeTypeRegistry( mustOid ) ) );
+        }
+
+        for ( String mayOid : ditContentRule.getMayAttributeTypeOids() )
+        {
+            may.set( getIndex( schemaManager.lookupAttributeTypeRegistry( mayOid ) ) );
+        }
+
+        for ( String notOid : ditContentRule.getNotAttributeTypeOids() )
+        {
+            may.clear( getIndex( schemaManager.lookupAttributeTypeRegistry( notOid ) ) );
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Adds an ObjectClass and all its superiors to the given set
+     */
+    private static void addWithSuperiors( Set<ObjectClass> objectClasses, ObjectClass objectClass )
+    {
+        if ( objectClasses.add( objectClass ) )
+        {
+            List<ObjectClass> superiors = objectClass.getSuperiors();
+
+            if ( superiors != null )
+            {
+                for ( ObjectClass superior : superiors )
+                {
+                    addWithSuperiors( objectClasses, superior );
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,368 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.model.schema.parsers;
+
+
+import java.io.File;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.model.schema.AttributeType;
+import org.apache.directory.api.ldap.model.schema.ObjectClass;
+import org.apache.directory.api.ldap.model.schema.syntaxCheckers.OpenLdapObjectIdentifierMacro;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Parses a set of OpenLDAP schema files in parallel. Each file is parsed by its own
+ * {@link OpenLdapSchemaParser} instance, so object identifier macros are only resolved
+ * within the file they are declared in. A failure on one file does not stop the parsing
+ * of the other files : the error, and the line it was found on, are reported in the
+ * {@link Result} associated with the file.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class OpenLdapSchemaBulkParser
+{
+    /** The LoggerFactory used by this class */
+    private static final Logger LOG = LoggerFactory.getLogger( OpenLdapSchemaBulkParser.class );
+
+    /** The number of threads used to parse the files */
+    private int parallelism;
+
+    /** A flag used to tell the parsers if they should be strict or not */
+    private boolean isQuirksModeEnabled = false;
+
+    /** A flag used to tell the parsers if the object identifier macros should be resolved */
+    private boolean isResolveObjectIdentifierMacros = true;
+
+
+    /**
+     * The result of the parsing of one schema file
+     */
+    public static final class Result
+    {
+        /** The parsed file */
+        private final File file;
+
+        /** The parsed attribute types */
+        private final List<AttributeType> attributeTypes;
+
+        /** The parsed object classes */
+        private final List<ObjectClass> objectClasses;
+
+        /** The object identifier macros declared in the file */
+        private final Map<String, OpenLdapObjectIdentifierMacro> objectIdentifierMacros;
+
+        /** The error, if the parsing has failed */
+        private final ParseException error;
+
+
+        private Result( File file, OpenLdapSchemaParser parser, ParseException error )
+        {
+            this.file = file;
+            this.error = error;
+
+            if ( ( error == null ) && ( parser.getAttributeTypes() != null ) )
+            {
+                attributeTypes = parser.getAttributeTypes();
+                objectClasses = parser.getObjectClasses();
+            }
+            else
+            {
+                attributeTypes = Collections.emptyList();
+                objectClasses = Collections.emptyList();
+            }
+
+            objectIdentifierMacros = parser.getObjectIdentifierMacros();
+        }
+
+
+        /**
+         * @return The parsed file
+         */
+        public File getFile()
+        {
+            return file;
+        }
+
+
+        /**
+         * @return The parsed attribute types, empty if the parsing has failed
+         */
+        public List<AttributeType> getAttributeTypes()
+        {
+            return attributeTypes;
+        }
+
+
+        /**
+         * @return The parsed object classes, empty if the parsing has failed
+         */
+        public List<ObjectClass> getObjectClasses()
+        {
+            return objectClasses;
+        }
+
+
+        /**
+         * @return The object identifier macros declared in the file
+         */
+        public Map<String, OpenLdapObjectIdentifierMacro> getObjectIdentifierMacros()
+        {
+            return objectIdentifierMacros;
+        }
+
+
+        /**
+         * @return <tt>true</tt> if the file has been successfully parsed
+         */
+        public boolean isSuccess()
+        {
+            return error == null;
+        }
+
+
+        /**
+         * @return The error if the parsing has failed, <tt>null</tt> otherwise. The error offset
+         * is the line number where the error was found.
+         */
+        public ParseException getError()
+        {
+            return error;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString()
+        {
+            if ( error == null )
+            {
+                return file + " : " + attributeTypes.size() + " attributeTypes, " + objectClasses.size()
+                    + " objectClasses";
+            }
+            else
+            {
+                return file + " : line " + error.getErrorOffset() + ", " + error.getMessage();
+            }
+        }
+    }
+
+
+    /**
+     * Creates a new instance of OpenLdapSchemaBulkParser, using as many threads as
+     * there are available processors.
+     */
+    public OpenLdapSchemaBulkParser()
+    {
+        this( Runtime.getRuntime().availableProcessors() );
+    }
+
+
+    /**
+     * Creates a new instance of OpenLdapSchemaBulkParser.
+     *
+     * @param parallelism The maximum number of files parsed concurrently
+     */
+    public OpenLdapSchemaBulkParser( int parallelism )
+    {
+        if ( parallelism < 1 )
+        {
+            throw new IllegalArgumentException( I18n.err( I18n.ERR_13870_INVALID_PARALLELISM, parallelism ) );
+        }
+
+        this.parallelism = parallelism;
+    }
+
+
+    /**
+     * Parses the given schema files. The files are parsed concurrently, using a
+     * pool of threads that is created for this call and released before it returns.
+     *
+     * @param schemaFiles The files to parse
+     * @return The results, in the same order than the given files
+     */
+    public List<Result> parse( List<File> schemaFiles )
+    {
+        if ( ( schemaFiles == null ) || schemaFiles.isEmpty() )
+        {
+            return Collections.emptyList();
+        }
+
+        int nbThreads = Math.min( parallelism, schemaFiles.size() );
+
+        if ( nbThreads == 1 )
+        {
+            // No need to start a thread
+            List<Result> results = new ArrayList<>( schemaFiles.size() );
+
+            for ( File schemaFile : schemaFiles )
+            {
+                results.add( parse( schemaFile ) );
+            }
+
+            return results;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool( nbThreads );
+
+        try
+        {
+            return parse( schemaFiles, executor );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Parses the given schema files, using the given executor.
+     *
+     * @param schemaFiles The files to parse
+     * @param executor The executor the parsing tasks are submitted to
+     * @return The results, in the same order than the given files
+     */
+    public List<Result> parse( List<File> schemaFiles, ExecutorService executor )
+    {
+        List<Future<Result>> futures = new ArrayList<>( schemaFiles.size() );
+
+        for ( File schemaFile : schemaFiles )
+        {
+            futures.add( executor.submit( () -> parse( schemaFile ) ) );
+        }
+
+        List<Result> results = new ArrayList<>( schemaFiles.size() );
+
+        for ( int i = 0; i < futures.size(); i++ )
+        {
+            try
+            {
+                results.add( futures.get( i ).get() );
+            }
+            catch ( InterruptedException ie )
+            {
+                Thread.currentThread().interrupt();
+
+                for ( Future<Result> future : futures )
+                {
+                    future.cancel( true );
+                }
+
+                throw new IllegalStateException( ie.getMessage(), ie );
+            }
+            catch ( ExecutionException ee )
+            {
+                // The parse method catches all the parsing errors, this is unexpected
+                throw new IllegalStateException( ee.getCause().getMessage(), ee.getCause() );
+            }
+        }
+
+        return results;
+    }
+
+
+    /**
+     * Parses one single file.
+     *
+     * @param schemaFile The file to parse
+     * @return The result
+     */
+    private Result parse( File schemaFile )
+    {
+        OpenLdapSchemaParser parser = new OpenLdapSchemaParser();
+        parser.setQuirksMode( isQuirksModeEnabled );
+        parser.setResolveObjectIdentifierMacros( isResolveObjectIdentifierMacros );
+
+        try
+        {
+            parser.parse( schemaFile );
+
+            return new Result( schemaFile, parser, null );
+        }
+        catch ( ParseException pe )
+        {
+            if ( LOG.isDebugEnabled() )
+            {
+                LOG.debug( I18n.err( I18n.ERR_13871_SCHEMA_FILE_PARSING_FAILURE, schemaFile, pe.getErrorOffset(),
+                    pe.getMessage() ) );
+            }
+
+            return new Result( schemaFile, parser, pe );
+        }
+    }
+
+
+    /**
+     * Checks if quirks mode is enabled.
+     *
+     * @return true, if is quirks mode is enabled
+     */
+    public boolean isQuirksMode()
+    {
+        return isQuirksModeEnabled;
+    }
+
+
+    /**
+     * Sets the quirks mode used by the underlying parsers.
+     *
+     * @param enabled the new quirks mode
+     */
+    public void setQuirksMode( boolean enabled )
+    {
+        isQuirksModeEnabled = enabled;
+    }
+
+
+    /**
+     * Checks if object identifier macros should be resolved.
+     *
+     * @return true, object identifier macros should be resolved.
+     */
+    public boolean isResolveObjectIdentifierMacros()
+    {
+        return isResolveObjectIdentifierMacros;
+    }
+
+
+    /**
+     * Sets if object identifier macros should be resolved.
+     *
+     * @param resolveObjectIdentifierMacros true if object identifier macros should be resolved
+     */
+    public void setResolveObjectIdentifierMacros( boolean resolveObjectIdentifierMacros )
+    {
+        this.isResolveObjectIdentifierMacros = resolveObjectIdentifierMacros;
+    }
+}
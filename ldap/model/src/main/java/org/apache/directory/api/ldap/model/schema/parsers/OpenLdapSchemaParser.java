@@ -842,7 +842,8 @@ public class OpenLdapSchemaParser
             return false;
         }
         
-        return text.equalsIgnoreCase( pos.line.substring( pos.start, pos.start + text.length() ) );
+        // Compare in place, we don't want to create a substring for each check
+        return pos.line.regionMatches( true, pos.start, text, 0, text.length() );
     }
     
     
@@ -6560,6 +6561,28 @@ public class OpenLdapSchemaParser
     {
         PosSchema pos = new PosSchema();
 
+        try
+        {
+            parse( reader, pos );
+        }
+        finally
+        {
+            // Keep track of the last line we have read, so that errors can be located
+            lineNumber = pos.lineNumber;
+        }
+    }
+
+
+    /**
+     * Parses all the elements found in the reader, starting at the given position
+     *
+     * @param reader The stream reader
+     * @param pos The position in the Schema
+     * @throws LdapSchemaException If something went wrong in the schema
+     * @throws IOException If the stream can't be read
+     */
+    private void parse( Reader reader, PosSchema pos ) throws LdapSchemaException, IOException
+    {
         while ( true )
         {
             // Always move forward to the next element, skipping whites, NL and comments
@@ -6620,7 +6643,7 @@ public class OpenLdapSchemaParser
             }
             catch ( LdapSchemaException | IOException e )
             {
-                throw new ParseException( e.getMessage(), 0 );
+                throw new ParseException( e.getMessage(), lineNumber );
             }
         }
         catch ( IOException e )
@@ -6632,6 +6655,18 @@ public class OpenLdapSchemaParser
     }
 
 
+    /**
+     * Gets the number of the last line read by the parser. When the parsing has failed, 
+     * this is the line where the error was found.
+     * 
+     * @return The number of the last line read, starting at 1
+     */
+    public int getLineNumber()
+    {
+        return lineNumber;
+    }
+
+
     /**
      * Checks if object identifier macros should be resolved.
      * 
@@ -56,9 +56,15 @@ public class DefaultAttributeTypeRegistry extends DefaultSchemaObjectRegistry<At
     /** cached Oid/normalizer mapping */
     private Map<String, OidNormalizer> oidNormalizerMap;
 
-    /** maps OIDs to a Set of descendants for that OID */
+    /** maps OIDs to a Set of direct descendants for that OID */
     private Map<String, Set<AttributeType>> oidToDescendantSet;
 
+    /** maps OIDs to the Set of all their ancestors OIDs */
+    private Map<String, Set<String>> oidToAncestorOids;
+
+    /** maps OIDs to all their descendants, direct or not, by OID */
+    private Map<String, Map<String, AttributeType>> oidToAllDescendants;
+
 
     /**
      * Creates a new default AttributeTypeRegistry instance.
@@ -68,6 +74,8 @@ public class DefaultAttributeTypeRegistry extends DefaultSchemaObjectRegistry<At
         super( SchemaObjectType.ATTRIBUTE_TYPE, new OidRegistry<AttributeType>() );
         oidNormalizerMap = new HashMap<>();
         oidToDescendantSet = new HashMap<>();
+        oidToAncestorOids = new HashMap<>();
+        oidToAllDescendants = new HashMap<>();
     }
 
 
@@ -157,6 +165,218 @@ public class DefaultAttributeTypeRegistry extends DefaultSchemaObjectRegistry<At
     }
 
 
+    /**
+     * Get's an iterator over all the descendants of an attributeType, direct or
+     * not, for some ancestor's name alias or their OID. The descendants are read
+     * from an index, the superior chains are not walked.
+     * 
+     * @param ancestorId the name alias or OID for an attributeType
+     * @return an Iterator over the AttributeTypes which have the ancestor
+     * within their superior chain to the top
+     * @throws LdapException if the ancestor attributeType cannot be 
+     * discerned from the ancestorId supplied
+     */
+    public Iterator<AttributeType> allDescendants( String ancestorId ) throws LdapException
+    {
+        try
+        {
+            return allDescendantsIterator( getOidByName( ancestorId ) );
+        }
+        catch ( LdapException ne )
+        {
+            throw new LdapNoSuchAttributeException( ne.getMessage(), ne );
+        }
+    }
+
+
+    /**
+     * Get's an iterator over all the descendants of an attributeType, direct or
+     * not. The descendants are read from an index, the superior chains are not walked.
+     * 
+     * @param ancestor the AttributeType we are looking for
+     * @return an Iterator over the AttributeTypes which have the ancestor
+     * within their superior chain to the top
+     */
+    public Iterator<AttributeType> allDescendants( AttributeType ancestor )
+    {
+        return allDescendantsIterator( ancestor.getOid() );
+    }
+
+
+    /**
+     * @param oid An AttributeType OID
+     * @return An Iterator over all the indexed descendants of this AttributeType
+     */
+    private Iterator<AttributeType> allDescendantsIterator( String oid )
+    {
+        Map<String, AttributeType> descendants = oidToAllDescendants.get( oid );
+
+        if ( descendants == null )
+        {
+            return Collections.<AttributeType> emptySet().iterator();
+        }
+
+        return Collections.unmodifiableCollection( descendants.values() ).iterator();
+    }
+
+
+    /**
+     * Tells if an AttributeType has another AttributeType within its superior
+     * chain to the top. This check does not walk the superior chain, it uses an
+     * index updated when the descendants are registered or unregistered.
+     * 
+     * @param descendantId the name alias or OID for the possible descendant
+     * @param ancestorId the name alias or OID for the possible ancestor
+     * @return <code>true</code> if the descendant is a subtype of the ancestor
+     * @throws LdapException if one of the attributeTypes cannot be 
+     * discerned from the Id supplied
+     */
+    public boolean isDescendantOf( String descendantId, String ancestorId ) throws LdapException
+    {
+        try
+        {
+            String descendantOid = getOidByName( descendantId );
+            String ancestorOid = getOidByName( ancestorId );
+            Set<String> ancestors = oidToAncestorOids.get( descendantOid );
+
+            return ( ancestors != null ) && ancestors.contains( ancestorOid );
+        }
+        catch ( LdapException ne )
+        {
+            throw new LdapNoSuchAttributeException( ne.getMessage(), ne );
+        }
+    }
+
+
+    /**
+     * Tells if an AttributeType has another AttributeType within its superior
+     * chain to the top. This check does not walk the superior chain, it uses an
+     * index updated when the descendants are registered or unregistered.
+     * 
+     * @param descendant the possible descendant
+     * @param ancestor the possible ancestor
+     * @return <code>true</code> if the descendant is a subtype of the ancestor
+     */
+    public boolean isDescendantOf( AttributeType descendant, AttributeType ancestor )
+    {
+        if ( ( descendant == null ) || ( ancestor == null ) )
+        {
+            return false;
+        }
+
+        // An AttributeType which is not registered is not indexed
+        if ( !contains( descendant.getOid() ) )
+        {
+            return descendant.isDescendantOf( ancestor );
+        }
+
+        Set<String> ancestors = oidToAncestorOids.get( descendant.getOid() );
+
+        return ( ancestors != null ) && ancestors.contains( ancestor.getOid() );
+    }
+
+
+    /**
+     * Add a superior to descendant link in the hierarchy index. The descendant and all
+     * its own descendants get the superior and its ancestors as new ancestors.
+     * 
+     * @param attributeType The descendant
+     * @param superior The descendant's superior
+     */
+    private void indexDescendant( AttributeType attributeType, AttributeType superior )
+    {
+        String oid = attributeType.getOid();
+        Set<String> ancestors = getAncestorsOf( superior.getOid() );
+        Map<String, AttributeType> subtree = getSubtreeOf( attributeType );
+
+        // Protect against cycles
+        ancestors.remove( oid );
+
+        for ( String descendantOid : subtree.keySet() )
+        {
+            oidToAncestorOids.computeIfAbsent( descendantOid, key -> new HashSet<>() ).addAll( ancestors );
+        }
+
+        for ( String ancestorOid : ancestors )
+        {
+            oidToAllDescendants.computeIfAbsent( ancestorOid, key -> new HashMap<>() ).putAll( subtree );
+        }
+    }
+
+
+    /**
+     * Remove a superior to descendant link from the hierarchy index. As an AttributeType
+     * has only one superior, the descendant and all its own descendants lose the superior
+     * and its ancestors.
+     * 
+     * @param attributeType The descendant
+     * @param superiorOid The descendant's superior OID
+     */
+    private void unindexDescendant( AttributeType attributeType, String superiorOid )
+    {
+        Set<String> ancestors = getAncestorsOf( superiorOid );
+        Map<String, AttributeType> subtree = getSubtreeOf( attributeType );
+
+        for ( String descendantOid : subtree.keySet() )
+        {
+            Set<String> descendantAncestors = oidToAncestorOids.get( descendantOid );
+
+            if ( descendantAncestors != null )
+            {
+                descendantAncestors.removeAll( ancestors );
+
+                if ( descendantAncestors.isEmpty() )
+                {
+                    oidToAncestorOids.remove( descendantOid );
+                }
+            }
+        }
+
+        for ( String ancestorOid : ancestors )
+        {
+            Map<String, AttributeType> ancestorDescendants = oidToAllDescendants.get( ancestorOid );
+
+            if ( ancestorDescendants != null )
+            {
+                ancestorDescendants.keySet().removeAll( subtree.keySet() );
+
+                if ( ancestorDescendants.isEmpty() )
+                {
+                    oidToAllDescendants.remove( ancestorOid );
+                }
+            }
+        }
+    }
+
+
+    /**
+     * @param oid An AttributeType OID
+     * @return A new Set containing the OID and all the AttributeType ancestors OIDs
+     */
+    private Set<String> getAncestorsOf( String oid )
+    {
+        Set<String> ancestors = new HashSet<>();
+        ancestors.add( oid );
+        ancestors.addAll( oidToAncestorOids.getOrDefault( oid, Collections.emptySet() ) );
+
+        return ancestors;
+    }
+
+
+    /**
+     * @param attributeType An AttributeType
+     * @return A new Map containing the AttributeType and all its descendants, by OID
+     */
+    private Map<String, AttributeType> getSubtreeOf( AttributeType attributeType )
+    {
+        Map<String, AttributeType> subtree = new HashMap<>();
+        subtree.put( attributeType.getOid(), attributeType );
+        subtree.putAll( oidToAllDescendants.getOrDefault( attributeType.getOid(), Collections.emptyMap() ) );
+
+        return subtree;
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -186,7 +406,10 @@ public class DefaultAttributeTypeRegistry extends DefaultSchemaObjectRegistry<At
         }
 
         // Add the current type as a descendant
-        descendants.add( attributeType );
+        if ( descendants.add( attributeType ) )
+        {
+            indexDescendant( attributeType, ancestor );
+        }
     }
 
 
@@ -207,12 +430,20 @@ public class DefaultAttributeTypeRegistry extends DefaultSchemaObjectRegistry<At
 
         if ( descendants != null )
         {
-            descendants.remove( attributeType );
+            // The AttributeType hashCode may have changed since it has been added,
+            // remove it using its OID
+            String oid = attributeType.getOid();
+            boolean removed = descendants.removeIf( descendant -> oid.equals( descendant.getOid() ) );
 
             if ( descendants.isEmpty() )
             {
                 oidToDescendantSet.remove( ancestor.getOid() );
             }
+
+            if ( removed )
+            {
+                unindexDescendant( attributeType, ancestor.getOid() );
+            }
         }
     }
 
@@ -232,7 +463,15 @@ public class DefaultAttributeTypeRegistry extends DefaultSchemaObjectRegistry<At
             // Deleting an AT which might be used as a superior means we have
             // to recursively update the descendant map. We also have to remove
             // the at.oid -> descendant relation
-            oidToDescendantSet.remove( numericOid );
+            Set<AttributeType> descendants = oidToDescendantSet.remove( numericOid );
+
+            if ( descendants != null )
+            {
+                for ( AttributeType descendant : descendants )
+                {
+                    unindexDescendant( descendant, numericOid );
+                }
+            }
 
             // Now recurse if needed
             unregisterDescendants( removed, removed.getSuperior() );
@@ -357,5 +596,7 @@ public class DefaultAttributeTypeRegistry extends DefaultSchemaObjectRegistry<At
         }
 
         oidToDescendantSet.clear();
+        oidToAncestorOids.clear();
+        oidToAllDescendants.clear();
     }
 }
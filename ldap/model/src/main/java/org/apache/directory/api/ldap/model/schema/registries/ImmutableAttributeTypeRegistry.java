@@ -20,7 +20,12 @@
 package org.apache.directory.api.ldap.model.schema.registries;
 
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.directory.api.i18n.I18n;
@@ -105,6 +110,89 @@ public boolean hasDescendants( String ancestorId ) throws LdapException
     }
 
 
+    /**
+     * Get's an iterator over all the descendants of an attributeType, direct or
+     * not, for some ancestor's name alias or their OID.
+     * 
+     * @see DefaultAttributeTypeRegistry#allDescendants(String)
+     * @param ancestorId the name alias or OID for an attributeType
+     * @return an Iterator over the AttributeTypes which have the ancestor
+     * within their superior chain to the top
+     * @throws LdapException if the ancestor attributeType cannot be 
+     * discerned from the ancestorId supplied
+     */
+    public Iterator<AttributeType> allDescendants( String ancestorId ) throws LdapException
+    {
+        if ( immutableAttributeTypeRegistry instanceof DefaultAttributeTypeRegistry )
+        {
+            return ( ( DefaultAttributeTypeRegistry ) immutableAttributeTypeRegistry ).allDescendants( ancestorId );
+        }
+
+        // No index, walk down the direct descendants
+        List<AttributeType> allDescendants = new ArrayList<>();
+        Deque<AttributeType> toProcess = new ArrayDeque<>();
+        toProcess.push( immutableAttributeTypeRegistry.lookup( ancestorId ) );
+
+        while ( !toProcess.isEmpty() )
+        {
+            Iterator<AttributeType> descendants = immutableAttributeTypeRegistry.descendants( toProcess.pop() );
+
+            while ( descendants.hasNext() )
+            {
+                AttributeType descendant = descendants.next();
+                allDescendants.add( descendant );
+                toProcess.push( descendant );
+            }
+        }
+
+        return Collections.unmodifiableList( allDescendants ).iterator();
+    }
+
+
+    /**
+     * Tells if an AttributeType has another AttributeType within its superior
+     * chain to the top.
+     * 
+     * @see DefaultAttributeTypeRegistry#isDescendantOf(String, String)
+     * @param descendantId the name alias or OID for the possible descendant
+     * @param ancestorId the name alias or OID for the possible ancestor
+     * @return <code>true</code> if the descendant is a subtype of the ancestor
+     * @throws LdapException if one of the attributeTypes cannot be 
+     * discerned from the Id supplied
+     */
+    public boolean isDescendantOf( String descendantId, String ancestorId ) throws LdapException
+    {
+        if ( immutableAttributeTypeRegistry instanceof DefaultAttributeTypeRegistry )
+        {
+            return ( ( DefaultAttributeTypeRegistry ) immutableAttributeTypeRegistry ).isDescendantOf( descendantId,
+                ancestorId );
+        }
+
+        return lookup( descendantId ).isDescendantOf( lookup( ancestorId ) );
+    }
+
+
+    /**
+     * Tells if an AttributeType has another AttributeType within its superior
+     * chain to the top.
+     * 
+     * @see DefaultAttributeTypeRegistry#isDescendantOf(AttributeType, AttributeType)
+     * @param descendant the possible descendant
+     * @param ancestor the possible ancestor
+     * @return <code>true</code> if the descendant is a subtype of the ancestor
+     */
+    public boolean isDescendantOf( AttributeType descendant, AttributeType ancestor )
+    {
+        if ( immutableAttributeTypeRegistry instanceof DefaultAttributeTypeRegistry )
+        {
+            return ( ( DefaultAttributeTypeRegistry ) immutableAttributeTypeRegistry ).isDescendantOf( descendant,
+                ancestor );
+        }
+
+        return ( descendant != null ) && descendant.isDescendantOf( ancestor );
+    }
+
+
     /**
      * {@inheritDoc}
      */
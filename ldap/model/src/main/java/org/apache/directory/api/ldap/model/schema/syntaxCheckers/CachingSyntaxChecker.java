@@ -0,0 +1,360 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.model.schema.syntaxCheckers;
+
+
+import java.io.Serializable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.model.schema.SchemaManager;
+import org.apache.directory.api.ldap.model.schema.SyntaxChecker;
+
+
+/**
+ * A SyntaxChecker which wraps another SyntaxChecker, and keeps the result of the
+ * most recently checked values in a bounded cache. This is useful for values
+ * that are frequently seen, like ObjectClasses or common Dns, which would otherwise
+ * be parsed again for every entry.
+ * <p>
+ * Looking up a cached value does not take any lock, so that concurrent checks don't
+ * serialize. When the cache is full, a value is evicted using the CLOCK algorithm :
+ * values are visited in insertion order, and a value which has been used since the
+ * last visit is given a second chance. Only the threads adding a value to a full
+ * cache have to be synchronized.
+ * <p>
+ * Only String values are cached. The number of hits and misses is counted, so that
+ * the cache efficiency can be checked.
+ * <p>
+ * The wrapped SyntaxChecker must be stateless, as the result of a check is reused
+ * for the same value. As a registered LdapSyntax is locked, it must be unlocked
+ * to be associated with a CachingSyntaxChecker :
+ * <pre>
+ * LdapSyntax syntax = schemaManager.getLdapSyntaxRegistry().lookup( oid );
+ * SyntaxChecker caching = CachingSyntaxChecker.builder()
+ *     .setSyntaxChecker( syntax.getSyntaxChecker() )
+ *     .setCacheSize( 2048 )
+ *     .build();
+ *
+ * syntax.unlock();
+ * syntax.updateSyntaxChecker( caching );
+ * syntax.lock();
+ * </pre>
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@SuppressWarnings("serial")
+public final class CachingSyntaxChecker extends SyntaxChecker
+{
+    /** The default number of values kept in the cache */
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
+    /** The wrapped SyntaxChecker */
+    private final SyntaxChecker wrapped;
+
+    /** The maximum number of values kept in the cache */
+    private final int cacheSize;
+
+    /** The cache of checked values */
+    private final ConcurrentMap<String, CachedResult> cache;
+
+    /** The cached values, in the order the clock hand visits them. Also used as a lock for evictions */
+    private final Queue<String> clock = new ConcurrentLinkedQueue<>();
+
+    /** The number of values found in the cache */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** The number of values not found in the cache */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * The result of a check, with a flag telling if it has been used since the clock hand
+     * last visited it
+     */
+    private static final class CachedResult implements Serializable
+    {
+        /** The serial version UID */
+        private static final long serialVersionUID = 1L;
+
+        /** The result of the check */
+        private final boolean valid;
+
+        /** Set when the value is found in the cache, cleared by the clock hand */
+        private volatile boolean referenced;
+
+
+        private CachedResult( boolean valid )
+        {
+            this.valid = valid;
+        }
+    }
+
+
+    /**
+     * A static Builder for this class
+     */
+    public static final class Builder extends SCBuilder<CachingSyntaxChecker>
+    {
+        /** The wrapped SyntaxChecker */
+        private SyntaxChecker wrapped;
+
+        /** The cache size */
+        private int cacheSize = DEFAULT_CACHE_SIZE;
+
+
+        /**
+         * The Builder constructor
+         */
+        private Builder()
+        {
+            super( null );
+        }
+
+
+        /**
+         * Set the SyntaxChecker to wrap. Its OID will be used unless another
+         * OID is set.
+         *
+         * @param wrapped The SyntaxChecker to wrap
+         * @return the CachingSyntaxChecker Builder instance
+         */
+        public Builder setSyntaxChecker( SyntaxChecker wrapped )
+        {
+            this.wrapped = wrapped;
+
+            return this;
+        }
+
+
+        /**
+         * Set the maximum number of values kept in the cache
+         *
+         * @param cacheSize The cache size
+         * @return the CachingSyntaxChecker Builder instance
+         */
+        public Builder setCacheSize( int cacheSize )
+        {
+            this.cacheSize = cacheSize;
+
+            return this;
+        }
+
+
+        /**
+         * Create a new instance of CachingSyntaxChecker
+         * @return A new instance of CachingSyntaxChecker
+         */
+        @Override
+        public CachingSyntaxChecker build()
+        {
+            if ( wrapped == null )
+            {
+                throw new IllegalArgumentException( I18n.err( I18n.ERR_13879_NULL_WRAPPED_SYNTAX_CHECKER ) );
+            }
+
+            if ( cacheSize < 1 )
+            {
+                throw new IllegalArgumentException( I18n.err( I18n.ERR_13880_INVALID_CACHE_SIZE, cacheSize ) );
+            }
+
+            return new CachingSyntaxChecker( oid == null ? wrapped.getOid() : oid, wrapped, cacheSize );
+        }
+    }
+
+
+    /**
+     * Creates a new instance of CachingSyntaxChecker.
+     *
+     * @param oid The OID to use for this SyntaxChecker
+     * @param wrapped The wrapped SyntaxChecker
+     * @param cacheSize The cache size
+     */
+    private CachingSyntaxChecker( String oid, SyntaxChecker wrapped, int cacheSize )
+    {
+        super( oid );
+
+        this.wrapped = wrapped;
+        this.cacheSize = cacheSize;
+        cache = new ConcurrentHashMap<>( cacheSize );
+        setFqcn( wrapped.getFqcn() );
+    }
+
+
+    /**
+     * @return An instance of the Builder for this class
+     */
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+
+    /**
+     * @return The wrapped SyntaxChecker
+     */
+    public SyntaxChecker getSyntaxChecker()
+    {
+        return wrapped;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isValidSyntax( Object value )
+    {
+        if ( !( value instanceof String ) )
+        {
+            return wrapped.isValidSyntax( value );
+        }
+
+        String strValue = ( String ) value;
+        CachedResult result = cache.get( strValue );
+
+        if ( result != null )
+        {
+            result.referenced = true;
+            hits.incrementAndGet();
+
+            return result.valid;
+        }
+
+        misses.incrementAndGet();
+        boolean valid = wrapped.isValidSyntax( strValue );
+
+        synchronized ( clock )
+        {
+            if ( !cache.containsKey( strValue ) )
+            {
+                evict();
+                cache.put( strValue, new CachedResult( valid ) );
+                clock.offer( strValue );
+            }
+        }
+
+        return valid;
+    }
+
+
+    /**
+     * Make some room for a new value, moving the clock hand until it finds a value
+     * which has not been used since its last visit. Must be called while holding the
+     * clock lock.
+     */
+    private void evict()
+    {
+        // Bound the number of second chances, concurrent hits may keep setting the flags
+        int secondChances = 0;
+
+        while ( cache.size() >= cacheSize )
+        {
+            String key = clock.poll();
+
+            if ( key == null )
+            {
+                return;
+            }
+
+            CachedResult candidate = cache.get( key );
+
+            if ( candidate == null )
+            {
+                continue;
+            }
+
+            if ( candidate.referenced && ( secondChances++ < cacheSize ) )
+            {
+                candidate.referenced = false;
+                clock.offer( key );
+            }
+            else
+            {
+                cache.remove( key );
+            }
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setSchemaManager( SchemaManager schemaManager )
+    {
+        wrapped.setSchemaManager( schemaManager );
+    }
+
+
+    /**
+     * @return The number of values found in the cache
+     */
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+
+    /**
+     * @return The number of values that were not found in the cache
+     */
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+
+    /**
+     * @return The number of values currently stored in the cache
+     */
+    public int getSize()
+    {
+        return cache.size();
+    }
+
+
+    /**
+     * @return The maximum number of values stored in the cache
+     */
+    public int getCacheSize()
+    {
+        return cacheSize;
+    }
+
+
+    /**
+     * Remove all the values from the cache, and reset the counters
+     */
+    public void clear()
+    {
+        synchronized ( clock )
+        {
+            cache.clear();
+            clock.clear();
+        }
+
+        hits.set( 0L );
+        misses.set( 0L );
+    }
+}
@@ -207,6 +207,25 @@ public final class FacsimileTelephoneNumberSyntaxChecker extends SyntaxChecker
     }
 
 
+    /**
+     * Checks the telephone number part, using a scanner when the default regexp is used
+     *
+     * @param value The telephone number to check
+     * @return <code>true</code> if the telephone number is valid
+     */
+    private boolean isTelephoneNumber( String value )
+    {
+        if ( DEFAULT_REGEXP.equals( defaultPattern.pattern() ) )
+        {
+            return TelephoneNumberSyntaxChecker.isDefaultTelephoneNumber( value );
+        }
+        else
+        {
+            return defaultPattern.matcher( value ).matches();
+        }
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -255,7 +274,7 @@ public final class FacsimileTelephoneNumberSyntaxChecker extends SyntaxChecker
         if ( dollarPos == -1 )
         {
             // We have no fax-parameter : check the Telephone number
-            boolean result = defaultPattern.matcher( strValue ).matches();
+            boolean result = isTelephoneNumber( strValue );
 
             if ( LOG.isDebugEnabled() )
             {
@@ -275,7 +294,7 @@ public final class FacsimileTelephoneNumberSyntaxChecker extends SyntaxChecker
         // First check the telephone number if the '$' is not at the first position
         if ( dollarPos > 0 )
         {
-            boolean result = defaultPattern.matcher( strValue.substring( 0, dollarPos - 1 ) ).matches();
+            boolean result = isTelephoneNumber( strValue.substring( 0, dollarPos - 1 ) );
 
             if ( LOG.isDebugEnabled() )
             {
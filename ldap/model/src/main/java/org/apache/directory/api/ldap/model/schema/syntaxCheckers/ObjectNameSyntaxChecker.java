@@ -20,11 +20,10 @@
 package org.apache.directory.api.ldap.model.schema.syntaxCheckers;
 
 
-import java.util.regex.Pattern;
-
 import org.apache.directory.api.i18n.I18n;
 import org.apache.directory.api.ldap.model.constants.SchemaConstants;
 import org.apache.directory.api.ldap.model.schema.SyntaxChecker;
+import org.apache.directory.api.util.Chars;
 import org.apache.directory.api.util.Strings;
 
 
@@ -48,10 +47,6 @@ import org.apache.directory.api.util.Strings;
 @SuppressWarnings("serial")
 public final class ObjectNameSyntaxChecker extends SyntaxChecker
 {
-    private static final String REGEXP = "^([a-zA-Z][a-zA-Z0-9-;]*)$";
-
-    private static final Pattern PATTERN = Pattern.compile( REGEXP );
-    
     /**
      * A static instance of ObjectNameSyntaxChecker
      */
@@ -145,8 +140,16 @@ public final class ObjectNameSyntaxChecker extends SyntaxChecker
             return false;
         }
 
-        // Search for the '$' separator
-        boolean result = PATTERN.matcher( strValue ).matches();
+        // The first char must be an alpha, the following ones must be
+        // alphas, digits, '-' or ';'
+        boolean result = Chars.isAlphaASCII( strValue, 0 );
+
+        for ( int i = 1; result && ( i < strValue.length() ); i++ )
+        {
+            char c = strValue.charAt( i );
+
+            result = Chars.isAlphaDigitMinus( c ) || ( c == ';' );
+        }
 
         if ( LOG.isDebugEnabled() )
         {
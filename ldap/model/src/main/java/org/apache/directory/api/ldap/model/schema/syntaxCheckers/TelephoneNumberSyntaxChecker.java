@@ -166,6 +166,125 @@ public final class TelephoneNumberSyntaxChecker extends SyntaxChecker
     }
 
 
+    /**
+     * Checks if a character is one of the chars allowed in a telephone number :
+     * a digit, or one of '-', ' ', ',', ';', '/', '#' and '*'
+     *
+     * @param c The char to check
+     * @return <code>true</code> if the char is allowed
+     */
+    private static boolean isTelephoneChar( char c )
+    {
+        switch ( c )
+        {
+            case '-':
+            case ' ':
+            case ',':
+            case ';':
+            case '/':
+            case '#':
+            case '*':
+                return true;
+
+            default:
+                return ( c >= '0' ) && ( c <= '9' );
+        }
+    }
+
+
+    /**
+     * Scans the value from left to right, without any backtracking. This is equivalent to
+     * the default regexp, <code>^ *[+]? *((\([0-9- ,;/#*]+\))|[0-9- ,;/#*]+)+$</code>,
+     * but way faster.
+     *
+     * @param value The value to check
+     * @return <code>true</code> if the value is a valid TelephoneNumber
+     */
+    static boolean isDefaultTelephoneNumber( String value )
+    {
+        // The states are :
+        // 0 : start, nothing read
+        // 1 : only spaces read (final)
+        // 2 : the '+' has been read
+        // 3 : reading telephone chars, or after a ')' (final)
+        // 4 : a '(' has been read
+        // 5 : reading telephone chars within parenthesis
+        int state = 0;
+
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            char c = value.charAt( i );
+
+            switch ( state )
+            {
+                case 0:
+                case 1:
+                    if ( c == ' ' )
+                    {
+                        state = 1;
+                    }
+                    else if ( c == '+' )
+                    {
+                        state = 2;
+                    }
+                    else if ( c == '(' )
+                    {
+                        state = 4;
+                    }
+                    else if ( isTelephoneChar( c ) )
+                    {
+                        state = 3;
+                    }
+                    else
+                    {
+                        return false;
+                    }
+
+                    break;
+
+                case 2:
+                case 3:
+                    if ( c == '(' )
+                    {
+                        state = 4;
+                    }
+                    else if ( isTelephoneChar( c ) )
+                    {
+                        state = 3;
+                    }
+                    else
+                    {
+                        return false;
+                    }
+
+                    break;
+
+                case 4:
+                case 5:
+                    if ( ( c == ')' ) && ( state == 5 ) )
+                    {
+                        state = 3;
+                    }
+                    else if ( isTelephoneChar( c ) )
+                    {
+                        state = 5;
+                    }
+                    else
+                    {
+                        return false;
+                    }
+
+                    break;
+
+                default:
+                    return false;
+            }
+        }
+
+        return ( state == 1 ) || ( state == 3 );
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -207,11 +326,16 @@ public final class TelephoneNumberSyntaxChecker extends SyntaxChecker
             return false;
         }
 
-        // We will use a regexp to check the TelephoneNumber.
+        // We will use a regexp to check the TelephoneNumber, unless it's the
+        // default one, which is checked by a faster scanner. A Pattern is
+        // immutable and thread safe, there is no need to synchronize it.
         boolean result;
-        
-        // Not sure this is 100% necessary...
-        synchronized ( defaultPattern )
+
+        if ( DEFAULT_REGEXP.equals( defaultPattern.pattern() ) )
+        {
+            result = isDefaultTelephoneNumber( strValue );
+        }
+        else
         {
             result = defaultPattern.matcher( strValue ).matches();
         }
@@ -0,0 +1,138 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.ldap.model.schema.syntaxCheckers;
+
+
+import org.apache.directory.api.util.Chars;
+
+
+/**
+ * Helper methods used by the GeneralizedTime and UTCTime SyntaxCheckers to
+ * scan the date components without using a regexp.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class TimeSyntaxHelper
+{
+    /**
+     * Private constructor
+     */
+    private TimeSyntaxHelper()
+    {
+    }
+
+
+    /**
+     * Checks that the two chars at the given position are a valid month (01 to 12)
+     *
+     * @param value The value to check
+     * @param pos The position of the first char
+     * @return <code>true</code> if the two chars are a valid month
+     */
+    static boolean isMonth( String value, int pos )
+    {
+        if ( pos + 1 >= value.length() )
+        {
+            return false;
+        }
+
+        char c0 = value.charAt( pos );
+        char c1 = value.charAt( pos + 1 );
+
+        return ( ( c0 == '0' ) && ( c1 >= '1' ) && ( c1 <= '9' ) ) || ( ( c0 == '1' ) && ( c1 >= '0' ) && ( c1 <= '2' ) );
+    }
+
+
+    /**
+     * Checks that the two chars at the given position are a valid day (01 to 31)
+     *
+     * @param value The value to check
+     * @param pos The position of the first char
+     * @return <code>true</code> if the two chars are a valid day
+     */
+    static boolean isDay( String value, int pos )
+    {
+        if ( pos + 1 >= value.length() )
+        {
+            return false;
+        }
+
+        char c0 = value.charAt( pos );
+        char c1 = value.charAt( pos + 1 );
+
+        switch ( c0 )
+        {
+            case '0':
+                return ( c1 >= '1' ) && ( c1 <= '9' );
+
+            case '1':
+            case '2':
+                return Chars.isDigit( c1 );
+
+            case '3':
+                return ( c1 == '0' ) || ( c1 == '1' );
+
+            default:
+                return false;
+        }
+    }
+
+
+    /**
+     * Checks that the two chars at the given position are a valid hour (00 to 23)
+     *
+     * @param value The value to check
+     * @param pos The position of the first char
+     * @return <code>true</code> if the two chars are a valid hour
+     */
+    static boolean isHour( String value, int pos )
+    {
+        if ( pos + 1 >= value.length() )
+        {
+            return false;
+        }
+
+        char c0 = value.charAt( pos );
+        char c1 = value.charAt( pos + 1 );
+
+        return ( ( ( c0 == '0' ) || ( c0 == '1' ) ) && Chars.isDigit( c1 ) )
+            || ( ( c0 == '2' ) && ( c1 >= '0' ) && ( c1 <= '3' ) );
+    }
+
+
+    /**
+     * Checks that the two chars at the given position are a valid minute or second (00 to 59)
+     *
+     * @param value The value to check
+     * @param pos The position of the first char
+     * @return <code>true</code> if the two chars are a valid minute or second
+     */
+    static boolean isMinute( String value, int pos )
+    {
+        if ( pos + 1 >= value.length() )
+        {
+            return false;
+        }
+
+        char c0 = value.charAt( pos );
+
+        return ( c0 >= '0' ) && ( c0 <= '5' ) && Chars.isDigit( value.charAt( pos + 1 ) );
+    }
+}
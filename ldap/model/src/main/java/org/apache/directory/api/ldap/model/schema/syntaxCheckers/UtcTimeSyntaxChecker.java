@@ -20,11 +20,10 @@
 package org.apache.directory.api.ldap.model.schema.syntaxCheckers;
 
 
-import java.util.regex.Pattern;
-
 import org.apache.directory.api.i18n.I18n;
 import org.apache.directory.api.ldap.model.constants.SchemaConstants;
 import org.apache.directory.api.ldap.model.schema.SyntaxChecker;
+import org.apache.directory.api.util.Chars;
 import org.apache.directory.api.util.Strings;
 
 
@@ -64,28 +63,6 @@ import org.apache.directory.api.util.Strings;
 @SuppressWarnings("serial")
 public final class UtcTimeSyntaxChecker extends SyntaxChecker
 {
-    /** The GeneralizedDate pattern matching */
-    private static final String UTC_TIME_PATTERN =
-        // year : 00 to 99
-        "^\\d{2}"
-            // month : 01 to 12
-            + "(0[1-9]|1[0-2])"
-            // day : 01 to 31
-            + "(0[1-9]|[12]\\d|3[01])"
-            // hour: 00 to 23
-            + "([01]\\d|2[0-3])"
-            // minute : 00 to 59
-            + "([0-5]\\d)"
-            + "("
-            // optional second : 00 to 59
-            + "([0-5]\\d)?"
-            // optional time-zone
-            + "(Z|([+-]([01]\\d|2[0-3])[0-5]\\d))?"
-            + ")$";
-
-    // The regexp pattern, java.util.regex.Pattern is immutable so only one instance is needed.
-    private static final Pattern DATE_PATTERN = Pattern.compile( UTC_TIME_PATTERN );
-    
     /**
      * A static instance of UtcTimeSyntaxChecker
      */
@@ -137,6 +114,64 @@ public final class UtcTimeSyntaxChecker extends SyntaxChecker
     }
 
 
+    /**
+     * Scans the value from left to right, without any backtracking. This is equivalent to
+     * the following regexp, but way faster :
+     * <pre>
+     * ^\d{2}(0[1-9]|1[0-2])(0[1-9]|[12]\d|3[01])([01]\d|2[0-3])([0-5]\d)(([0-5]\d)?(Z|([+-]([01]\d|2[0-3])[0-5]\d))?)$
+     * </pre>
+     *
+     * @param value The value to check
+     * @return <code>true</code> if the value is a UTCTime
+     */
+    private static boolean isUtcTime( String value )
+    {
+        int length = value.length();
+
+        // year : 00 to 99
+        if ( ( length < 2 ) || !Chars.isDigit( value.charAt( 0 ) ) || !Chars.isDigit( value.charAt( 1 ) ) )
+        {
+            return false;
+        }
+
+        // month, day, hour and minute
+        if ( !TimeSyntaxHelper.isMonth( value, 2 ) || !TimeSyntaxHelper.isDay( value, 4 )
+            || !TimeSyntaxHelper.isHour( value, 6 ) || !TimeSyntaxHelper.isMinute( value, 8 ) )
+        {
+            return false;
+        }
+
+        int pos = 10;
+
+        // optional second
+        if ( TimeSyntaxHelper.isMinute( value, pos ) )
+        {
+            pos += 2;
+        }
+
+        if ( pos == length )
+        {
+            return true;
+        }
+
+        // optional time-zone
+        char c = value.charAt( pos );
+
+        if ( c == 'Z' )
+        {
+            return pos + 1 == length;
+        }
+
+        if ( ( c != '+' ) && ( c != '-' ) )
+        {
+            return false;
+        }
+
+        return TimeSyntaxHelper.isHour( value, pos + 1 ) && TimeSyntaxHelper.isMinute( value, pos + 3 )
+            && ( pos + 5 == length );
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -180,7 +215,7 @@ public final class UtcTimeSyntaxChecker extends SyntaxChecker
         }
 
         // Start the date parsing
-        boolean result = DATE_PATTERN.matcher( strValue ).find();
+        boolean result = isUtcTime( strValue );
 
         if ( result )
         {
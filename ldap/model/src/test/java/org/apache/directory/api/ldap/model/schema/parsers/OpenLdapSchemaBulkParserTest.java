@@ -0,0 +1,147 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.model.schema.parsers;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+
+/**
+ * Tests the OpenLDAP schema bulk parser.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution(ExecutionMode.CONCURRENT)
+public class OpenLdapSchemaBulkParserTest
+{
+    @TempDir
+    public Path tempDir;
+
+
+    private File copy( String schema ) throws Exception
+    {
+        File file = tempDir.resolve( schema ).toFile();
+
+        try ( InputStream input = getClass().getResourceAsStream( schema ) )
+        {
+            Files.copy( input, file.toPath() );
+        }
+
+        return file;
+    }
+
+
+    @Test
+    public void testParseSchemaFiles() throws Exception
+    {
+        List<File> files = Arrays.asList( copy( "core.schema" ), copy( "inetorgperson.schema" ),
+            copy( "collective.schema" ), copy( "dyngroup.schema" ) );
+
+        OpenLdapSchemaBulkParser bulkParser = new OpenLdapSchemaBulkParser( 4 );
+        List<OpenLdapSchemaBulkParser.Result> results = bulkParser.parse( files );
+
+        assertEquals( 4, results.size() );
+
+        for ( int i = 0; i < files.size(); i++ )
+        {
+            OpenLdapSchemaBulkParser.Result result = results.get( i );
+
+            // The results must be in the same order than the files
+            assertEquals( files.get( i ), result.getFile() );
+            assertTrue( result.isSuccess() );
+            assertNull( result.getError() );
+
+            // Check that we get the same thing than the sequential parser
+            OpenLdapSchemaParser parser = new OpenLdapSchemaParser();
+            parser.parse( files.get( i ) );
+
+            assertEquals( parser.getAttributeTypes().size(), result.getAttributeTypes().size() );
+            assertEquals( parser.getObjectClasses().size(), result.getObjectClasses().size() );
+        }
+
+        assertEquals( 52, results.get( 0 ).getAttributeTypes().size() );
+        assertEquals( 27, results.get( 0 ).getObjectClasses().size() );
+    }
+
+
+    @Test
+    public void testParseErrorReportsLine() throws Exception
+    {
+        File valid = copy( "core.schema" );
+        File invalid = tempDir.resolve( "invalid.schema" ).toFile();
+        String content = "# A comment\n"
+            + "attributetype ( 2.5.4.0 NAME 'objectClass'\n"
+            + "        EQUALITY objectIdentifierMatch\n"
+            + "        SYNTAX 1.3.6.1.4.1.1466.115.121.1.38 )\n"
+            + "\n"
+            + "objectclass ( 2.5.6.0 NAME 'top' ABSTRACT\n"
+            + "        MUST objectClass BAD )\n";
+        Files.write( invalid.toPath(), content.getBytes( StandardCharsets.UTF_8 ) );
+
+        List<File> files = new ArrayList<>();
+        files.add( invalid );
+        files.add( valid );
+
+        List<OpenLdapSchemaBulkParser.Result> results = new OpenLdapSchemaBulkParser( 2 ).parse( files );
+
+        OpenLdapSchemaBulkParser.Result result = results.get( 0 );
+        assertFalse( result.isSuccess() );
+        assertEquals( 7, result.getError().getErrorOffset() );
+        assertTrue( result.getAttributeTypes().isEmpty() );
+
+        // The other file is not impacted
+        assertTrue( results.get( 1 ).isSuccess() );
+    }
+
+
+    @Test
+    public void testParseNoFile()
+    {
+        assertTrue( new OpenLdapSchemaBulkParser().parse( new ArrayList<>() ).isEmpty() );
+    }
+
+
+    @Test
+    public void testInvalidParallelism()
+    {
+        assertThrows( IllegalArgumentException.class, () ->
+        {
+            new OpenLdapSchemaBulkParser( 0 );
+        } );
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.model.schema.syntaxes;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.directory.api.ldap.model.schema.syntaxCheckers.CachingSyntaxChecker;
+import org.apache.directory.api.ldap.model.schema.syntaxCheckers.GeneralizedTimeSyntaxChecker;
+import org.apache.directory.api.util.Strings;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+/**
+ * Test cases for CachingSyntaxChecker.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution(ExecutionMode.CONCURRENT)
+public class CachingSyntaxCheckerTest
+{
+    @Test
+    public void testOID()
+    {
+        CachingSyntaxChecker checker = CachingSyntaxChecker.builder()
+            .setSyntaxChecker( GeneralizedTimeSyntaxChecker.INSTANCE ).build();
+
+        assertEquals( GeneralizedTimeSyntaxChecker.INSTANCE.getOid(), checker.getOid() );
+        assertSame( GeneralizedTimeSyntaxChecker.INSTANCE, checker.getSyntaxChecker() );
+        assertEquals( CachingSyntaxChecker.DEFAULT_CACHE_SIZE, checker.getCacheSize() );
+    }
+
+
+    @Test
+    public void testHitsAndMisses()
+    {
+        CachingSyntaxChecker checker = CachingSyntaxChecker.builder()
+            .setSyntaxChecker( GeneralizedTimeSyntaxChecker.INSTANCE ).setCacheSize( 2 ).build();
+
+        assertTrue( checker.isValidSyntax( "20061205184527Z" ) );
+        assertTrue( checker.isValidSyntax( "20061205184527Z" ) );
+        assertFalse( checker.isValidSyntax( "2006120518452" ) );
+        assertFalse( checker.isValidSyntax( "2006120518452" ) );
+
+        assertEquals( 2, checker.getHits() );
+        assertEquals( 2, checker.getMisses() );
+        assertEquals( 2, checker.getSize() );
+
+        // Both cached values have been used, the clock hand gives them a second chance and then evicts the oldest
+        assertTrue( checker.isValidSyntax( "2006120519Z" ) );
+        assertTrue( checker.isValidSyntax( "20061205184527Z" ) );
+        assertEquals( 2, checker.getSize() );
+        assertEquals( 4, checker.getMisses() );
+
+        // null and binary values are not cached
+        assertFalse( checker.isValidSyntax( null ) );
+        assertTrue( checker.isValidSyntax( Strings.getBytesUtf8( "2006120519Z" ) ) );
+        assertEquals( 2, checker.getHits() );
+        assertEquals( 4, checker.getMisses() );
+
+        checker.clear();
+        assertEquals( 0, checker.getSize() );
+        assertEquals( 0, checker.getHits() );
+        assertEquals( 0, checker.getMisses() );
+    }
+
+
+    @Test
+    public void testConcurrentChecks() throws Exception
+    {
+        CachingSyntaxChecker checker = CachingSyntaxChecker.builder()
+            .setSyntaxChecker( GeneralizedTimeSyntaxChecker.INSTANCE ).setCacheSize( 16 ).build();
+        ExecutorService executor = Executors.newFixedThreadPool( 8 );
+
+        try
+        {
+            List<Future<Boolean>> futures = new ArrayList<>();
+
+            for ( int i = 0; i < 8; i++ )
+            {
+                Callable<Boolean> task = () ->
+                {
+                    boolean ok = true;
+
+                    for ( int j = 0; j < 10000; j++ )
+                    {
+                        String year = Integer.toString( 2000 + ( j % 32 ) );
+                        ok &= checker.isValidSyntax( year + "1205184527Z" );
+                        ok &= !checker.isValidSyntax( year + "120518452" );
+                    }
+
+                    return ok;
+                };
+
+                futures.add( executor.submit( task ) );
+            }
+
+            for ( Future<Boolean> future : futures )
+            {
+                assertTrue( future.get() );
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        assertTrue( checker.getSize() <= 16 );
+        assertEquals( 8 * 20000L, checker.getHits() + checker.getMisses() );
+    }
+
+
+    @Test
+    public void testInvalidBuilder()
+    {
+        assertThrows( IllegalArgumentException.class, () ->
+        {
+            CachingSyntaxChecker.builder().build();
+        } );
+
+        assertThrows( IllegalArgumentException.class, () ->
+        {
+            CachingSyntaxChecker.builder().setSyntaxChecker( GeneralizedTimeSyntaxChecker.INSTANCE )
+                .setCacheSize( 0 ).build();
+        } );
+    }
+}
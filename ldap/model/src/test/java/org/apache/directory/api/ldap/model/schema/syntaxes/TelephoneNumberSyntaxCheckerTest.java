@@ -24,6 +24,8 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.Random;
+
 import org.apache.directory.api.ldap.model.schema.syntaxCheckers.TelephoneNumberSyntaxChecker;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.parallel.Execution;
@@ -111,4 +113,30 @@ public class TelephoneNumberSyntaxCheckerTest
         checker = TelephoneNumberSyntaxChecker.builder().build();
         assertTrue( checker.isValidSyntax( "1" ) );
     }
+
+
+    @Test
+    public void testScannerMatchesRegexp()
+    {
+        // The same regexp than the default one, written differently, so that it's not scanned
+        TelephoneNumberSyntaxChecker regexpChecker = TelephoneNumberSyntaxChecker.builder()
+            .setDefaultRegexp( "^ *\\+? *((\\([0-9- ,;/#*]+\\))|[0-9- ,;/#*]+)+$" ).build();
+        String chars = " +()0123456789-,;/#*a";
+        Random random = new Random( 42L );
+
+        for ( int i = 0; i < 10000; i++ )
+        {
+            StringBuilder sb = new StringBuilder();
+            int length = 1 + random.nextInt( 8 );
+
+            for ( int j = 0; j < length; j++ )
+            {
+                sb.append( chars.charAt( random.nextInt( chars.length() ) ) );
+            }
+
+            String value = sb.toString();
+
+            assertEquals( regexpChecker.isValidSyntax( value ), checker.isValidSyntax( value ), value );
+        }
+    }
 }
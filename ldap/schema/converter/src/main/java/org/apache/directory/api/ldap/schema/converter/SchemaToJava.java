@@ -0,0 +1,514 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.schema.converter;
+
+
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.util.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A class used to translate a OpenLdap schema file to a Java class. The generated class
+ * contains the names and OIDs of the schema AttributeTypes and ObjectClasses as constants,
+ * and, once created with a SchemaManager, gives access to the resolved AttributeTypes and
+ * ObjectClasses and to typed Entry accessors, so that no registry lookup is needed at runtime.
+ * <br>
+ * For a schema named 'core', the generated class is named <code>CoreSchema</code>, and
+ * contains, for the 'cn' AttributeType :
+ * <pre>
+ * public static final String CN_AT = "cn";
+ * public static final String CN_AT_OID = "2.5.4.3";
+ *
+ * public AttributeType getCnAttributeType();
+ * public Attribute getCn( Entry entry );
+ * </pre>
+ * Single valued AttributeTypes also get a <code>getXxxValue( Entry )</code> accessor
+ * returning the attribute value as a String.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class SchemaToJava
+{
+    /** The logger */
+    private static final Logger LOG = LoggerFactory.getLogger( SchemaToJava.class );
+
+    /** The suffix added to the schema name to create the class name */
+    private static final String CLASS_SUFFIX = "Schema";
+
+    /** Some constant used to generate the code */
+    private static final String INDENT = "    ";
+    private static final String INDENT2 = INDENT + INDENT;
+    private static final String AT_SUFFIX = "_AT";
+    private static final String OC_SUFFIX = "_OC";
+    private static final String OID_SUFFIX = "_OID";
+
+
+    /**
+     * Private constructor.
+     */
+    private SchemaToJava()
+    {
+    }
+
+
+    /**
+     * This method takes a list of schema and transform them to Java classes. Each class
+     * is written in the schema output.
+     *
+     * @param schemas The list of schema to be transformed
+     * @param packageName The package the generated classes belong to. May be null or empty
+     * @throws ParserException If we get an error while converting the schemas
+     */
+    public static void transform( List<Schema> schemas, String packageName ) throws ParserException
+    {
+        // Bypass if no schemas have yet been defined
+        if ( ( schemas == null ) || schemas.isEmpty() )
+        {
+            if ( LOG.isWarnEnabled() )
+            {
+                LOG.warn( I18n.msg( I18n.MSG_15000_NO_SCHEMA_DEFINED ) );
+            }
+
+            return;
+        }
+
+        // Make sure schema configurations have a name field
+        int i = 1;
+
+        for ( Schema schema : schemas )
+        {
+            if ( schema.getName() == null )
+            {
+                String msg = I18n.err( I18n.ERR_15000_SCHEMA_ELEMENT_NAME_REQUIRED, i );
+                LOG.error( msg );
+                throw new ParserException( msg );
+            }
+
+            i++;
+        }
+
+        // Generate for each schema
+        for ( Schema schema : schemas )
+        {
+            try
+            {
+                if ( LOG.isInfoEnabled() )
+                {
+                    LOG.info( I18n.msg( I18n.MSG_15001_GENERATING_SCHEMA, schema.getName() ) );
+                }
+
+                generate( schema, packageName );
+            }
+            catch ( Exception e )
+            {
+                throw new ParserException( I18n.err( I18n.ERR_15004_CANNOT_GENERATE_SOURCES, schema.getName(),
+                    e.getMessage() ) );
+            }
+        }
+    }
+
+
+    /**
+     * Computes the name of the class generated for a schema : the schema name, with
+     * its first char upper cased and followed by 'Schema'.
+     *
+     * @param schemaName The schema name
+     * @return The generated class name
+     */
+    public static String getClassName( String schemaName )
+    {
+        return toJavaName( schemaName, true ) + CLASS_SUFFIX;
+    }
+
+
+    /**
+     * Generate the Java class from a schema. The schema contains the inputStream
+     * and Writer.
+     *
+     * @param schema The schema to transform
+     * @param packageName The package the generated class belongs to
+     * @throws Exception If the conversion fails
+     */
+    private static void generate( Schema schema, String packageName ) throws Exception
+    {
+        try ( InputStream in = schema.getInput() )
+        {
+            try ( Writer out = schema.getOutput() )
+            {
+                // First parse the schema
+                SchemaParser parser = new SchemaParser();
+                List<SchemaElement> elements = parser.parse( in );
+
+                List<AttributeTypeHolder> attributeTypes = new ArrayList<>();
+                List<ObjectClassHolder> objectClasses = new ArrayList<>();
+
+                for ( SchemaElement element : elements )
+                {
+                    if ( element instanceof AttributeTypeHolder )
+                    {
+                        attributeTypes.add( ( AttributeTypeHolder ) element );
+                    }
+                    else if ( element instanceof ObjectClassHolder )
+                    {
+                        objectClasses.add( ( ObjectClassHolder ) element );
+                    }
+                }
+
+                out.write( generate( schema.getName(), packageName, attributeTypes, objectClasses ) );
+
+                // Done. Flush the result and close the reader and writer
+                out.flush();
+            }
+        }
+    }
+
+
+    /**
+     * Generates the source of the Java class.
+     */
+    private static String generate( String schemaName, String packageName,
+        List<AttributeTypeHolder> attributeTypes, List<ObjectClassHolder> objectClasses )
+    {
+        String className = getClassName( schemaName );
+        List<GeneratedElement> ats = getGeneratedElements( attributeTypes, AT_SUFFIX );
+        List<GeneratedElement> ocs = getGeneratedElements( objectClasses, OC_SUFFIX );
+
+        StringBuilder sb = new StringBuilder();
+
+        // The package and imports
+        if ( !Strings.isEmpty( packageName ) )
+        {
+            sb.append( "package " ).append( packageName ).append( ";\n\n\n" );
+        }
+
+        sb.append( "import org.apache.directory.api.ldap.model.entry.Attribute;\n" );
+        sb.append( "import org.apache.directory.api.ldap.model.entry.Entry;\n" );
+        sb.append( "import org.apache.directory.api.ldap.model.exception.LdapException;\n" );
+        sb.append( "import org.apache.directory.api.ldap.model.exception.LdapInvalidAttributeValueException;\n" );
+        sb.append( "import org.apache.directory.api.ldap.model.schema.AttributeType;\n" );
+        sb.append( "import org.apache.directory.api.ldap.model.schema.ObjectClass;\n" );
+        sb.append( "import org.apache.directory.api.ldap.model.schema.SchemaManager;\n\n\n" );
+
+        // The class header
+        sb.append( "/**\n" );
+        sb.append( " * Constants and resolved elements of the '" ).append( schemaName ).append( "' schema.\n" );
+        sb.append( " * This class has been generated by SchemaToJava, do not edit it.\n" );
+        sb.append( " */\n" );
+        sb.append( "public final class " ).append( className ).append( "\n{\n" );
+
+        sb.append( INDENT ).append( "/** The schema name */\n" );
+        sb.append( INDENT ).append( "public static final String SCHEMA_NAME = \"" ).append( schemaName )
+            .append( "\";\n\n" );
+
+        // The constants
+        for ( GeneratedElement at : ats )
+        {
+            generateConstants( sb, at, "AttributeType" );
+        }
+
+        for ( GeneratedElement oc : ocs )
+        {
+            generateConstants( sb, oc, "ObjectClass" );
+        }
+
+        // The resolved elements
+        for ( GeneratedElement at : ats )
+        {
+            sb.append( INDENT ).append( "private final AttributeType " ).append( at.fieldName ).append( ";\n" );
+        }
+
+        for ( GeneratedElement oc : ocs )
+        {
+            sb.append( INDENT ).append( "private final ObjectClass " ).append( oc.fieldName ).append( ";\n" );
+        }
+
+        // The constructor
+        sb.append( "\n\n" );
+        sb.append( INDENT ).append( "/**\n" );
+        sb.append( INDENT ).append( " * Resolves all the schema elements against the given SchemaManager.\n" );
+        sb.append( INDENT ).append( " *\n" );
+        sb.append( INDENT ).append( " * @param schemaManager The SchemaManager containing the '" ).append( schemaName )
+            .append( "' schema\n" );
+        sb.append( INDENT ).append( " * @throws LdapException If one of the elements is not present in the SchemaManager\n" );
+        sb.append( INDENT ).append( " */\n" );
+        sb.append( INDENT ).append( "public " ).append( className ).append( "( SchemaManager schemaManager ) throws LdapException\n" );
+        sb.append( INDENT ).append( "{\n" );
+
+        for ( GeneratedElement at : ats )
+        {
+            sb.append( INDENT2 ).append( at.fieldName ).append( " = schemaManager.lookupAttributeTypeRegistry( " )
+                .append( at.constant ).append( OID_SUFFIX ).append( " );\n" );
+        }
+
+        for ( GeneratedElement oc : ocs )
+        {
+            sb.append( INDENT2 ).append( oc.fieldName ).append( " = schemaManager.lookupObjectClassRegistry( " )
+                .append( oc.constant ).append( OID_SUFFIX ).append( " );\n" );
+        }
+
+        sb.append( INDENT ).append( "}\n" );
+
+        // The accessors
+        for ( GeneratedElement at : ats )
+        {
+            generateAttributeTypeAccessors( sb, at );
+        }
+
+        for ( GeneratedElement oc : ocs )
+        {
+            generateGetter( sb, "ObjectClass", oc.javaName + "ObjectClass", oc.fieldName,
+                "@return The '" + oc.name + "' ObjectClass" );
+        }
+
+        sb.append( "}\n" );
+
+        return sb.toString();
+    }
+
+
+    /**
+     * Generates the name and OID constants of a schema element.
+     */
+    private static void generateConstants( StringBuilder sb, GeneratedElement element, String type )
+    {
+        sb.append( INDENT ).append( "/** The '" ).append( element.name ).append( "' " ).append( type )
+            .append( " name and OID */\n" );
+        sb.append( INDENT ).append( "public static final String " ).append( element.constant ).append( " = \"" )
+            .append( element.name ).append( "\";\n" );
+        sb.append( INDENT ).append( "public static final String " ).append( element.constant ).append( OID_SUFFIX )
+            .append( " = \"" ).append( element.oid ).append( "\";\n\n" );
+    }
+
+
+    /**
+     * Generates the accessors associated with an AttributeType.
+     */
+    private static void generateAttributeTypeAccessors( StringBuilder sb, GeneratedElement at )
+    {
+        generateGetter( sb, "AttributeType", at.javaName + "AttributeType", at.fieldName,
+            "@return The '" + at.name + "' AttributeType" );
+
+        sb.append( "\n\n" );
+        sb.append( INDENT ).append( "/**\n" );
+        sb.append( INDENT ).append( " * @param entry The entry to read\n" );
+        sb.append( INDENT ).append( " * @return The '" ).append( at.name )
+            .append( "' attribute of the entry, or null if absent\n" );
+        sb.append( INDENT ).append( " */\n" );
+        sb.append( INDENT ).append( "public Attribute get" ).append( at.javaName ).append( "( Entry entry )\n" );
+        sb.append( INDENT ).append( "{\n" );
+        sb.append( INDENT2 ).append( "return entry.get( " ).append( at.fieldName ).append( " );\n" );
+        sb.append( INDENT ).append( "}\n" );
+
+        if ( ( ( AttributeTypeHolder ) at.element ).isSingleValue() )
+        {
+            sb.append( "\n\n" );
+            sb.append( INDENT ).append( "/**\n" );
+            sb.append( INDENT ).append( " * @param entry The entry to read\n" );
+            sb.append( INDENT ).append( " * @return The '" ).append( at.name )
+                .append( "' value of the entry, or null if absent\n" );
+            sb.append( INDENT ).append( " * @throws LdapInvalidAttributeValueException If the value is not a String\n" );
+            sb.append( INDENT ).append( " */\n" );
+            sb.append( INDENT ).append( "public String get" ).append( at.javaName )
+                .append( "Value( Entry entry ) throws LdapInvalidAttributeValueException\n" );
+            sb.append( INDENT ).append( "{\n" );
+            sb.append( INDENT2 ).append( "Attribute attribute = entry.get( " ).append( at.fieldName ).append( " );\n\n" );
+            sb.append( INDENT2 ).append( "return attribute == null ? null : attribute.getString();\n" );
+            sb.append( INDENT ).append( "}\n" );
+        }
+    }
+
+
+    /**
+     * Generates a getter on a field.
+     */
+    private static void generateGetter( StringBuilder sb, String type, String name, String fieldName, String doc )
+    {
+        sb.append( "\n\n" );
+        sb.append( INDENT ).append( "/**\n" );
+        sb.append( INDENT ).append( " * " ).append( doc ).append( "\n" );
+        sb.append( INDENT ).append( " */\n" );
+        sb.append( INDENT ).append( "public " ).append( type ).append( " get" ).append( name ).append( "()\n" );
+        sb.append( INDENT ).append( "{\n" );
+        sb.append( INDENT2 ).append( "return " ).append( fieldName ).append( ";\n" );
+        sb.append( INDENT ).append( "}\n" );
+    }
+
+
+    /**
+     * Computes the generated names of the given elements. Elements which would lead to the
+     * same Java names than a previous one are ignored.
+     */
+    private static List<GeneratedElement> getGeneratedElements( List<? extends SchemaElement> elements,
+        String suffix )
+    {
+        List<GeneratedElement> generated = new ArrayList<>( elements.size() );
+        Set<String> constants = new HashSet<>();
+
+        for ( SchemaElement element : elements )
+        {
+            GeneratedElement generatedElement = new GeneratedElement( element, suffix );
+
+            if ( constants.add( generatedElement.constant ) )
+            {
+                generated.add( generatedElement );
+            }
+            else if ( LOG.isWarnEnabled() )
+            {
+                LOG.warn( I18n.msg( I18n.MSG_15002_DUPLICATE_JAVA_NAME, generatedElement.name,
+                    generatedElement.oid ) );
+            }
+        }
+
+        return generated;
+    }
+
+
+    /**
+     * Transforms a schema name to a Java constant name : 'inetOrgPerson' becomes 'INET_ORG_PERSON'
+     *
+     * @param name The name to transform
+     * @return The constant name
+     */
+    static String toConstantName( String name )
+    {
+        StringBuilder sb = new StringBuilder( name.length() + 8 );
+        char previous = '_';
+
+        for ( char c : name.toCharArray() )
+        {
+            if ( Character.isUpperCase( c ) && ( Character.isLowerCase( previous ) || Character.isDigit( previous ) ) )
+            {
+                sb.append( '_' );
+            }
+
+            if ( Character.isLetterOrDigit( c ) && ( c < 0x80 ) )
+            {
+                sb.append( Character.toUpperCase( c ) );
+            }
+            else
+            {
+                sb.append( '_' );
+            }
+
+            previous = c;
+        }
+
+        if ( ( sb.length() == 0 ) || Character.isDigit( sb.charAt( 0 ) ) )
+        {
+            sb.insert( 0, '_' );
+        }
+
+        return sb.toString();
+    }
+
+
+    /**
+     * Transforms a schema name to a Java name : 'x-my-name' becomes 'xMyName'
+     *
+     * @param name The name to transform
+     * @param capitalize If the first char must be upper cased
+     * @return The Java name
+     */
+    static String toJavaName( String name, boolean capitalize )
+    {
+        StringBuilder sb = new StringBuilder( name.length() );
+        boolean upper = capitalize;
+
+        for ( char c : name.toCharArray() )
+        {
+            if ( Character.isLetterOrDigit( c ) && ( c < 0x80 ) )
+            {
+                sb.append( upper ? Character.toUpperCase( c ) : c );
+                upper = false;
+            }
+            else
+            {
+                upper = true;
+            }
+        }
+
+        if ( ( sb.length() == 0 ) || Character.isDigit( sb.charAt( 0 ) ) )
+        {
+            sb.insert( 0, capitalize ? "Oid" : "oid" );
+        }
+
+        return sb.toString();
+    }
+
+
+    /**
+     * The names used for a schema element in the generated code
+     */
+    private static final class GeneratedElement
+    {
+        /** The schema element */
+        private final SchemaElement element;
+
+        /** The element name, or its OID if it has no name */
+        private final String name;
+
+        /** The element OID */
+        private final String oid;
+
+        /** The name constant, like CN_AT */
+        private final String constant;
+
+        /** The name used in methods, like Cn */
+        private final String javaName;
+
+        /** The name of the field holding the resolved element, like cnAT */
+        private final String fieldName;
+
+
+        private GeneratedElement( SchemaElement element, String suffix )
+        {
+            this.element = element;
+            oid = element.getOid();
+
+            List<String> names = element.getNames();
+
+            if ( ( names != null ) && !names.isEmpty() )
+            {
+                name = names.get( 0 );
+                constant = toConstantName( name ) + suffix;
+                javaName = toJavaName( name, true );
+                fieldName = toJavaName( name, false ) + suffix.substring( 1 );
+            }
+            else
+            {
+                // No name, use the OID
+                String oidName = oid.replace( '.', '_' );
+                name = oid;
+                constant = "OID_" + oidName + suffix;
+                javaName = "Oid" + oidName;
+                fieldName = "oid" + oidName + suffix.substring( 1 );
+            }
+        }
+    }
+}
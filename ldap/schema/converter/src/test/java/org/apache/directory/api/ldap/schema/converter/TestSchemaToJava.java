@@ -0,0 +1,143 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.schema.converter;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+/**
+ * Test the schema to Java converter
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution( ExecutionMode.CONCURRENT )
+public class TestSchemaToJava
+{
+    private String transform( String name, String packageName ) throws ParserException, IOException
+    {
+        List<Schema> schemas = new ArrayList<Schema>();
+        Schema schema = new Schema();
+        schema.setName( name );
+        schema.setInput( getClass().getResourceAsStream( name + ".schema" ) );
+
+        Writer out = new StringWriter( 2048 );
+        schema.setOutput( out );
+        schemas.add( schema );
+
+        SchemaToJava.transform( schemas, packageName );
+
+        String res = out.toString();
+        out.close();
+
+        return res;
+    }
+
+
+    @Test
+    public void testNames()
+    {
+        assertEquals( "INET_ORG_PERSON", SchemaToJava.toConstantName( "inetOrgPerson" ) );
+        assertEquals( "CN", SchemaToJava.toConstantName( "cn" ) );
+        assertEquals( "X_MY_ATTR2", SchemaToJava.toConstantName( "x-my-attr2" ) );
+        assertEquals( "inetOrgPerson", SchemaToJava.toJavaName( "inetOrgPerson", false ) );
+        assertEquals( "XMyAttr2", SchemaToJava.toJavaName( "x-my-attr2", true ) );
+        assertEquals( "TestSchema", SchemaToJava.getClassName( "test" ) );
+        assertEquals( "NisSchema", SchemaToJava.getClassName( "nis" ) );
+    }
+
+
+    @Test
+    public void testConvertSchema() throws ParserException, IOException
+    {
+        String res = transform( "test", "org.example.schema" );
+
+        assertTrue( res.startsWith( "package org.example.schema;\n" ) );
+        assertTrue( res.contains( "public final class TestSchema\n" ) );
+        assertTrue( res.contains( "public static final String SCHEMA_NAME = \"test\";" ) );
+
+        // The AttributeType constants, handles and accessors
+        assertTrue( res.contains( "public static final String APACHE_DNS_CLASS_AT = \"apacheDnsClass\";" ) );
+        assertTrue( res.contains( "public static final String APACHE_DNS_CLASS_AT_OID = \"1.3.6.1.4.1.18060.0.4.2.2.1\";" ) );
+        assertTrue( res.contains( "private final AttributeType apacheDnsClassAT;" ) );
+        assertTrue( res.contains( "apacheDnsClassAT = schemaManager.lookupAttributeTypeRegistry( APACHE_DNS_CLASS_AT_OID );" ) );
+        assertTrue( res.contains( "public AttributeType getApacheDnsClassAttributeType()" ) );
+        assertTrue( res.contains( "public Attribute getApacheDnsClass( Entry entry )" ) );
+        assertTrue( res.contains( "public String getApacheDnsClassValue( Entry entry ) throws LdapInvalidAttributeValueException" ) );
+    }
+
+
+    @Test
+    public void testConvertOC() throws ParserException, IOException
+    {
+        String res = transform( "testOC", null );
+
+        assertFalse( res.contains( "package " ) );
+        assertTrue( res.contains( "public final class TestOCSchema\n" ) );
+        assertTrue( res.contains( "public static final String OBJECT_CLASS_OC = \"objectClass\";" ) );
+        assertTrue( res.contains( "public static final String OBJECT_CLASS_OC_OID = \"1.3.6.1.4.1.18060.0.4.2.3.14\";" ) );
+        assertTrue( res.contains( "objectClassOC = schemaManager.lookupObjectClassRegistry( OBJECT_CLASS_OC_OID );" ) );
+        assertTrue( res.contains( "public ObjectClass getObjectClassObjectClass()" ) );
+    }
+
+
+    @Test
+    public void testConvertATNoName() throws ParserException, IOException
+    {
+        String res = transform( "testATNoName", null );
+
+        assertTrue( res.contains( "public static final String OID_1_3_6_1_4_1_18060_0_4_2_3_14_AT = \"1.3.6.1.4.1.18060.0.4.2.3.14\";" ) );
+        assertTrue( res.contains( "public Attribute getOid1_3_6_1_4_1_18060_0_4_2_3_14( Entry entry )" ) );
+
+        // Not single valued
+        assertFalse( res.contains( "Value( Entry entry )" ) );
+    }
+
+
+    @Test
+    public void testConvertATSingleValue() throws ParserException, IOException
+    {
+        String res = transform( "testATSingleValue", null );
+
+        assertTrue( res.contains( "public String getOid1_3_6_1_4_1_18060_0_4_2_3_14Value( Entry entry )" ) );
+    }
+
+
+    @Test
+    public void testConvertWrongLdif()
+    {
+        assertThrows( ParserException.class, () ->
+        {
+            transform( "testWrongLdif", null );
+        } );
+    }
+}